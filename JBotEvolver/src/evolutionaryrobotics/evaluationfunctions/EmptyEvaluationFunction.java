@@ -12,5 +12,10 @@ public class EmptyEvaluationFunction extends EvaluationFunction {
 	@Override
 	public void update(Simulator simulator) {
 	}
+	
+	@Override
+	public double getFitnessUpperBound(Simulator simulator) {
+		return fitness;
+	}
 
 }
@@ -2,6 +2,7 @@ package evolutionaryrobotics.evaluationfunctions;
 
 import java.io.Serializable;
 import java.lang.reflect.Constructor;
+import simulation.Simulator;
 import simulation.Updatable;
 import simulation.util.Arguments;
 
@@ -17,6 +18,16 @@ public abstract class EvaluationFunction implements Serializable, Updatable {
 		return fitness;
 	}
 	
+	/**
+	 * @return the highest fitness that the simulation could still give, from
+	 *         the fitness obtained until the current time of the simulator and
+	 *         the steps left, or infinity if it is not known. Before the
+	 *         simulation starts it is the highest fitness of a sample.
+	 */
+	public double getFitnessUpperBound(Simulator simulator) {
+		return Double.POSITIVE_INFINITY;
+	}
+	
 	public Arguments getArgs() {
 		return args;
 	}
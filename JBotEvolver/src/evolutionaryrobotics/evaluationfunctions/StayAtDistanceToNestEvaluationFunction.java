@@ -29,5 +29,12 @@ public class StayAtDistanceToNestEvaluationFunction extends EvaluationFunction {
 			fitness += 1/(Math.abs(distance - distanceToNest) + .1)*.1; 
 		}
 	}
+	
+	@Override
+	public double getFitnessUpperBound(Simulator simulator) {
+		//each robot gets at most 1 in a step
+		double stepsLeft = simulator.getEnvironment().getSteps() - simulator.getTime();
+		return fitness + stepsLeft * simulator.getEnvironment().getRobots().size();
+	}
 
 }
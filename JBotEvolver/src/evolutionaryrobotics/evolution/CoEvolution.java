@@ -6,6 +6,8 @@ import java.util.Random;
 import simulation.Simulator;
 import simulation.robot.Robot;
 import simulation.util.Arguments;
+import result.Result;
+import taskexecutor.ResultCollector;
 import taskexecutor.TaskExecutor;
 import taskexecutor.results.SimpleCoEvolutionFitnessResult;
 import taskexecutor.tasks.CoEvolutionTask;
@@ -144,7 +146,7 @@ public class CoEvolution extends Evolution {
 				
 				Chromosome c;
 				
-				int totalChromosomes = 0;
+				ResultCollector results = new ResultCollector(taskExecutor);
 				
 				//populationA
 				
@@ -153,10 +155,9 @@ public class CoEvolution extends Evolution {
 					int samples = populationA.getNumberOfSamplesPerChromosome();
 					
 					for (Chromosome cB : tB.getTable()) {
-						taskExecutor.addTask(new CoEvolutionTask(
+						results.addTask(new CoEvolutionTask(
 								new JBotEvolver(jBotEvolver.getArgumentsCopy(), jBotEvolver.getRandomSeed()),
 								samples,c,cB,preys,populationA.getGenerationRandomSeed(),"--evaluationa"));
-						totalChromosomes++;
 						print(".");
 					}
 				}
@@ -164,11 +165,10 @@ public class CoEvolution extends Evolution {
 				print("\n");
 				
 				//Vai recebendo os resultados e insere no vector da fitnessA
-				while(totalChromosomes > 0) {
-					SimpleCoEvolutionFitnessResult result = (SimpleCoEvolutionFitnessResult)taskExecutor.getResult();
+				waitForResults(results);
+				for(Result taskResult : results.getResults()) {
+					SimpleCoEvolutionFitnessResult result = (SimpleCoEvolutionFitnessResult)taskResult;
 					addFitness(result, fitnessA, result.getChromosomeIdA());
-					print("!");
-					totalChromosomes--;
 				}
 				
 				if(!resume){
@@ -197,10 +197,9 @@ public class CoEvolution extends Evolution {
 					int samples = populationB.getNumberOfSamplesPerChromosome();
 					
 					for (Chromosome cA : tA.getTable()) {
-						taskExecutor.addTask(new CoEvolutionTask(
+						results.addTask(new CoEvolutionTask(
 								new JBotEvolver(jBotEvolver.getArgumentsCopy(), jBotEvolver.getRandomSeed()),
 								samples,cA,c,preys,populationB.getGenerationRandomSeed(),"--evaluationb"));
-						totalChromosomes++;
 						print(".");
 					}
 				}
@@ -208,11 +207,10 @@ public class CoEvolution extends Evolution {
 				print("\n");
 				
 				//Vai recebendo os resultados e insere no vector da fitnessB
-				while(totalChromosomes > 0) {
-					SimpleCoEvolutionFitnessResult result = (SimpleCoEvolutionFitnessResult)taskExecutor.getResult();
+				waitForResults(results);
+				for(Result taskResult : results.getResults()) {
+					SimpleCoEvolutionFitnessResult result = (SimpleCoEvolutionFitnessResult)taskResult;
 					addFitness(result, fitnessB, result.getChromosomeIdB());
-					print("!");
-					totalChromosomes--;
 				}
 
 				if(!resume){
@@ -290,6 +288,19 @@ public class CoEvolution extends Evolution {
 				System.out.print(tableB.getTable().get(i).getID()+" ");
 		}
 		
+		/**
+		 * Receives the results as the tasks finish. They are added to the
+		 * fitness afterwards in the order of the tasks, so that the sums do
+		 * not depend on which task finished first.
+		 */
+		private void waitForResults(ResultCollector results) {
+			while(results.getNumberOfPendingResults() > 0) {
+				if(results.waitForResult() == null)
+					break;
+				print("!");
+			}
+		}
+		
 		private void addFitness(SimpleCoEvolutionFitnessResult result, double[] vector, int index){
 			double fitness = vector[index];
 			fitness += result.getFitness();
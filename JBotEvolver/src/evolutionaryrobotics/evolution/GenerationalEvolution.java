@@ -2,20 +2,31 @@ package evolutionaryrobotics.evolution;
 
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import result.Result;
 
 import simulation.Simulator;
 import simulation.robot.Robot;
 import simulation.util.Arguments;
 import simulation.util.ArgumentsAnnotation;
+import taskexecutor.ResultCollector;
 import taskexecutor.TaskExecutor;
+import taskexecutor.results.BatchFitnessResult;
+import taskexecutor.results.SampleTelemetry;
 import taskexecutor.results.SimpleFitnessResult;
+import taskexecutor.tasks.BatchGenerationalTask;
 import taskexecutor.tasks.GenerationalTask;
+import tasks.Task;
 import controllers.Controller;
 import controllers.FixedLenghtGenomeEvolvableController;
 import evolutionaryrobotics.JBotEvolver;
+import evolutionaryrobotics.evolution.util.SelectionThreshold;
 import evolutionaryrobotics.neuralnetworks.Chromosome;
 import evolutionaryrobotics.populations.Population;
 import evolutionaryrobotics.util.DiskStorage;
+import evolutionaryrobotics.util.FitnessCache;
 
 public class GenerationalEvolution extends Evolution {
 	
@@ -24,12 +35,56 @@ public class GenerationalEvolution extends Evolution {
 	protected DiskStorage diskStorage;
 	protected String output = "";
 	protected DecimalFormat df = new DecimalFormat("#.##");
+	@ArgumentsAnnotation(name="batchsize", defaultValue="1", help="Number of chromosomes evaluated by a single task. With more than one, the samples of all the chromosomes of the task are simulated in lockstep")
+	protected int batchSize = 1;
+	@ArgumentsAnnotation(name="batchparallel", values={"0","1"}, defaultValue="0", help="Set to 1 to divide the simulators of a batch between threads")
+	protected boolean batchParallel = false;
+	@ArgumentsAnnotation(name="fitnesscache", values={"0","1"}, defaultValue="0", help="Set to 1 to reuse the fitness of the genomes already evaluated instead of simulating them again")
+	protected FitnessCache fitnessCache;
+	@ArgumentsAnnotation(name="cachepolicy", values={"seed","keep","incremental"}, defaultValue="seed", help="seed: reuse a fitness only for the same seed and samples, keep: reuse it with any seed, incremental: simulate incrementalsamples new samples when the seed changes")
+	protected FitnessCache.Policy cachePolicy;
+	@ArgumentsAnnotation(name="incrementalsamples", defaultValue="1", help="Number of new samples simulated for a genome in the cache when the seed changes, with cachepolicy=incremental")
+	protected int incrementalSamples;
+	@ArgumentsAnnotation(name="cachesize", defaultValue="10000", help="Maximum number of genomes in the fitness cache")
+	protected int cacheSize;
+	@ArgumentsAnnotation(name="racing", values={"0","1"}, defaultValue="0", help="Set to 1 to stop the evaluation of a chromosome as soon as the upper bound of its fitness given by the evaluation function shows it cannot be selected. The fitness of these chromosomes is then that bound")
+	protected SelectionThreshold selectionThreshold;
+	@ArgumentsAnnotation(name="telemetry", values={"0","1"}, defaultValue="0", help="Set to 1 to log the seed, fitness, time, steps and worker of each sample evaluated to _telemetry.bin in the output folder")
+	protected boolean telemetry = false;
+	protected ResultCollector results;
+	//the tasks of this generation that evaluate all of the samples of a chromosome
+	protected HashSet<Integer> racingTasks = new HashSet<Integer>();
+	protected int stoppedChromosomes = 0;
+	protected int abortedSamples = 0;
+	protected long stepsSaved = 0;
 
 	public GenerationalEvolution(JBotEvolver jBotEvolver, TaskExecutor taskExecutor, Arguments args) {
 		super(jBotEvolver, taskExecutor, args);
 		
+		batchSize = args.getArgumentAsIntOrSetDefault("batchsize", batchSize);
+		batchParallel = args.getArgumentAsIntOrSetDefault("batchparallel", 0) == 1;
+		results = new ResultCollector(taskExecutor) {
+			@Override
+			protected void received(Result result) {
+				if(racingTasks.contains(result.getTaskId()))
+					selectionThreshold.addFitness(((SimpleFitnessResult)result).getFitness());
+			}
+		};
+		
+		if(args.getArgumentAsIntOrSetDefault("fitnesscache", 0) == 1) {
+			cachePolicy = FitnessCache.Policy.valueOf(args.getArgumentAsStringOrSetDefault("cachepolicy", "seed").toUpperCase());
+			incrementalSamples = args.getArgumentAsIntOrSetDefault("incrementalsamples", 1);
+			cacheSize = args.getArgumentAsIntOrSetDefault("cachesize", 10000);
+			fitnessCache = new FitnessCache(cachePolicy, incrementalSamples, cacheSize);
+		}
+		
+		telemetry = args.getArgumentAsIntOrSetDefault("telemetry", 0) == 1;
+		
 		setupPopulation();
 		setupDiskStorage();
+		
+		if(args.getArgumentAsIntOrSetDefault("racing", 0) == 1 && population.getNumberOfSelectedChromosomes() > 0)
+			selectionThreshold = new SelectionThreshold(population.getNumberOfSelectedChromosomes());
 	}
 	
 	@Override
@@ -51,28 +106,91 @@ public class GenerationalEvolution extends Evolution {
 			
 			Chromosome c;
 			
-			int totalChromosomes = 0;
+			ArrayList<Chromosome> batch = new ArrayList<Chromosome>();
+			ArrayList<Chromosome> chromosomes = new ArrayList<Chromosome>();
+			
+			if(selectionThreshold != null) {
+				selectionThreshold.reset(population.getNumberOfSelectedChromosomes());
+				racingTasks.clear();
+			}
 			
 			while ((c = population.getNextChromosomeToEvaluate()) != null && executeEvolution) {
+				
 				int samples = population.getNumberOfSamplesPerChromosome();
 				
-				taskExecutor.addTask(new GenerationalTask(
-						new JBotEvolver(jBotEvolver.getArgumentsCopy(), jBotEvolver.getRandomSeed()),
-						samples,c,population.getGenerationRandomSeed())
-				);
+				if(fitnessCache != null) {
+					chromosomes.add(c);
+					samples = fitnessCache.startEvaluation(c, population.getGenerationRandomSeed(), samples);
+				}
+				
+				if(samples == 0) {
+					//the fitness is in the cache
+				} else if(batchSize > 1 && samples == population.getNumberOfSamplesPerChromosome()) {
+					batch.add(c);
+					if(batch.size() == batchSize) {
+						addBatchTask(batch);
+						batch.clear();
+					}
+				} else {
+					GenerationalTask task = new GenerationalTask(
+							new JBotEvolver(jBotEvolver.getArgumentsCopy(), jBotEvolver.getRandomSeed()),
+							samples,c,population.getGenerationRandomSeed());
+					if(fitnessCache != null)
+						task.setFirstSample(fitnessCache.getFirstSample(c.getID()), population.getNumberOfSamplesPerChromosome());
+					task.setRecordTelemetry(telemetry);
+					//the fitness of a partial evaluation is not the one of the chromosome
+					if(selectionThreshold != null && samples == population.getNumberOfSamplesPerChromosome()) {
+						task.setSelectionThreshold(selectionThreshold);
+						racingTasks.add(task.getId());
+					}
+					addTask(task);
+				}
 				
-				totalChromosomes++;
 				print(".");
 			}
 			
+			if(!batch.isEmpty())
+				addBatchTask(batch);
+			
 			print("\n");
 			
-			while(totalChromosomes-- > 0 && executeEvolution) {
-				SimpleFitnessResult result = (SimpleFitnessResult)taskExecutor.getResult();
-				population.setEvaluationResultForId(result.getChromosomeId(), result.getFitness());
+			//the results are received as the tasks finish, but they are given
+			//to the population in the order of the chromosomes
+			while(results.getNumberOfPendingResults() > 0 && executeEvolution) {
+				if(results.waitForResult() == null)
+					break;
 				print("!");
 			}
 			
+			boolean allResults = results.getNumberOfPendingResults() == 0;
+			
+			for(Result result : results.getResults()) {
+				if(result instanceof BatchFitnessResult) {
+					BatchFitnessResult batchResult = (BatchFitnessResult)result;
+					for(int i = 0 ; i < batchResult.getNumberOfChromosomes() ; i++) {
+						addEvaluation(batchResult.getChromosomeId(i), batchResult.getTelemetry(i));
+						setFitness(batchResult.getChromosomeId(i), batchResult.getFitness(i), true);
+					}
+				} else {
+					SimpleFitnessResult fitnessResult = (SimpleFitnessResult)result;
+					addEvaluation(fitnessResult.getChromosomeId(), fitnessResult.getTelemetry());
+					if(fitnessResult.getAbortedSamples() > 0) {
+						stoppedChromosomes++;
+						abortedSamples+= fitnessResult.getAbortedSamples();
+						stepsSaved+= fitnessResult.getStepsSaved();
+					}
+					setFitness(fitnessResult.getChromosomeId(), fitnessResult.getFitness(), fitnessResult.getAbortedSamples() == 0);
+				}
+			}
+			
+			if(fitnessCache != null) {
+				if(allResults) {
+					for(Chromosome evaluated : chromosomes)
+						population.setEvaluationResultForId(evaluated.getID(), fitnessCache.getFitness(evaluated.getID()));
+				}
+				fitnessCache.endGeneration();
+			}
+			
 			if(executeEvolution) {
 				
 				print("\nGeneration "+population.getNumberOfCurrentGeneration()+
@@ -80,10 +198,20 @@ public class GenerationalEvolution extends Evolution {
 						"\tAverage: "+population.getAverageFitness()+
 						"\tLowest: "+population.getLowestFitness()+"\n");
 				
+				if(selectionThreshold != null) {
+					print("Racing: "+stoppedChromosomes+" chromosomes stopped, "+abortedSamples+" samples, "+stepsSaved+" steps saved\n");
+					stoppedChromosomes = 0;
+					abortedSamples = 0;
+					stepsSaved = 0;
+				}
+				
 				try {
 					diskStorage.savePopulation(population);
 				} catch(Exception e) {e.printStackTrace();}
 				
+				if(fitnessCache != null)
+					fitnessCache.resetCounters();
+				
 				highestFitness = population.getHighestFitness();
 				population.createNextGeneration();
 			}
@@ -93,6 +221,42 @@ public class GenerationalEvolution extends Evolution {
 		diskStorage.close();
 	}
 	
+	/**
+	 * Sets the fitness obtained by a task, which is given to the population
+	 * once all of the results of the generation arrive if the cache is used.
+	 * A fitness that is not exact (the bound of a chromosome whose evaluation
+	 * was stopped) is not kept in the cache.
+	 */
+	protected void setFitness(int chromosomeId, double fitness, boolean exact) {
+		if(fitnessCache != null)
+			fitnessCache.setResult(chromosomeId, fitness, exact);
+		else
+			population.setEvaluationResultForId(chromosomeId, fitness);
+	}
+	
+	/**
+	 * Adds the samples evaluated for a chromosome to the telemetry log, with
+	 * telemetry=1.
+	 */
+	protected void addEvaluation(int chromosomeId, SampleTelemetry sampleTelemetry) {
+		if(telemetry && diskStorage != null)
+			diskStorage.addEvaluation(population.getNumberOfCurrentGeneration(), chromosomeId, sampleTelemetry);
+	}
+	
+	protected void addTask(Task task) {
+		for(int i = results.addTask(task) ; i > 0 ; i--)
+			print("!");
+	}
+	
+	protected void addBatchTask(ArrayList<Chromosome> batch) {
+		BatchGenerationalTask task = new BatchGenerationalTask(
+				new JBotEvolver(jBotEvolver.getArgumentsCopy(), jBotEvolver.getRandomSeed()),
+				population.getNumberOfSamplesPerChromosome(),batch.toArray(new Chromosome[batch.size()]),
+				population.getGenerationRandomSeed(),batchParallel);
+		task.setRecordTelemetry(telemetry);
+		addTask(task);
+	}
+	
 	protected int getGenomeLength() {
 		
 		Simulator sim = jBotEvolver.createSimulator();
@@ -137,9 +301,12 @@ public class GenerationalEvolution extends Evolution {
 		if (jBotEvolver.getArguments().get("--output") != null) {
 			output = jBotEvolver.getArguments().get("--output").getCompleteArgumentString();
 			diskStorage = new DiskStorage(jBotEvolver.getArguments().get("--output").getCompleteArgumentString());
+			diskStorage.setFitnessCache(fitnessCache);
 			try {
 				diskStorage.start();
 				diskStorage.saveCommandlineArguments(jBotEvolver.getArguments());
+				if(telemetry)
+					diskStorage.startTelemetry();
 			} catch (Exception e) {
 				e.printStackTrace();
 				System.exit(-1);
@@ -7,6 +7,8 @@ import simulation.Simulator;
 import simulation.robot.Robot;
 import simulation.util.Arguments;
 import simulation.util.ArgumentsAnnotation;
+import result.Result;
+import taskexecutor.ResultCollector;
 import taskexecutor.TaskExecutor;
 import taskexecutor.results.PostEvaluationResult;
 import taskexecutor.results.SimpleFitnessResult;
@@ -86,7 +88,7 @@ public class JoinedGenerationalEvolution extends Evolution{
 			
 			MultipleChromosome c;
 			
-			int totalTasks = 0;
+			ResultCollector results = new ResultCollector(taskExecutor);
 			
 			int samples = population.getNumberOfSamplesPerChromosome();
 			
@@ -94,22 +96,20 @@ public class JoinedGenerationalEvolution extends Evolution{
 				
 				if(!singleSampleTask) {
 					
-					taskExecutor.addTask(new MultipleChromosomeTask(
+					results.addTask(new MultipleChromosomeTask(
 							new JBotEvolver(jBotEvolver.getArgumentsCopy(), jBotEvolver.getRandomSeed()),
 							samples,c,population.getGenerationRandomSeed())
 					);
 					
-					totalTasks++;
 					print(".");
 				} else {
 					Random r = new Random(population.getGenerationRandomSeed());
 					for(int s = 0 ; s < samples ; s++){
-						taskExecutor.addTask(new MultipleChromosomeSingleSampleTask(
+						results.addTask(new MultipleChromosomeSingleSampleTask(
 								new JBotEvolver(jBotEvolver.getArgumentsCopy(), jBotEvolver.getRandomSeed()),
 								s,c,r.nextLong())
 						);
 						
-						totalTasks++;
 						print(".");
 					}
 				}
@@ -117,21 +117,25 @@ public class JoinedGenerationalEvolution extends Evolution{
 			
 			print("\n");
 			
+			while(results.getNumberOfPendingResults() > 0 && executeEvolution) {
+				if(results.waitForResult() == null)
+					break;
+				print("!");
+			}
+			
 			if(!singleSampleTask) {
-				while(totalTasks-- > 0 && executeEvolution) {
-					SimpleFitnessResult result = (SimpleFitnessResult)taskExecutor.getResult();
+				for(Result r : results.getResults()) {
+					SimpleFitnessResult result = (SimpleFitnessResult)r;
 					population.setEvaluationResultForId(result.getChromosomeId(), result.getFitness());
-					print("!");
 				}
 			} else {
-				double[] results = new double[this.population.getPopulationSize()];
-				while(totalTasks-- > 0 && executeEvolution) {
-					PostEvaluationResult result = (PostEvaluationResult)taskExecutor.getResult();
-					results[result.getRun()]+=result.getFitness()/samples;
-					print("!");
+				double[] fitness = new double[this.population.getPopulationSize()];
+				for(Result r : results.getResults()) {
+					PostEvaluationResult result = (PostEvaluationResult)r;
+					fitness[result.getRun()]+=result.getFitness()/samples;
 				}
-				for(int ch = 0 ; ch < results.length ; ch++)
-					population.setEvaluationResultForId(ch, results[ch]);
+				for(int ch = 0 ; ch < fitness.length ; ch++)
+					population.setEvaluationResultForId(ch, fitness[ch]);
 			}
 			
 			if(executeEvolution) {
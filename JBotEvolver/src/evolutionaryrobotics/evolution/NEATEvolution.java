@@ -8,7 +8,7 @@ import controllers.FixedLenghtGenomeEvolvableController;
 import evolutionaryrobotics.JBotEvolver;
 import evolutionaryrobotics.evolution.neat.NEATGeneticAlgorithmWrapper;
 import evolutionaryrobotics.evolution.neat.PreEvaluatedFitnessFunction;
-import evolutionaryrobotics.evolution.neat.core.InnovationDatabase;
+import evolutionaryrobotics.evolution.neat.core.InnovationStatistics;
 import evolutionaryrobotics.evolution.neat.core.NEATGADescriptor;
 import evolutionaryrobotics.evolution.neat.core.NEATPopulation4J;
 import evolutionaryrobotics.evolution.neat.core.mutators.NEATMutator;
@@ -77,6 +77,7 @@ public class NEATEvolution extends Evolution {
 		algorithm.pluginParentSelector(new TournamentSelector());
 
 		if (i == 0) {
+			algorithm.setRandomSeed(jBotEvolver.getRandomSeed());
 			algorithm.createPopulation();
 			population.setGenerationRandomSeed(jBotEvolver.getRandomSeed());
 			population.createRandomPopulation();
@@ -97,6 +98,8 @@ public class NEATEvolution extends Evolution {
 			taskExecutor.setDescription(output + " " + population.getNumberOfCurrentGeneration() + "/"
 					+ population.getNumberOfGenerations() + " " + d);
 
+			// the offspring depend on the seed of the generation, so that a run can be replayed
+			algorithm.setRandomSeed(population.getGenerationRandomSeed());
 			algorithm.runEpoch();
 
 			i++;
@@ -120,9 +123,17 @@ public class NEATEvolution extends Evolution {
 
 			population.createNextGeneration();
 		}
+	}
 
-		InnovationDatabase db = algorithm.innovationDatabase();
-		System.out.println("Innovation Database Stats - Hits: " + db.hits + " - misses: " + db.misses);
+	/**
+	 * @return the lookups of the innovation database of the population, or
+	 *         null if it has not been created
+	 */
+	public InnovationStatistics getInnovationStatistics() {
+		NEATPopulation4J neatPopulation = population.getNEATPopulation4J();
+		if (neatPopulation == null || neatPopulation.getInnovationDatabase() == null)
+			return null;
+		return neatPopulation.getInnovationDatabase().getStatistics();
 	}
 
 	protected void configureDescriptor(Arguments args) {
@@ -165,6 +176,8 @@ public class NEATEvolution extends Evolution {
 		double maxPerturb = args.getArgumentAsDoubleOrSetDefault("maxPerturb", 0.5);
 		double maxBiasPerturb = args.getArgumentAsDoubleOrSetDefault("maxBiasPerturb", 0.1);
 		boolean copyBest = args.getArgumentAsIntOrSetDefault("copyBest", 1) == 1;
+		boolean parallelSpeciation = args.getArgumentAsIntOrSetDefault("parallelSpeciation", 1) == 1;
+		boolean parallelSpawn = args.getArgumentAsIntOrSetDefault("parallelSpawn", 1) == 1;
 
 		descriptor.setPAddLink(pAddLink);
 		descriptor.setPAddNode(pAddNode);
@@ -200,6 +213,8 @@ public class NEATEvolution extends Evolution {
 		descriptor.setMaxPerturb(maxPerturb);
 		descriptor.setMaxBiasPerturb(maxBiasPerturb);
 		descriptor.setCopyBest(copyBest);
+		descriptor.setParallelSpeciation(parallelSpeciation);
+		descriptor.setParallelSpawn(parallelSpawn);
 	}
 
 	protected int[] getInputOutputNeurons() {
@@ -1,7 +1,9 @@
 package evolutionaryrobotics.evolution;
 
+import java.util.ArrayList;
 import java.util.Random;
 
+import result.Result;
 import simulation.util.Arguments;
 import taskexecutor.TaskExecutor;
 import taskexecutor.results.PostEvaluationResult;
@@ -37,31 +39,57 @@ public class SingleSampleGenerationalEvolution extends GenerationalEvolution {
 			taskExecutor.setDescription(output+" "+population.getNumberOfCurrentGeneration()+"/"+population.getNumberOfGenerations() + " " + d);
 			
 			Chromosome c;
-			
-			int totalSamples = 0;
+			ArrayList<Chromosome> chromosomes = new ArrayList<Chromosome>();
+			int simulated[] = new int[population.getPopulationSize()];
 			
 			while ((c = population.getNextChromosomeToEvaluate()) != null && executeEvolution) {
 				
+				int chromosomeSamples = samples;
+				int firstSample = 0;
+				
+				if(fitnessCache != null) {
+					chromosomes.add(c);
+					chromosomeSamples = fitnessCache.startEvaluation(c, population.getGenerationRandomSeed(), samples);
+					firstSample = fitnessCache.getFirstSample(c.getID());
+				}
+				simulated[c.getID()] = chromosomeSamples;
+				
 				Random r = new Random(population.getGenerationRandomSeed());
-				for(int i = 0 ; i < samples ; i++) {
-					taskExecutor.addTask(new SimpleSampleTask(c.getID(),new JBotEvolver(jBotEvolver.getArgumentsCopy(), jBotEvolver.getRandomSeed()),i,c,r.nextLong()));
+				for(int i = 0 ; i < chromosomeSamples ; i++) {
+					addTask(new SimpleSampleTask(c.getID(),new JBotEvolver(jBotEvolver.getArgumentsCopy(), jBotEvolver.getRandomSeed()),(firstSample + i) % samples,c,r.nextLong()));
 					print(".");
 				}
-				totalSamples+=samples;
 			}
 			
 			print("\n");
 			
 			double values[] = new double[population.getPopulationSize()];
 			
-			while(totalSamples-- > 0 && executeEvolution) {
-				PostEvaluationResult result = (PostEvaluationResult)taskExecutor.getResult();
+			while(results.getNumberOfPendingResults() > 0 && executeEvolution) {
+				if(results.waitForResult() == null)
+					break;
 				print("!");
+			}
+			
+			for(Result r : results.getResults()) {
+				PostEvaluationResult result = (PostEvaluationResult)r;
 				values[result.getRun()]+=result.getFitness();
 			}
 			
-			for(int i = 0; i < values.length && executeEvolution ; i++) {
-				population.setEvaluationResultForId(i,values[i]/samples);
+			if(fitnessCache != null) {
+				if(results.getNumberOfPendingResults() == 0 && executeEvolution) {
+					for(Chromosome evaluated : chromosomes) {
+						if(simulated[evaluated.getID()] > 0)
+							fitnessCache.setResult(evaluated.getID(), values[evaluated.getID()]/simulated[evaluated.getID()]);
+					}
+					for(Chromosome evaluated : chromosomes)
+						population.setEvaluationResultForId(evaluated.getID(), fitnessCache.getFitness(evaluated.getID()));
+				}
+				fitnessCache.endGeneration();
+			} else {
+				for(int i = 0; i < values.length && executeEvolution ; i++) {
+					population.setEvaluationResultForId(i,values[i]/samples);
+				}
 			}
 			
 			if(executeEvolution) {
@@ -74,6 +102,9 @@ public class SingleSampleGenerationalEvolution extends GenerationalEvolution {
 					diskStorage.savePopulation(population);
 				} catch(Exception e) {e.printStackTrace();}
 				
+				if(fitnessCache != null)
+					fitnessCache.resetCounters();
+				
 				highestFitness = population.getHighestFitness();
 				population.createNextGeneration();
 			}
@@ -0,0 +1,154 @@
+package evolutionaryrobotics.evolution;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+
+import result.Result;
+import simulation.util.Arguments;
+import simulation.util.ArgumentsAnnotation;
+import taskexecutor.TaskExecutor;
+import taskexecutor.results.SimpleFitnessResult;
+import taskexecutor.tasks.GenerationalTask;
+import evolutionaryrobotics.JBotEvolver;
+import evolutionaryrobotics.neuralnetworks.Chromosome;
+import evolutionaryrobotics.populations.SteadyStatePopulation;
+
+/**
+ * Evolution without a generation barrier, for a {@link SteadyStatePopulation}.
+ * A number of evaluations are always being done by the task executor: as soon
+ * as the fitness of a chromosome arrives it is given to the population, and a
+ * new chromosome is created and evaluated, so the threads do not wait for the
+ * slowest evaluation of a generation. The population is saved after each
+ * generation, which is a fixed number of evaluations.
+ * <p>
+ * With ordered=0 the results are given to the population in the order in
+ * which the tasks finish, and so the evolution is only the same for a random
+ * seed if the tasks always finish in the order in which they were added (with
+ * a single thread). With ordered=1 they are given in the order in which the
+ * tasks were added, and the evolution only depends on the random seed and on
+ * the number of tasks, but a result then waits for the ones added before it
+ * and the threads may be idle in the meantime. The number of tasks matters
+ * because it decides which results a new chromosome is created from, so with
+ * ordered=1 its default is a fixed number instead of the number of
+ * processors, and the same configuration gives the same evolution on any
+ * machine.
+ */
+public class SteadyStateEvolution extends GenerationalEvolution {
+
+	//the default number of tasks with ordered=1, which does not depend on the machine
+	private static final int ORDERED_TASKS = 8;
+
+	@ArgumentsAnnotation(name="tasks", help="Number of evaluations done at the same time. The default is the number of processors, or 8 with ordered=1")
+	protected int numberOfTasks;
+	@ArgumentsAnnotation(name="ordered", values={"0","1"}, defaultValue="0", help="Set to 1 to give the results to the population in the order in which the chromosomes were created, so that the evolution only depends on the random seed")
+	protected boolean ordered = false;
+
+	protected SteadyStatePopulation steadyStatePopulation;
+	protected int tasksRunning = 0;
+
+	//the tasks running and the results received, with ordered=1
+	protected LinkedList<Integer> taskIds = new LinkedList<Integer>();
+	protected HashMap<Integer, Result> received = new HashMap<Integer, Result>();
+
+	public SteadyStateEvolution(JBotEvolver jBotEvolver, TaskExecutor taskExecutor, Arguments args) {
+		super(jBotEvolver, taskExecutor, args);
+
+		ordered = args.getArgumentAsIntOrSetDefault("ordered", 0) == 1;
+		numberOfTasks = args.getArgumentAsIntOrSetDefault("tasks", ordered ? ORDERED_TASKS : Runtime.getRuntime().availableProcessors());
+
+		if(!(population instanceof SteadyStatePopulation))
+			throw new RuntimeException("SteadyStateEvolution needs a SteadyStatePopulation: "
+					+ jBotEvolver.getArguments().get("--population").getCompleteArgumentString());
+
+		steadyStatePopulation = (SteadyStatePopulation)population;
+
+		//the cache needs the generation barrier to know when a genome is evaluated
+		if(fitnessCache != null)
+			throw new RuntimeException("SteadyStateEvolution does not support fitnesscache=1");
+	}
+
+	@Override
+	public void executeEvolution() {
+
+		if(population.getNumberOfCurrentGeneration() == 0 && population.getNumberOfChromosomesEvaluated() == 0)
+			population.createRandomPopulation();
+
+		taskExecutor.setTotalNumberOfTasks(steadyStatePopulation.getNumberOfEvaluationsLeft());
+
+		while(executeEvolution) {
+
+			if(population.getNumberOfChromosomesEvaluated() >= steadyStatePopulation.getEvaluationsPerGeneration()) {
+				endGeneration();
+				if(!executeEvolution)
+					break;
+			}
+
+			if(population.evolutionDone())
+				break;
+
+			Chromosome c;
+			while(tasksRunning < numberOfTasks && (c = population.getNextChromosomeToEvaluate()) != null) {
+				GenerationalTask task = new GenerationalTask(
+						new JBotEvolver(jBotEvolver.getArgumentsCopy(), jBotEvolver.getRandomSeed()),
+						population.getNumberOfSamplesPerChromosome(),c,population.getGenerationRandomSeed());
+				task.setRecordTelemetry(telemetry);
+				if(ordered)
+					taskIds.add(task.getId());
+				taskExecutor.addTask(task);
+				tasksRunning++;
+			}
+
+			if(tasksRunning == 0)
+				break;
+
+			SimpleFitnessResult result = (SimpleFitnessResult)getNextResult();
+
+			if(result == null)
+				break;
+
+			tasksRunning--;
+			addEvaluation(result.getChromosomeId(), result.getTelemetry());
+			population.setEvaluationResultForId(result.getChromosomeId(), result.getFitness());
+			print("!");
+		}
+
+		evolutionFinished = true;
+		diskStorage.close();
+	}
+
+	protected void endGeneration() {
+		print("\nGeneration "+population.getNumberOfCurrentGeneration()+
+				"\tHighest: "+population.getHighestFitness()+
+				"\tAverage: "+population.getAverageFitness()+
+				"\tLowest: "+population.getLowestFitness()+"\n");
+
+		try {
+			diskStorage.savePopulation(population);
+		} catch(Exception e) {e.printStackTrace();}
+
+		population.createNextGeneration();
+
+		double d = Double.valueOf(df.format(population.getHighestFitness()));
+		taskExecutor.setDescription(output+" "+population.getNumberOfCurrentGeneration()+"/"+population.getNumberOfGenerations() + " " + d);
+	}
+
+	/**
+	 * @return the result of the first task that finishes, or with ordered=1
+	 *         of the first task that was added, or null if the task executor
+	 *         was stopped
+	 */
+	protected Result getNextResult() {
+		if(!ordered)
+			return taskExecutor.getResult();
+
+		Integer first = taskIds.peek();
+		while(!received.containsKey(first)) {
+			Result result = taskExecutor.getResult();
+			if(result == null)
+				return null;
+			received.put(result.getTaskId(), result);
+		}
+		taskIds.poll();
+		return received.remove(first);
+	}
+}
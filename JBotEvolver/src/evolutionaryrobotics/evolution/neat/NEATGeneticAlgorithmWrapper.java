@@ -1,7 +1,9 @@
 package evolutionaryrobotics.evolution.neat;
 
+import result.Result;
 import simulation.util.Arguments;
 import simulation.util.Factory;
+import taskexecutor.ResultCollector;
 import taskexecutor.results.SimpleFitnessResult;
 import taskexecutor.tasks.GenerationalTask;
 import tasks.Task;
@@ -25,6 +27,7 @@ public class NEATGeneticAlgorithmWrapper extends NEATGeneticAlgorithm {
 		int i;
 
 		evolutionaryrobotics.neuralnetworks.Chromosome[] convertedGenotypes = new evolutionaryrobotics.neuralnetworks.Chromosome[genotypes.length];
+		ResultCollector results = new ResultCollector(evo.getTaskExecutor());
 
 		for (i = 0; i < genotypes.length && evo.continueExecuting(); i++) {
 
@@ -56,17 +59,24 @@ public class NEATGeneticAlgorithmWrapper extends NEATGeneticAlgorithm {
 			// evo.getPopulation().getGenerationRandomSeed());
 			// System.out.println(evo.getJBotEvolver().getArgumentsCopy());
 
-			evo.getTaskExecutor().addTask(task);
+			results.addTask(task);
 			System.out.print(".");
 		}
 
 		System.out.println();
 
-		for (i = 0; i < genotypes.length && evo.continueExecuting(); i++) {
-			SimpleFitnessResult r = (SimpleFitnessResult) evo.getTaskExecutor().getResult();
+		while (results.getNumberOfPendingResults() > 0 && evo.continueExecuting()) {
+			if (results.waitForResult() == null)
+				break;
+			System.out.print("!");
+		}
+
+		// the results are given to the population in the order of the
+		// genotypes, whichever task finished first
+		for (Result result : results.getResults()) {
+			SimpleFitnessResult r = (SimpleFitnessResult) result;
 			evo.getPopulation().setEvaluationResult(convertedGenotypes[r.getChromosomeId()], r.getFitness());
 			genotypes[r.getChromosomeId()].updateFitness(r.getFitness());
-			System.out.print("!");
 		}
 	}
 
@@ -1,21 +1,16 @@
 package evolutionaryrobotics.evolution.neat;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
 import java.util.Vector;
 
 import simulation.util.Arguments;
-import evolutionaryrobotics.evolution.neat.core.NEATChromosome;
 import evolutionaryrobotics.evolution.neat.core.NEATFeatureGene;
-import evolutionaryrobotics.evolution.neat.core.NEATLinkGene;
 import evolutionaryrobotics.evolution.neat.core.NEATNetDescriptor;
+import evolutionaryrobotics.evolution.neat.core.NEATNetProgram;
 import evolutionaryrobotics.evolution.neat.core.NEATNeuralNet;
-import evolutionaryrobotics.evolution.neat.core.NEATNodeGene;
 import evolutionaryrobotics.evolution.neat.data.core.NetworkInput;
 import evolutionaryrobotics.evolution.neat.data.core.NetworkOutputSet;
 import evolutionaryrobotics.evolution.neat.data.csv.CSVInput;
-import evolutionaryrobotics.evolution.neat.ga.core.Gene;
 import evolutionaryrobotics.neuralnetworks.NeuralNetwork;
 import evolutionaryrobotics.neuralnetworks.inputs.NNInput;
 import evolutionaryrobotics.neuralnetworks.outputs.NNOutput;
@@ -23,18 +18,32 @@ import evolutionaryrobotics.neuralnetworks.outputs.NNOutput;
 public class NEATNeuralNetwork extends NeuralNetwork{
 
 	public static final double NODE = 0d, LINK = 1d, FEATURE = 2d;
+	private static final ThreadLocal<DecodedGenome> LAST_DECODED = new ThreadLocal<DecodedGenome>();
 	protected NEATNeuralNet network;
+	//flat version of the network, null if it could not be compiled
+	protected NEATNetProgram program;
+	private double[] programInputs;
+	private double[] programOutputs;
 	
 	public NEATNeuralNetwork(Vector<NNInput> inputs, Vector<NNOutput> outputs, Arguments arguments) {
 		create(inputs, outputs);
 		if(arguments.getArgumentIsDefined("weights")) {
 			String net = arguments.getArgumentAsString("weights");
 			network = deserialize(net);
+			compile();
 		}
 	}
 
 	@Override
 	protected double[] propagateInputs(double[] inputValues) {
+		if(program != null) {
+			for (int i = 0; i < inputValues.length; i++) {
+				programInputs[i] = inputValues[i] * 2 - 1;
+			}
+			program.execute(programInputs, programOutputs);
+			return programOutputs;
+		}
+		
 		double[] vals = Arrays.copyOf(inputValues, inputValues.length);
 		for (int i = 0; i < vals.length; i++) {
 			vals[i] = vals[i] * 2 - 1;
@@ -46,64 +55,75 @@ public class NEATNeuralNetwork extends NeuralNetwork{
 
 	@Override
 	public void setWeights(double[] weights) {
-		StringBuilder builder = new StringBuilder();
-		for(double d : weights) {
-			builder.append(d);
-			builder.append(',');
+		DecodedGenome decoded = decode(weights);
+		
+		if(decoded.program != null) {
+			//the shared network is never executed, each robot runs its own copy of the program
+			this.network = decoded.network;
+			this.program = decoded.program.copy();
+			this.programInputs = new double[numberOfInputNeurons];
+			this.programOutputs = new double[program.getNumberOfOutputs()];
+		} else {
+			this.network = NEATSerializer.createNetwork((NEATNetDescriptor)decoded.network.netDescriptor());
+			this.program = null;
+		}
+	}
+	
+	/**
+	 * All the robots of a sample are usually set up one after the other with
+	 * the same genome, so the last genome decoded and compiled by each thread
+	 * is kept. The genome is compared by contents, in case the array was
+	 * changed in place.
+	 */
+	private static DecodedGenome decode(double[] weights) {
+		DecodedGenome last = LAST_DECODED.get();
+		
+		if(last == null || !Arrays.equals(last.values, weights)) {
+			NEATNeuralNet network = NEATSerializer.deserialize(weights);
+			last = new DecodedGenome(weights.clone(), network, NEATNetProgram.compile(network));
+			LAST_DECODED.set(last);
 		}
-		this.network = deserialize(builder.toString());
+		return last;
 	}
 	
 	@Override
 	public void reset() {
+		if(program != null) {
+			program.reset();
+			return;
+		}
         NEATNeuralNet newNet = new NEATNeuralNet();
         newNet.createNetStructure(network.netDescriptor());
         newNet.updateNetStructure();
         this.network = newNet;
+        compile();
     }
 	
+	private void compile() {
+		program = NEATNetProgram.compile(network);
+		if(program != null) {
+			programInputs = new double[numberOfInputNeurons];
+			programOutputs = new double[program.getNumberOfOutputs()];
+		}
+	}
+	
 	public NEATFeatureGene[] getFeatureGenes() {
 		return network.getFeatureGenes();
 	}
 
     public static NEATNeuralNet deserialize(String ser) {
-        String[] split = ser.split(",");
-        ArrayList<Double> stuff = new ArrayList<Double>();
-        for (String s : split) {
-            stuff.add(Double.parseDouble(s));
-        }
-
-        ArrayList<Gene> genes = new ArrayList<Gene>();
-        Iterator<Double> iter = stuff.iterator();
-        while (iter.hasNext()) {
-            double type = iter.next();
-            if (type == NODE) {
-                int id = (int) (double) iter.next();
-                double sigF = iter.next();
-                int t = (int) (double) iter.next();
-                double bias = iter.next();
-                genes.add(new NEATNodeGene(0, id, sigF, t, bias));
-            } else if (type == LINK) {
-                boolean enabled = iter.next() == 1d;
-                int from = (int) (double) iter.next();
-                int to = (int) (double) iter.next();
-                double weight = iter.next();
-                genes.add(new NEATLinkGene(0, enabled, from, to, weight));
-            } else if(type == FEATURE) {
-                double weight = iter.next();
-                int innov = iter.next().intValue();
-                genes.add(new NEATFeatureGene(innov, weight));
-            }
-
-        }
-        Gene[] geneArray = new Gene[genes.size()];
-        genes.toArray(geneArray);
-        NEATChromosome chromo = new NEATChromosome(geneArray);
-        NEATNetDescriptor descr = new NEATNetDescriptor(0, null);
-        descr.updateStructure(chromo);
-        NEATNeuralNet network = new NEATNeuralNet();
-        network.createNetStructure(descr);
-        network.updateNetStructure();
-        return network;
+        return NEATSerializer.deserialize(ser);
     }
+	
+	private static class DecodedGenome {
+		private double[] values;
+		private NEATNeuralNet network;
+		private NEATNetProgram program;
+		
+		public DecodedGenome(double[] values, NEATNeuralNet network, NEATNetProgram program) {
+			this.values = values;
+			this.network = network;
+			this.program = program;
+		}
+	}
 }
\ No newline at end of file
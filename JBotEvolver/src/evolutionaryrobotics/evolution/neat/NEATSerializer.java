@@ -1,15 +1,9 @@
 package evolutionaryrobotics.evolution.neat;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-
 import evolutionaryrobotics.evolution.neat.core.NEATChromosome;
-import evolutionaryrobotics.evolution.neat.core.NEATFeatureGene;
-import evolutionaryrobotics.evolution.neat.core.NEATLinkGene;
+import evolutionaryrobotics.evolution.neat.core.NEATGenome;
 import evolutionaryrobotics.evolution.neat.core.NEATNetDescriptor;
 import evolutionaryrobotics.evolution.neat.core.NEATNeuralNet;
-import evolutionaryrobotics.evolution.neat.core.NEATNodeGene;
-import evolutionaryrobotics.evolution.neat.ga.core.Gene;
 
 /**
  *
@@ -21,34 +15,38 @@ public class NEATSerializer {
 
     public static double[] serialize(NEATNeuralNet net) {
     	NEATNetDescriptor descr = (NEATNetDescriptor) net.netDescriptor();
-        NEATChromosome chromo = (NEATChromosome) descr.neatStructure();
-        Gene[] genes = chromo.genes();
-        
-        int length = (genes.length - net.getFeatureGenes().length)*5 + net.getFeatureGenes().length*3;
+        return serialize(((NEATChromosome) descr.neatStructure()).genome());
+    }
+
+    /**
+     * Writes the genes straight from the packed genome, without building the
+     * network.
+     */
+    public static double[] serialize(NEATGenome genome) {
+        int length = (genome.size() - genome.getNumberOfFeatures())*5 + genome.getNumberOfFeatures()*3;
         double[] res = new double[length];
+        int node = 0, link = 0, feature = 0;
         
         int i = 0;
-        for(Gene gene : genes) {
-            if(gene instanceof NEATNodeGene) {
-                NEATNodeGene neatGene = (NEATNodeGene) gene;
+        for(int gene = 0; gene < genome.size(); gene++) {
+            if(genome.kind(gene) == NEATGenome.NODE) {
                 res[i++] = NODE;
-                res[i++] = (double) neatGene.id();
-                res[i++] = neatGene.sigmoidFactor();
-                res[i++] = (double) neatGene.getType();
-                res[i++] = neatGene.bias();
-                
-            } else if (gene instanceof NEATLinkGene) {
-                NEATLinkGene neatGene = (NEATLinkGene) gene;
+                res[i++] = (double) genome.nodeId(node);
+                res[i++] = genome.sigmoidFactor(node);
+                res[i++] = (double) genome.nodeType(node);
+                res[i++] = genome.bias(node);
+                node++;
+            } else if (genome.kind(gene) == NEATGenome.LINK) {
                 res[i++] = LINK;
-                res[i++] = neatGene.isEnabled() ? 1d : 0d;
-                res[i++] = (double) neatGene.getFromId();
-                res[i++] = (double) neatGene.getToId();
-                res[i++] = neatGene.getWeight();
-            } else if (gene instanceof NEATFeatureGene) {
-            	NEATFeatureGene neatGene = (NEATFeatureGene) gene;
+                res[i++] = genome.isEnabled(link) ? 1d : 0d;
+                res[i++] = (double) genome.fromId(link);
+                res[i++] = (double) genome.toId(link);
+                res[i++] = genome.weight(link);
+                link++;
+            } else {
                 res[i++] = FEATURE;
-                res[i++] = neatGene.geneAsNumber().doubleValue();
-                res[i++] = neatGene.getInnovationNumber();
+                res[i++] = genome.featureValue(feature++);
+                res[i++] = genome.innovationNumber(gene);
             }
         }
         return res;
@@ -56,42 +54,54 @@ public class NEATSerializer {
     
     public static NEATNeuralNet deserialize(String ser) {
         String[] split = ser.split(",");
-        ArrayList<Double> stuff = new ArrayList<Double>();
-        for(String s : split) {
-            stuff.add(Double.parseDouble(s));
+        double[] values = new double[split.length];
+        for(int i = 0; i < split.length; i++) {
+            values[i] = Double.parseDouble(split[i]);
         }
-        
-        ArrayList<Gene> genes = new ArrayList<Gene>();
-        Iterator<Double> iter = stuff.iterator();
-        while(iter.hasNext()) {
-            double type = iter.next();
+        return deserialize(values);
+    }
+    
+    public static NEATNeuralNet deserialize(double[] ser) {
+        return createNetwork(decode(ser));
+    }
+    
+    public static NEATNeuralNet createNetwork(NEATNetDescriptor descr) {
+        NEATNeuralNet network = new NEATNeuralNet();
+        network.createNetStructure(descr);
+        network.updateNetStructure();
+        return network;
+    }
+    
+    /**
+     * Decodes the genes written by {@link #serialize(NEATNeuralNet)} straight
+     * from the array, without going through their text representation.
+     */
+    public static NEATNetDescriptor decode(double[] ser) {
+        NEATGenome.Builder genes = new NEATGenome.Builder(ser.length / 5 + 1);
+        int i = 0;
+        while(i < ser.length) {
+            double type = ser[i++];
             if(type == NODE) {
-                int id = (int) (double) iter.next();
-                double sigF = iter.next();
-                int t = (int) (double) iter.next();
-                double bias = iter.next();
-                genes.add(new NEATNodeGene(0, id, sigF, t, bias));
+                int id = (int) ser[i++];
+                double sigF = ser[i++];
+                int t = (int) ser[i++];
+                double bias = ser[i++];
+                genes.addNode(0, id, t, sigF, bias);
             } else if(type == LINK) {
-                boolean enabled = iter.next() == 1d;
-                int from = (int) (double) iter.next();
-                int to = (int) (double) iter.next();
-                double weight = iter.next();
-                genes.add(new NEATLinkGene(0, enabled, from, to, weight));
+                boolean enabled = ser[i++] == 1d;
+                int from = (int) ser[i++];
+                int to = (int) ser[i++];
+                double weight = ser[i++];
+                genes.addLink(0, from, to, weight, enabled);
             } else if(type == FEATURE) {
-                double weight = iter.next();
-                int innov = iter.next().intValue();
-                genes.add(new NEATFeatureGene(innov, weight));
+                double weight = ser[i++];
+                int innov = (int) ser[i++];
+                genes.addFeature(innov, weight);
             }
-            
         }
-        Gene[] geneArray = new Gene[genes.size()];
-        genes.toArray(geneArray);
-        NEATChromosome chromo = new NEATChromosome(geneArray);
+        NEATChromosome chromo = new NEATChromosome(genes.build());
         NEATNetDescriptor descr = new NEATNetDescriptor(0, null);
         descr.updateStructure(chromo);
-        NEATNeuralNet network = new NEATNeuralNet();
-        network.createNetStructure(descr);
-        network.updateNetStructure();
-        return network;
+        return descr;
     }
 }
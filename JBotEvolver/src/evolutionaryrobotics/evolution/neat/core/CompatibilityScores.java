@@ -0,0 +1,114 @@
+package evolutionaryrobotics.evolution.neat.core;
+
+import java.util.IdentityHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import evolutionaryrobotics.evolution.neat.ga.core.Chromosome;
+
+/**
+ * Computes the compatibility scores of the chromosomes of a generation with
+ * the representatives of the species on a ForkJoinPool. The chromosomes are
+ * still assigned to the species one at a time, in the order of the
+ * population, and the representative of a specie changes when a fitter
+ * member is added. So the first time a chromosome is compared to a
+ * representative, its scores with all of the chromosomes after it are
+ * computed in parallel, and they are used while it stays the representative.
+ * The species are the same as when each score is computed when it is needed,
+ * but some of the scores computed are not used.
+ *
+ * @see NEATGeneticAlgorithm#speciatePopulation(Chromosome[])
+ */
+class CompatibilityScores {
+
+	// the scores of fewer chromosomes are computed when they are needed
+	private static final int MIN_PARALLEL = 64;
+	private static final int CHUNK = 32;
+
+	private final Chromosome[] chromosomes;
+	private final IdentityHashMap<Chromosome, Integer> indexes = new IdentityHashMap<Chromosome, Integer>();
+	private final IdentityHashMap<Chromosome, Scores> scores = new IdentityHashMap<Chromosome, Scores>();
+	private final ForkJoinPool pool;
+
+	CompatibilityScores(Chromosome[] chromosomes, ForkJoinPool pool) {
+		this.chromosomes = chromosomes;
+		this.pool = pool;
+		for (int i = 0; i < chromosomes.length; i++) {
+			this.indexes.put(chromosomes[i], i);
+		}
+	}
+
+	double compatibilityScore(Chromosome specieApplicant, Chromosome specieRepresentative, double excessCoeff, double disjointCoeff, double weightCoeff) {
+		Integer index = this.indexes.get(specieApplicant);
+
+		if (index == null || this.chromosomes.length - index < MIN_PARALLEL) {
+			return (NEATSpecieManager.compatibilityScore(specieApplicant, specieRepresentative, excessCoeff, disjointCoeff, weightCoeff));
+		}
+
+		Scores repScores = this.scores.get(specieRepresentative);
+
+		if (repScores == null || repScores.from > index || repScores.excessCoeff != excessCoeff
+				|| repScores.disjointCoeff != disjointCoeff || repScores.weightCoeff != weightCoeff) {
+			// the genes of the representative are read by all the threads
+			NEATChromosome representative = (NEATChromosome) specieRepresentative;
+			repScores = new Scores(representative.innovationNumbers(), representative.linkWeights(), index, excessCoeff, disjointCoeff, weightCoeff);
+			this.pool.invoke(new ScoreTask(repScores, index, this.chromosomes.length));
+			this.scores.put(specieRepresentative, repScores);
+		}
+
+		return (repScores.values[index - repScores.from]);
+	}
+
+	private class Scores {
+
+		private final int[] innovations;
+		private final double[] weights;
+		private final int from;
+		private final double excessCoeff;
+		private final double disjointCoeff;
+		private final double weightCoeff;
+		private final double[] values;
+
+		Scores(int[] innovations, double[] weights, int from, double excessCoeff, double disjointCoeff, double weightCoeff) {
+			this.innovations = innovations;
+			this.weights = weights;
+			this.from = from;
+			this.excessCoeff = excessCoeff;
+			this.disjointCoeff = disjointCoeff;
+			this.weightCoeff = weightCoeff;
+			this.values = new double[chromosomes.length - from];
+		}
+	}
+
+	private class ScoreTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		// the task is never serialized
+		private final transient Scores scores;
+		private final int from;
+		private final int to;
+
+		ScoreTask(Scores scores, int from, int to) {
+			this.scores = scores;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from > CHUNK) {
+				int middle = (this.from + this.to) >>> 1;
+				invokeAll(new ScoreTask(this.scores, this.from, middle), new ScoreTask(this.scores, middle, this.to));
+				return;
+			}
+
+			for (int i = this.from; i < this.to; i++) {
+				// each chromosome is only read by one of the threads
+				NEATChromosome applicant = (NEATChromosome) chromosomes[i];
+				this.scores.values[i - this.scores.from] = NEATSpecieManager.compatibilityScore(applicant.innovationNumbers(), applicant.linkWeights(),
+						this.scores.innovations, this.scores.weights, this.scores.excessCoeff, this.scores.disjointCoeff, this.scores.weightCoeff);
+			}
+		}
+	}
+}
@@ -4,11 +4,15 @@
  */
 package evolutionaryrobotics.evolution.neat.core;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Random;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import evolutionaryrobotics.evolution.neat.ga.core.Chromosome;
 import evolutionaryrobotics.evolution.neat.ga.core.Gene;
@@ -17,6 +21,14 @@ import evolutionaryrobotics.evolution.neat.utils.MathUtils;
 /**
  * Provides the NEAT innovation database as described in Kenneth Stanley's NEAT
  * papers The innovations are kept for the entire life of the run.
+ * <p>
+ * The link and node innovations are kept in an {@link InnovationTable}, with
+ * the type of the innovation and the ids it depends on (the nodes of a link,
+ * the link a node was inserted in) packed in a long key, and the innovation
+ * number and the node id packed in a long entry. The innovations can be
+ * looked up by many threads while they are added, and the numbers are
+ * allocated without locking. It is serialized as the arrays of its keys and
+ * entries.
  *
  * @author MSimmerson
  *
@@ -24,15 +36,25 @@ import evolutionaryrobotics.evolution.neat.utils.MathUtils;
 public class InnovationDatabase implements Serializable {
 
     private static final long serialVersionUID = -1L;
-    private Random ran = new Random();
-    private HashMap innovations;
-    private int innovationId = 1;
-    private int neuronId = 1;
-    public int hits = 0;
-    public int misses = 0;
+    // the fields of the serialized form, including the innovation map of the
+    // previous versions, which is converted when it is read
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("innovationId", int.class),
+        new ObjectStreamField("neuronId", int.class),
+        new ObjectStreamField("hits", int.class),
+        new ObjectStreamField("misses", int.class),
+        new ObjectStreamField("innovations", HashMap.class)
+    };
+    private static final long LINK = 1;
+    private static final long NODE = 2;
+    private transient InnovationTable innovations;
+    private transient AtomicInteger innovationId;
+    private transient AtomicInteger neuronId;
+    private transient LongAdder hits;
+    private transient LongAdder misses;
 
     public InnovationDatabase() {
-        this.innovations = new HashMap();
+        this.init();
     }
 
     /**
@@ -51,19 +73,35 @@ public class InnovationDatabase implements Serializable {
     }
     
     public void reset() {
-        this.innovations = new HashMap();
-        this.innovationId = 1;
-        this.neuronId = 1;
-        this.hits = 0;
-        this.misses = 0;
+        this.init();
     }
 
-    private synchronized int nextInnovationNumber() {
-        return (innovationId++);
+    private void init() {
+        this.innovations = new InnovationTable();
+        this.innovationId = new AtomicInteger(1);
+        this.neuronId = new AtomicInteger(1);
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
     }
 
-    private synchronized int nextNodeNumber() {
-        return (neuronId++);
+    /**
+     * @return the number of lookups of the innovations that found them, and
+     * of the ones that created them, and the number of innovations
+     */
+    public InnovationStatistics getStatistics() {
+        return (new InnovationStatistics(this.hits.sum(), this.misses.sum(), this.innovations.size()));
+    }
+
+    void addHits(int count) {
+        this.hits.add(count);
+    }
+
+    private int nextInnovationNumber() {
+        return (innovationId.getAndIncrement());
+    }
+
+    private int nextNodeNumber() {
+        return (neuronId.getAndIncrement());
     }
 
     /**
@@ -112,7 +150,7 @@ public class InnovationDatabase implements Serializable {
                 // start with one link to each output, allows feature selection
                 links = new NEATLinkGene[outputs];
                 for (i = 0; i < outputs; i++) {
-                    links[i] = this.submitLinkInnovation(nodes[this.ran.nextInt(inputs)].id(), nodes[inputs + i].id());
+                    links[i] = this.submitLinkInnovation(nodes[MathUtils.random().nextInt(inputs)].id(), nodes[inputs + i].id());
                     links[i].setWeight(MathUtils.nextPlusMinusOne());
                 }
             } else {
@@ -147,50 +185,44 @@ public class InnovationDatabase implements Serializable {
         return (new NEATChromosome(genes));
     }
 
+
     private NEATFeatureGene createFeatureGene() {
         int innovationNumber = this.nextInnovationNumber();
-        NEATInnovation databaseEntry = new NEATFeatureInnovation();
-        databaseEntry.setInnovationId(innovationNumber);
-        this.innovations.put(new Integer(innovationNumber), databaseEntry);
 
         return (new NEATFeatureGene(innovationNumber, MathUtils.nextDouble()));
     }
 
     private NEATNodeGene createNewNodeGene(int type) {
         int innovationNumber = this.nextInnovationNumber();
-        NEATInnovation databaseEntry = new NEATNodeInnovation();
-        databaseEntry.setInnovationId(innovationNumber);
-        ((NEATNodeInnovation) databaseEntry).setNodeId(this.nextNodeNumber());
-        this.innovations.put(new Integer(innovationNumber), databaseEntry);
-        NEATNodeGene nodeGene = new NEATNodeGene(innovationNumber, ((NEATNodeInnovation) databaseEntry).getNodeId(), MathUtils.nextDouble(), type, MathUtils.nextPlusMinusOne());
+        NEATNodeGene nodeGene = new NEATNodeGene(innovationNumber, this.nextNodeNumber(), MathUtils.nextDouble(), type, MathUtils.nextPlusMinusOne());
 
         return (nodeGene);
     }
 
-    private NEATInnovation findNodeInnovation(int linkInnovationId) {
-        NEATNodeInnovation nodeInnovation = new NEATNodeInnovation(linkInnovationId);
-        NEATInnovation databaseEntry = null;
-        boolean found = false;
-        Set keySet;
-        Integer key;
-        Iterator it;
-
-        if (this.innovations.containsValue(nodeInnovation)) {
-            keySet = this.innovations.keySet();
-            it = keySet.iterator();
-
-            while (it.hasNext() && !found) {
-                key = (Integer) it.next();
-                databaseEntry = (NEATInnovation) this.innovations.get(key);
-                if ((databaseEntry instanceof NEATNodeInnovation)
-                        && (databaseEntry != null)
-                        && ((((NEATNodeInnovation) databaseEntry)).getLinkInnovationId() == linkInnovationId)) {
-                    found = true;
-                }
-            }
-        }
+    private static long key(long type, int first, int second) {
+        return ((type << 62) | ((long) first << 31) | second);
+    }
 
-        return (databaseEntry);
+    /**
+     * @return the node id and the innovation number packed in an entry
+     */
+    static long entry(int nodeId, int innovationId) {
+        return (((long) nodeId << 32) | (innovationId & 0xFFFFFFFFL));
+    }
+
+    static int innovationId(long entry) {
+        return ((int) entry);
+    }
+
+    static int nodeId(long entry) {
+        return ((int) (entry >>> 32));
+    }
+
+    /**
+     * @return the entry of the node inserted in a link, or 0 if there is none
+     */
+    long findNodeInnovation(int linkInnovationId) {
+        return (this.innovations.get(key(NODE, linkInnovationId, 0)));
     }
 
     /**
@@ -201,26 +233,49 @@ public class InnovationDatabase implements Serializable {
      * @return - Created node gene
      */
     public NEATNodeGene submitNodeInnovation(NEATLinkGene linkGene) {
-        int innovationNumber;
-        NEATInnovation databaseEntry = this.findNodeInnovation(linkGene.getInnovationNumber());
-        NEATNodeGene gene = null;
-
-        if (databaseEntry == null) {
-            misses++;
-            innovationNumber = this.nextInnovationNumber();
-            databaseEntry = new NEATNodeInnovation(linkGene.getInnovationNumber());
-            ((NEATNodeInnovation) databaseEntry).setNodeId(this.nextNodeNumber());
-            databaseEntry.setInnovationId(innovationNumber);
-            this.innovations.put(new Integer(innovationNumber), databaseEntry);
-        } else {
-            hits++;
-        }
+        return (this.submitNodeInnovation(linkGene.getInnovationNumber()));
+    }
 
-        gene = new NEATNodeGene(databaseEntry.innovationId(), ((NEATNodeInnovation) databaseEntry).getNodeId(), MathUtils.nextDouble(), NEATNodeGene.HIDDEN, MathUtils.nextPlusMinusOne());
+    /**
+     * Submits a node insertion mutation to the database, for the link with
+     * the given innovation number.
+     *
+     * @param linkInnovationId - innovation of the link to add node to
+     * @return - Created node gene
+     */
+    public NEATNodeGene submitNodeInnovation(int linkInnovationId) {
+        long databaseEntry = this.nodeInnovation(linkInnovationId);
+        NEATNodeGene gene = new NEATNodeGene(innovationId(databaseEntry), nodeId(databaseEntry), MathUtils.nextDouble(), NEATNodeGene.HIDDEN, MathUtils.nextPlusMinusOne());
 
         return (gene);
     }
 
+    /**
+     * Finds the innovation of a node inserted in a link, or creates it.
+     *
+     * @param linkInnovationId - innovation of the link
+     * @return - the database entry, see {@link #entry(int, int)}
+     */
+    long nodeInnovation(int linkInnovationId) {
+        long key = key(NODE, linkInnovationId, 0);
+        long databaseEntry = this.innovations.get(key);
+
+        if (databaseEntry == 0) {
+            synchronized (this.innovations) {
+                databaseEntry = this.innovations.get(key);
+                if (databaseEntry == 0) {
+                    this.misses.increment();
+                    databaseEntry = entry(this.nextNodeNumber(), this.nextInnovationNumber());
+                    this.innovations.put(key, databaseEntry);
+                    return (databaseEntry);
+                }
+            }
+        }
+        this.hits.increment();
+
+        return (databaseEntry);
+    }
+
     /**
      * Submits a link insertion mutation to the database. If it does not exist,
      * it creates it and adds it to the database. It returns the database entry
@@ -230,48 +285,112 @@ public class InnovationDatabase implements Serializable {
      * @return - Created link gene
      */
     public NEATLinkGene submitLinkInnovation(int fromId, int toId) {
-        int innovationNumber;
-        NEATInnovation databaseEntry = this.findLinkInnovation(fromId, toId);
-
-        if (databaseEntry == null) {
-            misses++;
-            innovationNumber = this.nextInnovationNumber();
-            databaseEntry = new NEATLinkInnovation(fromId, toId);
-            databaseEntry.setInnovationId(innovationNumber);
-            this.innovations.put(new Integer(innovationNumber), databaseEntry);
-        } else {
-            hits++;
-        }
         // the 0 weight is a place holder
-        NEATLinkGene gene = new NEATLinkGene(databaseEntry.innovationId(), true, fromId, toId, 0);
+        NEATLinkGene gene = new NEATLinkGene(this.linkInnovation(fromId, toId), true, fromId, toId, 0);
 
         return (gene);
     }
 
-    private NEATInnovation findLinkInnovation(int fromId, int toId) {
-        NEATLinkInnovation linkInnovation = new NEATLinkInnovation(fromId, toId);
-        NEATInnovation databaseEntry = null;
-        boolean found = false;
-        Set keySet;
-        Integer key;
-        Iterator it;
-
-        if (this.innovations.containsValue(linkInnovation)) {
-            keySet = this.innovations.keySet();
-            it = keySet.iterator();
-
-            while (it.hasNext() && !found) {
-                key = (Integer) it.next();
-                databaseEntry = (NEATInnovation) this.innovations.get(key);
-                if ((databaseEntry instanceof NEATLinkInnovation)
-                        && (databaseEntry != null)
-                        && (((NEATLinkInnovation) databaseEntry).getFromId() == fromId)
-                        && (((NEATLinkInnovation) databaseEntry).getToId() == toId)) {
-                    found = true;
+    /**
+     * Finds the innovation of a link between two nodes, or creates it.
+     *
+     * @param fromId - from node identifier
+     * @param toId - to node identifier
+     * @return - the innovation number
+     */
+    int linkInnovation(int fromId, int toId) {
+        long key = key(LINK, fromId, toId);
+        long databaseEntry = this.innovations.get(key);
+
+        if (databaseEntry == 0) {
+            synchronized (this.innovations) {
+                databaseEntry = this.innovations.get(key);
+                if (databaseEntry == 0) {
+                    this.misses.increment();
+                    databaseEntry = entry(0, this.nextInnovationNumber());
+                    this.innovations.put(key, databaseEntry);
+                    return (innovationId(databaseEntry));
                 }
             }
         }
+        this.hits.increment();
 
-        return (databaseEntry);
+        return (innovationId(databaseEntry));
+    }
+
+    /**
+     * @return the innovation number of the link between two nodes, or 0 if
+     * there is none
+     */
+    int findLinkInnovation(int fromId, int toId) {
+        return (innovationId(this.innovations.get(key(LINK, fromId, toId))));
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        long[] keys;
+        long[] entries;
+        ObjectOutputStream.PutField fields = out.putFields();
+
+        synchronized (this.innovations) {
+            keys = new long[this.innovations.size()];
+            entries = new long[keys.length];
+            this.innovations.entries(keys, entries);
+            fields.put("innovationId", this.innovationId.get());
+            fields.put("neuronId", this.neuronId.get());
+        }
+        // the counters are written as longs after the fields
+        out.writeFields();
+        out.writeLong(this.hits.sum());
+        out.writeLong(this.misses.sum());
+        out.writeObject(keys);
+        out.writeObject(entries);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        HashMap previous = (HashMap) fields.get("innovations", null);
+        long[] keys;
+        long[] entries;
+        int i;
+
+        this.reset();
+        this.innovationId.set(fields.get("innovationId", 1));
+        this.neuronId.set(fields.get("neuronId", 1));
+
+        if (previous != null) {
+            // the innovation objects of the previous versions
+            this.hits.add(fields.get("hits", 0));
+            this.misses.add(fields.get("misses", 0));
+            this.readInnovations(previous);
+        } else {
+            this.hits.add(in.readLong());
+            this.misses.add(in.readLong());
+            keys = (long[]) in.readObject();
+            entries = (long[]) in.readObject();
+            for (i = 0; i < keys.length; i++) {
+                this.innovations.put(keys[i], entries[i]);
+            }
+        }
+    }
+
+    private void readInnovations(HashMap previous) {
+        Iterator it = previous.values().iterator();
+        Object innovation;
+        NEATNodeInnovation node;
+        NEATLinkInnovation link;
+
+        while (it.hasNext()) {
+            innovation = it.next();
+            if (innovation instanceof NEATLinkInnovation) {
+                link = (NEATLinkInnovation) innovation;
+                this.innovations.put(key(LINK, link.getFromId(), link.getToId()), entry(0, link.innovationId()));
+            } else if (innovation instanceof NEATNodeInnovation) {
+                node = (NEATNodeInnovation) innovation;
+                // the input and output nodes are not inserted in a link
+                if (node.getLinkInnovationId() != 0) {
+                    this.innovations.put(key(NODE, node.getLinkInnovationId(), 0), entry(node.getNodeId(), node.innovationId()));
+                }
+            }
+        }
     }
 }
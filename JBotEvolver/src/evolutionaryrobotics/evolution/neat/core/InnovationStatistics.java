@@ -0,0 +1,48 @@
+package evolutionaryrobotics.evolution.neat.core;
+
+import java.io.Serializable;
+
+/**
+ * The lookups of an {@link InnovationDatabase} when it was asked for its
+ * statistics: the hits found an innovation of the previous mutations, the
+ * misses created a new one.
+ */
+public class InnovationStatistics implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long hits;
+	private final long misses;
+	private final int innovations;
+
+	public InnovationStatistics(long hits, long misses, int innovations) {
+		this.hits = hits;
+		this.misses = misses;
+		this.innovations = innovations;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the number of link and node innovations in the database
+	 */
+	public int getNumberOfInnovations() {
+		return innovations;
+	}
+
+	public double getHitRatio() {
+		return hits + misses == 0 ? 0 : (double)hits / (hits + misses);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("innovations=%d hits=%d misses=%d hit ratio=%.2f", innovations, hits, misses,
+				getHitRatio());
+	}
+}
@@ -0,0 +1,112 @@
+package evolutionaryrobotics.evolution.neat.core;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * An open-addressing hash map from long keys to long values, with linear
+ * probing, used by {@link InnovationDatabase}. The key 0 marks the empty
+ * slots, and the value 0 is returned for the keys that are not in the map.
+ * <p>
+ * It can be read by many threads without locking while one of them adds
+ * entries: a value is written before its key, the keys are read and written
+ * as volatiles, and a larger table is only published once it is complete.
+ * The entries are added while holding the lock of the map.
+ */
+class InnovationTable {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private volatile Slots slots = new Slots(INITIAL_CAPACITY);
+    private int size = 0;
+
+    /**
+     * @return the value of the key, or 0 if it is not in the map
+     */
+    long get(long key) {
+        Slots s = this.slots;
+        int i = hash(key) & s.mask;
+        long k;
+
+        while ((k = s.keys.get(i)) != 0) {
+            if (k == key) {
+                return (s.values[i]);
+            }
+            i = (i + 1) & s.mask;
+        }
+
+        return (0);
+    }
+
+    /**
+     * Adds an entry, whose key must not be in the map yet.
+     */
+    synchronized void put(long key, long value) {
+        if ((this.size + 1) * 3 > this.slots.values.length * 2) {
+            Slots larger = new Slots(this.slots.values.length * 2);
+            this.slots.copyTo(larger);
+            this.slots = larger;
+        }
+        this.slots.put(key, value);
+        this.size++;
+    }
+
+    synchronized int size() {
+        return (this.size);
+    }
+
+    /**
+     * Copies the entries to the arrays, which must have {@link #size()}
+     * elements.
+     */
+    synchronized void entries(long[] keys, long[] values) {
+        Slots s = this.slots;
+        int n = 0;
+        int i;
+
+        for (i = 0; i < s.values.length; i++) {
+            if (s.keys.get(i) != 0) {
+                keys[n] = s.keys.get(i);
+                values[n++] = s.values[i];
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        key = (key ^ (key >>> 33)) * 0xFF51AFD7ED558CCDL;
+        key = key ^ (key >>> 33);
+        return ((int) key);
+    }
+
+    private static class Slots {
+
+        private final AtomicLongArray keys;
+        private final long[] values;
+        private final int mask;
+
+        Slots(int capacity) {
+            this.keys = new AtomicLongArray(capacity);
+            this.values = new long[capacity];
+            this.mask = capacity - 1;
+        }
+
+        void put(long key, long value) {
+            int i = hash(key) & this.mask;
+
+            while (this.keys.get(i) != 0) {
+                i = (i + 1) & this.mask;
+            }
+            this.values[i] = value;
+            this.keys.set(i, key);
+        }
+
+        void copyTo(Slots other) {
+            int i;
+
+            for (i = 0; i < this.values.length; i++) {
+                if (this.keys.get(i) != 0) {
+                    other.put(this.keys.get(i), this.values[i]);
+                }
+            }
+        }
+    }
+}
@@ -4,11 +4,21 @@
  */
 package evolutionaryrobotics.evolution.neat.core;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+
 import evolutionaryrobotics.evolution.neat.ga.core.Chromosome;
 import evolutionaryrobotics.evolution.neat.ga.core.Gene;
 
 /**
  * NEAT specific chromosome
+ * <p>
+ * The genes are kept packed in a {@link NEATGenome}, which is shared by the
+ * copies of the chromosome. {@link #genes()} creates gene objects from it,
+ * and {@link #updateChromosome(Gene[])} packs them again.
+ *
  * @author MSimmerson
  *
  */
@@ -16,7 +26,16 @@ public class NEATChromosome implements Chromosome {
     
     private static final long serialVersionUID = -1L;
     
-	private Gene[] genes;
+	// the fields of the serialized form, including the genes of the previous
+	// versions, which are packed when they are read
+	private static final ObjectStreamField[] serialPersistentFields = {
+		new ObjectStreamField("genome", NEATGenome.class),
+		new ObjectStreamField("genes", Gene[].class),
+		new ObjectStreamField("fitness", double.class),
+		new ObjectStreamField("specieId", int.class),
+		new ObjectStreamField("nOrder", boolean.class)
+	};
+	private NEATGenome genome;
 	private double fitness;
 	private int specieId = -1;
 	private boolean nOrder = false;
@@ -26,6 +45,10 @@ public class NEATChromosome implements Chromosome {
 		this.updateChromosome(genes);
 	}
 
+	public NEATChromosome(NEATGenome genome) {
+		this.genome = genome;
+	}
+
 	
 	/**
 	 * @return Returns the specieId.
@@ -41,20 +64,51 @@ public class NEATChromosome implements Chromosome {
 		this.specieId = specieId;
 	}
 
+	/**
+	 * @return the packed genes, which may be shared with other chromosomes
+	 */
+	public NEATGenome genome() {
+		return (this.genome);
+	}
+
+	void setGenome(NEATGenome genome) {
+		this.genome = genome;
+	}
+
+	/**
+	 * @return new gene objects with the values of the genes. Changing them
+	 * does not change the chromosome until they are given to
+	 * {@link #updateChromosome(Gene[])}.
+	 */
 	@Override
 	public Gene[] genes() {
-		return (this.genes);
+		return (this.genome.toGenes());
 	}
 
 	@Override
 	public int size() {
-		return (this.genes.length);
+		return (this.genome.size());
 	}
 
 	@Override
 	public void updateChromosome(Gene[] newGenes) {
-		this.genes = new NEATGene[newGenes.length];
-		System.arraycopy(newGenes, 0, this.genes, 0, this.genes.length);
+		this.genome = NEATGenome.fromGenes(newGenes);
+	}
+
+	/**
+	 * @return the innovation numbers of the genes, in the order of the genes.
+	 * The array must not be changed.
+	 */
+	public int[] innovationNumbers() {
+		return (this.genome.innovationNumbers());
+	}
+
+	/**
+	 * @return the weights of the link genes, and 0 for the other genes, in the
+	 * order of the genes. The array must not be changed.
+	 */
+	public double[] linkWeights() {
+		return (this.genome.linkWeights());
 	}
 
 	@Override
@@ -92,4 +146,27 @@ public class NEATChromosome implements Chromosome {
 		
 		return (returnVal);
 	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		ObjectOutputStream.PutField fields = out.putFields();
+
+		fields.put("genome", this.genome);
+		fields.put("fitness", this.fitness);
+		fields.put("specieId", this.specieId);
+		fields.put("nOrder", this.nOrder);
+		out.writeFields();
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = in.readFields();
+		Gene[] previous = (Gene[]) fields.get("genes", null);
+
+		this.genome = (NEATGenome) fields.get("genome", null);
+		if (this.genome == null && previous != null) {
+			this.genome = NEATGenome.fromGenes(previous);
+		}
+		this.fitness = fields.get("fitness", 0.0);
+		this.specieId = fields.get("specieId", -1);
+		this.nOrder = fields.get("nOrder", false);
+	}
 }
@@ -46,6 +46,8 @@ public class NEATGADescriptor implements GADescriptor {
 	private boolean naturalOrder;
 	private double maxPerturb;
 	private double maxBiasPerturb;
+	private boolean parallelSpeciation;
+	private boolean parallelSpawn;
         private boolean copyBest;
 
 	/**
@@ -416,6 +418,18 @@ public class NEATGADescriptor implements GADescriptor {
 	public void setMaxPerturb(double maxPerturb) {
 		this.maxPerturb = maxPerturb;
 	}
+	public boolean isParallelSpeciation() {
+		return parallelSpeciation;
+	}
+	public void setParallelSpeciation(boolean parallelSpeciation) {
+		this.parallelSpeciation = parallelSpeciation;
+	}
+	public boolean isParallelSpawn() {
+		return parallelSpawn;
+	}
+	public void setParallelSpawn(boolean parallelSpawn) {
+		this.parallelSpawn = parallelSpawn;
+	}
         
         public boolean getCopyBest() {
             return copyBest;
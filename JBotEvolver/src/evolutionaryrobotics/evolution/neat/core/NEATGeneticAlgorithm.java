@@ -8,6 +8,10 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 import evolutionaryrobotics.evolution.neat.core.mutators.NEATMutator;
 import evolutionaryrobotics.evolution.neat.ga.core.Chromosome;
@@ -21,6 +25,7 @@ import evolutionaryrobotics.evolution.neat.ga.core.ParentSelector;
 import evolutionaryrobotics.evolution.neat.ga.core.Population;
 import evolutionaryrobotics.evolution.neat.ga.core.Specie;
 import evolutionaryrobotics.evolution.neat.ga.core.Species;
+import evolutionaryrobotics.evolution.neat.utils.MathUtils;
 
 /**
  *
@@ -42,6 +47,8 @@ public class NEATGeneticAlgorithm implements GeneticAlgorithm {
     private int specieIdIdx = 1;
     private int eleCount = 0;
     private InnovationDatabase innov;
+    private transient CompatibilityScores compatibilityScores;
+    private long randomSeed = new Random().nextLong();
 
     /**
      * Creates a NEAT GA with behaviour defined by the descriptor
@@ -83,6 +90,19 @@ public class NEATGeneticAlgorithm implements GeneticAlgorithm {
         return selector;
     }
 
+    /**
+     * Sets the seed of the random numbers used to create the population, or
+     * the next generation. Each specie reproduces with a generator of its own
+     * derived from it, so the offspring only depend on the seed and on the
+     * current population. If it is not set again, the seed of each
+     * generation is derived from the previous one.
+     *
+     * @param seed
+     */
+    public void setRandomSeed(long seed) {
+        this.randomSeed = seed;
+    }
+
     /**
      * Creates the initial population
      */
@@ -92,7 +112,13 @@ public class NEATGeneticAlgorithm implements GeneticAlgorithm {
         int initialChromoSize = this.func.requiredChromosomeSize() + this.descriptor.getExtraFeatureCount();
         this.pop = new NEATPopulation4J(popSize, initialChromoSize, this.descriptor.getInputNodes(), this.descriptor.getOutputNodes(), this.descriptor.featureSelectionEnabled(), this.descriptor.getExtraFeatureCount());
         ((NEATPopulation4J) pop).setInnovationDatabase(innov);
-        this.pop.createPopulation();
+        MathUtils.setRandom(new Random(this.randomSeed));
+        try {
+            this.pop.createPopulation();
+        } finally {
+            MathUtils.setRandom(null);
+        }
+        this.randomSeed = mix(this.randomSeed);
     }
     
     public void loadPopulation(NEATPopulation4J pop) {
@@ -137,14 +163,46 @@ public class NEATGeneticAlgorithm implements GeneticAlgorithm {
     }
 
     public Chromosome cloneChromosome(Chromosome best) {
-        Chromosome cloneBest = new NEATChromosome(best.genes());
+        Chromosome cloneBest = new NEATChromosome(((NEATChromosome) best).genome());
         cloneBest.updateFitness(best.fitness());
         ((NEATChromosome) cloneBest).setSpecieId(((NEATChromosome) best).getSpecieId());
 
         return (cloneBest);
     }
 
-    private void speciatePopulation(Chromosome[] currentGen) {
+    /**
+     * Assigns each chromosome, in order, to the first specie it is compatible
+     * with, or to a new specie. With parallel speciation the compatibility
+     * scores are computed on the common ForkJoinPool (see
+     * {@link CompatibilityScores}), and the species are the same.
+     *
+     * @param currentGen
+     */
+    public void speciatePopulation(Chromosome[] currentGen) {
+        if (this.descriptor.isParallelSpeciation() && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            this.compatibilityScores = new CompatibilityScores(currentGen, ForkJoinPool.commonPool());
+        }
+        this.setCompatibilityScores(this.compatibilityScores);
+        try {
+            this.assignSpecies(currentGen);
+        } finally {
+            this.compatibilityScores = null;
+            this.setCompatibilityScores(null);
+        }
+    }
+
+    private void setCompatibilityScores(CompatibilityScores scores) {
+        ArrayList<?> currentSpecieList = this.specieList.specieList();
+        int i;
+
+        for (i = 0; i < currentSpecieList.size(); i++) {
+            if (currentSpecieList.get(i) instanceof NEATSpecie) {
+                ((NEATSpecie) currentSpecieList.get(i)).setCompatibilityScores(scores);
+            }
+        }
+    }
+
+    private void assignSpecies(Chromosome[] currentGen) {
         int i;
         int j;
         boolean memberAssigned = false;
@@ -263,16 +321,26 @@ public class NEATGeneticAlgorithm implements GeneticAlgorithm {
         }
     }
 
+    /**
+     * Creates the next generation. Each specie reproduces in a job of its
+     * own, with its own random numbers and its own innovations (see
+     * {@link PendingInnovations}), on the common ForkJoinPool if the spawn is
+     * parallel. The innovations are then added to the database in the order
+     * of the species, so the new generation is the same whatever the number
+     * of threads.
+     */
     private Chromosome[] spawn() {
         Chromosome[] currentGen = this.pop.genoTypes();
         Chromosome[] newGen = new Chromosome[currentGen.length];
         Specie specie = null;
-        ChromosomeSet offspring = null;
+        Chromosome[] offspring = null;
         int offSpringCount;
         int newGenIdx = 0;
         int i;
         int j = 0;
         double totalAvFitness;
+        ReproductionJob[] jobs;
+        ArrayList<ReproductionJob> pending = new ArrayList<ReproductionJob>();
 		//int offSp = 0;
 
         // update species by sharing fitness.
@@ -280,6 +348,7 @@ public class NEATGeneticAlgorithm implements GeneticAlgorithm {
         totalAvFitness = this.specieList.totalAvSpeciesFitness();
         // mate within valid species to produce new population
         ArrayList species = this.specieList.validSpecieList(((NEATChromosome) this.discoveredBest).getSpecieId());
+        jobs = new ReproductionJob[species.size()];
         for (i = 0; i < species.size(); i++) {
             specie = (Specie) species.get(i);
             if (specie.specieMembers().size() == 0) {
@@ -295,22 +364,91 @@ public class NEATGeneticAlgorithm implements GeneticAlgorithm {
 
             //cat.debug("Sp[" + specie.id() + "] Age:" + ((NEATSpecie)specie).specieAge() + ":Offspring Sz:" + offSpringCount + ":AvF:" + specie.getAverageFitness() + ":FAge:" + specie.getCurrentFitnessAge() + ":BestF:" + specie.findBestMember().fitness());
             if (offSpringCount > 0) {
-                offspring = specie.specieOffspring(offSpringCount, this.mut, this.selector, this.xOver);
-                for (j = 0; j < offspring.size(); j++) {
+                jobs[i] = new ReproductionJob(specie, offSpringCount, mix(this.randomSeed + specie.id() * 0x9E3779B97F4A7C15L));
+                pending.add(jobs[i]);
+                // the offspring that do not fit are dropped
+                newGenIdx = Math.min(newGen.length, newGenIdx + offSpringCount);
+            } else {
+                //cat.debug("Specie " + specie.id() + ":size:" + specie.specieMembers().size() + " produced no offspring.  Average fitness was " + specie.averageFitness() + " out of a total fitness of " + this.specieList.totalAvSpeciesFitness());
+                specie.setExtinct();
+            }
+        }
+
+        if (this.descriptor.isParallelSpawn() && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            ForkJoinTask.invokeAll(pending);
+        } else {
+            for (i = 0; i < pending.size(); i++) {
+                pending.get(i).invoke();
+            }
+        }
+
+        newGenIdx = 0;
+        for (i = 0; i < jobs.length; i++) {
+            if (jobs[i] != null) {
+                offspring = jobs[i].offspring;
+                jobs[i].innovations.merge(offspring);
+                for (j = 0; j < offspring.length; j++) {
                     if (newGenIdx < newGen.length) {
                         // if population not full
-                        newGen[newGenIdx++] = offspring.nextChromosome();
+                        newGen[newGenIdx++] = offspring[j];
                     }
                 }
-            } else {
-                //cat.debug("Specie " + specie.id() + ":size:" + specie.specieMembers().size() + " produced no offspring.  Average fitness was " + specie.averageFitness() + " out of a total fitness of " + this.specieList.totalAvSpeciesFitness());
-                specie.setExtinct();
             }
         }
+        this.randomSeed = mix(this.randomSeed);
 
         return (newGen);
     }
 
+    /**
+     * The SplitMix64 finaliser, to derive the seeds of the species and of the
+     * next generation from the seed of a generation.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return (z ^ (z >>> 31));
+    }
+
+    /**
+     * Produces the offspring of a specie. The mutator submits the innovations
+     * to a {@link PendingInnovations}, and the selector, the crossover and
+     * the mutator draw their numbers from the generator of the job.
+     */
+    private class ReproductionJob extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final Specie specie;
+        private final int count;
+        private final long seed;
+        private final PendingInnovations innovations = new PendingInnovations(innov);
+        private Chromosome[] offspring;
+
+        ReproductionJob(Specie specie, int count, long seed) {
+            this.specie = specie;
+            this.count = count;
+            this.seed = seed;
+        }
+
+        @Override
+        protected void compute() {
+            ChromosomeSet set;
+            int i;
+
+            MathUtils.setRandom(new Random(this.seed));
+            try {
+                set = this.specie.specieOffspring(this.count, mut.copy(this.innovations), selector, xOver);
+            } finally {
+                MathUtils.setRandom(null);
+            }
+
+            this.offspring = new Chromosome[set.size()];
+            for (i = 0; i < this.offspring.length; i++) {
+                this.offspring[i] = set.nextChromosome();
+            }
+        }
+    }
+
     private Specie createNewSpecie(Chromosome member) {
         double excessCoeff = this.descriptor.getExcessCoeff();
         double disjointCoeff = this.descriptor.getDisjointCoeff();
@@ -325,6 +463,7 @@ public class NEATGeneticAlgorithm implements GeneticAlgorithm {
         specie.setYouthBoost(this.descriptor.getYouthBoost());
         specie.setYouthThreshold(this.descriptor.getSpecieYouthThreshold());
         specie.setSurvivalThreshold(this.descriptor.getSurvivalThreshold());
+        specie.setCompatibilityScores(this.compatibilityScores);
         specie.addSpecieMember(member);
 
         return (specie);
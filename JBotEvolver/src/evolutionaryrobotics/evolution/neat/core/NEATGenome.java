@@ -0,0 +1,344 @@
+package evolutionaryrobotics.evolution.neat.core;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import evolutionaryrobotics.evolution.neat.ga.core.Gene;
+
+/**
+ * The genes of a {@link NEATChromosome}, packed in arrays of primitives
+ * instead of one object per gene. The innovation number and the kind of each
+ * gene are kept in the order of the genes, which matters for the crossover
+ * and the compatibility scores, and the other values are kept in arrays per
+ * kind of gene: the n-th node gene is described by the n-th element of the
+ * node arrays, and so on.
+ * <p>
+ * A genome is not changed once it is built, so it can be shared by the
+ * chromosomes that are copies of each other, and read by many threads. New
+ * genomes are created with a {@link Builder}.
+ *
+ * @see NEATNodeGene
+ * @see NEATLinkGene
+ * @see NEATFeatureGene
+ */
+public class NEATGenome implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final byte NODE = 0;
+	public static final byte LINK = 1;
+	public static final byte FEATURE = 2;
+
+	// all the genes, in order
+	private final int[] innovations;
+	private final byte[] kinds;
+	// the node genes
+	private final int[] nodeIds;
+	private final byte[] nodeTypes;
+	private final double[] sigmoidFactors;
+	private final double[] biases;
+	// the link genes
+	private final int[] fromIds;
+	private final int[] toIds;
+	private final double[] weights;
+	private final boolean[] enabled;
+	// the feature genes
+	private final double[] featureValues;
+	// the weights of the link genes, and 0 for the other genes, in order
+	private transient double[] linkWeights;
+
+	private NEATGenome(int[] innovations, byte[] kinds, int[] nodeIds, byte[] nodeTypes, double[] sigmoidFactors,
+			double[] biases, int[] fromIds, int[] toIds, double[] weights, boolean[] enabled, double[] featureValues) {
+		this.innovations = innovations;
+		this.kinds = kinds;
+		this.nodeIds = nodeIds;
+		this.nodeTypes = nodeTypes;
+		this.sigmoidFactors = sigmoidFactors;
+		this.biases = biases;
+		this.fromIds = fromIds;
+		this.toIds = toIds;
+		this.weights = weights;
+		this.enabled = enabled;
+		this.featureValues = featureValues;
+	}
+
+	/**
+	 * Creates a copy of a genome with other innovation numbers and node ids.
+	 */
+	NEATGenome(NEATGenome genome, int[] innovations, int[] nodeIds, int[] fromIds, int[] toIds) {
+		this(innovations, genome.kinds, nodeIds, genome.nodeTypes, genome.sigmoidFactors, genome.biases, fromIds, toIds,
+				genome.weights, genome.enabled, genome.featureValues);
+	}
+
+	/**
+	 * Packs the genes, which must be NEAT genes.
+	 */
+	public static NEATGenome fromGenes(Gene[] genes) {
+		Builder builder = new Builder(genes.length);
+		NEATNodeGene node;
+		NEATLinkGene link;
+		int i;
+
+		for (i = 0; i < genes.length; i++) {
+			if (genes[i] instanceof NEATNodeGene) {
+				node = (NEATNodeGene) genes[i];
+				builder.addNode(node.getInnovationNumber(), node.id(), node.getType(), node.sigmoidFactor(), node.bias());
+			} else if (genes[i] instanceof NEATLinkGene) {
+				link = (NEATLinkGene) genes[i];
+				builder.addLink(link.getInnovationNumber(), link.getFromId(), link.getToId(), link.getWeight(), link.isEnabled());
+			} else if (genes[i] instanceof NEATFeatureGene) {
+				builder.addFeature(((NEATFeatureGene) genes[i]).getInnovationNumber(), genes[i].geneAsNumber().doubleValue());
+			}
+		}
+
+		return (builder.build());
+	}
+
+	/**
+	 * @return new gene objects with the values of the genes
+	 */
+	public Gene[] toGenes() {
+		Gene[] genes = new NEATGene[this.innovations.length];
+		int node = 0;
+		int link = 0;
+		int feature = 0;
+		int i;
+
+		for (i = 0; i < genes.length; i++) {
+			if (this.kinds[i] == NODE) {
+				genes[i] = new NEATNodeGene(this.innovations[i], this.nodeIds[node], this.sigmoidFactors[node],
+						this.nodeTypes[node], this.biases[node]);
+				node++;
+			} else if (this.kinds[i] == LINK) {
+				genes[i] = new NEATLinkGene(this.innovations[i], this.enabled[link], this.fromIds[link], this.toIds[link],
+						this.weights[link]);
+				link++;
+			} else {
+				genes[i] = new NEATFeatureGene(this.innovations[i], this.featureValues[feature++]);
+			}
+		}
+
+		return (genes);
+	}
+
+	public int size() {
+		return (this.innovations.length);
+	}
+
+	public int getNumberOfNodes() {
+		return (this.nodeIds.length);
+	}
+
+	public int getNumberOfLinks() {
+		return (this.fromIds.length);
+	}
+
+	public int getNumberOfFeatures() {
+		return (this.featureValues.length);
+	}
+
+	/**
+	 * @return {@link #NODE}, {@link #LINK} or {@link #FEATURE}
+	 */
+	public byte kind(int gene) {
+		return (this.kinds[gene]);
+	}
+
+	public int innovationNumber(int gene) {
+		return (this.innovations[gene]);
+	}
+
+	/**
+	 * @return the innovation numbers of the genes, in order. The array must
+	 * not be changed.
+	 */
+	public int[] innovationNumbers() {
+		return (this.innovations);
+	}
+
+	/**
+	 * @return the weights of the link genes, and 0 for the other genes, in
+	 * the order of the genes. The array must not be changed.
+	 */
+	public double[] linkWeights() {
+		double[] geneWeights = this.linkWeights;
+		int link = 0;
+		int i;
+
+		if (geneWeights == null) {
+			geneWeights = new double[this.innovations.length];
+			for (i = 0; i < geneWeights.length; i++) {
+				if (this.kinds[i] == LINK) {
+					geneWeights[i] = this.weights[link++];
+				}
+			}
+			this.linkWeights = geneWeights;
+		}
+
+		return (geneWeights);
+	}
+
+	public int nodeId(int node) {
+		return (this.nodeIds[node]);
+	}
+
+	/**
+	 * @return {@link NEATNodeGene#INPUT}, {@link NEATNodeGene#OUTPUT} or
+	 * {@link NEATNodeGene#HIDDEN}
+	 */
+	public int nodeType(int node) {
+		return (this.nodeTypes[node]);
+	}
+
+	public double sigmoidFactor(int node) {
+		return (this.sigmoidFactors[node]);
+	}
+
+	public double bias(int node) {
+		return (this.biases[node]);
+	}
+
+	public int fromId(int link) {
+		return (this.fromIds[link]);
+	}
+
+	public int toId(int link) {
+		return (this.toIds[link]);
+	}
+
+	public double weight(int link) {
+		return (this.weights[link]);
+	}
+
+	public boolean isEnabled(int link) {
+		return (this.enabled[link]);
+	}
+
+	public double featureValue(int feature) {
+		return (this.featureValues[feature]);
+	}
+
+	/**
+	 * Adds the genes to a genome one at a time, in order.
+	 */
+	public static class Builder {
+
+		private int[] innovations;
+		private byte[] kinds;
+		private int genes = 0;
+		private int[] nodeIds;
+		private byte[] nodeTypes;
+		private double[] sigmoidFactors;
+		private double[] biases;
+		private int nodes = 0;
+		private int[] fromIds;
+		private int[] toIds;
+		private double[] weights;
+		private boolean[] enabled;
+		private int links = 0;
+		private double[] featureValues;
+		private int features = 0;
+
+		/**
+		 * @param capacity - the number of genes expected
+		 */
+		public Builder(int capacity) {
+			capacity = Math.max(capacity, 4);
+			this.innovations = new int[capacity];
+			this.kinds = new byte[capacity];
+			this.nodeIds = new int[capacity];
+			this.nodeTypes = new byte[capacity];
+			this.sigmoidFactors = new double[capacity];
+			this.biases = new double[capacity];
+			this.fromIds = new int[capacity];
+			this.toIds = new int[capacity];
+			this.weights = new double[capacity];
+			this.enabled = new boolean[capacity];
+			this.featureValues = new double[0];
+		}
+
+		public int size() {
+			return (this.genes);
+		}
+
+		public void addNode(int innovation, int id, int type, double sigmoidFactor, double bias) {
+			this.addGene(innovation, NODE);
+			if (this.nodes == this.nodeIds.length) {
+				int capacity = this.nodes * 2;
+				this.nodeIds = Arrays.copyOf(this.nodeIds, capacity);
+				this.nodeTypes = Arrays.copyOf(this.nodeTypes, capacity);
+				this.sigmoidFactors = Arrays.copyOf(this.sigmoidFactors, capacity);
+				this.biases = Arrays.copyOf(this.biases, capacity);
+			}
+			this.nodeIds[this.nodes] = id;
+			this.nodeTypes[this.nodes] = (byte) type;
+			this.sigmoidFactors[this.nodes] = sigmoidFactor;
+			this.biases[this.nodes] = bias;
+			this.nodes++;
+		}
+
+		public void addLink(int innovation, int fromId, int toId, double weight, boolean enabled) {
+			this.addGene(innovation, LINK);
+			if (this.links == this.fromIds.length) {
+				int capacity = this.links * 2;
+				this.fromIds = Arrays.copyOf(this.fromIds, capacity);
+				this.toIds = Arrays.copyOf(this.toIds, capacity);
+				this.weights = Arrays.copyOf(this.weights, capacity);
+				this.enabled = Arrays.copyOf(this.enabled, capacity);
+			}
+			this.fromIds[this.links] = fromId;
+			this.toIds[this.links] = toId;
+			this.weights[this.links] = weight;
+			this.enabled[this.links] = enabled;
+			this.links++;
+		}
+
+		public void addFeature(int innovation, double value) {
+			this.addGene(innovation, FEATURE);
+			if (this.features == this.featureValues.length) {
+				this.featureValues = Arrays.copyOf(this.featureValues, Math.max(4, this.features * 2));
+			}
+			this.featureValues[this.features++] = value;
+		}
+
+		/**
+		 * Adds a copy of a gene of another genome.
+		 *
+		 * @param genome - the genome of the gene
+		 * @param gene - the index of the gene
+		 * @param index - the index of the gene among the genes of its kind
+		 */
+		public void add(NEATGenome genome, int gene, int index) {
+			if (genome.kinds[gene] == NODE) {
+				this.addNode(genome.innovations[gene], genome.nodeIds[index], genome.nodeTypes[index],
+						genome.sigmoidFactors[index], genome.biases[index]);
+			} else if (genome.kinds[gene] == LINK) {
+				this.addLink(genome.innovations[gene], genome.fromIds[index], genome.toIds[index], genome.weights[index],
+						genome.enabled[index]);
+			} else {
+				this.addFeature(genome.innovations[gene], genome.featureValues[index]);
+			}
+		}
+
+		private void addGene(int innovation, byte kind) {
+			if (this.genes == this.innovations.length) {
+				this.innovations = Arrays.copyOf(this.innovations, this.genes * 2);
+				this.kinds = Arrays.copyOf(this.kinds, this.genes * 2);
+			}
+			this.innovations[this.genes] = innovation;
+			this.kinds[this.genes++] = kind;
+		}
+
+		/**
+		 * @return the genome, with arrays of the exact size
+		 */
+		public NEATGenome build() {
+			return (new NEATGenome(Arrays.copyOf(this.innovations, this.genes), Arrays.copyOf(this.kinds, this.genes),
+					Arrays.copyOf(this.nodeIds, this.nodes), Arrays.copyOf(this.nodeTypes, this.nodes),
+					Arrays.copyOf(this.sigmoidFactors, this.nodes), Arrays.copyOf(this.biases, this.nodes),
+					Arrays.copyOf(this.fromIds, this.links), Arrays.copyOf(this.toIds, this.links),
+					Arrays.copyOf(this.weights, this.links), Arrays.copyOf(this.enabled, this.links),
+					Arrays.copyOf(this.featureValues, this.features)));
+		}
+	}
+}
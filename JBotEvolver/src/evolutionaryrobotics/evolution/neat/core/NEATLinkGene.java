@@ -89,6 +89,9 @@ public class NEATLinkGene implements NEATGene {
 	public int getInnovationNumber() {
 		return innovationNumber;
 	}
+	void setInnovationNumber(int innovationNumber) {
+		this.innovationNumber = innovationNumber;
+	}
 	/**
 	 * @return Returns the toId.
 	 */
@@ -0,0 +1,285 @@
+package evolutionaryrobotics.evolution.neat.core;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import evolutionaryrobotics.evolution.neat.nn.core.ActivationFunction;
+
+/**
+ * Flat version of {@link NEATNeuralNet#execute}. The recursive evaluation
+ * from each output neuron is unrolled once, when the program is compiled,
+ * into a list of neuron evaluations in the order in which the recursion
+ * would perform them. Each evaluation is a weighted sum over a slice of the
+ * operand arrays ({@link #src}, {@link #weight}), written to the neuron's
+ * activation ({@link #dst}).
+ *
+ * The semantics of the recursion are kept: a source at a lower depth than
+ * the neuron (or the neuron itself) is recurrent and contributes its last
+ * activation at the moment it is read, which may already have been updated
+ * in the current step; other sources are evaluated first. A neuron whose
+ * evaluation does not depend on any recurrent source always gets the same
+ * value within a step, so it is only evaluated the first time it is reached. Neurons that do
+ * depend on recurrent sources are evaluated every time, as in the recursion,
+ * so the outputs are exactly the same.
+ *
+ * Executing the program does not allocate memory. Copies made with
+ * {@link #copy()} share the compiled evaluations but have their own state, so
+ * the robots that use the same genome only need to compile it once.
+ */
+public class NEATNetProgram implements Serializable {
+
+	private static final long serialVersionUID = 4590815470922437283L;
+	//networks whose unrolled evaluation is larger than this are not compiled
+	private static final int MAX_EVALUATIONS = 1 << 16;
+
+	private static final int INPUT = 0;
+	private static final int NO_SOURCES = 1;
+	private static final int SUM = 2;
+	private static final int READ = 3;
+
+	//one entry per evaluation
+	private int[] kind;
+	private int[] dst;
+	private int[] start;
+	private int[] end;
+	private double[] bias;
+	private ActivationFunction[] function;
+
+	//one entry per operand: >= 0 is the result of an earlier evaluation,
+	//< 0 is the last activation of neuron -(src+1) (self-recurrent links)
+	private int[] src;
+	private double[] weight;
+
+	private int[] outputs;
+	private int numberOfEvaluations = 0;
+	private int numberOfOperands = 0;
+
+	private double[] activations;
+	private double[] results;
+
+	/**
+	 * @return the program for the given network, or null if its evaluation
+	 *         never finishes (a cycle of neurons at the same depth) or is too
+	 *         large to be unrolled
+	 */
+	public static NEATNetProgram compile(NEATNeuralNet net) {
+		try {
+			return new NEATNetProgram(net);
+		} catch (IllegalStateException e) {
+			return null;
+		}
+	}
+
+	private NEATNetProgram(NEATNeuralNet net) {
+		NEATNeuron[] neurons = net.neurons();
+		HashMap<NEATNeuron, Integer> slots = new HashMap<NEATNeuron, Integer>();
+		for (int i = 0; i < neurons.length; i++)
+			slots.put(neurons[i], i);
+
+		kind = new int[16];
+		dst = new int[16];
+		start = new int[16];
+		end = new int[16];
+		bias = new double[16];
+		function = new ActivationFunction[16];
+		src = new int[16];
+		weight = new double[16];
+
+		Compiler compiler = new Compiler(neurons, slots);
+		NEATNeuron[] outputNeurons = net.outputNeurons();
+		outputs = new int[outputNeurons.length];
+		for (int i = 0; i < outputNeurons.length; i++)
+			outputs[i] = compiler.evaluate(outputNeurons[i]);
+
+		activations = new double[neurons.length];
+		results = new double[numberOfEvaluations];
+	}
+
+	private NEATNetProgram(NEATNetProgram program) {
+		kind = program.kind;
+		dst = program.dst;
+		start = program.start;
+		end = program.end;
+		bias = program.bias;
+		function = program.function;
+		src = program.src;
+		weight = program.weight;
+		outputs = program.outputs;
+		numberOfEvaluations = program.numberOfEvaluations;
+		numberOfOperands = program.numberOfOperands;
+		activations = new double[program.activations.length];
+		results = new double[program.results.length];
+	}
+
+	/**
+	 * @return a program with the same evaluations and the state of a new
+	 *         network
+	 */
+	public NEATNetProgram copy() {
+		return new NEATNetProgram(this);
+	}
+
+	/**
+	 * Clears the activations, as in a newly created network.
+	 */
+	public void reset() {
+		Arrays.fill(activations, 0);
+	}
+
+	/**
+	 * Runs the network for one step.
+	 *
+	 * @param inputs the input values, input neuron i reads inputs[i-1]
+	 * @param result receives the values of the output neurons
+	 */
+	public void execute(double[] inputs, double[] result) {
+		for (int e = 0; e < numberOfEvaluations; e++) {
+			double value;
+
+			if (kind[e] == INPUT) {
+				value = inputs[start[e]];
+			} else if (kind[e] == NO_SOURCES) {
+				//acting as a bias neuron
+				value = -1;
+			} else if (kind[e] == READ) {
+				//only keeps the current activation of a recurrent source
+				results[e] = activations[start[e]];
+				continue;
+			} else {
+				double neuronIp = 0;
+				for (int k = start[e]; k < end[e]; k++) {
+					int s = src[k];
+					neuronIp += (s >= 0 ? results[s] : activations[-s - 1]) * weight[k];
+				}
+				neuronIp += (-1 * bias[e]);
+				value = function[e].activate(neuronIp);
+			}
+
+			results[e] = value;
+			activations[dst[e]] = value;
+		}
+
+		for (int i = 0; i < outputs.length; i++)
+			result[i] = results[outputs[i]];
+	}
+
+	public int getNumberOfOutputs() {
+		return outputs.length;
+	}
+
+	public int getNumberOfEvaluations() {
+		return numberOfEvaluations;
+	}
+
+	private int addEvaluation(int kind, int dst, int start, int end, double bias, ActivationFunction function) {
+		if (numberOfEvaluations == MAX_EVALUATIONS)
+			throw new IllegalStateException("Network too large to unroll");
+
+		if (numberOfEvaluations == this.kind.length) {
+			int size = numberOfEvaluations * 2;
+			this.kind = Arrays.copyOf(this.kind, size);
+			this.dst = Arrays.copyOf(this.dst, size);
+			this.start = Arrays.copyOf(this.start, size);
+			this.end = Arrays.copyOf(this.end, size);
+			this.bias = Arrays.copyOf(this.bias, size);
+			this.function = Arrays.copyOf(this.function, size);
+		}
+
+		int e = numberOfEvaluations++;
+		this.kind[e] = kind;
+		this.dst[e] = dst;
+		this.start[e] = start;
+		this.end[e] = end;
+		this.bias[e] = bias;
+		this.function[e] = function;
+		return e;
+	}
+
+	private void addOperand(int src, double weight) {
+		if (numberOfOperands == this.src.length) {
+			this.src = Arrays.copyOf(this.src, numberOfOperands * 2);
+			this.weight = Arrays.copyOf(this.weight, numberOfOperands * 2);
+		}
+		this.src[numberOfOperands] = src;
+		this.weight[numberOfOperands++] = weight;
+	}
+
+	/**
+	 * Follows the same recursion as NEATNeuralNet.neuronOutput, emitting the
+	 * evaluations instead of performing them.
+	 */
+	private class Compiler {
+
+		private HashMap<NEATNeuron, Integer> slots;
+		//does the neuron depend on a recurrent source (0 unknown, 1 no, 2 yes)
+		private int[] recurrent;
+		//evaluation of the neurons that do not, once emitted
+		private int[] evaluation;
+		private boolean[] evaluating;
+
+		public Compiler(NEATNeuron[] neurons, HashMap<NEATNeuron, Integer> slots) {
+			this.slots = slots;
+			recurrent = new int[neurons.length];
+			evaluation = new int[neurons.length];
+			evaluating = new boolean[neurons.length];
+			Arrays.fill(evaluation, -1);
+		}
+
+		public int evaluate(NEATNeuron neuron) {
+			int slot = slots.get(neuron);
+
+			if (evaluation[slot] >= 0)
+				return evaluation[slot];
+
+			if (neuron.neuronType() == NEATNodeGene.INPUT)
+				return evaluation[slot] = addEvaluation(INPUT, slot, neuron.id() - 1, 0, 0, null);
+
+			NEATNeuron[] sourceNodes = neuron.sourceNeurons();
+
+			if (sourceNodes.length == 0)
+				return evaluation[slot] = addEvaluation(NO_SOURCES, slot, 0, 0, 0, null);
+
+			if (evaluating[slot])
+				throw new IllegalStateException("Neuron " + neuron.id() + " depends on itself");
+			evaluating[slot] = true;
+
+			//the sources are evaluated first, then the operands are added
+			//contiguously
+			int[] sources = new int[sourceNodes.length];
+			boolean dependsOnRecurrent = false;
+
+			for (int i = 0; i < sourceNodes.length; i++) {
+				if (neuron.id() == sourceNodes[i].id()) {
+					// Self Recurrent
+					sources[i] = -slot - 1;
+					dependsOnRecurrent = true;
+				} else if (neuron.neuronDepth() > sourceNodes[i].neuronDepth()) {
+					// Recurrent: the source may be evaluated again by the
+					// following sources, so its activation is read now
+					sources[i] = addEvaluation(READ, -1, slots.get(sourceNodes[i]), 0, 0, null);
+					dependsOnRecurrent = true;
+				} else {
+					sources[i] = evaluate(sourceNodes[i]);
+					dependsOnRecurrent |= recurrent[slots.get(sourceNodes[i])] == 2;
+				}
+			}
+
+			evaluating[slot] = false;
+
+			int operandsStart = numberOfOperands;
+			for (int i = 0; i < sources.length; i++) {
+				if (neuron.incomingSynapses()[i].isEnabled())
+					addOperand(sources[i], neuron.incomingSynapses()[i].getWeight());
+			}
+
+			int e = addEvaluation(SUM, slot, operandsStart, numberOfOperands, neuron.bias(), neuron.function());
+
+			recurrent[slot] = dependsOnRecurrent ? 2 : 1;
+			if (!dependsOnRecurrent)
+				evaluation[slot] = e;
+
+			return e;
+		}
+	}
+}
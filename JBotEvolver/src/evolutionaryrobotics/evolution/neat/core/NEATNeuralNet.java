@@ -10,8 +10,6 @@ import java.util.Collection;
 
 import evolutionaryrobotics.evolution.neat.data.core.NetworkInput;
 import evolutionaryrobotics.evolution.neat.data.core.NetworkOutputSet;
-import evolutionaryrobotics.evolution.neat.ga.core.Chromosome;
-import evolutionaryrobotics.evolution.neat.ga.core.Gene;
 import evolutionaryrobotics.evolution.neat.nn.core.ActivationFunction;
 import evolutionaryrobotics.evolution.neat.nn.core.NeuralNet;
 import evolutionaryrobotics.evolution.neat.nn.core.NeuralNetDescriptor;
@@ -110,27 +108,12 @@ public class NEATNeuralNet implements NeuralNet {
 	 */
 	public void updateNetStructure() {
 		// use descriptor's chromo to create net 
-		Chromosome netStructure = this.descriptor.neatStructure();
-		ArrayList nodes = new ArrayList();
-		ArrayList links = new ArrayList();
-		ArrayList<NEATFeatureGene> features = new ArrayList<NEATFeatureGene>();
-		Gene[] genes = netStructure.genes();
+		// the neurons and links are read from the packed genes
+		NEATGenome genome = ((NEATChromosome)this.descriptor.neatStructure()).genome();
+		int feature = 0;
 		int i;
 		
-		for (i = 0; i < netStructure.size(); i++) {
-			if (genes[i] instanceof NEATNodeGene) {					
-				nodes.add(genes[i]);
-			} else if (genes[i] instanceof NEATLinkGene) {	
-				if (((NEATLinkGene)genes[i]).isEnabled()) {
-					// only add enabled links to the net structure
-					links.add(genes[i]);
-				}
-			} else if (genes[i] instanceof NEATFeatureGene) {	
-				features.add((NEATFeatureGene)genes[i]);
-			}
-		}
-		
-		this.connections = this.createLinks(links, this.createNeurons(nodes));
+		this.connections = this.createLinks(genome, this.createNeurons(genome));
                 
         ArrayList<NEATNeuron> outputNeuronsList = new ArrayList<NEATNeuron>();
 		for (i = 0; i < this.neurons.length; i++) {
@@ -142,8 +125,13 @@ public class NEATNeuralNet implements NeuralNet {
         outputNeuronsList.toArray(this.outputNeurons);
 		this.assignNeuronDepth(outputNeurons, 0);
 		
-		this.featureGenes = new NEATFeatureGene[features.size()];
-		features.toArray(featureGenes);
+		this.featureGenes = new NEATFeatureGene[genome.getNumberOfFeatures()];
+		for (i = 0; i < genome.size(); i++) {
+			if (genome.kind(i) == NEATGenome.FEATURE) {
+				this.featureGenes[feature] = new NEATFeatureGene(genome.innovationNumber(i), genome.featureValue(feature));
+				feature++;
+			}
+		}
 	}
 	
 	private void assignNeuronDepth(NEATNeuron[] neurons, int depth) {
@@ -167,27 +155,25 @@ public class NEATNeuralNet implements NeuralNet {
 		}
 	}
 	
-	private NEATNeuron[] createNeurons(ArrayList nodes) {
-		this.neurons = new NEATNeuron[nodes.size()];
-		NEATNodeGene gene;
+	private NEATNeuron[] createNeurons(NEATGenome genome) {
+		this.neurons = new NEATNeuron[genome.getNumberOfNodes()];
 		int i;
 		
 		for (i = 0; i < neurons.length; i++) {
-			gene = (NEATNodeGene)nodes.get(i);
-			this.neurons[i] = new NEATNeuron(this.createActivationFunction(gene), gene.id(), gene.getType());
-			this.neurons[i].modifyBias(gene.bias(), 0, true);
+			this.neurons[i] = new NEATNeuron(this.createActivationFunction(genome.nodeType(i), genome.sigmoidFactor(i)), genome.nodeId(i), genome.nodeType(i));
+			this.neurons[i].modifyBias(genome.bias(i), 0, true);
 		}
 
 		return (neurons);
 	}
 	
-	private ActivationFunction createActivationFunction(NEATNodeGene gene) {
+	private ActivationFunction createActivationFunction(int type, double sigmoidFactor) {
 		ActivationFunction function = null;
 		// inputs are passed through
-		if (gene.getType() == NEATNodeGene.INPUT) {
+		if (type == NEATNodeGene.INPUT) {
 			function = new LinearFunction();
-		} else if (gene.getType() == NEATNodeGene.OUTPUT){
-			function = new SigmoidFunction(gene.sigmoidFactor());
+		} else if (type == NEATNodeGene.OUTPUT){
+			function = new SigmoidFunction(sigmoidFactor);
 		} else {
 			function = new TanhFunction();
 		}
@@ -195,21 +181,30 @@ public class NEATNeuralNet implements NeuralNet {
 		return (function);		
 	}
 	
-	private Synapse[] createLinks(ArrayList links, NEATNeuron[] neurons) {
-		NEATLinkGene gene;
-		Synapse[] synapses = new Synapse[links.size()];
+	private Synapse[] createLinks(NEATGenome genome, NEATNeuron[] neurons) {
+		Synapse[] synapses;
+		int count = 0;
 		int i;
 		NEATNeuron from;
 		NEATNeuron to;
 		
-		for (i = 0; i < links.size(); i++) {
-			gene = (NEATLinkGene)links.get(i);
-			from = this.findNeuronById(neurons, gene.getFromId());
-			to = this.findNeuronById(neurons, gene.getToId());
-			to.addSourceNeuron(from);
-			synapses[i] = new Synapse(from, to, gene.getWeight());
-			synapses[i].setEnabled(gene.isEnabled());
-			to.addIncomingSynapse(synapses[i]);
+		for (i = 0; i < genome.getNumberOfLinks(); i++) {
+			if (genome.isEnabled(i)) {
+				count++;
+			}
+		}
+		synapses = new Synapse[count];
+		count = 0;
+		for (i = 0; i < genome.getNumberOfLinks(); i++) {
+			// only add enabled links to the net structure
+			if (genome.isEnabled(i)) {
+				from = this.findNeuronById(neurons, genome.fromId(i));
+				to = this.findNeuronById(neurons, genome.toId(i));
+				to.addSourceNeuron(from);
+				synapses[count] = new Synapse(from, to, genome.weight(i));
+				synapses[count].setEnabled(true);
+				to.addIncomingSynapse(synapses[count++]);
+			}
 		}
 		
 		return (synapses);
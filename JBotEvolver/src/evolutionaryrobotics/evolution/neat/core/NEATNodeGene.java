@@ -64,9 +64,17 @@ public class NEATNodeGene implements NEATGene {
 		return (this.innovationNumber);
 	}
 	
+	void setInnovationNumber(int innovationNumber) {
+		this.innovationNumber = innovationNumber;
+	}
+	
 	public int id() {
 		return (this.id);
 	}
+	
+	void setId(int id) {
+		this.id = id;
+	}
 
 	public double sigmoidFactor() {
 		return (this.sigmoidFactor);
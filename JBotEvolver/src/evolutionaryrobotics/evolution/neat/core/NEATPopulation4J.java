@@ -8,7 +8,6 @@ package evolutionaryrobotics.evolution.neat.core;
 import java.io.Serializable;
 
 import evolutionaryrobotics.evolution.neat.ga.core.Chromosome;
-import evolutionaryrobotics.evolution.neat.ga.core.Gene;
 import evolutionaryrobotics.evolution.neat.ga.core.Population;
 import evolutionaryrobotics.evolution.neat.ga.core.Species;
 import evolutionaryrobotics.evolution.neat.utils.MathUtils;
@@ -68,26 +67,25 @@ public class NEATPopulation4J implements Population, Serializable {
 	
 	private Chromosome individualFromTemplate(Chromosome template) {
 		int i;
-		Gene[] templateGenes = template.genes();
-		Gene[] individualGenes = new Gene[templateGenes.length]; 
-		NEATNodeGene nodeGene;
-		NEATLinkGene linkGene;
-		NEATFeatureGene featureGene;
+		NEATGenome templateGenes = ((NEATChromosome)template).genome();
+		NEATGenome.Builder individualGenes = new NEATGenome.Builder(templateGenes.size());
+		int node = 0;
+		int link = 0;
 		
-		for (i = 0; i < templateGenes.length; i++) {
-			if (templateGenes[i] instanceof NEATNodeGene) {
-				nodeGene = (NEATNodeGene)templateGenes[i];
-				individualGenes[i] = new NEATNodeGene(nodeGene.getInnovationNumber(), nodeGene.id(), MathUtils.nextPlusMinusOne(), nodeGene.getType(), MathUtils.nextDouble());				
-			} else if (templateGenes[i] instanceof NEATLinkGene) {
-				linkGene = (NEATLinkGene)templateGenes[i];
-				individualGenes[i] = new NEATLinkGene(linkGene.getInnovationNumber(), true, linkGene.getFromId(), linkGene.getToId(), MathUtils.nextPlusMinusOne());
-			} else if (templateGenes[i] instanceof NEATFeatureGene) {
-				featureGene = (NEATFeatureGene)templateGenes[i];
-				individualGenes[i] = new NEATFeatureGene(featureGene.getInnovationNumber(), MathUtils.nextDouble());
+		for (i = 0; i < templateGenes.size(); i++) {
+			if (templateGenes.kind(i) == NEATGenome.NODE) {
+				double sigmoidFactor = MathUtils.nextPlusMinusOne();
+				individualGenes.addNode(templateGenes.innovationNumber(i), templateGenes.nodeId(node), templateGenes.nodeType(node), sigmoidFactor, MathUtils.nextDouble());
+				node++;
+			} else if (templateGenes.kind(i) == NEATGenome.LINK) {
+				individualGenes.addLink(templateGenes.innovationNumber(i), templateGenes.fromId(link), templateGenes.toId(link), MathUtils.nextPlusMinusOne(), true);
+				link++;
+			} else {
+				individualGenes.addFeature(templateGenes.innovationNumber(i), MathUtils.nextDouble());
 			}
 		}
 
-		return (new NEATChromosome(individualGenes));
+		return (new NEATChromosome(individualGenes.build()));
 	}
 
 	/** 
@@ -31,6 +31,7 @@ public class NEATSpecie extends Specie {
     private int youthThreshold;
     private double fitnessMultiplier = 1;
     private boolean copyBest;
+    private transient CompatibilityScores compatibilityScores;
     
     public NEATSpecie(double threshold, double excessCoeff, double disjointCoeff, double weightCoeff, int id, boolean copyBest) {
         super(threshold, id);
@@ -51,6 +52,14 @@ public class NEATSpecie extends Specie {
         return (addedOk);
     }
 
+    /**
+     * @param compatibilityScores The scores computed in parallel while the
+     * population is speciated, or null to compute each score when needed
+     */
+    void setCompatibilityScores(CompatibilityScores compatibilityScores) {
+        this.compatibilityScores = compatibilityScores;
+    }
+
     /**
      * @param agePenalty The agePenalty to set.
      */
@@ -111,7 +120,11 @@ public class NEATSpecie extends Specie {
         if (specieRepresentative == null) {
             compatable = true;
         } else {
-            compatabilityScore = NEATSpecieManager.compatibilityScore(specieApplicant, specieRepresentative, this.excessCoeff, this.disjointCoeff, this.weightCoeff);
+            if (this.compatibilityScores != null) {
+                compatabilityScore = this.compatibilityScores.compatibilityScore(specieApplicant, specieRepresentative, this.excessCoeff, this.disjointCoeff, this.weightCoeff);
+            } else {
+                compatabilityScore = NEATSpecieManager.compatibilityScore(specieApplicant, specieRepresentative, this.excessCoeff, this.disjointCoeff, this.weightCoeff);
+            }
             //cat.debug("compatabilityScore:" + compatabilityScore);
             compatable = compatabilityScore < this.specieThreshold();
         }
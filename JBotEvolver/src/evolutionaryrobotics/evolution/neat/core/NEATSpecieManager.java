@@ -6,7 +6,6 @@
 package evolutionaryrobotics.evolution.neat.core;
 
 import evolutionaryrobotics.evolution.neat.ga.core.Chromosome;
-import evolutionaryrobotics.evolution.neat.ga.core.Gene;
 
 /**
  * @author MSimmerson
@@ -16,43 +15,49 @@ import evolutionaryrobotics.evolution.neat.ga.core.Gene;
 public class NEATSpecieManager {
 	
 	public static double compatibilityScore(Chromosome specieApplicant, Chromosome specieRepresentative, double excessCoeff, double disjointCoeff, double weightCoeff) {
+		NEATChromosome applicant = (NEATChromosome) specieApplicant;
+		NEATChromosome representative = (NEATChromosome) specieRepresentative;
+		
+		return (compatibilityScore(applicant.innovationNumbers(), applicant.linkWeights(), representative.innovationNumbers(), representative.linkWeights(), excessCoeff, disjointCoeff, weightCoeff));
+	}
+	
+	/**
+	 * Compares the genes of two chromosomes by their innovation numbers and
+	 * link weights (see {@link NEATChromosome#innovationNumbers()}).
+	 */
+	public static double compatibilityScore(int[] applicantInnovations, double[] applicantWeights, int[] repInnovations, double[] repWeights, double excessCoeff, double disjointCoeff, double weightCoeff) {
 		int disjoints = 0;
 		int excess = 0;
-		boolean genesToProcess = true;
 		int applicantIdx = 0;
 		boolean applicantIdxEnded = false;
 		int repIdx = 0;
 		boolean repIdxEnded = false;
 		double avWeightDiff = 0;
 		double weightDiffTotal = 0;
-		int N;
-		double compatabilityScore = Integer.MAX_VALUE;
-		Gene[] applicantGenes;
-		Gene[] repGenes;
+		int applicantLength = applicantInnovations.length;
+		int repLength = repInnovations.length;
+		int N = applicantLength > repLength ? applicantLength : repLength;
 		
-		applicantGenes = specieApplicant.genes();
-		repGenes = specieRepresentative.genes();
-		N = specieApplicant.size() > specieRepresentative.size() ? specieApplicant.size() : specieRepresentative.size();
-		while (genesToProcess) {
+		while (true) {
 			// find disjoints and excess
-                    
-			if (((NEATGene)applicantGenes[applicantIdx]).getInnovationNumber() == ((NEATGene)repGenes[repIdx]).getInnovationNumber()) {
-				// find average weight diff
-				if (applicantGenes[applicantIdx] instanceof NEATLinkGene) {
-					weightDiffTotal += Math.abs(((NEATLinkGene)applicantGenes[applicantIdx]).getWeight() - ((NEATLinkGene)repGenes[repIdx]).getWeight());
-				}
+			int applicantInnovation = applicantInnovations[applicantIdx];
+			int repInnovation = repInnovations[repIdx];
+			
+			if (applicantInnovation == repInnovation) {
+				// find average weight diff, the weight of the other genes is 0
+				weightDiffTotal += Math.abs(applicantWeights[applicantIdx] - repWeights[repIdx]);
 				applicantIdx++;
 				repIdx++;
-			} else if (((NEATGene)applicantGenes[applicantIdx]).getInnovationNumber() > ((NEATGene)repGenes[repIdx]).getInnovationNumber()) {
-				if (repIdx < repGenes.length && !repIdxEnded) {
+			} else if (applicantInnovation > repInnovation) {
+				if (!repIdxEnded) {
 					repIdx++;
 					disjoints++;
 				} else {
 					applicantIdx++;
 					excess++;
 				}
-			} else if (((NEATGene)applicantGenes[applicantIdx]).getInnovationNumber() < ((NEATGene)repGenes[repIdx]).getInnovationNumber()) {
-				if (applicantIdx < applicantGenes.length && !applicantIdxEnded) {
+			} else {
+				if (!applicantIdxEnded) {
 					applicantIdx++;
 					disjoints++;
 				} else {
@@ -60,23 +65,22 @@ public class NEATSpecieManager {
 					excess++;
 				}
 			}
-						
+			
 			if (applicantIdx == N || repIdx == N) {
-				genesToProcess = false;
+				break;
 			}
 
 			// ensure we don't go out of range
-			if (applicantIdx == applicantGenes.length) {
-				applicantIdx %= applicantGenes.length;
+			if (applicantIdx == applicantLength) {
+				applicantIdx = 0;
 				applicantIdxEnded = true;
-			} else if (repIdx == repGenes.length) {
-				repIdx %= repGenes.length;
+			} else if (repIdx == repLength) {
+				repIdx = 0;
 				repIdxEnded = true;
 			}
 		}
 		avWeightDiff = N == disjoints + excess ? 0 : weightDiffTotal / (N - disjoints - excess);
-		compatabilityScore = ((excessCoeff * excess) / N) + ((disjointCoeff * disjoints) / N) + weightCoeff * avWeightDiff;
 		
-		return (compatabilityScore);
+		return (((excessCoeff * excess) / N) + ((disjointCoeff * disjoints) / N) + weightCoeff * avWeightDiff);
 	}
 }
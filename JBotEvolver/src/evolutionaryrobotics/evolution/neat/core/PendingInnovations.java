@@ -0,0 +1,156 @@
+package evolutionaryrobotics.evolution.neat.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import evolutionaryrobotics.evolution.neat.ga.core.Chromosome;
+
+/**
+ * The innovations of the offspring of one specie, while the species
+ * reproduce on different threads. The innovations already in the database
+ * are looked up without changing it, and the new ones are kept here with
+ * provisional (negative) innovation and node numbers, so that the species
+ * can reproduce in any order. They are then merged into the database one
+ * specie at a time, in the order of the species, and the genes of the
+ * offspring are given their final numbers, so the result does not depend on
+ * the number of threads.
+ *
+ * @see NEATGeneticAlgorithm
+ */
+class PendingInnovations extends InnovationDatabase {
+
+    private static final long serialVersionUID = 1L;
+    private final InnovationDatabase database;
+    private final HashMap<Long, NEATInnovation> links = new HashMap<Long, NEATInnovation>();
+    private final HashMap<Integer, NEATNodeInnovation> nodes = new HashMap<Integer, NEATNodeInnovation>();
+    // the new innovations, in the order they were created
+    private final ArrayList<NEATInnovation> pending = new ArrayList<NEATInnovation>();
+    private int pendingNodes = 0;
+    private int pendingHits = 0;
+
+    PendingInnovations(InnovationDatabase database) {
+        this.database = database;
+    }
+
+    @Override
+    int linkInnovation(int fromId, int toId) {
+        NEATInnovation pendingEntry;
+        Long key = Long.valueOf(((long) fromId << 32) | (toId & 0xFFFFFFFFL));
+
+        if (fromId > 0 && toId > 0) {
+            int innovationId = this.database.findLinkInnovation(fromId, toId);
+            if (innovationId != 0) {
+                this.pendingHits++;
+                return (innovationId);
+            }
+        }
+
+        pendingEntry = this.links.get(key);
+        if (pendingEntry == null) {
+            pendingEntry = new NEATLinkInnovation(fromId, toId);
+            pendingEntry.setInnovationId(-(this.pending.size() + 1));
+            this.pending.add(pendingEntry);
+            this.links.put(key, pendingEntry);
+        } else {
+            this.pendingHits++;
+        }
+
+        return (pendingEntry.innovationId());
+    }
+
+    @Override
+    long nodeInnovation(int linkInnovationId) {
+        NEATNodeInnovation pendingEntry;
+
+        if (linkInnovationId > 0) {
+            long databaseEntry = this.database.findNodeInnovation(linkInnovationId);
+            if (databaseEntry != 0) {
+                this.pendingHits++;
+                return (databaseEntry);
+            }
+        }
+
+        pendingEntry = this.nodes.get(linkInnovationId);
+        if (pendingEntry == null) {
+            pendingEntry = new NEATNodeInnovation(linkInnovationId);
+            pendingEntry.setInnovationId(-(this.pending.size() + 1));
+            pendingEntry.setNodeId(-(++this.pendingNodes));
+            this.pending.add(pendingEntry);
+            this.nodes.put(linkInnovationId, pendingEntry);
+        } else {
+            this.pendingHits++;
+        }
+
+        return (entry(pendingEntry.getNodeId(), pendingEntry.innovationId()));
+    }
+
+    /**
+     * Adds the new innovations to the database, in the order they were
+     * created, and replaces the provisional numbers in the genes of the
+     * offspring.
+     *
+     * @param offspring - the chromosomes created with these innovations
+     */
+    void merge(Chromosome[] offspring) {
+        int[] innovationIds = new int[this.pending.size()];
+        int[] nodeIds = new int[this.pendingNodes];
+        NEATInnovation innovation;
+        long nodeInnovation;
+        int i;
+
+        for (i = 0; i < innovationIds.length; i++) {
+            innovation = this.pending.get(i);
+            if (innovation instanceof NEATLinkInnovation) {
+                innovationIds[i] = this.database.linkInnovation(
+                        resolve(((NEATLinkInnovation) innovation).getFromId(), nodeIds),
+                        resolve(((NEATLinkInnovation) innovation).getToId(), nodeIds));
+            } else {
+                nodeInnovation = this.database.nodeInnovation(resolve(((NEATNodeInnovation) innovation).getLinkInnovationId(), innovationIds));
+                innovationIds[i] = innovationId(nodeInnovation);
+                nodeIds[-((NEATNodeInnovation) innovation).getNodeId() - 1] = nodeId(nodeInnovation);
+            }
+        }
+        this.database.addHits(this.pendingHits);
+
+        if (innovationIds.length > 0) {
+            for (i = 0; i < offspring.length; i++) {
+                if (offspring[i] != null) {
+                    this.updateGenes(offspring[i], innovationIds, nodeIds);
+                }
+            }
+        }
+    }
+
+    private void updateGenes(Chromosome chromosome, int[] innovationIds, int[] nodeIds) {
+        NEATGenome genome = ((NEATChromosome) chromosome).genome();
+        int[] innovations = genome.innovationNumbers().clone();
+        int[] ids = new int[genome.getNumberOfNodes()];
+        int[] fromIds = new int[genome.getNumberOfLinks()];
+        int[] toIds = new int[genome.getNumberOfLinks()];
+        boolean updated = false;
+        int i;
+
+        for (i = 0; i < innovations.length; i++) {
+            if (innovations[i] < 0) {
+                innovations[i] = resolve(innovations[i], innovationIds);
+                updated = true;
+            }
+        }
+        for (i = 0; i < ids.length; i++) {
+            ids[i] = resolve(genome.nodeId(i), nodeIds);
+        }
+        for (i = 0; i < fromIds.length; i++) {
+            fromIds[i] = resolve(genome.fromId(i), nodeIds);
+            toIds[i] = resolve(genome.toId(i), nodeIds);
+        }
+
+        // the genome of the offspring is replaced, as it may be shared
+        if (updated) {
+            ((NEATChromosome) chromosome).setGenome(new NEATGenome(genome, innovations, ids, fromIds, toIds));
+        }
+    }
+
+    private static int resolve(int id, int[] ids) {
+        return (id < 0 ? ids[-id - 1] : id);
+    }
+}
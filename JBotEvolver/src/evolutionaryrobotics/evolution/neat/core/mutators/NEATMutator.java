@@ -5,16 +5,14 @@
  */
 package evolutionaryrobotics.evolution.neat.core.mutators;
 
-import java.util.ArrayList;
-import java.util.Random;
+import java.util.Arrays;
 
 import evolutionaryrobotics.evolution.neat.core.InnovationDatabase;
 import evolutionaryrobotics.evolution.neat.core.NEATChromosome;
-import evolutionaryrobotics.evolution.neat.core.NEATFeatureGene;
+import evolutionaryrobotics.evolution.neat.core.NEATGenome;
 import evolutionaryrobotics.evolution.neat.core.NEATLinkGene;
 import evolutionaryrobotics.evolution.neat.core.NEATNodeGene;
 import evolutionaryrobotics.evolution.neat.ga.core.Chromosome;
-import evolutionaryrobotics.evolution.neat.ga.core.Gene;
 import evolutionaryrobotics.evolution.neat.ga.core.Mutator;
 import evolutionaryrobotics.evolution.neat.utils.MathUtils;
 
@@ -22,6 +20,9 @@ import evolutionaryrobotics.evolution.neat.utils.MathUtils;
  * @author MSimmerson
  *
  * Performs all Link and node mutations
+ *
+ * The mutations read the packed genome of the mutatee and build the genome
+ * of the mutated chromosome, without creating gene objects.
  */
 public class NEATMutator implements Mutator {
 
@@ -37,10 +38,6 @@ public class NEATMutator implements Mutator {
     private double biasPerturb = 0.1;
     private InnovationDatabase db;
     private static final int MAX_LINK_ATTEMPTS = 5;
-    private final Random linkRand = new Random();
-    private final Random nodeRand = new Random(linkRand.nextLong());
-    private final Random perturbRand = new Random(linkRand.nextLong());
-    private final Random disableRand = new Random(linkRand.nextLong());
 
     public NEATMutator() {
     }
@@ -55,6 +52,29 @@ public class NEATMutator implements Mutator {
         this.db = db;
     }
 
+    /**
+     * Creates a mutator with the same probabilities that submits its
+     * innovations to another database. The random numbers are drawn from
+     * {@link MathUtils#random()}, so mutators used by different threads can
+     * each be given a generator.
+     *
+     * @param db - the database of the copy
+     * @return the copy
+     */
+    public NEATMutator copy(InnovationDatabase db) {
+        NEATMutator copy = new NEATMutator(this.pAddNode, this.pAddLink, this.pToggle);
+        copy.pPerturb = this.pPerturb;
+        copy.pWeightReplaced = this.pWeightReplaced;
+        copy.pMutateBias = this.pMutateBias;
+        copy.featureSelection = this.featureSelection;
+        copy.recurrencyAllowed = this.recurrencyAllowed;
+        copy.perturb = this.perturb;
+        copy.biasPerturb = this.biasPerturb;
+        copy.db = db;
+
+        return (copy);
+    }
+
     public void setRecurrencyAllowed(boolean allowed) {
         this.recurrencyAllowed = allowed;
     }
@@ -73,106 +93,100 @@ public class NEATMutator implements Mutator {
      */
     @Override
 	public Chromosome mutate(Chromosome mutatee) {
-        Gene[] genes = mutatee.genes();
-        int originalSize = genes.length;
+        NEATGenome genome = ((NEATChromosome) mutatee).genome();
+        NEATGenome.Builder perturbed = new NEATGenome.Builder(genome.size() + 3);
+        int originalSize = genome.size();
         NEATChromosome mutated;
+        int node = 0;
+        int link = 0;
+        int feature = 0;
         int i;
-        for (i = 0; i < genes.length; i++) {
-            if (genes[i] instanceof NEATLinkGene) {
-                genes[i] = this.mutateLink((NEATLinkGene) genes[i]);
-            } else if (genes[i] instanceof NEATNodeGene) {
-                genes[i] = this.mutateNode((NEATNodeGene) genes[i]);
-            } else if (genes[i] instanceof NEATFeatureGene) {
-                genes[i] = this.mutateFeature((NEATFeatureGene) genes[i]);
+
+        for (i = 0; i < genome.size(); i++) {
+            if (genome.kind(i) == NEATGenome.LINK) {
+                this.mutateLink(genome, i, link++, perturbed);
+            } else if (genome.kind(i) == NEATGenome.NODE) {
+                this.mutateNode(genome, i, node++, perturbed);
+            } else {
+                this.mutateFeature(genome, i, feature++, perturbed);
             }
         }
-        mutated = new NEATChromosome(genes);
-        mutated.setSpecieId(((NEATChromosome) mutatee).getSpecieId());
-        this.mutateAddLink(mutated);
-        this.mutateAddNode(mutated);
+        genome = perturbed.build();
+        genome = this.mutateAddLink(genome);
+        genome = this.mutateAddNode(genome);
 
         // now update chrome for depth and recurrency legality
-        this.updateDepthInfo(mutated);
-        mutated.updateChromosome(this.ensureLegalLinks(mutated.genes()));
+        genome = this.ensureLegalLinks(genome);
+        mutated = new NEATChromosome(genome);
+        mutated.setSpecieId(((NEATChromosome) mutatee).getSpecieId());
 
-        if (mutated.genes().length < originalSize) {
-            System.out.println("Mutation -- Original: " + originalSize + " new: " + mutated.genes().length);
+        if (genome.size() < originalSize) {
+            System.out.println("Mutation -- Original: " + originalSize + " new: " + genome.size());
         }
 
         return (mutated);
     }
 
-    private Gene mutateFeature(NEATFeatureGene mutatee) {
-        double perturbRandVal = perturbRand.nextDouble();
-        Gene mutated = mutatee;
+    private void mutateFeature(NEATGenome mutatee, int gene, int feature, NEATGenome.Builder mutated) {
+        double perturbRandVal = MathUtils.random().nextDouble();
+        double value = mutatee.featureValue(feature);
+
         if (perturbRandVal < this.pPerturb) {
-            mutated = new NEATFeatureGene(mutatee.getInnovationNumber(), mutatee.geneAsNumber().doubleValue() + MathUtils.nextClampedDouble(-perturb, perturb));
+            value = value + MathUtils.nextClampedDouble(-perturb, perturb);
         }
 
-        return (mutated);
+        mutated.addFeature(mutatee.innovationNumber(gene), value);
     }
 
-    private Gene mutateLink(NEATLinkGene mutatee) {
-        double perturbRandVal = perturbRand.nextDouble();
-        double disableRandVal = disableRand.nextDouble();
-        double newWeight;
-        NEATLinkGene mutated = mutatee;
+    private void mutateLink(NEATGenome mutatee, int gene, int link, NEATGenome.Builder mutated) {
+        double perturbRandVal = MathUtils.random().nextDouble();
+        double disableRandVal = MathUtils.random().nextDouble();
+        double newWeight = mutatee.weight(link);
+        boolean enabled = mutatee.isEnabled(link);
 
         if (perturbRandVal < this.pPerturb) {
-            if (this.pWeightReplaced > perturbRand.nextDouble()) {
+            if (this.pWeightReplaced > MathUtils.random().nextDouble()) {
                 newWeight = MathUtils.nextPlusMinusOne();
             } else {
-                newWeight = mutatee.getWeight() + MathUtils.nextClampedDouble(-perturb, perturb);
+                newWeight = mutatee.weight(link) + MathUtils.nextClampedDouble(-perturb, perturb);
             }
-//			newWeight = mutatee.getWeight() + MathUtils.nextClampedDouble(-PERTURB, PERTURB);				
-            mutated = new NEATLinkGene(mutatee.getInnovationNumber(),
-                    mutatee.isEnabled(),
-                    mutatee.getFromId(),
-                    mutatee.getToId(),
-                    newWeight);
         }
 
         if (disableRandVal < this.pToggle) {
             if (this.featureSelection) {
-                mutated.setEnabled(!mutated.isEnabled());
+                enabled = !enabled;
             }
         }
 
-        return (mutated);
+        mutated.addLink(mutatee.innovationNumber(gene), mutatee.fromId(link), mutatee.toId(link), newWeight, enabled);
     }
 
-    private Gene mutateNode(NEATNodeGene mutatee) {
-        double perturbRandVal = perturbRand.nextDouble();
-        double mutateBias = perturbRand.nextDouble();
-        NEATNodeGene mutated = mutatee;
-        double newSF = mutatee.sigmoidFactor();
-        double newBias = mutatee.bias();
+    private void mutateNode(NEATGenome mutatee, int gene, int node, NEATGenome.Builder mutated) {
+        double perturbRandVal = MathUtils.random().nextDouble();
+        double mutateBias = MathUtils.random().nextDouble();
+        double newSF = mutatee.sigmoidFactor(node);
+        double newBias = mutatee.bias(node);
 
         if (perturbRandVal < this.pPerturb) {
-            newSF = mutatee.sigmoidFactor() + MathUtils.nextClampedDouble(-perturb, perturb);
-            mutated = new NEATNodeGene(mutated.getInnovationNumber(), mutated.id(), newSF, mutated.getType(), mutated.bias());
+            newSF = mutatee.sigmoidFactor(node) + MathUtils.nextClampedDouble(-perturb, perturb);
         }
 
         if (mutateBias < this.pMutateBias) {
             newBias += MathUtils.nextClampedDouble(-biasPerturb, biasPerturb);
-            mutated = new NEATNodeGene(mutated.getInnovationNumber(), mutated.id(), mutated.sigmoidFactor(), mutated.getType(), newBias);
         }
 
-        return (mutated);
+        mutated.addNode(mutatee.innovationNumber(gene), mutatee.nodeId(node), mutatee.nodeType(node), newSF, newBias);
     }
 
-    private boolean linkIllegal(NEATNodeGene from, NEATNodeGene to, ArrayList links) {
+    private boolean linkIllegal(NEATGenome genome, int from, int to) {
         boolean illegal = false;
         int idx = 0;
-        NEATLinkGene linkGene;
 
-        if ((to.getType() == NEATNodeGene.INPUT)) {
+        if ((genome.nodeType(to) == NEATNodeGene.INPUT)) {
             illegal = true;
         } else {
-            while (!illegal && (idx < links.size())) {
-                linkGene = (NEATLinkGene) links.get(idx);
-//				if ((linkGene.getFromId() == from.id() && linkGene.getToId() == to.id()) || ((to.getDepth() <= from.getDepth()) && !this.recurrencyAllowed)) {
-                if ((linkGene.getFromId() == from.id() && linkGene.getToId() == to.id())) {
+            while (!illegal && (idx < genome.getNumberOfLinks())) {
+                if ((genome.fromId(idx) == genome.nodeId(from) && genome.toId(idx) == genome.nodeId(to))) {
                     illegal = true;
                 }
                 idx++;
@@ -182,181 +196,190 @@ public class NEATMutator implements Mutator {
         return (illegal);
     }
 
-    private void mutateAddLink(Chromosome mutatee) {
-        double linkRandVal = linkRand.nextDouble();
-        NEATNodeGene from;
-        NEATNodeGene to;
-        int rIdx;
+    private NEATGenome mutateAddLink(NEATGenome mutatee) {
+        double linkRandVal = MathUtils.random().nextDouble();
+        NEATGenome.Builder genes;
+        NEATLinkGene newLink = null;
+        int from;
+        int to;
         int i = 0;
-        ArrayList links;
-        ArrayList nodes;
-        Gene[] genes = new Gene[mutatee.size() + 1];
-        System.arraycopy(mutatee.genes(), 0, genes, 0, mutatee.genes().length);
-        Gene newLink = null;
 
         if (linkRandVal < this.pAddLink) {
-            nodes = this.candidateNodes(mutatee.genes());
-            links = this.candidateLinks(mutatee.genes(), false);
             // find a new available link
             while (newLink == null && i < MAX_LINK_ATTEMPTS) {
-                rIdx = linkRand.nextInt(nodes.size());
-                from = ((NEATNodeGene) nodes.get(rIdx));
-                rIdx = linkRand.nextInt(nodes.size());
-                to = ((NEATNodeGene) nodes.get(rIdx));
-                if (!this.linkIllegal(from, to, links)) {
-                    // set it to a random value
-                    newLink = db.submitLinkInnovation(from.id(), to.id());
-                    ((NEATLinkGene) newLink).setWeight(MathUtils.nextPlusMinusOne());
-                    // add link between 2 unconnected nodes
-                    genes[genes.length - 1] = newLink;
-                    mutatee.updateChromosome(genes);
+                from = MathUtils.random().nextInt(mutatee.getNumberOfNodes());
+                to = MathUtils.random().nextInt(mutatee.getNumberOfNodes());
+                if (!this.linkIllegal(mutatee, from, to)) {
+                    newLink = db.submitLinkInnovation(mutatee.nodeId(from), mutatee.nodeId(to));
+                    // add link between 2 unconnected nodes, set to a random value
+                    genes = new NEATGenome.Builder(mutatee.size() + 1);
+                    this.copyGenes(mutatee, genes);
+                    genes.addLink(newLink.getInnovationNumber(), newLink.getFromId(), newLink.getToId(),
+                            MathUtils.nextPlusMinusOne(), true);
+                    mutatee = genes.build();
                 }
                 i++;
             }
         }
+
+        return (mutatee);
     }
 
-    private void mutateAddNode(Chromosome mutatee) {
-        double nodeRandVal = nodeRand.nextDouble();
-        ArrayList nodeLinks;
-        //ArrayList nodes;
-        NEATLinkGene chosen;
+    private NEATGenome mutateAddNode(NEATGenome mutatee) {
+        double nodeRandVal = MathUtils.random().nextDouble();
+        NEATGenome.Builder genes;
         NEATNodeGene newNode;
         NEATLinkGene newLower;
         NEATLinkGene newUpper;
-        int newChromoIdx = mutatee.genes().length;
-        //Gene[] newChromo = new Gene[newChromoIdx + 3];
-        Gene[] newChromo = new Gene[newChromoIdx + 2];
-        System.arraycopy(mutatee.genes(), 0, newChromo, 0, newChromoIdx);
-        int linkIdx;
+        int[] enabledLinks;
+        int enabledCount = 0;
+        int chosen;
+        int i;
 
         if (nodeRandVal < this.pAddNode) {
             // add a node on an existing enabled connection
             // find an existing connection to intercept
-            nodeLinks = this.candidateLinks(mutatee.genes(), true);
-            if (nodeLinks.size() > 0) {
+            enabledLinks = new int[mutatee.getNumberOfLinks()];
+            for (i = 0; i < enabledLinks.length; i++) {
+                if (mutatee.isEnabled(i)) {
+                    enabledLinks[enabledCount++] = i;
+                }
+            }
+            if (enabledCount > 0) {
                 // ensure there is a link to split
-                linkIdx = nodeRand.nextInt(nodeLinks.size());
-                chosen = (NEATLinkGene) nodeLinks.get(linkIdx);
-                // disable old link
-                chosen.setEnabled(false);
-                newNode = db.submitNodeInnovation(chosen);
-                //newNode.setBias(MathUtils.nextPlusMinusOne());
-                newLower = db.submitLinkInnovation(chosen.getFromId(), newNode.id());
-                newUpper = db.submitLinkInnovation(newNode.id(), chosen.getToId());
-                // set weights according to Stanley et al's NEAT document
-                newLower.setWeight(1);
-                newUpper.setWeight(chosen.getWeight());
-                // now update the chromosome with new node and 2 new links
-                newChromo[this.findChosenIndex(chosen, mutatee)] = newNode;
-                //newChromo[newChromoIdx++] = newNode;
-                newChromo[newChromoIdx++] = newLower;
-                newChromo[newChromoIdx] = newUpper;
-                mutatee.updateChromosome(newChromo);
+                chosen = enabledLinks[MathUtils.random().nextInt(enabledCount)];
+                newNode = db.submitNodeInnovation(mutatee.innovationNumber(this.geneOfLink(mutatee, chosen)));
+                newLower = db.submitLinkInnovation(mutatee.fromId(chosen), newNode.id());
+                newUpper = db.submitLinkInnovation(newNode.id(), mutatee.toId(chosen));
+                // now update the chromosome with new node, in place of the
+                // old link, and 2 new links, with weights set according to
+                // Stanley et al's NEAT document
+                genes = new NEATGenome.Builder(mutatee.size() + 2);
+                this.replaceLink(mutatee, chosen, newNode, genes);
+                genes.addLink(newLower.getInnovationNumber(), newLower.getFromId(), newLower.getToId(), 1, true);
+                genes.addLink(newUpper.getInnovationNumber(), newUpper.getFromId(), newUpper.getToId(),
+                        mutatee.weight(chosen), true);
+                mutatee = genes.build();
+            }
+        }
+
+        return (mutatee);
+    }
 
+    private void copyGenes(NEATGenome genome, NEATGenome.Builder genes) {
+        int[] indexes = new int[3];
+        int i;
+
+        for (i = 0; i < genome.size(); i++) {
+            genes.add(genome, i, indexes[genome.kind(i)]++);
+        }
+    }
+
+    /**
+     * Copies the genes, with the chosen link disabled and the first link
+     * between its nodes (the chosen one itself) replaced by the new node.
+     */
+    private void replaceLink(NEATGenome genome, int chosen, NEATNodeGene newNode, NEATGenome.Builder genes) {
+        int replaced = this.findChosenIndex(chosen, genome);
+        int[] indexes = new int[3];
+        int link;
+        int i;
+
+        for (i = 0; i < genome.size(); i++) {
+            if (genome.kind(i) == NEATGenome.LINK && indexes[NEATGenome.LINK] == replaced) {
+                genes.addNode(newNode.getInnovationNumber(), newNode.id(), newNode.getType(), newNode.sigmoidFactor(),
+                        newNode.bias());
+                indexes[NEATGenome.LINK]++;
+            } else if (genome.kind(i) == NEATGenome.LINK && indexes[NEATGenome.LINK] == chosen) {
+                // disable old link
+                link = indexes[NEATGenome.LINK]++;
+                genes.addLink(genome.innovationNumber(i), genome.fromId(link), genome.toId(link), genome.weight(link), false);
+            } else {
+                genes.add(genome, i, indexes[genome.kind(i)]++);
             }
         }
     }
 
-    private void updateDepthInfo(Chromosome mutated) {
-        // use descriptor's chromo to create net 
-        ArrayList nodes = new ArrayList();
-        ArrayList links = new ArrayList();
+    /**
+     * @return the depth of each node, which is 1 for the outputs and
+     * increases towards the inputs, which have the maximum depth
+     */
+    private double[] nodeDepths(NEATGenome genome) {
+        double[] depths = new double[genome.getNumberOfNodes()];
         int i;
-        Gene[] genes = mutated.genes();
-
-        for (i = 0; i < genes.length; i++) {
-            if (genes[i] instanceof NEATNodeGene) {
-                nodes.add(genes[i]);
-            } else if (genes[i] instanceof NEATLinkGene) {
-                if (((NEATLinkGene) genes[i]).isEnabled()) {
-                    // only add enabled links to the net structure
-                    links.add(genes[i]);
-                }
+
+        for (i = 0; i < depths.length; i++) {
+            if (genome.nodeType(i) == NEATNodeGene.OUTPUT) {
+                depths[i] = 1;
             }
         }
+        this.assignNeuronDepth(this.findOutputNodes(genome), 1, genome, depths);
 
-        this.assignNeuronDepth(this.findOutputNodes(this.candidateNodes(genes)), 1, mutated);
+        return (depths);
     }
 
-    private void assignNeuronDepth(Gene[] nodeGenes, int depth, Chromosome mutated) {
+    private void assignNeuronDepth(int[] nodes, int depth, NEATGenome genome, double[] depths) {
+        int node;
         int i;
-        NEATNodeGene node;
-        //ArrayList nodeGenes = this.findOutputNodes(this.candidateNodes(genes));
 
-        for (i = 0; i < nodeGenes.length; i++) {
-            node = (NEATNodeGene) nodeGenes[i];
-            if (node.getType() == NEATNodeGene.OUTPUT) {
+        for (i = 0; i < nodes.length; i++) {
+            node = nodes[i];
+            if (genome.nodeType(node) == NEATNodeGene.OUTPUT) {
                 if (depth == 1) {
-                    node.setDepth(depth);
-                    this.assignNeuronDepth(this.findSourceNodes(node.id(), mutated.genes()), depth + 1, mutated);
+                    depths[node] = depth;
+                    this.assignNeuronDepth(this.findSourceNodes(genome.nodeId(node), genome), depth + 1, genome, depths);
                 }
-            } else if (node.getType() == NEATNodeGene.HIDDEN) {
-                if (node.getDepth() == 0) {
+            } else if (genome.nodeType(node) == NEATNodeGene.HIDDEN) {
+                if (depths[node] == 0) {
                     // we have an unassigned depth
-                    node.setDepth(depth);
-                    this.assignNeuronDepth(this.findSourceNodes(node.id(), mutated.genes()), depth + 1, mutated);
+                    depths[node] = depth;
+                    this.assignNeuronDepth(this.findSourceNodes(genome.nodeId(node), genome), depth + 1, genome, depths);
                 }
-            } else if (node.getType() == NEATNodeGene.INPUT) {
-                node.setDepth(Integer.MAX_VALUE);
+            } else if (genome.nodeType(node) == NEATNodeGene.INPUT) {
+                depths[node] = Integer.MAX_VALUE;
             }
         }
     }
 
-    private Gene[] findSourceNodes(int nodeId, Gene[] genes) {
-        Gene[] sourceNodes = null;
-        ArrayList links = this.candidateLinks(genes, true);
-        NEATLinkGene link;
-        ArrayList sources = new ArrayList();
+    private int[] findSourceNodes(int nodeId, NEATGenome genome) {
+        int[] sources = new int[genome.getNumberOfLinks()];
+        int count = 0;
         int i;
 
-        for (i = 0; i < links.size(); i++) {
-            link = (NEATLinkGene) links.get(i);
-            if (nodeId == link.getToId()) {
+        for (i = 0; i < genome.getNumberOfLinks(); i++) {
+            if (genome.isEnabled(i) && nodeId == genome.toId(i)) {
                 // add from Id
-                sources.add(this.findNode(link.getFromId(), genes));
+                sources[count++] = this.findNode(genome.fromId(i), genome);
             }
         }
 
-        sourceNodes = new NEATNodeGene[sources.size()];
-        for (i = 0; i < sourceNodes.length; i++) {
-            sourceNodes[i] = (NEATNodeGene) sources.get(i);
-        }
-
-        return (sourceNodes);
+        return (Arrays.copyOf(sources, count));
     }
 
-    private Gene[] findOutputNodes(ArrayList nodes) {
-        ArrayList outputNodes = new ArrayList();
-        Gene[] nodeGenes;
-        NEATNodeGene node;
+    private int[] findOutputNodes(NEATGenome genome) {
+        int[] outputs = new int[genome.getNumberOfNodes()];
+        int count = 0;
         int i;
 
-        for (i = 0; i < nodes.size(); i++) {
-            node = (NEATNodeGene) nodes.get(i);
-            if (node.getType() == NEATNodeGene.OUTPUT) {
-                outputNodes.add(node);
+        for (i = 0; i < outputs.length; i++) {
+            if (genome.nodeType(i) == NEATNodeGene.OUTPUT) {
+                outputs[count++] = i;
             }
         }
 
-        nodeGenes = new NEATNodeGene[outputNodes.size()];
-        for (i = 0; i < nodeGenes.length; i++) {
-            nodeGenes[i] = (NEATNodeGene) outputNodes.get(i);
-        }
-
-        return (nodeGenes);
+        return (Arrays.copyOf(outputs, count));
     }
 
-    private int findChosenIndex(NEATLinkGene chosen, Chromosome mutatee) {
+    /**
+     * @return the index of the first link between the nodes of the chosen
+     * link
+     */
+    private int findChosenIndex(int chosen, NEATGenome genome) {
         int idx = -1;
         int i = 0;
-        Gene[] genes = mutatee.genes();
-        int mutateeSize = genes.length;
 
-        while (i < mutateeSize && idx == -1) {
-            if (genes[i] instanceof NEATLinkGene
-                    && ((NEATLinkGene) genes[i]).getFromId() == chosen.getFromId()
-                    && ((NEATLinkGene) genes[i]).getToId() == chosen.getToId()) {
+        while (i < genome.getNumberOfLinks() && idx == -1) {
+            if (genome.fromId(i) == genome.fromId(chosen) && genome.toId(i) == genome.toId(chosen)) {
                 idx = i;
             } else {
                 i++;
@@ -366,94 +389,67 @@ public class NEATMutator implements Mutator {
         return (idx);
     }
 
-    private NEATNodeGene findNode(int id, Gene[] genes) {
-        int i = 0;
-        Gene gene;
-        NEATNodeGene node = null;
-        boolean found = false;
-
-        while (i < genes.length && !found) {
-            gene = genes[i];
-            if (gene instanceof NEATNodeGene) {
-                node = (NEATNodeGene) genes[i];
-                if (node.id() == id) {
-                    found = true;
-                }
-            }
-            i++;
-        }
-
-        return (node);
-    }
-
-    private ArrayList candidateLinks(Gene[] genes, boolean statusImportant) {
-        ArrayList nodeLinks = new ArrayList();
-        Gene gene;
-        int i;
+    /**
+     * @return the index among all the genes of the given link
+     */
+    private int geneOfLink(NEATGenome genome, int link) {
+        int i = -1;
 
-        for (i = 0; i < genes.length; i++) {
-            gene = genes[i];
-            if (gene instanceof NEATLinkGene) {
-//				if (!statusImportant || (statusImportant && ((NEATLinkGene)gene).isEnabled() && ((NEATLinkGene)gene).getFromId() != ((NEATLinkGene)gene).getToId())) {
-                if (!statusImportant || (statusImportant && ((NEATLinkGene) gene).isEnabled())) {
-                    nodeLinks.add(gene);
-                }
+        while (link >= 0) {
+            if (genome.kind(++i) == NEATGenome.LINK) {
+                link--;
             }
         }
 
-        return (nodeLinks);
+        return (i);
     }
 
-    private ArrayList candidateNodes(Gene[] genes) {
-        ArrayList nodes = new ArrayList();
-        Gene gene;
-        int i;
+    /**
+     * @return the index of the node, or of the last node if there is none
+     * with that id
+     */
+    private int findNode(int id, NEATGenome genome) {
+        int i = 0;
+        int node = -1;
+        boolean found = false;
 
-        for (i = 0; i < genes.length; i++) {
-            gene = genes[i];
-            if (gene instanceof NEATNodeGene) {
-                nodes.add(gene);
+        while (i < genome.getNumberOfNodes() && !found) {
+            node = i;
+            if (genome.nodeId(i) == id) {
+                found = true;
             }
+            i++;
         }
 
-        return (nodes);
+        return (node);
     }
 
-    private Gene[] ensureLegalLinks(Gene[] genes) {
-        ArrayList links;
-        NEATLinkGene link;
-        NEATNodeGene from;
-        NEATNodeGene to;
-        Gene[] newGenes = null;
-        ArrayList tmpGenes = new ArrayList();
+    private NEATGenome ensureLegalLinks(NEATGenome genome) {
+        NEATGenome.Builder legal;
+        double[] depths;
+        int[] indexes = new int[3];
+        int link;
         int i;
 
         // only need to prune if recurrency not allowed
         if (!this.recurrencyAllowed) {
-            // only return enabled links
-            links = this.candidateLinks(genes, false);
-            for (i = 0; i < genes.length; i++) {
-                if (genes[i] instanceof NEATLinkGene) {
-                    link = (NEATLinkGene) genes[i];
-                    from = this.findNode(link.getFromId(), genes);
-                    to = this.findNode(link.getToId(), genes);
-                    if (from.getDepth() > to.getDepth()) {
+            depths = this.nodeDepths(genome);
+            legal = new NEATGenome.Builder(genome.size());
+            for (i = 0; i < genome.size(); i++) {
+                if (genome.kind(i) == NEATGenome.LINK) {
+                    link = indexes[NEATGenome.LINK]++;
+                    if (depths[this.findNode(genome.fromId(link), genome)] > depths[this.findNode(genome.toId(link), genome)]) {
                         // not recurrent - so keep
-                        tmpGenes.add(genes[i]);
+                        legal.add(genome, i, link);
                     }
                 } else {
-                    tmpGenes.add(genes[i]);
+                    legal.add(genome, i, indexes[genome.kind(i)]++);
                 }
             }
-            newGenes = new Gene[tmpGenes.size()];
-            for (i = 0; i < newGenes.length; i++) {
-                newGenes[i] = (Gene) tmpGenes.get(i);
-            }
-        } else {
-            newGenes = genes;
+            genome = legal.build();
         }
 
-        return (newGenes);
+        return (genome);
     }
 
     /**
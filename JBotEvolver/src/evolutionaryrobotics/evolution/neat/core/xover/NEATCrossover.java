@@ -4,14 +4,12 @@
  */
 package evolutionaryrobotics.evolution.neat.core.xover;
 
-import java.util.ArrayList;
-import java.util.Random;
-
 import evolutionaryrobotics.evolution.neat.core.NEATChromosome;
-import evolutionaryrobotics.evolution.neat.core.NEATGene;
+import evolutionaryrobotics.evolution.neat.core.NEATGenome;
 import evolutionaryrobotics.evolution.neat.ga.core.Chromosome;
 import evolutionaryrobotics.evolution.neat.ga.core.ChromosomeSet;
 import evolutionaryrobotics.evolution.neat.ga.core.CrossOver;
+import evolutionaryrobotics.evolution.neat.utils.MathUtils;
 
 /**
  * @author MSimmerson
@@ -21,7 +19,6 @@ import evolutionaryrobotics.evolution.neat.ga.core.CrossOver;
  */
 public class NEATCrossover implements CrossOver {
 	private static final long serialVersionUID = 1L;
-	private final Random rand = new Random();
 	private double pXOver;
 	
 	@Override
@@ -32,27 +29,30 @@ public class NEATCrossover implements CrossOver {
 	@Override
 	public ChromosomeSet crossOver(ChromosomeSet parents) {
 		ChromosomeSet childSet = new ChromosomeSet(false);
-		ArrayList childGenes = new ArrayList();
 		Chromosome pOne = null;
 		Chromosome pTwo = null;
 		Chromosome best;
 		Chromosome worst;
 		int bestIdx = 0;
 		int worstIdx = 0;
+		// the index of the current genes among the genes of their kind
+		int[] bestKinds = new int[3];
+		int[] worstKinds = new int[3];
 		boolean childBorn = false;
-		NEATGene[] bestGenes;
-		NEATGene[] worstGenes;
+		NEATGenome bestGenes;
+		NEATGenome worstGenes;
+		NEATGenome.Builder childGenes;
 
 		pOne = parents.nextChromosome();
 		pTwo = parents.nextChromosome();
 		
 		// find best parent
 		if (pOne.fitness() == pTwo.fitness()) {
-			if (pOne.genes().length == pTwo.genes().length) {
+			if (pOne.size() == pTwo.size()) {
 				best = pOne;
 				worst = pTwo;
 			} else {
-				if (pOne.genes().length < pTwo.genes().length) {
+				if (pOne.size() < pTwo.size()) {
 					best = pOne;
 					worst = pTwo;
 				} else {
@@ -65,56 +65,49 @@ public class NEATCrossover implements CrossOver {
 			worst = pOne.fitness() > pTwo.fitness() ? pTwo : pOne;
 		}
 
-		bestGenes = (NEATGene[])best.genes();
-		worstGenes = (NEATGene[])worst.genes();
+		bestGenes = ((NEATChromosome) best).genome();
+		worstGenes = ((NEATChromosome) worst).genome();
+		childGenes = new NEATGenome.Builder(bestGenes.size());
 		
 		while (!childBorn) {
-			if (worstIdx >= worstGenes.length) {
+			if (worstIdx >= worstGenes.size()) {
 				// copy rest of best
-				while (bestIdx < bestGenes.length) {
-					childGenes.add(bestGenes[bestIdx++]);
+				while (bestIdx < bestGenes.size()) {
+					childGenes.add(bestGenes, bestIdx, bestKinds[bestGenes.kind(bestIdx)]++);
+					bestIdx++;
 				}
 				childBorn = true;
-			} else if (bestIdx >= bestGenes.length) {
+			} else if (bestIdx >= bestGenes.size()) {
 				childBorn = true;
-			} else if (bestGenes[bestIdx].getInnovationNumber() == worstGenes[worstIdx].getInnovationNumber()) {
+			} else if (bestGenes.innovationNumber(bestIdx) == worstGenes.innovationNumber(worstIdx)) {
 				// innovations are the same, pick one gene at random
-				childGenes.add(rand.nextBoolean() ? bestGenes[bestIdx] : worstGenes[worstIdx]);
-				bestIdx++;
-				worstIdx++;
-			} else if (bestGenes[bestIdx].getInnovationNumber() > worstGenes[worstIdx].getInnovationNumber()){
+				if (MathUtils.random().nextBoolean()) {
+					childGenes.add(bestGenes, bestIdx, bestKinds[bestGenes.kind(bestIdx)]);
+				} else {
+					childGenes.add(worstGenes, worstIdx, worstKinds[worstGenes.kind(worstIdx)]);
+				}
+				bestKinds[bestGenes.kind(bestIdx++)]++;
+				worstKinds[worstGenes.kind(worstIdx++)]++;
+			} else if (bestGenes.innovationNumber(bestIdx) > worstGenes.innovationNumber(worstIdx)){
 				// skip disjoint/excess
-				worstIdx++;
-			} else if (bestGenes[bestIdx].getInnovationNumber() < worstGenes[worstIdx].getInnovationNumber()){
+				worstKinds[worstGenes.kind(worstIdx++)]++;
+			} else if (bestGenes.innovationNumber(bestIdx) < worstGenes.innovationNumber(worstIdx)){
 				// add best disjoint/excess
-				childGenes.add(bestGenes[bestIdx]);
+				childGenes.add(bestGenes, bestIdx, bestKinds[bestGenes.kind(bestIdx)]++);
 				bestIdx++;
 			}
 		}
 		
-                NEATChromosome newC = this.createChromosome(childGenes);
+                NEATChromosome newC = new NEATChromosome(childGenes.build());
                 newC.setSpecieId(((NEATChromosome) pOne).getSpecieId()); // ADDED
 		childSet.add(newC);
                 
                 // debug
-                int size = ((NEATChromosome) childSet.get(0)).genes().length;
-                if(size < bestGenes.length && size < worstGenes.length) {
-                    System.out.println("Crossover -- Child: " + size + " ; Parents: " + bestGenes.length + " , " + worstGenes.length);
+                int size = newC.size();
+                if(size < bestGenes.size() && size < worstGenes.size()) {
+                    System.out.println("Crossover -- Child: " + size + " ; Parents: " + bestGenes.size() + " , " + worstGenes.size());
                 }
 		
 		return (childSet);
 	}
-	
-	private NEATChromosome createChromosome(ArrayList genes) {
-		NEATChromosome chromo = null;
-		NEATGene[] geneSet = new NEATGene[genes.size()];
-		int i;
-		
-		for (i = 0; i < geneSet.length; i++) {
-			geneSet[i] = (NEATGene)genes.get(i);
-		}
-		chromo = new NEATChromosome(geneSet);
-		
-		return (chromo);
-	}
 }
@@ -200,8 +200,8 @@ public abstract class Specie implements Comparable, Serializable {
 	}
 
 	public Chromosome cloneChromosome(Chromosome clonee) {
-		Gene[] genes = clonee.genes();
-		Chromosome clone = new NEATChromosome(this.cloneGenes(genes));
+		// the packed genes are not changed, so the clone shares them
+		Chromosome clone = new NEATChromosome(((NEATChromosome)clonee).genome());
 		((NEATChromosome)clone).setSpecieId(((NEATChromosome)clonee).getSpecieId());
 		
 		return (clone);
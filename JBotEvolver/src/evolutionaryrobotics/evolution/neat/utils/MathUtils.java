@@ -16,16 +16,41 @@ import java.util.Random;
 public class MathUtils
 {
 	private static final Random rand = new Random();
+	// the generator of the thread, if it has one
+	private static final ThreadLocal<Random> threadRand = new ThreadLocal<Random>();
     private MathUtils() {
     }
     
+    /**
+     * @return the generator used by the current thread: the one it was given
+     * with {@link #setRandom(Random)}, or the one shared by all the threads
+     */
+    public static Random random() {
+    	Random r = threadRand.get();
+    	return (r == null ? rand : r);
+    }
+    
+    /**
+     * Makes the current thread draw its numbers from a generator of its own,
+     * so that they are reproducible whatever the other threads do.
+     * 
+     * @param r the generator, or null to use the shared one again
+     */
+    public static void setRandom(Random r) {
+    	if (r == null) {
+    		threadRand.remove();
+    	} else {
+    		threadRand.set(r);
+    	}
+    }
+    
     // clamped to +plus/-minus
     public static double nextClampedDouble(double minus, double plus) {
-    	return ((rand.nextDouble() - 0.5) * (plus - minus)); 	
+    	return ((random().nextDouble() - 0.5) * (plus - minus)); 	
     }
     
     public static double nextDouble() {
-    	return (rand.nextDouble()); 	
+    	return (random().nextDouble()); 	
     }
 
     public static double nextPlusMinusOne() {
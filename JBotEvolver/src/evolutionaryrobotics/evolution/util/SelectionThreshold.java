@@ -0,0 +1,63 @@
+package evolutionaryrobotics.evolution.util;
+
+import java.io.Serializable;
+import java.util.PriorityQueue;
+
+/**
+ * The lowest fitness that a chromosome can have to be selected, while the
+ * results of a generation arrive: it is the fitness of the n-th best result
+ * received, where n is the number of chromosomes selected by the population
+ * (the parents and elites), which is set again at the start of each
+ * generation since it can change. A chromosome that cannot reach it will not be
+ * selected, whatever the fitness of the ones still being evaluated, and so its
+ * evaluation can be stopped. It is shared by the tasks that run in the same
+ * virtual machine as the evolution, the others get the value it had when they
+ * were sent.
+ */
+public class SelectionThreshold implements Serializable {
+
+	private static final long serialVersionUID = 3958209452175637108L;
+
+	private int numberOfSelected;
+	private volatile double threshold = Double.NEGATIVE_INFINITY;
+	//the best results of the generation, lowest first
+	private transient PriorityQueue<Double> best;
+
+	public SelectionThreshold(int numberOfSelected) {
+		this.numberOfSelected = numberOfSelected;
+	}
+
+	public synchronized void addFitness(double fitness) {
+		if(best == null)
+			best = new PriorityQueue<Double>();
+
+		if(best.size() < numberOfSelected) {
+			best.add(fitness);
+		} else if(fitness > best.peek()) {
+			best.poll();
+			best.add(fitness);
+		}
+
+		if(best.size() == numberOfSelected)
+			threshold = best.peek();
+	}
+
+	/**
+	 * @return the fitness of the n-th best result of the generation, or
+	 *         negative infinity if less than n have been received
+	 */
+	public double getThreshold() {
+		return threshold;
+	}
+
+	/**
+	 * Starts a generation in which the population selects the given number of
+	 * chromosomes.
+	 */
+	public synchronized void reset(int numberOfSelected) {
+		this.numberOfSelected = numberOfSelected;
+		if(best != null)
+			best.clear();
+		threshold = Double.NEGATIVE_INFINITY;
+	}
+}
@@ -0,0 +1,665 @@
+package evolutionaryrobotics.evolutionarystrategies;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The state of a covariance matrix adaptation evolution strategy (CMA-ES), as
+ * described in Hansen's "The CMA Evolution Strategy: A Tutorial", for
+ * maximizing the fitness. The search distribution is a multivariate normal
+ * with a full covariance matrix, or a diagonal one with separable=true
+ * (sep-CMA-ES, Ros and Hansen 2008), whose learning rates are increased by
+ * (n+2)/3 and which only takes O(n) time and memory per sample.
+ * <p>
+ * The eigendecomposition of a full covariance matrix is computed on another
+ * thread while the samples of the next generation are evaluated: the
+ * decomposition of the matrix of one generation is used from the generation
+ * after the next one. It is only computed when the matrix has changed
+ * enough, as in Hansen's implementation, and the result does not depend on
+ * the time it takes.
+ * <p>
+ * The arrays of the state are replaced at every update, never changed, so
+ * they can be saved by another thread while the next generation is
+ * evaluated.
+ *
+ * @author alc
+ */
+public class CMAES implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private static final double MAX_CONDITION = 1e14;
+	private static final int HISTORY_WINDOW = 20;
+	private static final int MAX_HISTORY = 20000;
+
+	//decomposes the covariance matrices, and stops when it has nothing to do
+	private static final ThreadPoolExecutor decompositions = new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS,
+			new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "CMA-ES eigendecomposition");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	private final int n;
+	private final int lambda;
+	private final int mu;
+	private final boolean separable;
+	private final double[] weights;
+	private final double mueff;
+	private final double cc;
+	private final double cs;
+	private final double c1;
+	private final double cmu;
+	private final double damps;
+	private final double chiN;
+	private final double initialSigma;
+
+	private double sigma;
+	private double[] mean;
+	private double[] ps;
+	private double[] pc;
+	//the full covariance matrix, or null if it is separable
+	private double[][] covariance;
+	//the diagonal of the covariance matrix
+	private double[] diagonal;
+	//the eigenvectors (rows) of the decomposed matrix, or null if separable
+	private double[][] eigenvectors;
+	//the square roots of the eigenvalues, or of the diagonal if separable
+	private double[] deviations;
+
+	private int generation = 0;
+	private long evaluations = 0;
+	private long decomposedEvaluations = 0;
+	private boolean decompositionPending = false;
+	private transient Future<Eigensystem> decomposition;
+
+	private ArrayList<Double> bestHistory = new ArrayList<Double>();
+	private ArrayList<Double> medianHistory = new ArrayList<Double>();
+	private double lastFitnessRange = Double.POSITIVE_INFINITY;
+
+	/**
+	 * @param mean the initial mean of the distribution
+	 * @param sigma the initial step size
+	 * @param lambda the number of samples of each generation
+	 * @param mu the number of samples recombined into the new mean
+	 * @param separable true to adapt only the variances
+	 */
+	public CMAES(double[] mean, double sigma, int lambda, int mu, boolean separable) {
+		if(mu < 1 || mu > lambda)
+			throw new IllegalArgumentException("mu must be between 1 and lambda (" + lambda + "): " + mu);
+
+		this.n = mean.length;
+		this.lambda = lambda;
+		this.mu = mu;
+		this.separable = separable;
+		this.initialSigma = sigma;
+		this.sigma = sigma;
+		this.mean = mean.clone();
+
+		weights = new double[mu];
+		double sum = 0, sumOfSquares = 0;
+		for(int i = 0 ; i < mu ; i++) {
+			weights[i] = Math.log((lambda + 1) / 2.0) - Math.log(i + 1);
+			sum+= weights[i];
+		}
+		for(int i = 0 ; i < mu ; i++) {
+			weights[i]/= sum;
+			sumOfSquares+= weights[i] * weights[i];
+		}
+		mueff = 1 / sumOfSquares;
+
+		cc = (4 + mueff / n) / (n + 4 + 2 * mueff / n);
+		cs = (mueff + 2) / (n + mueff + 5);
+		double rankOne = 2 / ((n + 1.3) * (n + 1.3) + mueff);
+		double rankMu = Math.min(1 - rankOne, 2 * (mueff - 2 + 1 / mueff) / ((n + 2) * (n + 2) + mueff));
+		if(separable) {
+			rankOne*= (n + 2) / 3.0;
+			rankMu = Math.min(1 - rankOne, rankMu * (n + 2) / 3.0);
+		}
+		c1 = rankOne;
+		cmu = rankMu;
+		damps = 1 + 2 * Math.max(0, Math.sqrt((mueff - 1) / (n + 1)) - 1) + cs;
+		chiN = Math.sqrt(n) * (1 - 1.0 / (4 * n) + 1.0 / (21.0 * n * n));
+
+		ps = new double[n];
+		pc = new double[n];
+		diagonal = new double[n];
+		deviations = new double[n];
+		Arrays.fill(diagonal, 1);
+		Arrays.fill(deviations, 1);
+
+		if(!separable) {
+			covariance = new double[n][];
+			eigenvectors = new double[n][];
+			for(int i = 0 ; i < n ; i++) {
+				covariance[i] = new double[n];
+				covariance[i][i] = 1;
+				eigenvectors[i] = new double[n];
+				eigenvectors[i][i] = 1;
+			}
+		}
+	}
+
+	/**
+	 * @return the default number of samples of each generation, 4 + 3 ln(n)
+	 */
+	public static int getDefaultLambda(int n) {
+		return 4 + (int)(3 * Math.log(n));
+	}
+
+	/**
+	 * Draws the samples of a generation from the current distribution.
+	 *
+	 * @return lambda new arrays
+	 */
+	public double[][] sample(Random random) {
+		double[][] samples = new double[lambda][];
+		double[] z = new double[n];
+
+		for(int k = 0 ; k < lambda ; k++) {
+			double[] x = mean.clone();
+			for(int i = 0 ; i < n ; i++)
+				z[i] = random.nextGaussian();
+
+			if(separable) {
+				for(int i = 0 ; i < n ; i++)
+					x[i]+= sigma * deviations[i] * z[i];
+			} else {
+				//x = mean + sigma * B * D * z, with the eigenvectors as rows
+				for(int j = 0 ; j < n ; j++) {
+					double coefficient = sigma * deviations[j] * z[j];
+					double[] eigenvector = eigenvectors[j];
+					for(int i = 0 ; i < n ; i++)
+						x[i]+= coefficient * eigenvector[i];
+				}
+			}
+			samples[k] = x;
+		}
+		return samples;
+	}
+
+	/**
+	 * Updates the distribution from the samples of a generation.
+	 *
+	 * @param sorted the samples, or the alleles evaluated for them, from the
+	 * highest fitness to the lowest (at least mu of them)
+	 * @param fitness the fitness of all the samples, from the highest to the
+	 * lowest
+	 */
+	public void update(double[][] sorted, double[] fitness) {
+		double[][] y = new double[mu][];
+		double[] yw = new double[n];
+
+		for(int k = 0 ; k < mu ; k++) {
+			y[k] = new double[n];
+			for(int i = 0 ; i < n ; i++) {
+				y[k][i] = (sorted[k][i] - mean[i]) / sigma;
+				yw[i]+= weights[k] * y[k][i];
+			}
+		}
+
+		double[] newMean = new double[n];
+		for(int i = 0 ; i < n ; i++)
+			newMean[i] = mean[i] + sigma * yw[i];
+
+		//C^-1/2 * yw, with the decomposition the samples were drawn from
+		double[] whitened = new double[n];
+		if(separable) {
+			for(int i = 0 ; i < n ; i++)
+				whitened[i] = yw[i] / deviations[i];
+		} else {
+			for(int j = 0 ; j < n ; j++) {
+				double[] eigenvector = eigenvectors[j];
+				double dot = 0;
+				for(int i = 0 ; i < n ; i++)
+					dot+= eigenvector[i] * yw[i];
+				dot/= deviations[j];
+				for(int i = 0 ; i < n ; i++)
+					whitened[i]+= dot * eigenvector[i];
+			}
+		}
+
+		double[] newPs = new double[n];
+		double psNorm = 0;
+		double psFactor = Math.sqrt(cs * (2 - cs) * mueff);
+		for(int i = 0 ; i < n ; i++) {
+			newPs[i] = (1 - cs) * ps[i] + psFactor * whitened[i];
+			psNorm+= newPs[i] * newPs[i];
+		}
+		psNorm = Math.sqrt(psNorm);
+
+		boolean hsig = psNorm / Math.sqrt(1 - Math.pow(1 - cs, 2 * (generation + 1))) / chiN < 1.4 + 2.0 / (n + 1);
+		double[] newPc = new double[n];
+		double pcFactor = hsig ? Math.sqrt(cc * (2 - cc) * mueff) : 0;
+		for(int i = 0 ; i < n ; i++)
+			newPc[i] = (1 - cc) * pc[i] + pcFactor * yw[i];
+
+		double decay = 1 - c1 - cmu + (hsig ? 0 : c1 * cc * (2 - cc));
+
+		double[] newDiagonal = new double[n];
+		if(separable) {
+			double[] newDeviations = new double[n];
+			for(int i = 0 ; i < n ; i++) {
+				double rankMu = 0;
+				for(int k = 0 ; k < mu ; k++)
+					rankMu+= weights[k] * y[k][i] * y[k][i];
+				newDiagonal[i] = decay * diagonal[i] + c1 * newPc[i] * newPc[i] + cmu * rankMu;
+				newDeviations[i] = Math.sqrt(newDiagonal[i]);
+			}
+			deviations = newDeviations;
+		} else {
+			double[][] newCovariance = new double[n][];
+			for(int i = 0 ; i < n ; i++) {
+				double[] row = new double[n];
+				double[] previous = covariance[i];
+				for(int j = 0 ; j <= i ; j++)
+					row[j] = decay * previous[j] + c1 * newPc[i] * newPc[j];
+				for(int k = 0 ; k < mu ; k++) {
+					double factor = cmu * weights[k] * y[k][i];
+					double[] yk = y[k];
+					for(int j = 0 ; j <= i ; j++)
+						row[j]+= factor * yk[j];
+				}
+				newCovariance[i] = row;
+				newDiagonal[i] = row[i];
+			}
+			for(int i = 0 ; i < n ; i++) {
+				for(int j = i + 1 ; j < n ; j++)
+					newCovariance[i][j] = newCovariance[j][i];
+			}
+			covariance = newCovariance;
+		}
+
+		sigma*= Math.exp(Math.min(1, (cs / damps) * (psNorm / chiN - 1)));
+		mean = newMean;
+		ps = newPs;
+		pc = newPc;
+		diagonal = newDiagonal;
+
+		generation++;
+		evaluations+= lambda;
+		updateHistory(fitness);
+
+		if(!separable)
+			updateDecomposition();
+	}
+
+	/**
+	 * Uses the decomposition started in the previous generation, and starts
+	 * one of the new matrix if it has changed enough since the last one.
+	 */
+	private void updateDecomposition() {
+		if(decomposition != null) {
+			Eigensystem eigensystem;
+			try {
+				eigensystem = decomposition.get();
+			} catch(InterruptedException e) {
+				throw new RuntimeException(e);
+			} catch(ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			}
+			eigenvectors = eigensystem.vectors;
+			deviations = eigensystem.deviations;
+			decomposition = null;
+			decompositionPending = false;
+		}
+
+		if(evaluations - decomposedEvaluations > lambda / (c1 + cmu) / n / 10) {
+			decomposedEvaluations = evaluations;
+			startDecomposition();
+		}
+	}
+
+	private void startDecomposition() {
+		final double[][] matrix = covariance;
+		decompositionPending = true;
+		decomposition = decompositions.submit(new Callable<Eigensystem>() {
+			@Override
+			public Eigensystem call() {
+				return new Eigensystem(matrix);
+			}
+		});
+	}
+
+	private void updateHistory(double[] fitness) {
+		bestHistory.add(fitness[0]);
+		medianHistory.add(fitness[fitness.length / 2]);
+		lastFitnessRange = fitness[0] - fitness[fitness.length - 1];
+
+		int length = Math.min(MAX_HISTORY, Math.max(getStagnationGenerations(), (int)(0.2 * generation)));
+		while(bestHistory.size() > length) {
+			bestHistory.remove(0);
+			medianHistory.remove(0);
+		}
+	}
+
+	private int getStagnationGenerations() {
+		return 120 + (int)Math.ceil(30.0 * n / lambda);
+	}
+
+	/**
+	 * Checks the termination criteria of Hansen's implementation that tell
+	 * that the distribution cannot improve anymore, so that it can be
+	 * restarted.
+	 *
+	 * @param tolFun the minimum range of the fitness in the recent
+	 * generations
+	 * @param tolX the minimum standard deviation in any coordinate, relative
+	 * to the initial step size
+	 * @return the name of the first criterion met, or null
+	 */
+	public String getStopCondition(double tolFun, double tolX) {
+		double maxDeviation = 0, minDeviation = Double.POSITIVE_INFINITY;
+		for(int i = 0 ; i < n ; i++) {
+			maxDeviation = Math.max(maxDeviation, deviations[i]);
+			minDeviation = Math.min(minDeviation, deviations[i]);
+		}
+
+		int recent = 10 + (int)Math.ceil(30.0 * n / lambda);
+		if(bestHistory.size() >= recent) {
+			double highest = Double.NEGATIVE_INFINITY, lowest = Double.POSITIVE_INFINITY;
+			for(int i = bestHistory.size() - recent ; i < bestHistory.size() ; i++) {
+				highest = Math.max(highest, bestHistory.get(i));
+				lowest = Math.min(lowest, bestHistory.get(i));
+			}
+			if(Math.max(lastFitnessRange, highest - lowest) < tolFun)
+				return "tolfun";
+		}
+
+		boolean small = true;
+		for(int i = 0 ; i < n && small ; i++)
+			small = sigma * Math.max(Math.abs(pc[i]), Math.sqrt(diagonal[i])) < tolX * initialSigma;
+		if(small)
+			return "tolx";
+
+		if(sigma / initialSigma > 1e20 * maxDeviation)
+			return "tolupsigma";
+
+		if((maxDeviation / minDeviation) * (maxDeviation / minDeviation) > MAX_CONDITION)
+			return "conditioncov";
+
+		for(int i = 0 ; i < n ; i++) {
+			if(mean[i] == mean[i] + 0.2 * sigma * Math.sqrt(diagonal[i]))
+				return "noeffectcoord";
+		}
+
+		if(generation > getStagnationGenerations() && bestHistory.size() >= getStagnationGenerations()
+				&& median(bestHistory, true) <= median(bestHistory, false)
+				&& median(medianHistory, true) <= median(medianHistory, false))
+			return "stagnation";
+
+		return null;
+	}
+
+	private static double median(ArrayList<Double> history, boolean recent) {
+		double[] values = new double[Math.min(HISTORY_WINDOW, history.size())];
+		int start = recent ? history.size() - values.length : 0;
+		for(int i = 0 ; i < values.length ; i++)
+			values[i] = history.get(start + i);
+		Arrays.sort(values);
+		return values.length % 2 == 1 ? values[values.length / 2]
+				: (values[values.length / 2 - 1] + values[values.length / 2]) / 2;
+	}
+
+	public int getLambda() {
+		return lambda;
+	}
+
+	public int getMu() {
+		return mu;
+	}
+
+	public boolean isSeparable() {
+		return separable;
+	}
+
+	public int getNumberOfGenerations() {
+		return generation;
+	}
+
+	public double getSigma() {
+		return sigma;
+	}
+
+	/**
+	 * @return the mean of the distribution, which must not be changed
+	 */
+	public double[] getMean() {
+		return mean;
+	}
+
+	/**
+	 * @return the ratio of the largest and smallest eigenvalues of the
+	 * covariance matrix used to draw the samples
+	 */
+	public double getConditionNumber() {
+		double max = 0, min = Double.POSITIVE_INFINITY;
+		for(double d : deviations) {
+			max = Math.max(max, d);
+			min = Math.min(min, d);
+		}
+		return (max / min) * (max / min);
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		//the decomposition of the current matrix was running when it was saved
+		if(decompositionPending)
+			startDecomposition();
+	}
+
+	/**
+	 * The eigenvectors and the square roots of the eigenvalues of a symmetric
+	 * matrix, computed with the Householder tridiagonalization and the QL
+	 * algorithm (tred2 and tql2, as in JAMA).
+	 */
+	private static class Eigensystem {
+
+		private double[][] vectors;
+		private double[] deviations;
+
+		public Eigensystem(double[][] matrix) {
+			int n = matrix.length;
+			double[][] v = new double[n][];
+			for(int i = 0 ; i < n ; i++)
+				v[i] = matrix[i].clone();
+			double[] d = new double[n];
+			double[] e = new double[n];
+
+			tridiagonalize(v, d, e);
+
+			//the QL iterations rotate the columns of v, so they work on its
+			//transpose, whose rows are then the eigenvectors
+			double[][] w = new double[n][n];
+			for(int i = 0 ; i < n ; i++) {
+				for(int j = 0 ; j < n ; j++)
+					w[j][i] = v[i][j];
+			}
+			diagonalize(w, d, e);
+
+			double max = 0;
+			for(int i = 0 ; i < n ; i++)
+				max = Math.max(max, d[i]);
+
+			vectors = w;
+			deviations = new double[n];
+			for(int i = 0 ; i < n ; i++)
+				deviations[i] = Math.sqrt(Math.max(d[i], max / MAX_CONDITION / 10));
+		}
+
+		private static void tridiagonalize(double[][] v, double[] d, double[] e) {
+			int n = d.length;
+
+			for(int j = 0 ; j < n ; j++)
+				d[j] = v[n - 1][j];
+
+			for(int i = n - 1 ; i > 0 ; i--) {
+				double scale = 0, h = 0;
+				for(int k = 0 ; k < i ; k++)
+					scale+= Math.abs(d[k]);
+
+				if(scale == 0) {
+					e[i] = d[i - 1];
+					for(int j = 0 ; j < i ; j++) {
+						d[j] = v[i - 1][j];
+						v[i][j] = 0;
+						v[j][i] = 0;
+					}
+				} else {
+					for(int k = 0 ; k < i ; k++) {
+						d[k]/= scale;
+						h+= d[k] * d[k];
+					}
+					double f = d[i - 1];
+					double g = Math.sqrt(h);
+					if(f > 0)
+						g = -g;
+					e[i] = scale * g;
+					h-= f * g;
+					d[i - 1] = f - g;
+					for(int j = 0 ; j < i ; j++)
+						e[j] = 0;
+
+					for(int j = 0 ; j < i ; j++) {
+						f = d[j];
+						v[j][i] = f;
+						g = e[j] + v[j][j] * f;
+						for(int k = j + 1 ; k <= i - 1 ; k++) {
+							g+= v[k][j] * d[k];
+							e[k]+= v[k][j] * f;
+						}
+						e[j] = g;
+					}
+					f = 0;
+					for(int j = 0 ; j < i ; j++) {
+						e[j]/= h;
+						f+= e[j] * d[j];
+					}
+					double hh = f / (h + h);
+					for(int j = 0 ; j < i ; j++)
+						e[j]-= hh * d[j];
+					for(int j = 0 ; j < i ; j++) {
+						f = d[j];
+						g = e[j];
+						for(int k = j ; k <= i - 1 ; k++)
+							v[k][j]-= (f * e[k] + g * d[k]);
+						d[j] = v[i - 1][j];
+						v[i][j] = 0;
+					}
+				}
+				d[i] = h;
+			}
+
+			//accumulate the transformations
+			for(int i = 0 ; i < n - 1 ; i++) {
+				v[n - 1][i] = v[i][i];
+				v[i][i] = 1;
+				double h = d[i + 1];
+				if(h != 0) {
+					for(int k = 0 ; k <= i ; k++)
+						d[k] = v[k][i + 1] / h;
+					for(int j = 0 ; j <= i ; j++) {
+						double g = 0;
+						for(int k = 0 ; k <= i ; k++)
+							g+= v[k][i + 1] * v[k][j];
+						for(int k = 0 ; k <= i ; k++)
+							v[k][j]-= g * d[k];
+					}
+				}
+				for(int k = 0 ; k <= i ; k++)
+					v[k][i + 1] = 0;
+			}
+			for(int j = 0 ; j < n ; j++) {
+				d[j] = v[n - 1][j];
+				v[n - 1][j] = 0;
+			}
+			v[n - 1][n - 1] = 1;
+			e[0] = 0;
+		}
+
+		/**
+		 * The QL iterations, on the transpose w of the matrix of tred2.
+		 */
+		private static void diagonalize(double[][] w, double[] d, double[] e) {
+			int n = d.length;
+
+			for(int i = 1 ; i < n ; i++)
+				e[i - 1] = e[i];
+			e[n - 1] = 0;
+
+			double f = 0, tst1 = 0;
+			double eps = Math.ulp(1.0);
+
+			for(int l = 0 ; l < n ; l++) {
+				tst1 = Math.max(tst1, Math.abs(d[l]) + Math.abs(e[l]));
+				int m = l;
+				while(m < n) {
+					if(Math.abs(e[m]) <= eps * tst1)
+						break;
+					m++;
+				}
+
+				if(m > l) {
+					do {
+						double g = d[l];
+						double p = (d[l + 1] - g) / (2 * e[l]);
+						double r = Math.hypot(p, 1);
+						if(p < 0)
+							r = -r;
+						d[l] = e[l] / (p + r);
+						d[l + 1] = e[l] * (p + r);
+						double dl1 = d[l + 1];
+						double h = g - d[l];
+						for(int i = l + 2 ; i < n ; i++)
+							d[i]-= h;
+						f+= h;
+
+						p = d[m];
+						double c = 1, c2 = c, c3 = c;
+						double el1 = e[l + 1];
+						double s = 0, s2 = 0;
+						for(int i = m - 1 ; i >= l ; i--) {
+							c3 = c2;
+							c2 = c;
+							s2 = s;
+							g = c * e[i];
+							h = c * p;
+							r = Math.hypot(p, e[i]);
+							e[i + 1] = s * r;
+							s = e[i] / r;
+							c = p / r;
+							p = c * d[i] - s * g;
+							d[i + 1] = h + s * (c * g + s * d[i]);
+
+							double[] next = w[i + 1];
+							double[] current = w[i];
+							for(int k = 0 ; k < n ; k++) {
+								h = next[k];
+								next[k] = s * current[k] + c * h;
+								current[k] = c * current[k] - s * h;
+							}
+						}
+						p = -s * s2 * c3 * el1 * e[l] / dl1;
+						e[l] = s * p;
+						d[l] = c * p;
+					} while(Math.abs(e[l]) > eps * tst1);
+				}
+				d[l]+= f;
+				e[l] = 0;
+			}
+		}
+	}
+}
@@ -0,0 +1,179 @@
+package evolutionaryrobotics.populations;
+
+import java.util.Arrays;
+
+import evolutionaryrobotics.evolutionarystrategies.CMAES;
+import evolutionaryrobotics.neuralnetworks.Chromosome;
+import simulation.util.Arguments;
+import simulation.util.ArgumentsAnnotation;
+
+/**
+ * Implements the covariance matrix adaptation evolution strategy (see
+ * {@link CMAES}) for fixed length genomes, with restarts with increasing
+ * population sizes (IPOP-CMA-ES, Auger and Hansen 2005) when the
+ * distribution cannot improve anymore.
+ * <p>
+ * The state of the strategy takes O(n^2) memory for a genome of length n, as
+ * does the update of each generation, so with long genomes separable=1 should
+ * be used, which takes O(n). The size of the population changes when it is
+ * restarted, and so does the number of chromosomes selected for racing, which
+ * is the number of parents of the current strategy.
+ *
+ * @author alc
+ */
+public class CMAESPopulation extends MuLambdaPopulation {
+	private static final long serialVersionUID = 1L;
+
+	@ArgumentsAnnotation(name="size", help="Number of samples of each generation. The default is 4+3ln(genome length)")
+	private int initialPopulationSize;
+	@ArgumentsAnnotation(name="parents", help="Number of samples recombined into the new mean. The default is half of the samples")
+	private int parents;
+	@ArgumentsAnnotation(name="sigma", defaultValue="1")
+	private double initialSigma;
+	@ArgumentsAnnotation(name="separable", defaultValue="0", help="Adapt only the variance of each allele")
+	private boolean separable;
+	@ArgumentsAnnotation(name="restarts", defaultValue="9")
+	private int restarts;
+	@ArgumentsAnnotation(name="popsizefactor", defaultValue="2", help="Factor by which the number of samples increases with each restart")
+	private int populationSizeFactor;
+	@ArgumentsAnnotation(name="tolfun", defaultValue="1e-12")
+	private double tolFun;
+	@ArgumentsAnnotation(name="tolx", defaultValue="1e-11")
+	private double tolX;
+	@ArgumentsAnnotation(name="minallele", defaultValue="-10")
+	private double minAllele;
+	@ArgumentsAnnotation(name="maxallele", defaultValue="10")
+	private double maxAllele;
+
+	private CMAES strategy;
+	//the samples of the generation as the strategy drew them, by chromosome id
+	private double[][] samples;
+	private int numberOfRestarts = 0;
+
+	public CMAESPopulation(Arguments arguments) {
+		super(setDefaultSize(arguments));
+		initialPopulationSize = populationSize;
+		parents = arguments.getArgumentAsIntOrSetDefault("parents", populationSize / 2);
+		initialSigma = arguments.getArgumentAsDoubleOrSetDefault("sigma", 1);
+		separable = arguments.getArgumentAsIntOrSetDefault("separable", 0) == 1;
+		restarts = arguments.getArgumentAsIntOrSetDefault("restarts", 9);
+		populationSizeFactor = arguments.getArgumentAsIntOrSetDefault("popsizefactor", 2);
+		tolFun = arguments.getArgumentAsDoubleOrSetDefault("tolfun", 1e-12);
+		tolX = arguments.getArgumentAsDoubleOrSetDefault("tolx", 1e-11);
+		minAllele = arguments.getArgumentAsDoubleOrSetDefault("minallele", -10);
+		maxAllele = arguments.getArgumentAsDoubleOrSetDefault("maxallele", 10);
+
+		if(populationSize < 2 || parents < 1 || parents > populationSize)
+			throw new RuntimeException("CMA-ES needs at least 2 samples and between 1 and " + populationSize
+					+ " parents: " + populationSize + " samples and " + parents + " parents");
+	}
+
+	private static Arguments setDefaultSize(Arguments arguments) {
+		if(!arguments.getArgumentIsDefined("size"))
+			arguments.setArgument("size", CMAES.getDefaultLambda(arguments.getArgumentAsInt("genomelength")));
+		return arguments;
+	}
+
+	@Override
+	public void createRandomPopulation() {
+		randomNumberGenerator.setSeed(getGenerationRandomSeed());
+
+		startStrategy(initialPopulationSize, parents, fixedInitialPopulation ? initialWeights : null);
+		sampleChromosomes();
+
+		resetGeneration();
+		setGenerationRandomSeed(randomNumberGenerator.nextInt());
+	}
+
+	@Override
+	public void createNextGeneration() {
+		randomNumberGenerator.setSeed(getGenerationRandomSeed());
+
+		if (numberOfChromosomesEvaluated < populationSize) {
+			throw new java.lang.RuntimeException("Trying to create a new generation before all chromosomes have been evaluated");
+		}
+
+		fitnessThresholdReached = checkFitnessThreshold(bestFitness);
+
+		Chromosome[] sorted = chromosomes.clone();
+		Arrays.sort(sorted, new Chromosome.CompareChromosomeFitness());
+
+		double[][] sortedSamples = new double[sorted.length][];
+		double[] fitness = new double[sorted.length];
+		for(int i = 0 ; i < sorted.length ; i++) {
+			sortedSamples[i] = samples[sorted[i].getID()];
+			fitness[i] = sorted[i].getFitness();
+		}
+		strategy.update(sortedSamples, fitness);
+
+		String stopCondition = strategy.getStopCondition(tolFun, tolX);
+		if(stopCondition != null && numberOfRestarts < restarts) {
+			numberOfRestarts++;
+			int size = strategy.getLambda() * populationSizeFactor;
+			int mu = Math.min(size, strategy.getMu() * populationSizeFactor);
+			System.out.println("CMA-ES restart " + numberOfRestarts + " (" + stopCondition + ") with " + size + " samples");
+			startStrategy(size, mu, null);
+		}
+
+		sampleChromosomes();
+
+		resetGeneration();
+		currentGeneration++;
+
+		// Create a new random seed for this generation
+		// (just use the random generators next int):
+		setGenerationRandomSeed(randomNumberGenerator.nextInt());
+	}
+
+	/**
+	 * Starts the strategy from the mean, or from a random one, uniform in
+	 * [-sigma,sigma] for each allele.
+	 */
+	private void startStrategy(int size, int mu, double[] mean) {
+		if(mean == null) {
+			mean = new double[genomelength];
+			for(int i = 0 ; i < genomelength ; i++)
+				mean[i] = (randomNumberGenerator.nextDouble() * 2 - 1) * initialSigma;
+		}
+		strategy = new CMAES(mean, initialSigma, size, mu, separable);
+		populationSize = size;
+	}
+
+	/**
+	 * Creates the chromosomes of the generation from the samples of the
+	 * strategy, with their alleles kept in [minallele,maxallele]. The strategy
+	 * is updated with the samples as it drew them, since the clamped alleles
+	 * do not follow its distribution.
+	 */
+	private void sampleChromosomes() {
+		samples = strategy.sample(randomNumberGenerator);
+		chromosomes = new Chromosome[samples.length];
+
+		for(int i = 0 ; i < samples.length ; i++) {
+			double[] alleles = samples[i].clone();
+			for(int j = 0 ; j < alleles.length ; j++)
+				alleles[j] = Math.max(minAllele, Math.min(maxAllele, alleles[j]));
+			chromosomes[i] = new Chromosome(alleles, i);
+		}
+	}
+
+	@Override
+	public int getNumberOfSelectedChromosomes() {
+		//the strategy is created with the first generation
+		return strategy == null ? parents : strategy.getMu();
+	}
+
+	@Override
+	public boolean hasImmutableAlleles() {
+		//the state of the strategy is also only made of new arrays
+		return true;
+	}
+
+	public CMAES getStrategy() {
+		return strategy;
+	}
+
+	public int getNumberOfRestarts() {
+		return numberOfRestarts;
+	}
+}
@@ -116,24 +116,10 @@ public class MuLambdaPopulation extends Population implements Serializable {
 			if (!parentIterator.hasNext()) {
 				parentIterator = parents.iterator();
 			}
-			double[] alleles = new double[genomelength];
 
 			Chromosome parent = parentIterator.next();
 
-			for (int j = 0; j < genomelength; j++) {
-				double allele = parent.getAlleles()[j];
-				if (randomNumberGenerator.nextDouble() < mutationRate) {
-					allele = allele + randomNumberGenerator.nextGaussian();
-					if (allele < -10)
-						allele = -10;
-					if (allele > 10)
-						allele = 10;
-				}
-
-				alleles[j] = allele;
-			}
-
-			chromosomes[numberOfElites + i] = new Chromosome(alleles,
+			chromosomes[numberOfElites + i] = new Chromosome(mutate(parent.getAlleles()),
 					numberOfElites + i);
 		}
 
@@ -145,6 +131,29 @@ public class MuLambdaPopulation extends Population implements Serializable {
 		setGenerationRandomSeed(randomNumberGenerator.nextInt());
 	}
 
+	/**
+	 * Creates the alleles of an offspring. Each allele of the parent is
+	 * mutated with probability mutationRate by adding a gaussian value, and
+	 * kept in [-10,10].
+	 */
+	protected double[] mutate(double[] parentAlleles) {
+		double[] alleles = new double[genomelength];
+
+		for (int j = 0; j < genomelength; j++) {
+			double allele = parentAlleles[j];
+			if (randomNumberGenerator.nextDouble() < mutationRate) {
+				allele = allele + randomNumberGenerator.nextGaussian();
+				if (allele < -10)
+					allele = -10;
+				if (allele > 10)
+					allele = 10;
+			}
+
+			alleles[j] = allele;
+		}
+		return alleles;
+	}
+
 	protected void resetGeneration() {
 		bestFitness = -1e10;
 		accumulatedFitness = 0;
@@ -234,6 +243,16 @@ public class MuLambdaPopulation extends Population implements Serializable {
 		return numberOfChromosomesEvaluated;
 	}
 
+	@Override
+	public int getNumberOfSelectedChromosomes() {
+		return Math.max(lambda, numberOfElites);
+	}
+
+	@Override
+	public boolean hasImmutableAlleles() {
+		return true;
+	}
+
 	// @Override
 	public int getPopulationSize() {
 		return populationSize;
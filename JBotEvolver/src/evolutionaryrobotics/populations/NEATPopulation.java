@@ -6,8 +6,7 @@ import java.util.Iterator;
 import java.util.LinkedList;
 
 import evolutionaryrobotics.evolution.neat.NEATSerializer;
-import evolutionaryrobotics.evolution.neat.core.NEATNetDescriptor;
-import evolutionaryrobotics.evolution.neat.core.NEATNeuralNet;
+import evolutionaryrobotics.evolution.neat.core.NEATChromosome;
 import evolutionaryrobotics.evolution.neat.core.NEATPopulation4J;
 import evolutionaryrobotics.neuralnetworks.Chromosome;
 import simulation.robot.Robot;
@@ -166,12 +165,7 @@ public class NEATPopulation extends Population implements Serializable {
 	}
 	
 	public Chromosome convertChromosome(evolutionaryrobotics.evolution.neat.ga.core.Chromosome c, int i) {
-		NEATNetDescriptor descr = new NEATNetDescriptor(0, null);
-        descr.updateStructure(c);
-        NEATNeuralNet network = new NEATNeuralNet();
-        network.createNetStructure(descr);
-        network.updateNetStructure();
-		return new Chromosome(NEATSerializer.serialize(network), i);
+		return new Chromosome(NEATSerializer.serialize(((NEATChromosome) c).genome()), i);
 	}
 	
 	@Override
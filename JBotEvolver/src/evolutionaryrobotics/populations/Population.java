@@ -2,6 +2,7 @@ package evolutionaryrobotics.populations;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.OptionalDataException;
 import java.io.Serializable;
@@ -15,6 +16,7 @@ import simulation.util.ArgumentsAnnotation;
 import simulation.util.Factory;
 import comm.FileProvider;
 import evolutionaryrobotics.neuralnetworks.Chromosome;
+import evolutionaryrobotics.util.PopulationCheckpoint;
 
 /**
  * Super-class for populations/evolutionary algorithms.
@@ -156,6 +158,25 @@ public abstract class Population implements Serializable {
      */	
     public abstract void createNextGeneration();
 
+    /** Get the number of chromosomes of the current generation that are used to create the next one,
+     *  if they are the ones with the highest fitness. The fitness of the others does not matter, and so
+     *  their evaluation can be stopped once they cannot be among them.
+     * 
+     * @return the number of chromosomes selected, or 0 if the selection does not work this way.
+     */
+    public int getNumberOfSelectedChromosomes() {
+    	return 0;
+    }
+
+    /** Tells if the alleles of a chromosome are never changed once it is created, so that they can be
+     *  saved by another thread while the next generation is evaluated without being copied.
+     * 
+     * @return true if new arrays are always created for the alleles.
+     */
+    public boolean hasImmutableAlleles() {
+    	return false;
+    }
+
     /** Set the random seed before each chromosome is evaluated in the simulator.
      * 
      * @param seed the random seed for this generation.
@@ -369,15 +390,8 @@ public abstract class Population implements Serializable {
 		if(!populationFile.exists())
 			populationFile = new File(parentFolder+"/../populations/"+f.getName());
 		
-		FileInputStream fis = new FileInputStream(populationFile);
-		GZIPInputStream gzipIn = new GZIPInputStream(fis);
-		ObjectInputStream in = new ObjectInputStream(gzipIn);
-		
 		try {
-			Object obj = in.readObject();
-			Population population = (Population) obj;
-			in.close();
-			return population;
+			return readPopulationFile(populationFile);
 		} catch(OptionalDataException e) {
 			e.printStackTrace();
 			System.err.println("There was a problem opening "+f.getName()+"! Opening previous population file...");
@@ -408,12 +422,26 @@ public abstract class Population implements Serializable {
 		if(!populationFile.exists())
 			populationFile = new File(args.getArgumentAsString("parentfolder")+"/../populations/"+f.getName());
 		
+		return readPopulationFile(populationFile);
+	}
+	
+	/**
+	 * Reads a population saved by {@link evolutionaryrobotics.util.DiskStorage},
+	 * in the format of {@link PopulationCheckpoint} or serialized and compressed
+	 * as in the previous versions.
+	 */
+	private static Population readPopulationFile(File populationFile) throws IOException, ClassNotFoundException {
+		if(PopulationCheckpoint.isCheckpoint(populationFile))
+			return (Population) PopulationCheckpoint.read(populationFile);
+		
 		FileInputStream fis = new FileInputStream(populationFile);
 		GZIPInputStream gzipIn = new GZIPInputStream(fis);
 		ObjectInputStream in = new ObjectInputStream(gzipIn);
-		Population population = (Population) in.readObject();
-		in.close();
-		return population;
+		try {
+			return (Population) in.readObject();
+		} finally {
+			in.close();
+		}
 	}
 
 	public abstract Chromosome getChromosome(int chromosomeId);
@@ -0,0 +1,226 @@
+package evolutionaryrobotics.populations;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+
+import evolutionaryrobotics.neuralnetworks.Chromosome;
+import simulation.util.Arguments;
+import simulation.util.ArgumentsAnnotation;
+
+/**
+ * Implements an asynchronous steady-state (mu+1) evolutionary algorithm. There
+ * is no generation barrier: each chromosome is inserted in the population as
+ * soon as its fitness is set, replacing the worst chromosome if it is better,
+ * and a new offspring can be obtained with
+ * {@link #getNextChromosomeToEvaluate()} while the others are still being
+ * evaluated. The parent of an offspring is chosen randomly among the lambda
+ * best chromosomes and mutated as in {@link MuLambdaPopulation}.
+ * <p>
+ * A generation is a fixed number of evaluations (evaluationspergeneration),
+ * after which {@link #createNextGeneration()} changes the random seed used to
+ * evaluate the chromosomes. The fitness of the chromosomes in the population
+ * is not evaluated again, so it may have been obtained with the seed of a
+ * previous generation.
+ * <p>
+ * The ids of the chromosomes are not positions in the population, each
+ * chromosome created has a different one. The chromosomes being evaluated
+ * when the population is saved are not kept, and new ones are created instead
+ * when an evolution is resumed.
+ * <p>
+ * The chromosomes created depend on the order in which their fitness is set:
+ * an evolution can only be repeated with the same random seed if the results
+ * are given in the same order (see
+ * {@link evolutionaryrobotics.evolution.SteadyStateEvolution}).
+ */
+public class SteadyStatePopulation extends MuLambdaPopulation {
+
+	private static final long serialVersionUID = -2690347104950522817L;
+
+	@ArgumentsAnnotation(name="evaluationspergeneration", help="Number of evaluations of a generation, after which the population is saved and the seed of the evaluations changes. The default is the size of the population")
+	protected int evaluationsPerGeneration;
+
+	//the chromosomes of the population, in [0,numberOfChromosomes), sorted by
+	//descending fitness
+	protected int numberOfChromosomes = 0;
+	//the random chromosomes that were not given to be evaluated yet
+	protected LinkedList<Chromosome> initialChromosomes = new LinkedList<Chromosome>();
+	protected transient HashMap<Integer, Chromosome> chromosomesBeingEvaluated;
+	protected int nextChromosomeId = 0;
+
+	public SteadyStatePopulation(Arguments arguments) {
+		super(arguments);
+		evaluationsPerGeneration = arguments.getArgumentAsIntOrSetDefault("evaluationspergeneration", populationSize);
+	}
+
+	@Override
+	public void createRandomPopulation() {
+		super.createRandomPopulation();
+
+		initialChromosomes.clear();
+		for (Chromosome c : chromosomes)
+			initialChromosomes.add(c);
+
+		chromosomes = new Chromosome[populationSize];
+		numberOfChromosomes = 0;
+		nextChromosomeId = populationSize;
+		getChromosomesBeingEvaluated().clear();
+	}
+
+	/**
+	 * @return one of the random chromosomes of the initial population, or a
+	 *         new offspring of the chromosomes already evaluated. Null is
+	 *         returned if all of the evaluations left are being done, or if
+	 *         the initial chromosomes are all being evaluated and none has a
+	 *         fitness yet.
+	 */
+	@Override
+	public Chromosome getNextChromosomeToEvaluate() {
+		if (getNumberOfEvaluationsLeft() <= getChromosomesBeingEvaluated().size())
+			return null;
+
+		Chromosome c;
+
+		if (!initialChromosomes.isEmpty()) {
+			c = initialChromosomes.poll();
+		} else if (numberOfChromosomes > 0) {
+			Chromosome parent = chromosomes[randomNumberGenerator.nextInt(Math.min(lambda, numberOfChromosomes))];
+			c = new Chromosome(mutate(parent.getAlleles()), nextChromosomeId++);
+		} else {
+			return null;
+		}
+
+		getChromosomesBeingEvaluated().put(c.getID(), c);
+		return c;
+	}
+
+	@Override
+	public void setEvaluationResult(Chromosome chromosome, double fitness) {
+		setEvaluationResultForId(chromosome.getID(), fitness);
+	}
+
+	/**
+	 * Sets the fitness of a chromosome given by
+	 * {@link #getNextChromosomeToEvaluate()} and inserts it in the population.
+	 *
+	 * @param id the id of the chromosome
+	 */
+	@Override
+	public void setEvaluationResultForId(int id, double fitness) {
+		Chromosome chromosome = getChromosomesBeingEvaluated().remove(id);
+
+		if (chromosome == null) {
+			throw new java.lang.RuntimeException("Chromosome " + id
+					+ " is not being evaluated");
+		}
+
+		chromosome.setFitness(fitness);
+		numberOfChromosomesEvaluated++;
+		insert(chromosome);
+	}
+
+	/**
+	 * Inserts the chromosome in its position by fitness. If the population is
+	 * full, the worst chromosome is removed, unless the new one is not better.
+	 */
+	protected void insert(Chromosome chromosome) {
+		int pos;
+
+		if (numberOfChromosomes < populationSize) {
+			pos = numberOfChromosomes++;
+		} else if (chromosome.getFitness() > chromosomes[numberOfChromosomes - 1].getFitness()) {
+			pos = numberOfChromosomes - 1;
+		} else {
+			return;
+		}
+
+		while (pos > 0 && chromosomes[pos - 1].getFitness() < chromosome.getFitness()) {
+			chromosomes[pos] = chromosomes[pos - 1];
+			pos--;
+		}
+		chromosomes[pos] = chromosome;
+	}
+
+	/**
+	 * Starts a new generation once the evaluations of the current one are
+	 * done. The chromosomes are kept, only the random seed of the evaluations
+	 * changes.
+	 */
+	@Override
+	public void createNextGeneration() {
+		if (numberOfChromosomesEvaluated < evaluationsPerGeneration) {
+			throw new java.lang.RuntimeException("Trying to create a new generation before all evaluations have been done");
+		}
+
+		fitnessThresholdReached = checkFitnessThreshold(getHighestFitness());
+
+		numberOfChromosomesEvaluated-= evaluationsPerGeneration;
+		currentGeneration++;
+		setGenerationRandomSeed(randomNumberGenerator.nextInt());
+	}
+
+	@Override
+	public boolean evolutionDone() {
+		return getNumberOfEvaluationsLeft() <= 0 || fitnessThresholdReached;
+	}
+
+	/**
+	 * @return the number of evaluations until the end of the evolution,
+	 *         including the ones being done
+	 */
+	public int getNumberOfEvaluationsLeft() {
+		return (numberOfGenerations - currentGeneration) * evaluationsPerGeneration - numberOfChromosomesEvaluated;
+	}
+
+	public int getEvaluationsPerGeneration() {
+		return evaluationsPerGeneration;
+	}
+
+	private HashMap<Integer, Chromosome> getChromosomesBeingEvaluated() {
+		if (chromosomesBeingEvaluated == null)
+			chromosomesBeingEvaluated = new HashMap<Integer, Chromosome>();
+		return chromosomesBeingEvaluated;
+	}
+
+	@Override
+	public Chromosome getBestChromosome() {
+		return numberOfChromosomes > 0 ? chromosomes[0] : null;
+	}
+
+	@Override
+	public Chromosome[] getTopChromosome(int number) {
+		return Arrays.copyOf(chromosomes, Math.min(number, numberOfChromosomes));
+	}
+
+	@Override
+	public double getHighestFitness() {
+		return numberOfChromosomes > 0 ? chromosomes[0].getFitness() : 0;
+	}
+
+	@Override
+	public double getLowestFitness() {
+		return numberOfChromosomes > 0 ? chromosomes[numberOfChromosomes - 1].getFitness() : 0;
+	}
+
+	@Override
+	public double getAverageFitness() {
+		double sum = 0;
+		for (int i = 0; i < numberOfChromosomes; i++)
+			sum += chromosomes[i].getFitness();
+		return numberOfChromosomes > 0 ? sum / numberOfChromosomes : 0;
+	}
+
+	@Override
+	public Chromosome getChromosome(int chromosomeId) {
+		for (int i = 0; i < numberOfChromosomes; i++) {
+			if (chromosomes[i].getID() == chromosomeId)
+				return chromosomes[i];
+		}
+		return getChromosomesBeingEvaluated().get(chromosomeId);
+	}
+
+	@Override
+	public Chromosome[] getChromosomes() {
+		return Arrays.copyOf(chromosomes, numberOfChromosomes);
+	}
+}
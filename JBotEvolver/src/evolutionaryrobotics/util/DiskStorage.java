@@ -4,18 +4,32 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
+import java.io.InterruptedIOException;
 import java.io.PrintStream;
 import java.io.Serializable;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Vector;
-import java.util.zip.GZIPOutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import evolutionaryrobotics.populations.Population;
 import simulation.util.Arguments;
-
+import taskexecutor.results.SampleTelemetry;
+
+/**
+ * Saves the fitness log, the populations and the configuration files to show
+ * the best individuals and to restart the evolution. The fitness log is
+ * written when a generation is saved, and the other files are written by
+ * another thread from a snapshot of the population (see
+ * {@link PopulationCheckpoint}), so the next generation can start meanwhile.
+ * Saving a generation waits for the files of the previous one.
+ */
 public class DiskStorage implements Serializable{
 	String outputDirectory;
 	Vector<String> argumentsForShowBestIndividual = new Vector<String>();
@@ -29,11 +43,25 @@ public class DiskStorage implements Serializable{
 	protected final String restartFilename = "_restartevolution.conf";
 
 	protected PrintStream fitnessLog;
+	protected FitnessCache fitnessCache;
+	protected transient TelemetryLog telemetryLog;
+
+	//writes the files of a generation, and stops when it has nothing to do
+	private transient ThreadPoolExecutor writer;
+	private transient Future<Void> lastGeneration;
 
 	public DiskStorage(String outputDirectory) {
 		this.outputDirectory = outputDirectory;
 	}
 
+	/**
+	 * The hits and misses of the cache since its counters were reset are
+	 * added to each line of the fitness log.
+	 */
+	public void setFitnessCache(FitnessCache fitnessCache) {
+		this.fitnessCache = fitnessCache;
+	}
+
 	public void start() throws FileNotFoundException {
 		if (outputDirectory != null) {
 			File f = new File(outputDirectory);
@@ -62,6 +90,24 @@ public class DiskStorage implements Serializable{
 
 	}
 
+	/**
+	 * Starts adding the samples evaluated to the telemetry log of the output
+	 * directory (see {@link TelemetryLog}).
+	 */
+	public void startTelemetry() throws IOException {
+		if (outputDirectory != null)
+			telemetryLog = new TelemetryLog(outputDirectory);
+	}
+
+	/**
+	 * Adds the samples evaluated for a chromosome to the telemetry log, if it
+	 * was started and the samples were recorded.
+	 */
+	public void addEvaluation(int generation, int chromosomeId, SampleTelemetry telemetry) {
+		if (telemetryLog != null && telemetry != null)
+			telemetryLog.add(generation, chromosomeId, telemetry);
+	}
+
 	public void saveCommandlineArguments(HashMap<String,Arguments> args) throws FileNotFoundException {
 		if (outputDirectory != null) {
 			PrintStream argumentsFile = openForWriting(outputDirectory + "/" + argumentsFilename);
@@ -86,34 +132,97 @@ public class DiskStorage implements Serializable{
 	
 	
 
+	/**
+	 * Waits for the files of the last generation saved, and closes the
+	 * fitness and telemetry logs.
+	 */
 	public void close() {
 		if (outputDirectory != null) {
+			try {
+				waitForFiles();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			if (writer != null)
+				writer.shutdown();
 			fitnessLog.close();
+			if (telemetryLog != null) {
+				try {
+					telemetryLog.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+				telemetryLog = null;
+			}
 			
 		}
 	}
 
+	/**
+	 * Waits until the files of the last generation saved are written.
+	 * 
+	 * @throws IOException if they could not be written
+	 */
+	public void waitForFiles() throws IOException {
+		if (lastGeneration == null)
+			return;
+		try {
+			lastGeneration.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while saving the population");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			throw new IOException(e.getCause());
+		} finally {
+			lastGeneration = null;
+		}
+	}
+
+	private void writeFiles(Callable<Void> files) throws IOException {
+		waitForFiles();
+		if (writer == null) {
+			//the thread is not a daemon, so that the files are written if the
+			//evolution ends without closing
+			writer = new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+		}
+		lastGeneration = writer.submit(files);
+	}
+
 	public void savePopulation(Population populationA, Population populationB) throws IOException {
 		if (outputDirectory != null) {
 			updateFitnessLog(populationA, populationB);
 
-			// Save population:
-			savePopulationToFile(populationA, "A");
-			savePopulationToFile(populationB, "B");
-
-			// Save the generation number
-			saveGenerationNumber(populationA, "A");
-
-			// Save the show best file
-			saveShowBestFile(populationA, populationB, populationA.getGenerationRandomSeed(),"A","B");
-
-			// Save the show best file
-			saveShowCurrentBest(populationA, populationB, populationA.getGenerationRandomSeed(), "A","B");
-			saveShowCurrentBest(populationB, populationA, populationB.getGenerationRandomSeed(), "B","A");
-
-			// Save the restart file
-			saveRestartFile(populationA, populationB, populationA.getGenerationRandomSeed());
-
+			final PopulationCheckpoint checkpointA = snapshot(populationA);
+			final PopulationCheckpoint checkpointB = snapshot(populationB);
+			final int generationA = populationA.getNumberOfCurrentGeneration();
+			final int generationB = populationB.getNumberOfCurrentGeneration();
+			final long randomSeedA = populationA.getGenerationRandomSeed();
+			final long randomSeedB = populationB.getGenerationRandomSeed();
+
+			writeFiles(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					// Save population:
+					savePopulationToFile(checkpointA, generationA, "A");
+					savePopulationToFile(checkpointB, generationB, "B");
+
+					// Save the generation number
+					saveGenerationNumber(generationA, "A");
+
+					// Save the show best file
+					saveShowBestFile(generationA, generationB, randomSeedA,"A","B");
+
+					// Save the show best file
+					saveShowCurrentBest(generationA, generationB, randomSeedA, "A","B");
+					saveShowCurrentBest(generationB, generationA, randomSeedB, "B","A");
+
+					// Save the restart file
+					saveRestartFile(generationA, generationB, randomSeedA);
+					return null;
+				}
+			});
 		}
 	}
 	
@@ -121,23 +230,34 @@ public class DiskStorage implements Serializable{
 		if (outputDirectory != null) {
 			updateFitnessLog(populationA, populationB);
 
-			// Save population:
-			savePopulationToFile(populationA, "a");
-			savePopulationToFile(populationB, "b");
+			final PopulationCheckpoint checkpointA = snapshot(populationA);
+			final PopulationCheckpoint checkpointB = snapshot(populationB);
+			final int generationA = populationA.getNumberOfCurrentGeneration();
+			final int generationB = populationB.getNumberOfCurrentGeneration();
+			final long randomSeedA = populationA.getGenerationRandomSeed();
 
-			// Save the generation number
-			saveGenerationNumber(populationA, "a");
-			saveGenerationNumber(populationB, "b");
+			writeFiles(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					// Save population:
+					savePopulationToFile(checkpointA, generationA, "a");
+					savePopulationToFile(checkpointB, generationB, "b");
 
-			// Save the show best file
-			saveShowBestFile(populationA, populationB, populationA.getGenerationRandomSeed(),"a","b");
+					// Save the generation number
+					saveGenerationNumber(generationA, "a");
+					saveGenerationNumber(generationB, "b");
 
-			// Save the show best file
-			saveShowCurrentBest(populationA, populationB, populationA.getGenerationRandomSeed(), "a","b");
+					// Save the show best file
+					saveShowBestFile(generationA, generationB, randomSeedA,"a","b");
 
-			// Save the restart file
-			saveRestartFile(populationA, populationB, populationA.getGenerationRandomSeed());
+					// Save the show best file
+					saveShowCurrentBest(generationA, generationB, randomSeedA, "a","b");
 
+					// Save the restart file
+					saveRestartFile(generationA, generationB, randomSeedA);
+					return null;
+				}
+			});
 		}
 	}
 	
@@ -152,20 +272,30 @@ public class DiskStorage implements Serializable{
 		if (outputDirectory != null) {
 			updateFitnessLog(population);
 
-			// Save population:
-			savePopulationToFile(population, "");
+			final PopulationCheckpoint checkpoint = snapshot(population);
+			final int generation = population.getNumberOfCurrentGeneration();
+			final long randomSeed = population.getGenerationRandomSeed();
+
+			writeFiles(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					// Save population:
+					savePopulationToFile(checkpoint, generation, "");
 
-			// Save the generation number
-			saveGenerationNumber(population, "");
+					// Save the generation number
+					saveGenerationNumber(generation, "");
 
-			// Save the show best file
-			saveShowBestFile(population, population.getGenerationRandomSeed());
+					// Save the show best file
+					saveShowBestFile(generation, randomSeed);
 
-			// Save the show best file
-			saveShowCurrentBest(population, population.getGenerationRandomSeed());
+					// Save the show best file
+					saveShowCurrentBest(generation, randomSeed);
 
-			// Save the restart file
-			saveRestartFile(population, population.getGenerationRandomSeed());
+					// Save the restart file
+					saveRestartFile(generation, randomSeed);
+					return null;
+				}
+			});
 		}
 	}
 	
@@ -177,7 +307,10 @@ public class DiskStorage implements Serializable{
 			
 			fitnessLog = openForWriting(outputDirectory + "/" + fitnessLogFilename, append);
 			fitnessLog.println("# Evoluation started on " + new SimpleDateFormat("yyyy/MM/dd HH:mm:ss").format(new Date()));
-			fitnessLog.println("# Generation\t   Best \t   Average \t   Worst");
+			if(fitnessCache != null)
+				fitnessLog.println("# Generation\t   Best \t   Average \t   Worst \t   Cache hits \t   Partial hits \t   Misses \t   Hit rate");
+			else
+				fitnessLog.println("# Generation\t   Best \t   Average \t   Worst");
 		} catch (FileNotFoundException e) {
 			e.printStackTrace();
 		}
@@ -205,15 +338,26 @@ public class DiskStorage implements Serializable{
 		if(population.getNumberOfCurrentGeneration() == 0) {
 			openFitnessLog(false);
 		}
-		fitnessLog.printf("\t%3d\t\t%8.3f\t%8.3f\t%8.3f%n",
-				population.getNumberOfCurrentGeneration(),
-				population.getHighestFitness(), population.getAverageFitness(),
-				population.getLowestFitness());
+		if(fitnessCache != null) {
+			int hits = fitnessCache.getHits();
+			int partialHits = fitnessCache.getPartialHits();
+			int misses = fitnessCache.getMisses();
+			int total = Math.max(1, hits + partialHits + misses);
+			fitnessLog.printf("\t%3d\t\t%8.3f\t%8.3f\t%8.3f\t%d\t%d\t%d\t%5.1f%%%n",
+					population.getNumberOfCurrentGeneration(),
+					population.getHighestFitness(), population.getAverageFitness(),
+					population.getLowestFitness(), hits, partialHits, misses, 100.0 * hits / total);
+		} else {
+			fitnessLog.printf("\t%3d\t\t%8.3f\t%8.3f\t%8.3f%n",
+					population.getNumberOfCurrentGeneration(),
+					population.getHighestFitness(), population.getAverageFitness(),
+					population.getLowestFitness());
+		}
 		fitnessLog.flush();
 	}
 
-	private void saveShowCurrentBest(Population populationA,
-			Population populationB, long randomSeed, String prefixA,
+	private void saveShowCurrentBest(int generationA,
+			int generationB, long randomSeed, String prefixA,
 			String prefixB) throws FileNotFoundException {
 		PrintStream currentShowBestFile = openForWriting(outputDirectory + "/_"
 				+ prefixA + showBestFilename + "_current.conf");
@@ -224,16 +368,16 @@ public class DiskStorage implements Serializable{
 
 			currentShowBestFile.println("--population loada=" + outputDirectory
 					+ "/populations/" + prefixA + populationFilename
-					+ populationA.getNumberOfCurrentGeneration() + ",loadb="
+					+ generationA + ",loadb="
 					+ outputDirectory + "/populations/" + prefixB
 					+ populationFilename
-					+ populationB.getNumberOfCurrentGeneration()
+					+ generationB
 					+ ",showbestCoevolved");
 			currentShowBestFile.println("--random-seed " + randomSeed);
 			currentShowBestFile.close();
 	}
 
-	private void saveShowCurrentBest(Population population, long randomSeed)
+	private void saveShowCurrentBest(int generation, long randomSeed)
 			throws FileNotFoundException {
 		PrintStream currentShowBestFile = openForWriting(outputDirectory + "/_"
 				+ showBestFilename + "_current.conf");
@@ -243,14 +387,14 @@ public class DiskStorage implements Serializable{
 		
 		currentShowBestFile.println("--population load=" + outputDirectory
 				+ "/populations/" + populationFilename
-				+ population.getNumberOfCurrentGeneration()
+				+ generation
 				+ ",showbest");
 		currentShowBestFile.println("--random-seed " + randomSeed);
 		currentShowBestFile.close();
 	}
 
-	private void saveRestartFile(Population populationA,
-			Population populationB, long randomSeed)
+	private void saveRestartFile(int generationA,
+			int generationB, long randomSeed)
 			throws FileNotFoundException {
 		PrintStream restartFile = openForWriting(outputDirectory + "/"
 				+ restartFilename);
@@ -260,14 +404,14 @@ public class DiskStorage implements Serializable{
 		
 		restartFile.println("--population loada=" + outputDirectory
 				+ "/populations/a" + populationFilename
-				+ populationA.getNumberOfCurrentGeneration() + ",loadb="
+				+ generationA + ",loadb="
 				+ outputDirectory + "/populations/b" + populationFilename
-				+ populationB.getNumberOfCurrentGeneration());
+				+ generationB);
 		restartFile.println("--random-seed " + randomSeed);
 		restartFile.close();
 	}
 
-	private void saveRestartFile(Population population, long randomSeed)
+	private void saveRestartFile(int generation, long randomSeed)
 			throws FileNotFoundException {
 		PrintStream restartFile = openForWriting(outputDirectory + "/"
 				+ restartFilename);
@@ -278,63 +422,63 @@ public class DiskStorage implements Serializable{
 
 		restartFile.println("--population load=" + outputDirectory
 				+ "/populations/" + populationFilename
-				+ population.getNumberOfCurrentGeneration());
+				+ generation);
 		restartFile.println("--random-seed " + randomSeed);
 		restartFile.close();
 	}
 
-	private void saveShowBestFile(Population populationA,
-			Population populationB, long randomSeed, String prefixA,
+	private void saveShowBestFile(int generationA,
+			int generationB, long randomSeed, String prefixA,
 			String prefixB)
 			throws FileNotFoundException {
 		PrintStream showBestFile = openForWriting(outputDirectory
 				+ "/show_best/"+ prefixA + showBestFilename
-				+ populationA.getNumberOfCurrentGeneration() + ".conf");
+				+ generationA + ".conf");
 
 		for(String s : argumentsForShowBestIndividual)
 			showBestFile.println(s);
 
 		showBestFile.println("--population load" + prefixA + "=" + outputDirectory
 				+ "/populations/"+ prefixA + populationFilename
-				+ populationB.getNumberOfCurrentGeneration() + ",load" + prefixB + "="
+				+ generationB + ",load" + prefixB + "="
 				+ outputDirectory + "/populations/" + prefixB + populationFilename
-				+ populationB.getNumberOfCurrentGeneration()
+				+ generationB
 				+ ",showbestCoevolved");
 		showBestFile.println("--random-seed " + randomSeed);
 		showBestFile.close();
 
 	}
 
-	private void saveShowBestFile(Population population, long randomSeed)
+	private void saveShowBestFile(int generation, long randomSeed)
 			throws FileNotFoundException {
 		PrintStream showBestFile = openForWriting(outputDirectory
 				+ "/show_best/" + showBestFilename
-				+ population.getNumberOfCurrentGeneration() + ".conf");
+				+ generation + ".conf");
 
 		for(String s : argumentsForShowBestIndividual)
 			showBestFile.println(s);
 		
-		showBestFile.println("--population load=" + outputDirectory + "/populations/" + populationFilename + population.getNumberOfCurrentGeneration()+ ",showbest");
+		showBestFile.println("--population load=" + outputDirectory + "/populations/" + populationFilename + generation+ ",showbest");
 		showBestFile.println("--random-seed " + randomSeed);
 		showBestFile.close();
 	}
 
-	private void savePopulationToFile(Population population, String prefix)
-			throws FileNotFoundException, IOException {
-		FileOutputStream fileOut = new FileOutputStream(outputDirectory
+	private PopulationCheckpoint snapshot(Population population) throws IOException {
+		return PopulationCheckpoint.snapshot(population, population.hasImmutableAlleles());
+	}
+
+	private void savePopulationToFile(PopulationCheckpoint checkpoint, int generation, String prefix)
+			throws IOException {
+		checkpoint.write(new File(outputDirectory
 				+ "/populations/" + prefix + populationFilename
-				+ population.getNumberOfCurrentGeneration());
-		GZIPOutputStream gzipOut = new GZIPOutputStream(fileOut);
-		ObjectOutputStream out = new ObjectOutputStream(gzipOut);
-		out.writeObject(population);
-		out.close();
+				+ generation));
 	}
 
-	private void saveGenerationNumber(Population population, String prefix)
+	private void saveGenerationNumber(int generationNumber, String prefix)
 			throws FileNotFoundException {
 		PrintStream generation = openForWriting(outputDirectory + "/"
 				+ prefix + generationNumberFilename);
-		generation.println(population.getNumberOfCurrentGeneration());
+		generation.println(generationNumber);
 		generation.close();
 	}
 
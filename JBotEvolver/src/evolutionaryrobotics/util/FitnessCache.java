@@ -0,0 +1,259 @@
+package evolutionaryrobotics.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import evolutionaryrobotics.neuralnetworks.Chromosome;
+
+/**
+ * Keeps the fitness of the genomes already evaluated, so that the elites and
+ * the chromosomes with the same alleles as another one do not have to be
+ * simulated again. The genomes are compared by content. What can be reused
+ * depends on the policy:
+ * <ul>
+ * <li>SEED: the fitness is reused if the genome is evaluated with the same
+ * seed and number of samples, and so it is the same fitness the simulation
+ * would give. This only helps with duplicates in a generation, or if the seed
+ * does not change between generations.</li>
+ * <li>KEEP: the fitness of a genome is reused whatever the seed, so the elites
+ * keep the fitness of their first evaluation.</li>
+ * <li>INCREMENTAL: when a genome is evaluated with a different seed, only a
+ * few new samples are simulated, and the fitness is the average of all the
+ * samples evaluated so far.</li>
+ * </ul>
+ * Each chromosome of a generation is given to
+ * {@link #startEvaluation(Chromosome, long, int)}, which tells how many samples
+ * have to be simulated, the fitness of the ones simulated is given to
+ * {@link #setResult(int, double)}, and then {@link #getFitness(int)} gives the
+ * fitness of every chromosome. {@link #endGeneration()} is called once all of
+ * them are known.
+ */
+public class FitnessCache implements Serializable {
+
+	private static final long serialVersionUID = -4166735309117722412L;
+
+	public enum Policy {
+		SEED, KEEP, INCREMENTAL
+	}
+
+	private Policy policy;
+	private int incrementalSamples;
+
+	private LinkedHashMap<Key, Entry> entries;
+
+	//the chromosomes of the current generation, by id
+	private HashMap<Integer, Evaluation> evaluations = new HashMap<Integer, Evaluation>();
+	//the first chromosome of the current generation with each genome
+	private HashMap<Key, Integer> firstEvaluations = new HashMap<Key, Integer>();
+
+	private int hits = 0;
+	private int partialHits = 0;
+	private int misses = 0;
+
+	public FitnessCache(Policy policy, int incrementalSamples, final int maximumSize) {
+		this.policy = policy;
+		this.incrementalSamples = incrementalSamples;
+		this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+				return size() > maximumSize;
+			}
+		};
+	}
+
+	/**
+	 * @return the number of samples that have to be simulated for the
+	 *         chromosome, which is 0 if its fitness is already known or if
+	 *         another chromosome of this generation has the same genome
+	 */
+	public int startEvaluation(Chromosome chromosome, long seed, int samples) {
+		Key key = policy == Policy.SEED ? new Key(chromosome.getAlleles(), seed, samples) : new Key(chromosome.getAlleles(), 0, 0);
+		Evaluation evaluation = new Evaluation(key, seed);
+		evaluations.put(chromosome.getID(), evaluation);
+
+		Integer first = firstEvaluations.get(key);
+		if(first != null) {
+			evaluation.first = first;
+			hits++;
+			return 0;
+		}
+		firstEvaluations.put(key, chromosome.getID());
+
+		Entry entry = entries.get(key);
+
+		if(entry == null) {
+			evaluation.samples = samples;
+			misses++;
+			return samples;
+		}
+
+		evaluation.entry = entry;
+
+		if(policy == Policy.INCREMENTAL && entry.seed != seed) {
+			evaluation.samples = incrementalSamples;
+			partialHits++;
+			return incrementalSamples;
+		}
+
+		hits++;
+		return 0;
+	}
+
+	/**
+	 * @return the number of samples of the chromosome's genome that were
+	 *         already evaluated, so that the samples simulated for it continue
+	 *         from there instead of repeating the first ones
+	 */
+	public int getFirstSample(int chromosomeId) {
+		Entry entry = evaluations.get(chromosomeId).entry;
+		return entry == null ? 0 : entry.samples;
+	}
+
+	/**
+	 * Sets the fitness of the samples simulated for a chromosome.
+	 */
+	public void setResult(int chromosomeId, double fitness) {
+		setResult(chromosomeId, fitness, true);
+	}
+
+	/**
+	 * Sets the fitness of the samples simulated for a chromosome. If it is not
+	 * exact, such as the bound given when an evaluation is stopped, it is only
+	 * used in this generation and is not kept in the cache.
+	 */
+	public void setResult(int chromosomeId, double fitness, boolean exact) {
+		Evaluation evaluation = evaluations.get(chromosomeId);
+
+		if(!exact) {
+			evaluation.entry = new Entry(fitness, evaluation.samples, evaluation.seed);
+		} else if(evaluation.entry == null) {
+			evaluation.entry = new Entry(fitness, evaluation.samples, evaluation.seed);
+			entries.put(evaluation.key, evaluation.entry);
+		} else {
+			Entry entry = evaluation.entry;
+			entry.fitness = (entry.fitness * entry.samples + fitness * evaluation.samples) / (entry.samples + evaluation.samples);
+			entry.samples+= evaluation.samples;
+			entry.seed = evaluation.seed;
+			entries.put(evaluation.key, entry);
+		}
+	}
+
+	/**
+	 * @return the fitness of a chromosome of this generation, once the
+	 *         results of the samples simulated have been set
+	 */
+	public double getFitness(int chromosomeId) {
+		Evaluation evaluation = evaluations.get(chromosomeId);
+		if(evaluation.first != null)
+			evaluation = evaluations.get(evaluation.first);
+		return evaluation.entry.fitness;
+	}
+
+	public void endGeneration() {
+		evaluations.clear();
+		firstEvaluations.clear();
+	}
+
+	/**
+	 * @return the number of chromosomes that were not simulated since the
+	 *         counters were reset
+	 */
+	public int getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of chromosomes for which only the incremental
+	 *         samples were simulated since the counters were reset
+	 */
+	public int getPartialHits() {
+		return partialHits;
+	}
+
+	/**
+	 * @return the number of chromosomes that were fully simulated since the
+	 *         counters were reset
+	 */
+	public int getMisses() {
+		return misses;
+	}
+
+	public void resetCounters() {
+		hits = 0;
+		partialHits = 0;
+		misses = 0;
+	}
+
+	public Policy getPolicy() {
+		return policy;
+	}
+
+	private static class Key implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final double[] alleles;
+		private final long seed;
+		private final int samples;
+		private final int hash;
+
+		public Key(double[] alleles, long seed, int samples) {
+			this.alleles = alleles.clone();
+			this.seed = seed;
+			this.samples = samples;
+			this.hash = 31 * (31 * Arrays.hashCode(alleles) + Long.hashCode(seed)) + samples;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof Key))
+				return false;
+			Key other = (Key)obj;
+			return hash == other.hash && seed == other.seed && samples == other.samples
+					&& Arrays.equals(alleles, other.alleles);
+		}
+	}
+
+	private static class Entry implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private double fitness;
+		private int samples;
+		//the seed of the last samples evaluated
+		private long seed;
+
+		public Entry(double fitness, int samples, long seed) {
+			this.fitness = fitness;
+			this.samples = samples;
+			this.seed = seed;
+		}
+	}
+
+	private static class Evaluation implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Key key;
+		private final long seed;
+		private int samples;
+		private Entry entry;
+		//the chromosome with the same genome evaluated before in this generation
+		private Integer first;
+
+		public Evaluation(Key key, long seed) {
+			this.key = key;
+			this.seed = seed;
+		}
+	}
+}
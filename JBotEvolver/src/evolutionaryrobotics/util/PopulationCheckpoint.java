@@ -0,0 +1,247 @@
+package evolutionaryrobotics.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/**
+ * The file of a population saved by {@link DiskStorage}. The population is
+ * serialized, except for its double arrays (the alleles of the chromosomes),
+ * which are replaced by their index and written as raw little-endian doubles
+ * after it, without compression. The file is:
+ * <ul>
+ * <li>the magic number, the version of the format, the number of arrays and
+ * the length of the serialized population, as ints</li>
+ * <li>the length of each array, as ints</li>
+ * <li>the serialized population</li>
+ * <li>the doubles of each array</li>
+ * </ul>
+ * A snapshot of the population is taken with {@link #snapshot(Serializable,
+ * boolean)}, and then it can be written by another thread while the
+ * population changes. The file is written with another name and renamed when
+ * it is complete, so a population file is never left half written.
+ */
+public class PopulationCheckpoint {
+
+	public static final int MAGIC = 0x4A425043;
+	public static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 16;
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	private byte[] object;
+	private ArrayList<double[]> arrays;
+
+	private PopulationCheckpoint(byte[] object, ArrayList<double[]> arrays) {
+		this.object = object;
+		this.arrays = arrays;
+	}
+
+	/**
+	 * Serializes the population, keeping its double arrays to be written
+	 * later. If they are never changed once created, they do not have to be
+	 * copied.
+	 */
+	public static PopulationCheckpoint snapshot(Serializable population, boolean immutableArrays) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ArraysOutputStream out = new ArraysOutputStream(bytes, immutableArrays);
+		out.writeObject(population);
+		out.close();
+		return new PopulationCheckpoint(bytes.toByteArray(), out.arrays);
+	}
+
+	public void write(File file) throws IOException {
+		File temporary = new File(file.getPath() + ".tmp");
+
+		try (FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(MAGIC).putInt(VERSION).putInt(arrays.size()).putInt(object.length);
+
+			for(double[] array : arrays) {
+				if(buffer.remaining() < 4)
+					flush(channel, buffer);
+				buffer.putInt(array.length);
+			}
+			flush(channel, buffer);
+
+			ByteBuffer objectBuffer = ByteBuffer.wrap(object);
+			while(objectBuffer.hasRemaining())
+				channel.write(objectBuffer);
+
+			for(double[] array : arrays) {
+				int position = 0;
+				while(position < array.length) {
+					if(buffer.remaining() < 8)
+						flush(channel, buffer);
+					int length = Math.min(buffer.remaining() / 8, array.length - position);
+					buffer.asDoubleBuffer().put(array, position, length);
+					buffer.position(buffer.position() + length * 8);
+					position+= length;
+				}
+			}
+			flush(channel, buffer);
+			channel.force(false);
+		}
+
+		Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * @return whether the file was written in this format, or is a serialized
+	 *         population of the previous versions
+	 */
+	public static boolean isCheckpoint(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+			while(buffer.hasRemaining() && channel.read(buffer) >= 0);
+			return !buffer.hasRemaining() && buffer.getInt(0) == MAGIC;
+		}
+	}
+
+	public static Object read(File file) throws IOException, ClassNotFoundException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.flip();
+
+			fill(channel, buffer, HEADER_SIZE);
+			if(buffer.getInt() != MAGIC)
+				throw new IOException(file + " is not a population file");
+			int version = buffer.getInt();
+			if(version > VERSION)
+				throw new IOException(file + " was written by a newer version (" + version + ")");
+
+			double[][] arrays = new double[buffer.getInt()][];
+			byte[] object = new byte[buffer.getInt()];
+
+			for(int i = 0 ; i < arrays.length ; i++) {
+				fill(channel, buffer, 4);
+				arrays[i] = new double[buffer.getInt()];
+			}
+
+			int position = 0;
+			while(position < object.length) {
+				fill(channel, buffer, 1);
+				int length = Math.min(buffer.remaining(), object.length - position);
+				buffer.get(object, position, length);
+				position+= length;
+			}
+
+			for(double[] array : arrays) {
+				position = 0;
+				while(position < array.length) {
+					fill(channel, buffer, 8);
+					int length = Math.min(buffer.remaining() / 8, array.length - position);
+					buffer.asDoubleBuffer().get(array, position, length);
+					buffer.position(buffer.position() + length * 8);
+					position+= length;
+				}
+			}
+
+			ArraysInputStream in = new ArraysInputStream(new ByteArrayInputStream(object), arrays);
+			Object population = in.readObject();
+			in.close();
+			return population;
+		}
+	}
+
+	private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+
+	/**
+	 * Reads from the channel until the buffer has at least the number of
+	 * bytes given left to be read.
+	 */
+	private static void fill(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+		if(buffer.remaining() >= bytes)
+			return;
+		buffer.compact();
+		while(buffer.position() < bytes) {
+			if(channel.read(buffer) < 0)
+				throw new EOFException("The population file is incomplete");
+		}
+		buffer.flip();
+	}
+
+	/**
+	 * Takes the place of a double array in the serialized population.
+	 */
+	private static class ArrayReference implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private int index;
+
+		public ArrayReference(int index) {
+			this.index = index;
+		}
+	}
+
+	private static class ArraysOutputStream extends ObjectOutputStream {
+
+		private ArrayList<double[]> arrays = new ArrayList<double[]>();
+		//the same array is written once, and is the same array when read
+		private IdentityHashMap<double[], ArrayReference> references = new IdentityHashMap<double[], ArrayReference>();
+		private boolean immutableArrays;
+
+		public ArraysOutputStream(OutputStream out, boolean immutableArrays) throws IOException {
+			super(out);
+			this.immutableArrays = immutableArrays;
+			enableReplaceObject(true);
+		}
+
+		@Override
+		protected Object replaceObject(Object obj) throws IOException {
+			if(!(obj instanceof double[]))
+				return obj;
+
+			double[] array = (double[])obj;
+			ArrayReference reference = references.get(array);
+			if(reference == null) {
+				reference = new ArrayReference(arrays.size());
+				references.put(array, reference);
+				arrays.add(immutableArrays ? array : array.clone());
+			}
+			return reference;
+		}
+	}
+
+	private static class ArraysInputStream extends ObjectInputStream {
+
+		private double[][] arrays;
+
+		public ArraysInputStream(InputStream in, double[][] arrays) throws IOException {
+			super(in);
+			this.arrays = arrays;
+			enableResolveObject(true);
+		}
+
+		@Override
+		protected Object resolveObject(Object obj) throws IOException {
+			if(obj instanceof ArrayReference)
+				return arrays[((ArrayReference)obj).index];
+			return obj;
+		}
+	}
+}
@@ -0,0 +1,182 @@
+package evolutionaryrobotics.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import taskexecutor.results.SampleTelemetry;
+
+/**
+ * Appends a record for each sample evaluated to a binary file, so that the
+ * fitness and the time of the evaluations of each worker can be analysed
+ * after the evolution (see {@link TelemetryReader}). The records are encoded
+ * and written by another thread, which flushes them whenever it has nothing
+ * else to write. If the file already exists the records are added at its end.
+ * <p>
+ * The file starts with a header of {@link #HEADER_SIZE} bytes (the magic
+ * number, the version, the size of a record and a reserved int), followed by
+ * records of {@link #RECORD_SIZE} bytes, all little-endian:
+ * <pre>
+ *  0 int    generation
+ *  4 int    chromosome id
+ *  8 int    sample
+ * 12 int    worker id
+ * 16 long   seed of the simulator
+ * 24 double fitness of the sample
+ * 32 long   wall time of the sample, in nanoseconds
+ * 40 int    steps simulated
+ * 44 int    flags ({@link #ABORTED})
+ * </pre>
+ * The worker id is the line of the worker's name in {@link #WORKERS_FILENAME},
+ * in the same folder.
+ */
+public class TelemetryLog {
+
+	public static final String FILENAME = "_telemetry.bin";
+	public static final String WORKERS_FILENAME = "_telemetry_workers.txt";
+
+	public static final int MAGIC = 0x4A42544C;
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 16;
+	public static final int RECORD_SIZE = 48;
+
+	/**
+	 * The simulation of the sample was stopped before its end.
+	 */
+	public static final int ABORTED = 1;
+
+	private static final int BUFFER_SIZE = RECORD_SIZE * 4096;
+
+	private FileChannel channel;
+	private PrintStream workersFile;
+	private HashMap<String, Integer> workers = new HashMap<String, Integer>();
+	private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+	//encodes and writes the records, and stops when it has nothing to do
+	private ThreadPoolExecutor writer = new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+	private volatile IOException error;
+
+	/**
+	 * Opens the log in the folder, or creates it.
+	 */
+	public TelemetryLog(String folder) throws IOException {
+		File file = new File(folder, FILENAME);
+		File names = new File(folder, WORKERS_FILENAME);
+
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+		if(channel.size() == 0) {
+			buffer.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt(0);
+			flush();
+		} else {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			while(header.hasRemaining() && channel.read(header, header.position()) >= 0);
+			header.flip();
+			if(header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION
+					|| header.getInt() != RECORD_SIZE) {
+				channel.close();
+				throw new IOException("Not a telemetry log: "+file);
+			}
+			//the last record may not have been written completely
+			channel.truncate(HEADER_SIZE + (channel.size() - HEADER_SIZE) / RECORD_SIZE * RECORD_SIZE);
+			channel.position(channel.size());
+
+			if(names.exists()) {
+				List<String> lines = Files.readAllLines(names.toPath());
+				for(int i = 0 ; i < lines.size() ; i++)
+					workers.put(lines.get(i), i);
+			}
+		}
+
+		workersFile = new PrintStream(new FileOutputStream(names, true));
+	}
+
+	/**
+	 * Adds the records of the samples evaluated for a chromosome.
+	 */
+	public void add(final int generation, final int chromosomeId, final SampleTelemetry telemetry) {
+		writer.execute(new Runnable() {
+			@Override
+			public void run() {
+				if(error != null)
+					return;
+				try {
+					int worker = getWorkerId(telemetry.getWorker());
+					int samples = telemetry.getNumberOfSamples();
+
+					for(int i = 0 ; i < samples ; i++) {
+						if(buffer.remaining() < RECORD_SIZE)
+							flush();
+						buffer.putInt(generation);
+						buffer.putInt(chromosomeId);
+						buffer.putInt(i);
+						buffer.putInt(worker);
+						buffer.putLong(telemetry.getSeed(i));
+						buffer.putDouble(telemetry.getFitness(i));
+						buffer.putLong(telemetry.getWallTime(i));
+						buffer.putInt(telemetry.getSteps(i));
+						buffer.putInt(telemetry.isAborted() && i == samples - 1 ? ABORTED : 0);
+					}
+
+					if(writer.getQueue().isEmpty())
+						flush();
+				} catch(IOException e) {
+					error = e;
+					e.printStackTrace();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Writes the records left and closes the files.
+	 *
+	 * @throws IOException if the records could not be written
+	 */
+	public void close() throws IOException {
+		writer.shutdown();
+		try {
+			writer.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			if(error == null)
+				flush();
+		} finally {
+			channel.close();
+			workersFile.close();
+		}
+		if(error != null)
+			throw error;
+	}
+
+	private int getWorkerId(String name) {
+		Integer id = workers.get(name);
+		if(id == null) {
+			id = workers.size();
+			workers.put(name, id);
+			workersFile.println(name);
+			workersFile.flush();
+		}
+		return id;
+	}
+
+	private void flush() throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+}
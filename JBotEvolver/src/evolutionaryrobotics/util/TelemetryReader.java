@@ -0,0 +1,193 @@
+package evolutionaryrobotics.util;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads the records of a {@link TelemetryLog}. The file is mapped in memory
+ * instead of being read, so that logs larger than the heap can be used: the
+ * records are only read from the disk when they are accessed. The records
+ * that were written when the log is opened are available, including the ones
+ * of an evolution that is still running.
+ */
+public class TelemetryReader {
+
+	//the records of each mapped buffer, which is limited to 2GB
+	private static final int RECORDS_PER_SEGMENT = Integer.MAX_VALUE / TelemetryLog.RECORD_SIZE;
+
+	private MappedByteBuffer[] segments;
+	private long records;
+	private String[] workers = new String[0];
+
+	public TelemetryReader(File file) throws IOException {
+		if(!isTelemetryLog(file))
+			throw new IOException("Not a telemetry log: "+file);
+
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			records = (channel.size() - TelemetryLog.HEADER_SIZE) / TelemetryLog.RECORD_SIZE;
+			segments = new MappedByteBuffer[(int)((records + RECORDS_PER_SEGMENT - 1) / RECORDS_PER_SEGMENT)];
+
+			for(int i = 0 ; i < segments.length ; i++) {
+				long first = (long)i * RECORDS_PER_SEGMENT;
+				long size = Math.min(RECORDS_PER_SEGMENT, records - first) * TelemetryLog.RECORD_SIZE;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, TelemetryLog.HEADER_SIZE + first * TelemetryLog.RECORD_SIZE, size);
+				segments[i].order(ByteOrder.LITTLE_ENDIAN);
+			}
+		} finally {
+			//the mapping is still valid after the channel is closed
+			channel.close();
+		}
+
+		File names = new File(file.getParentFile(), TelemetryLog.WORKERS_FILENAME);
+		if(names.exists()) {
+			List<String> lines = Files.readAllLines(names.toPath());
+			workers = lines.toArray(new String[lines.size()]);
+		}
+	}
+
+	/**
+	 * @return whether the file starts with the header of a telemetry log
+	 */
+	public static boolean isTelemetryLog(File file) {
+		if(!file.isFile() || file.length() < TelemetryLog.HEADER_SIZE)
+			return false;
+		try {
+			DataInputStream in = new DataInputStream(new FileInputStream(file));
+			try {
+				return Integer.reverseBytes(in.readInt()) == TelemetryLog.MAGIC
+						&& Integer.reverseBytes(in.readInt()) == TelemetryLog.VERSION
+						&& Integer.reverseBytes(in.readInt()) == TelemetryLog.RECORD_SIZE;
+			} finally {
+				in.close();
+			}
+		} catch(IOException e) {
+			return false;
+		}
+	}
+
+	public long getNumberOfRecords() {
+		return records;
+	}
+
+	public int getGeneration(long record) {
+		return getInt(record, 0);
+	}
+
+	public int getChromosomeId(long record) {
+		return getInt(record, 4);
+	}
+
+	public int getSample(long record) {
+		return getInt(record, 8);
+	}
+
+	public int getWorker(long record) {
+		return getInt(record, 12);
+	}
+
+	/**
+	 * @return the name of the worker of a record, or its id if the names
+	 *         could not be read
+	 */
+	public String getWorkerName(long record) {
+		int worker = getWorker(record);
+		return worker < workers.length ? workers[worker] : String.valueOf(worker);
+	}
+
+	public long getSeed(long record) {
+		return getSegment(record).getLong(getOffset(record) + 16);
+	}
+
+	public double getFitness(long record) {
+		return getSegment(record).getDouble(getOffset(record) + 24);
+	}
+
+	/**
+	 * @return the time the sample took, in nanoseconds
+	 */
+	public long getWallTime(long record) {
+		return getSegment(record).getLong(getOffset(record) + 32);
+	}
+
+	public int getSteps(long record) {
+		return getInt(record, 40);
+	}
+
+	public boolean isAborted(long record) {
+		return (getInt(record, 44) & TelemetryLog.ABORTED) != 0;
+	}
+
+	/**
+	 * @return the names of the workers, by id
+	 */
+	public String[] getWorkerNames() {
+		return workers.clone();
+	}
+
+	/**
+	 * @return for each generation, the highest average fitness of the samples
+	 *         of a chromosome, or NaN if nothing was evaluated in it. The
+	 *         evaluations that were stopped are not counted, and only the
+	 *         samples simulated are averaged, so a chromosome whose fitness
+	 *         came from a cache is not counted either.
+	 */
+	public double[] getHighestFitnessPerGeneration() {
+		double[] highest = new double[0];
+
+		long record = 0;
+		while(record < records) {
+			int generation = getGeneration(record);
+			int chromosomeId = getChromosomeId(record);
+			double sum = 0;
+			int samples = 0;
+			boolean aborted = false;
+
+			//the records of a chromosome are written together
+			do {
+				sum+= getFitness(record);
+				aborted|= isAborted(record);
+				samples++;
+				record++;
+			} while(record < records && getSample(record) != 0
+					&& getGeneration(record) == generation && getChromosomeId(record) == chromosomeId);
+
+			if(generation >= highest.length) {
+				int length = highest.length;
+				highest = Arrays.copyOf(highest, Math.max(generation + 1, length * 2));
+				Arrays.fill(highest, length, highest.length, Double.NaN);
+			}
+
+			if(!aborted && !(highest[generation] >= sum / samples))
+				highest[generation] = sum / samples;
+		}
+
+		int generations = highest.length;
+		while(generations > 0 && Double.isNaN(highest[generations - 1]))
+			generations--;
+		return Arrays.copyOf(highest, generations);
+	}
+
+	private int getInt(long record, int field) {
+		return getSegment(record).getInt(getOffset(record) + field);
+	}
+
+	private MappedByteBuffer getSegment(long record) {
+		if(record < 0 || record >= records)
+			throw new IndexOutOfBoundsException("Record "+record+" of "+records);
+		return segments[(int)(record / RECORDS_PER_SEGMENT)];
+	}
+
+	private int getOffset(long record) {
+		return (int)(record % RECORDS_PER_SEGMENT) * TelemetryLog.RECORD_SIZE;
+	}
+}
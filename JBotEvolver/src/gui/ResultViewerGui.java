@@ -59,6 +59,7 @@ import evolutionaryrobotics.evaluationfunctions.EvaluationFunction;
 import evolutionaryrobotics.neuralnetworks.CTRNNMultilayer;
 import evolutionaryrobotics.neuralnetworks.NeuralNetwork;
 import evolutionaryrobotics.neuralnetworks.NeuralNetworkController;
+import evolutionaryrobotics.util.TelemetryLog;
 import gui.renderer.Renderer;
 import gui.util.Editor;
 import gui.util.GraphPlotter;
@@ -726,10 +727,13 @@ public class ResultViewerGui extends Gui implements Updatable {
 	protected String getFitnessFiles(String folder) {
 
 		File f = new File(folder + "/_fitness.log");
+		File telemetry = new File(folder + "/" + TelemetryLog.FILENAME);
 
 		try {
 			if (f.exists()) {
 				return f.getAbsolutePath();
+			} else if (telemetry.exists()) {
+				return telemetry.getAbsolutePath();
 			} else {
 				if (folder == null) {
 					JOptionPane.showMessageDialog(this, "No folders selected!", "Error", JOptionPane.ERROR_MESSAGE);
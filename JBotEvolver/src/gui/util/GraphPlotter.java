@@ -8,6 +8,7 @@ import java.awt.event.ActionListener;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -32,6 +33,7 @@ import evolutionaryrobotics.neuralnetworks.NeuralNetwork;
 import evolutionaryrobotics.neuralnetworks.NeuralNetworkController;
 import evolutionaryrobotics.neuralnetworks.inputs.NNInput;
 import evolutionaryrobotics.neuralnetworks.outputs.NNOutput;
+import evolutionaryrobotics.util.TelemetryReader;
 import simulation.Simulator;
 import simulation.Updatable;
 import simulation.robot.Robot;
@@ -164,7 +166,9 @@ public class GraphPlotter extends JFrame implements Updatable {
 	}
 	
 	/**
-	 * This constructor receives a list of fitness.log files
+	 * This constructor receives a list of fitness.log files. A telemetry log
+	 * (see {@link TelemetryReader}) can be given instead, and then the highest
+	 * fitness of the chromosomes evaluated in each generation is plotted.
 	 * @param files list of file names of the fitness.log files to plot
 	 */
 	public GraphPlotter(String[] files) {
@@ -185,6 +189,18 @@ public class GraphPlotter extends JFrame implements Updatable {
 			try {
 				
 				File fitnessFile = new File(file);
+				
+				if(TelemetryReader.isTelemetryLog(fitnessFile)) {
+					double[] highest = new TelemetryReader(fitnessFile).getHighestFitnessPerGeneration();
+					Double[] dataList = new Double[highest.length];
+					for(int i = 0 ; i < highest.length ; i++)
+						dataList[i] = Double.isNaN(highest[i]) ? null : highest[i];
+					totalGenerations = Math.max(highest.length, totalGenerations);
+					graph.addDataList(dataList);
+					graph.addLegend(fitnessFile.getAbsolutePath());
+					continue;
+				}
+				
 				File generationsFile = new File(fitnessFile.getParent() + folderSeparator +"_generationnumber");
 				
 				Scanner sc = new Scanner(generationsFile);
@@ -221,6 +237,9 @@ public class GraphPlotter extends JFrame implements Updatable {
 		    catch (FileNotFoundException e) {
 		        e.printStackTrace();
 		    }
+		    catch (IOException e) {
+		        e.printStackTrace();
+		    }
 		}
 
 		graph.setxLabel("Generations ("+(totalGenerations)+")");
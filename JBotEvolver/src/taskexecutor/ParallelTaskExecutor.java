@@ -1,70 +1,181 @@
 package taskexecutor;
 
-import java.util.LinkedList;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import evolutionaryrobotics.JBotEvolver;
 import result.Result;
 import simulation.util.Arguments;
+import simulation.util.ArgumentsAnnotation;
+import taskexecutor.tasks.EvaluationContext;
 import tasks.Task;
 
+/**
+ * Runs the tasks in the threads of this machine. The results are returned in
+ * the order in which the tasks finish, so a slow task does not delay the
+ * results of the tasks added after it.
+ */
 public class ParallelTaskExecutor extends TaskExecutor {
-	
+
+	//added to the finished tasks when the executor is stopped, to wake up
+	//the threads waiting for results
+	private static final Future<Result> STOPPED = CompletableFuture.completedFuture(null);
+
+	@ArgumentsAnnotation(name="threads", help="Number of tasks that run at the same time. The default is the number of processors")
+	private int numberThreads;
+	@ArgumentsAnnotation(name="maxqueued", help="Maximum number of tasks waiting to start, addTask waits while it is reached. The default is 4 times the number of threads, 0 for no limit")
+	private int maxQueued;
+	@ArgumentsAnnotation(name="virtualthreads", values={"0","1"}, defaultValue="0", help="Set to 1 to run each task in a virtual thread, with at most 'threads' of them running at the same time")
+	private boolean virtualThreads;
+
 	private ExecutorService executor;
-	private LinkedList<Future<Result>> list = new LinkedList<Future<Result>>();
-	
+	private LinkedBlockingQueue<Future<Result>> finished = new LinkedBlockingQueue<Future<Result>>();
+	private ExecutorCompletionService<Result> completionService;
+	private Semaphore queued;
+	//with virtual threads, a task has to take a slot to run
+	private ArrayBlockingQueue<Slot> slots;
+
 	public ParallelTaskExecutor(JBotEvolver jBotEvolver, Arguments args) {
 		super(jBotEvolver, args);
-		int numberThreads = args.getArgumentAsIntOrSetDefault("threads", Runtime.getRuntime().availableProcessors());
-		executor = Executors.newFixedThreadPool(numberThreads);
+		numberThreads = args.getArgumentAsIntOrSetDefault("threads", Runtime.getRuntime().availableProcessors());
+		maxQueued = args.getArgumentAsIntOrSetDefault("maxqueued", numberThreads * 4);
+		virtualThreads = args.getArgumentAsIntOrSetDefault("virtualthreads", 0) == 1;
+
+		if(virtualThreads) {
+			executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("task-", 0).factory());
+			slots = new ArrayBlockingQueue<Slot>(numberThreads);
+			for(int i = 0 ; i < numberThreads ; i++)
+				slots.add(new Slot());
+		} else {
+			executor = Executors.newFixedThreadPool(numberThreads);
+		}
+
+		completionService = new ExecutorCompletionService<Result>(executor, finished);
+
+		if(maxQueued > 0)
+			queued = new Semaphore(maxQueued);
 	}
 
 	@Override
 	public void addTask(Task t) {
-		synchronized(list) {
-			Future<Result> submit = executor.submit(new JBotCallable(t));
-			list.add(submit);
+		if(queued != null) {
+			try {
+				queued.acquire();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+		try {
+			completionService.submit(new JBotCallable(t));
+		} catch(RejectedExecutionException e) {
+			//the executor was stopped
+			if(queued != null)
+				queued.release();
+		}
+	}
+
+	@Override
+	public Result getResult() {
+		try {
+			return getResult(completionService.take());
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
 		}
 	}
 
 	@Override
-	public synchronized Result getResult() {
-		
-		Result obj = null;
-		Future<Result> callable;
-		
-		synchronized(list) {
-			callable = list.pop();
+	public Result pollResult() {
+		Future<Result> future = completionService.poll();
+		return future == null ? null : getResult(future);
+	}
+
+	/**
+	 * @return the result of a finished task, or null if the executor was
+	 *         stopped
+	 * @throws RuntimeException if the task failed, with the exception of the
+	 *         task as the cause
+	 */
+	private Result getResult(Future<Result> future) {
+		if(future == STOPPED) {
+			finished.offer(STOPPED);
+			return null;
 		}
 		try {
-			obj = callable.get();
-		} catch(Exception e) {e.printStackTrace();}
-		return obj;
+			return future.get();
+		} catch(ExecutionException e) {
+			//the tasks that were running when the executor was stopped are interrupted
+			if(executor.isShutdown())
+				return null;
+			throw new RuntimeException("A task failed: " + e.getCause(), e.getCause());
+		} catch(InterruptedException e) {
+			//the task has finished, so this does not wait
+			Thread.currentThread().interrupt();
+			return null;
+		}
 	}
 
 	@Override
 	public void run() {}
-	
+
 	@Override
 	public void stopTasks() {
 		super.stopTasks();
 		executor.shutdownNow();
+		if(queued != null)
+			queued.release(maxQueued);
+		finished.offer(STOPPED);
 	}
-	
+
 	private class JBotCallable implements Callable<Result> {
-		
+
 		private Task t;
-		
+		private long added = System.nanoTime();
+
 		public JBotCallable(Task t) {
 			this.t = t;
 		}
 
 		@Override
 		public Result call() throws Exception {
-			t.run();
-			return t.getResult();
+			Slot slot = null;
+			if(slots != null) {
+				slot = slots.take();
+				EvaluationContext.attach(slot.context);
+			}
+
+			long start = System.nanoTime();
+			if(queued != null)
+				queued.release();
+
+			try {
+				t.run();
+				return t.getResult();
+			} finally {
+				statistics.addTask(start - added, System.nanoTime() - start);
+				if(slot != null) {
+					slot.context = EvaluationContext.detach();
+					slots.put(slot);
+				}
+			}
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * One of the tasks that can run at the same time with virtual threads.
+	 * It keeps the simulators of the tasks that used it, which would be lost
+	 * with the virtual thread otherwise.
+	 */
+	private static class Slot {
+		private EvaluationContext context;
+	}
+}
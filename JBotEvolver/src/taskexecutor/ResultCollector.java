@@ -0,0 +1,100 @@
+package taskexecutor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import result.Result;
+import tasks.Task;
+
+/**
+ * Adds tasks to a {@link TaskExecutor} and receives their results as the
+ * tasks finish, in any order, while more tasks are being added. The results
+ * are then given in the order in which the tasks were added, so that the
+ * fitness computed from them (such as the sum of the fitness of several
+ * tasks, or the best chromosome when there are ties) does not depend on which
+ * task finished first.
+ */
+public class ResultCollector {
+
+	private TaskExecutor taskExecutor;
+	private ArrayList<Integer> taskIds = new ArrayList<Integer>();
+	private HashMap<Integer, Result> results = new HashMap<Integer, Result>();
+
+	public ResultCollector(TaskExecutor taskExecutor) {
+		this.taskExecutor = taskExecutor;
+	}
+
+	/**
+	 * Adds the task to the executor, and receives the results of the tasks
+	 * that have already finished.
+	 *
+	 * @return the number of results received
+	 */
+	public int addTask(Task t) {
+		taskIds.add(t.getId());
+		taskExecutor.addTask(t);
+
+		int received = 0;
+		Result result;
+		while((result = taskExecutor.pollResult()) != null) {
+			check(result);
+			results.put(result.getTaskId(), result);
+			received(result);
+			received++;
+		}
+		return received;
+	}
+
+	public int getNumberOfPendingResults() {
+		return taskIds.size() - results.size();
+	}
+
+	/**
+	 * Waits for the result of one of the tasks that have not finished yet.
+	 *
+	 * @return the result, or null if the executor was stopped
+	 * @throws RuntimeException if the task failed
+	 */
+	public Result waitForResult() {
+		Result result = taskExecutor.getResult();
+		if(result != null) {
+			check(result);
+			results.put(result.getTaskId(), result);
+			received(result);
+		}
+		return result;
+	}
+
+	/**
+	 * Fails if the result carries the exception of a task that failed, so
+	 * that it is not taken for a stopped executor or a valid result.
+	 */
+	private static void check(Result result) {
+		if(result.getException() != null)
+			throw new RuntimeException("Task " + result.getTaskId() + " failed: " + result.getException(),
+					result.getException());
+	}
+
+	/**
+	 * Called as soon as a result is received, in the order in which the tasks
+	 * finish.
+	 */
+	protected void received(Result result) {
+	}
+
+	/**
+	 * @return the results received, in the order in which the tasks were
+	 *         added. The collector is then emptied to be used again.
+	 */
+	public ArrayList<Result> getResults() {
+		ArrayList<Result> ordered = new ArrayList<Result>(results.size());
+		for(Integer id : taskIds) {
+			Result result = results.get(id);
+			if(result != null)
+				ordered.add(result);
+		}
+		taskIds.clear();
+		results.clear();
+		return ordered;
+	}
+}
@@ -9,6 +9,7 @@ import tasks.Task;
 public class SequentialTaskExecutor extends TaskExecutor {
 
 	private LinkedList<Task> tasksToDo = new LinkedList<Task>();
+	private LinkedList<Long> timesAdded = new LinkedList<Long>();
 	private LinkedList<Task> tasksDone = new LinkedList<Task>();
 
 	public SequentialTaskExecutor(JBotEvolver jBotEvolver, Arguments args) {
@@ -19,6 +20,7 @@ public class SequentialTaskExecutor extends TaskExecutor {
 	public void addTask(Task t) {
 		synchronized (tasksToDo) {
 			tasksToDo.add(t);
+			timesAdded.add(System.nanoTime());
 			tasksToDo.notifyAll();
 		}
 	}
@@ -38,19 +40,31 @@ public class SequentialTaskExecutor extends TaskExecutor {
 		}
 	}
 
+	@Override
+	public Result pollResult() {
+		synchronized (tasksDone) {
+			Task t = tasksDone.pollFirst();
+			return t == null ? null : t.getResult();
+		}
+	}
+
 	@Override
 	public void run() {
 
 		while (true) {
 			Task t;
+			long added;
 			try {
 				synchronized (tasksToDo) {
 					while (tasksToDo.isEmpty()) {
 						tasksToDo.wait();
 					}
 					t = tasksToDo.pollFirst();
+					added = timesAdded.pollFirst();
 				}
+				long start = System.nanoTime();
 				t.run();
+				statistics.addTask(start - added, System.nanoTime() - start);
 				synchronized (tasksDone) {
 					tasksDone.add(t);
 					tasksDone.notifyAll();
@@ -9,15 +9,44 @@ import tasks.Task;
 
 public abstract class TaskExecutor extends Thread {
 
+	protected TaskStatistics statistics = new TaskStatistics();
+
 	public TaskExecutor(JBotEvolver jBotEvolver,Arguments args) {
 	}
 
 	public abstract void addTask(Task t);
 
+	/**
+	 * Waits for the result of one of the tasks that were added. The results
+	 * are not necessarily returned in the order in which the tasks were
+	 * added: {@link Result#getTaskId()} identifies the task.
+	 *
+	 * @return the result, or null if the executor was stopped
+	 * @throws RuntimeException if the task failed, in the executors that run
+	 *         the tasks themselves
+	 */
 	public abstract Result getResult();
-	
+
+	/**
+	 * @return the result of a task that has already finished, or null if
+	 *         there is none at the moment (or if the executor does not support
+	 *         it), without waiting
+	 */
+	public Result pollResult() {
+		return null;
+	}
+
+	/**
+	 * @return the times that the tasks waited to start and took to run, for
+	 *         the executors that measure them (the tasks are not counted
+	 *         otherwise)
+	 */
+	public TaskStatistics getStatistics() {
+		return statistics;
+	}
+
 	public void setTotalNumberOfTasks(int nTasks) {}
-	
+
 	public void setDescription(String desc) {}
 
 	public void run() {
@@ -34,4 +63,4 @@ public abstract class TaskExecutor extends Thread {
 		return (TaskExecutor) Factory.getInstance(arguments.getArgumentAsString("classname"), jBotEvolver, arguments);
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,87 @@
+package taskexecutor;
+
+import java.io.Serializable;
+
+/**
+ * Times of the tasks run by a {@link TaskExecutor}: how long each task waited
+ * between being added and starting to run, and how long it ran. The times are
+ * in nanoseconds.
+ */
+public class TaskStatistics implements Serializable {
+
+	private static final long serialVersionUID = 6093526745208310398L;
+
+	private long numberOfTasks = 0;
+	private long totalQueueTime = 0;
+	private long maxQueueTime = 0;
+	private long totalRunTime = 0;
+	private long maxRunTime = 0;
+
+	public TaskStatistics() {}
+
+	private TaskStatistics(TaskStatistics other) {
+		numberOfTasks = other.numberOfTasks;
+		totalQueueTime = other.totalQueueTime;
+		maxQueueTime = other.maxQueueTime;
+		totalRunTime = other.totalRunTime;
+		maxRunTime = other.maxRunTime;
+	}
+
+	public synchronized void addTask(long queueTime, long runTime) {
+		numberOfTasks++;
+		totalQueueTime+= queueTime;
+		maxQueueTime = Math.max(maxQueueTime, queueTime);
+		totalRunTime+= runTime;
+		maxRunTime = Math.max(maxRunTime, runTime);
+	}
+
+	/**
+	 * @return a copy of the current times, which is not changed by the tasks
+	 *         that finish afterwards
+	 */
+	public synchronized TaskStatistics getSnapshot() {
+		return new TaskStatistics(this);
+	}
+
+	public synchronized void reset() {
+		numberOfTasks = 0;
+		totalQueueTime = 0;
+		maxQueueTime = 0;
+		totalRunTime = 0;
+		maxRunTime = 0;
+	}
+
+	public synchronized long getNumberOfTasks() {
+		return numberOfTasks;
+	}
+
+	public synchronized long getTotalQueueTime() {
+		return totalQueueTime;
+	}
+
+	public synchronized long getMaxQueueTime() {
+		return maxQueueTime;
+	}
+
+	public synchronized double getAverageQueueTime() {
+		return numberOfTasks == 0 ? 0 : (double)totalQueueTime / numberOfTasks;
+	}
+
+	public synchronized long getTotalRunTime() {
+		return totalRunTime;
+	}
+
+	public synchronized long getMaxRunTime() {
+		return maxRunTime;
+	}
+
+	public synchronized double getAverageRunTime() {
+		return numberOfTasks == 0 ? 0 : (double)totalRunTime / numberOfTasks;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("tasks=%d queue avg=%.2fms max=%.2fms run avg=%.2fms max=%.2fms", numberOfTasks,
+				getAverageQueueTime() / 1e6, maxQueueTime / 1e6, getAverageRunTime() / 1e6, maxRunTime / 1e6);
+	}
+}
@@ -0,0 +1,536 @@
+package taskexecutor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+import evolutionaryrobotics.JBotEvolver;
+import result.Result;
+import simulation.util.Arguments;
+import simulation.util.ArgumentsAnnotation;
+import taskexecutor.tasks.EvaluationContext;
+import taskexecutor.tasks.GenerationalTask;
+import taskexecutor.tasks.JBotEvolverTask;
+import taskexecutor.workers.Worker;
+import taskexecutor.workers.WorkerProtocol;
+import tasks.Task;
+
+/**
+ * Runs the tasks in {@link Worker} processes that connect to this executor by
+ * TCP, on this machine or on others. A number of local workers can be started
+ * by the executor itself, and other workers can join at any time with
+ * "java taskexecutor.workers.Worker host port". Each worker gets as many tasks
+ * as the threads it has, and the results are returned in the order in which
+ * the tasks finish.
+ * <p>
+ * By default the executor only accepts connections from this machine. For
+ * workers on other machines, bindaddress has to be set to an address they can
+ * reach, and token to a secret that they get in the
+ * {@link WorkerProtocol#TOKEN_VARIABLE} environment variable, since only the
+ * workers that send the token of the executor are accepted.
+ * <p>
+ * The workers keep the arguments of the tasks, so a {@link GenerationalTask}
+ * is sent as its chromosome and seed only. The other tasks are serialized.
+ * The selection threshold of a GenerationalTask is not sent.
+ * <p>
+ * The executor and the workers send each other heartbeats. When a worker does
+ * not answer for some time, or its connection is closed, the tasks it was
+ * running are given to the other workers.
+ */
+public class WorkerTaskExecutor extends TaskExecutor {
+
+	//added to the results when the executor is stopped, to wake up the
+	//threads waiting for them
+	private static final Result STOPPED = new Result(-1);
+
+	@ArgumentsAnnotation(name="port", defaultValue="0", help="Port where the workers connect. With 0, any free port is used")
+	private int port;
+	@ArgumentsAnnotation(name="bindaddress", help="Address where the workers connect. The default is the loopback address, so that only workers on this machine can connect")
+	private String bindAddress;
+	@ArgumentsAnnotation(name="token", help="Secret that the workers must send when they connect. The default is a random one, given only to the local workers")
+	private String token;
+	@ArgumentsAnnotation(name="localworkers", defaultValue="1", help="Number of worker processes started on this machine")
+	private int localWorkers;
+	@ArgumentsAnnotation(name="workerthreads", help="Number of tasks that each local worker runs at the same time. The default is the number of processors divided by the number of local workers")
+	private int workerThreads;
+	@ArgumentsAnnotation(name="heartbeat", defaultValue="1000", help="Interval between heartbeats, in milliseconds")
+	private int heartbeatInterval;
+	@ArgumentsAnnotation(name="timeout", defaultValue="10000", help="Time without any message after which a worker is considered lost, in milliseconds")
+	private int timeout;
+
+	private ServerSocket serverSocket;
+	private LinkedBlockingDeque<QueuedTask> pending = new LinkedBlockingDeque<QueuedTask>();
+	private LinkedBlockingQueue<Result> results = new LinkedBlockingQueue<Result>();
+	private ArrayList<WorkerConnection> workers = new ArrayList<WorkerConnection>();
+	private ArrayList<Process> processes = new ArrayList<Process>();
+
+	//the configurations of the tasks not finished yet, by id, and the number
+	//of these tasks with each one. The ids are not reused, so the workers can
+	//forget a configuration once it has no tasks
+	private HashMap<String, Integer> configurationIds = new HashMap<String, Integer>();
+	private HashMap<Integer, Configuration> configurations = new HashMap<Integer, Configuration>();
+	private int nextConfigurationId = 0;
+
+	private volatile boolean stopped = false;
+
+	public WorkerTaskExecutor(JBotEvolver jBotEvolver, Arguments args) {
+		super(jBotEvolver, args);
+		port = args.getArgumentAsIntOrSetDefault("port", 0);
+		bindAddress = args.getArgumentAsString("bindaddress");
+		token = args.getArgumentIsDefined("token") ? args.getArgumentAsString("token") : createToken();
+		localWorkers = args.getArgumentAsIntOrSetDefault("localworkers", 1);
+		workerThreads = args.getArgumentAsIntOrSetDefault("workerthreads",
+				Math.max(1, Runtime.getRuntime().availableProcessors() / Math.max(1, localWorkers)));
+		heartbeatInterval = args.getArgumentAsIntOrSetDefault("heartbeat", 1000);
+		timeout = args.getArgumentAsIntOrSetDefault("timeout", 10000);
+
+		try {
+			InetAddress address = bindAddress == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(bindAddress);
+			serverSocket = new ServerSocket(port, 50, address);
+		} catch(IOException e) {
+			throw new RuntimeException("Cannot listen for workers on port "+port, e);
+		}
+
+		Thread acceptor = new Thread("worker-acceptor") {
+			@Override
+			public void run() {
+				acceptWorkers();
+			}
+		};
+		acceptor.setDaemon(true);
+		acceptor.start();
+
+		Thread heartbeats = new Thread("worker-heartbeats") {
+			@Override
+			public void run() {
+				sendHeartbeats();
+			}
+		};
+		heartbeats.setDaemon(true);
+		heartbeats.start();
+
+		for(int i = 0 ; i < localWorkers ; i++)
+			startLocalWorker(serverSocket.getLocalPort(), workerThreads, token, processes);
+	}
+
+	private static String createToken() {
+		byte[] bytes = new byte[16];
+		new SecureRandom().nextBytes(bytes);
+		StringBuilder token = new StringBuilder();
+		for(byte b : bytes)
+			token.append(String.format("%02x", b));
+		return token.toString();
+	}
+
+	/**
+	 * @return the port where the workers connect
+	 */
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * @return the number of workers connected
+	 */
+	public int getNumberOfWorkers() {
+		synchronized(workers) {
+			return workers.size();
+		}
+	}
+
+	private static void startLocalWorker(int port, int workerThreads, String token, ArrayList<Process> processes) {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+				Worker.class.getName(), InetAddress.getLoopbackAddress().getHostAddress(), "" + port, "" + workerThreads, "once");
+		builder.environment().put(WorkerProtocol.TOKEN_VARIABLE, token);
+		builder.inheritIO();
+		try {
+			processes.add(builder.start());
+		} catch(IOException e) {
+			throw new RuntimeException("Cannot start a local worker", e);
+		}
+	}
+
+	private void acceptWorkers() {
+		while(!stopped) {
+			try {
+				Socket socket = serverSocket.accept();
+				new WorkerConnection(socket).start();
+			} catch(IOException e) {
+				if(!stopped)
+					e.printStackTrace();
+			}
+		}
+	}
+
+	private void sendHeartbeats() {
+		while(!stopped) {
+			try {
+				Thread.sleep(heartbeatInterval);
+			} catch(InterruptedException e) {
+				return;
+			}
+			ArrayList<WorkerConnection> connections;
+			synchronized(workers) {
+				connections = new ArrayList<WorkerConnection>(workers);
+			}
+			for(WorkerConnection connection : connections)
+				connection.sendHeartbeat();
+		}
+	}
+
+	@Override
+	public void addTask(Task t) {
+		if(!stopped) {
+			QueuedTask task = new QueuedTask(t);
+			if(WorkerProtocol.isGenerationalTask(t))
+				task.configurationId = addConfigurationTask(((JBotEvolverTask)t).getJBotEvolver());
+			pending.add(task);
+		}
+	}
+
+	@Override
+	public Result getResult() {
+		try {
+			return checkResult(results.take());
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return null;
+	}
+
+	@Override
+	public Result pollResult() {
+		Result result = results.poll();
+		return result == null ? null : checkResult(result);
+	}
+
+	private Result checkResult(Result result) {
+		if(result == STOPPED) {
+			results.offer(STOPPED);
+			return null;
+		}
+		if(result.getException() != null)
+			throw new RuntimeException("A task failed: "+result.getException(), result.getException());
+		return result;
+	}
+
+	@Override
+	public void stopTasks() {
+		super.stopTasks();
+		stopped = true;
+		pending.clear();
+		try {
+			serverSocket.close();
+		} catch(IOException e) {}
+
+		ArrayList<WorkerConnection> connections;
+		synchronized(workers) {
+			connections = new ArrayList<WorkerConnection>(workers);
+		}
+		for(WorkerConnection connection : connections)
+			connection.close();
+
+		for(Process p : processes)
+			p.destroy();
+
+		results.offer(STOPPED);
+	}
+
+	/**
+	 * Counts a new task with the configuration of the JBotEvolver.
+	 *
+	 * @return the id of the configuration, which is the same for all of the
+	 *         unfinished tasks with the same arguments and random seed
+	 */
+	private int addConfigurationTask(JBotEvolver jBotEvolver) {
+		String key = jBotEvolver.getRandomSeed() + "\n" + EvaluationContext.getConfiguration(jBotEvolver.getArguments());
+		synchronized(configurationIds) {
+			Integer id = configurationIds.get(key);
+			if(id == null) {
+				id = nextConfigurationId++;
+				configurationIds.put(key, id);
+				configurations.put(id, new Configuration(key, jBotEvolver));
+			}
+			configurations.get(id).tasks++;
+			return id;
+		}
+	}
+
+	/**
+	 * Counts a finished task with the configuration, and forgets the
+	 * configuration when it has no tasks left.
+	 *
+	 * @return whether the configuration was forgotten
+	 */
+	private boolean removeConfigurationTask(int id) {
+		synchronized(configurationIds) {
+			Configuration configuration = configurations.get(id);
+			if(--configuration.tasks > 0)
+				return false;
+			configurations.remove(id);
+			configurationIds.remove(configuration.key);
+			return true;
+		}
+	}
+
+	private JBotEvolver getConfiguration(int id) {
+		synchronized(configurationIds) {
+			return configurations.get(id).jBotEvolver;
+		}
+	}
+
+	/**
+	 * Tells every worker that received the configuration that it will not be
+	 * used anymore.
+	 */
+	private void forgetConfiguration(int id) {
+		ArrayList<WorkerConnection> connections;
+		synchronized(workers) {
+			connections = new ArrayList<WorkerConnection>(workers);
+		}
+		for(WorkerConnection connection : connections)
+			connection.sendForget(id);
+	}
+
+	private static class Configuration {
+
+		private String key;
+		private JBotEvolver jBotEvolver;
+		private int tasks = 0;
+
+		public Configuration(String key, JBotEvolver jBotEvolver) {
+			this.key = key;
+			this.jBotEvolver = jBotEvolver;
+		}
+	}
+
+	private static class QueuedTask {
+
+		private Task task;
+		private int configurationId = -1;
+		private long added = System.nanoTime();
+		private long sent;
+
+		public QueuedTask(Task task) {
+			this.task = task;
+		}
+	}
+
+	/**
+	 * The connection to a worker. It receives the messages of the worker in
+	 * its own thread, and another thread sends it tasks while it has free
+	 * threads.
+	 */
+	private class WorkerConnection extends Thread {
+
+		private Socket socket;
+		private DataInputStream in;
+		private DataOutputStream out;
+		private String name = "";
+		private Semaphore freeThreads;
+		private Thread sender;
+		private HashMap<Integer, QueuedTask> running = new HashMap<Integer, QueuedTask>();
+		private HashSet<Integer> configurationsSent = new HashSet<Integer>();
+		private boolean closed = false;
+
+		public WorkerConnection(Socket socket) {
+			super("worker-connection");
+			this.socket = socket;
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			try {
+				name = "" + socket.getRemoteSocketAddress();
+				socket.setTcpNoDelay(true);
+				socket.setSoTimeout(timeout);
+				in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+				out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+				if(in.readByte() != WorkerProtocol.HELLO || in.readInt() != WorkerProtocol.VERSION)
+					throw new IOException("The worker does not use the same protocol");
+
+				if(!MessageDigest.isEqual(in.readUTF().getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8)))
+					throw new IOException("The worker did not send the token");
+
+				freeThreads = new Semaphore(in.readInt());
+				name = in.readUTF();
+
+				synchronized(out) {
+					out.writeByte(WorkerProtocol.HELLO);
+					out.writeInt(heartbeatInterval);
+					out.writeInt(timeout);
+					out.flush();
+				}
+
+				synchronized(workers) {
+					if(stopped)
+						throw new IOException("The executor was stopped");
+					workers.add(this);
+				}
+
+				sender = new Thread("worker-sender") {
+					@Override
+					public void run() {
+						sendTasks();
+					}
+				};
+				sender.setDaemon(true);
+				sender.start();
+
+				while(true) {
+					byte type = in.readByte();
+					switch(type) {
+					case WorkerProtocol.FITNESS_RESULT:
+						received(WorkerProtocol.readFitnessResult(in));
+						break;
+					case WorkerProtocol.RESULT:
+						received(WorkerProtocol.readResult(in));
+						break;
+					case WorkerProtocol.HEARTBEAT:
+						break;
+					default:
+						throw new IOException("Unknown message "+type);
+					}
+				}
+			} catch(IOException e) {
+				if(!stopped)
+					System.out.println("Worker "+name+" lost: "+e);
+			} finally {
+				close();
+			}
+		}
+
+		private void received(Result result) {
+			QueuedTask task;
+			synchronized(this) {
+				task = running.remove(result.getTaskId());
+			}
+			if(task != null) {
+				statistics.addTask(task.sent - task.added, System.nanoTime() - task.sent);
+				freeThreads.release();
+				if(task.configurationId >= 0 && removeConfigurationTask(task.configurationId))
+					forgetConfiguration(task.configurationId);
+				results.add(result);
+			}
+		}
+
+		private void sendTasks() {
+			try {
+				while(true) {
+					freeThreads.acquire();
+					QueuedTask task = pending.take();
+
+					synchronized(this) {
+						if(closed) {
+							pending.addFirst(task);
+							return;
+						}
+						task.sent = System.nanoTime();
+						running.put(task.task.getId(), task);
+					}
+
+					send(task.task, task.configurationId);
+				}
+			} catch(InterruptedException e) {
+				//the connection was closed
+			} catch(IOException e) {
+				close();
+			}
+		}
+
+		private void send(Task t, int configurationId) throws IOException {
+			synchronized(out) {
+				if(WorkerProtocol.isGenerationalTask(t)) {
+					if(configurationsSent.add(configurationId)) {
+						JBotEvolver configuration = getConfiguration(configurationId);
+						out.writeByte(WorkerProtocol.CONFIGURATION);
+						out.writeInt(configurationId);
+						WorkerProtocol.writeObject(out, configuration.getArguments());
+						out.writeLong(configuration.getRandomSeed());
+					}
+					WorkerProtocol.writeGenerationalTask(out, (GenerationalTask)t, configurationId);
+				} else {
+					out.writeByte(WorkerProtocol.TASK);
+					WorkerProtocol.writeObject(out, t);
+				}
+				out.flush();
+			}
+		}
+
+		private void sendForget(int configurationId) {
+			try {
+				synchronized(out) {
+					if(!configurationsSent.remove(configurationId))
+						return;
+					out.writeByte(WorkerProtocol.FORGET_CONFIGURATION);
+					out.writeInt(configurationId);
+					out.flush();
+				}
+			} catch(IOException e) {
+				close();
+			}
+		}
+
+		public void sendHeartbeat() {
+			try {
+				synchronized(out) {
+					out.writeByte(WorkerProtocol.HEARTBEAT);
+					out.flush();
+				}
+			} catch(IOException e) {
+				close();
+			}
+		}
+
+		/**
+		 * Closes the connection, and gives the tasks the worker was running to
+		 * the other workers.
+		 */
+		public void close() {
+			ArrayList<QueuedTask> lost;
+			synchronized(this) {
+				if(closed)
+					return;
+				closed = true;
+				lost = new ArrayList<QueuedTask>(running.values());
+				running.clear();
+			}
+
+			synchronized(workers) {
+				workers.remove(this);
+			}
+
+			if(sender != null)
+				sender.interrupt();
+
+			try {
+				socket.close();
+			} catch(IOException e) {}
+
+			if(!stopped) {
+				for(QueuedTask task : lost)
+					pending.addFirst(task);
+				if(!lost.isEmpty())
+					System.out.println(lost.size()+" tasks of worker "+name+" sent to the other workers");
+			}
+		}
+	}
+}
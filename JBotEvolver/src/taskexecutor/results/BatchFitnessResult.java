@@ -0,0 +1,41 @@
+package taskexecutor.results;
+
+import result.Result;
+
+public class BatchFitnessResult extends Result {
+	private static final long serialVersionUID = -8518605518948970545L;
+
+	private int[] chromosomeIds;
+	private double[] fitness;
+	private SampleTelemetry[] telemetry;
+
+	public BatchFitnessResult(int taskId, int[] chromosomeIds, double[] fitness) {
+		super(taskId);
+		this.chromosomeIds = chromosomeIds;
+		this.fitness = fitness;
+	}
+
+	public int getNumberOfChromosomes() {
+		return chromosomeIds.length;
+	}
+
+	public int getChromosomeId(int index) {
+		return chromosomeIds[index];
+	}
+
+	public double getFitness(int index) {
+		return fitness[index];
+	}
+
+	/**
+	 * @return the telemetry of the samples of a chromosome, or null if the
+	 *         task did not record it
+	 */
+	public SampleTelemetry getTelemetry(int index) {
+		return telemetry == null ? null : telemetry[index];
+	}
+
+	public void setTelemetry(SampleTelemetry[] telemetry) {
+		this.telemetry = telemetry;
+	}
+}
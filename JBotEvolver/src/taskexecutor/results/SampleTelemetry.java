@@ -0,0 +1,100 @@
+package taskexecutor.results;
+
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * What happened in each sample simulated by a task: the seed of the
+ * simulator, the fitness of the sample, the time it took and the number of
+ * steps simulated, and the worker that ran it (see {@link #getLocalWorker()}).
+ * The last sample may have been stopped before the end of the simulation (see
+ * {@link SimpleFitnessResult#getAbortedSamples()}), its fitness is then the
+ * one it had when it was stopped.
+ */
+public class SampleTelemetry implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static String localWorker;
+
+	private String worker;
+	private int samples = 0;
+	private long[] seeds;
+	private double[] fitness;
+	private long[] wallTimes;
+	private int[] steps;
+	private boolean aborted = false;
+
+	public SampleTelemetry(String worker, int maxSamples) {
+		this.worker = worker;
+		this.seeds = new long[maxSamples];
+		this.fitness = new double[maxSamples];
+		this.wallTimes = new long[maxSamples];
+		this.steps = new int[maxSamples];
+	}
+
+	/**
+	 * @return the name of this process as a worker, made of the name of the
+	 *         host and the id of the process, which is the same for all of its
+	 *         threads
+	 */
+	public static synchronized String getLocalWorker() {
+		if(localWorker == null) {
+			String host;
+			try {
+				host = InetAddress.getLocalHost().getHostName();
+			} catch(UnknownHostException e) {
+				host = "localhost";
+			}
+			localWorker = host + "/" + ProcessHandle.current().pid();
+		}
+		return localWorker;
+	}
+
+	/**
+	 * @param wallTime the time the sample took, in nanoseconds
+	 */
+	public void addSample(long seed, double fitness, long wallTime, int steps) {
+		this.seeds[samples] = seed;
+		this.fitness[samples] = fitness;
+		this.wallTimes[samples] = wallTime;
+		this.steps[samples] = steps;
+		samples++;
+	}
+
+	public void setAborted(boolean aborted) {
+		this.aborted = aborted;
+	}
+
+	/**
+	 * @return true if the simulation of the last sample was stopped
+	 */
+	public boolean isAborted() {
+		return aborted;
+	}
+
+	public String getWorker() {
+		return worker;
+	}
+
+	public int getNumberOfSamples() {
+		return samples;
+	}
+
+	public long getSeed(int sample) {
+		return seeds[sample];
+	}
+
+	public double getFitness(int sample) {
+		return fitness[sample];
+	}
+
+	public long getWallTime(int sample) {
+		return wallTimes[sample];
+	}
+
+	public int getSteps(int sample) {
+		return steps[sample];
+	}
+}
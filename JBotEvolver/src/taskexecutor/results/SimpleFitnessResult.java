@@ -5,6 +5,9 @@ import result.Result;
 public class SimpleFitnessResult extends Result {
 	private int chromosomeId;
 	private double fitness = 0;
+	private int abortedSamples = 0;
+	private long stepsSaved = 0;
+	private SampleTelemetry telemetry;
 	
 
 	public SimpleFitnessResult(int taskId, int chromosomeId, double fitness) {
@@ -21,5 +24,38 @@ public class SimpleFitnessResult extends Result {
 		return chromosomeId;
 	}
 	
+	/**
+	 * @return the number of samples that were stopped or not simulated
+	 *         because the chromosome could not be selected. The fitness is
+	 *         then an upper bound of the one the chromosome would have had.
+	 */
+	public int getAbortedSamples() {
+		return abortedSamples;
+	}
+	
+	public void setAbortedSamples(int abortedSamples) {
+		this.abortedSamples = abortedSamples;
+	}
+	
+	public long getStepsSaved() {
+		return stepsSaved;
+	}
+	
+	public void setStepsSaved(long stepsSaved) {
+		this.stepsSaved = stepsSaved;
+	}
+	
+	/**
+	 * @return the seed, fitness and time of each sample simulated, or null if
+	 *         the task did not record them
+	 */
+	public SampleTelemetry getTelemetry() {
+		return telemetry;
+	}
+	
+	public void setTelemetry(SampleTelemetry telemetry) {
+		this.telemetry = telemetry;
+	}
+	
 	
 }
@@ -0,0 +1,117 @@
+package taskexecutor.tasks;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import evolutionaryrobotics.JBotEvolver;
+import evolutionaryrobotics.evaluationfunctions.EvaluationFunction;
+import evolutionaryrobotics.neuralnetworks.Chromosome;
+import result.Result;
+import simulation.LockstepSimulator;
+import simulation.Simulator;
+import simulation.robot.Robot;
+import taskexecutor.results.BatchFitnessResult;
+import taskexecutor.results.SampleTelemetry;
+
+/**
+ * Evaluates several chromosomes in a single task. The simulators of all the
+ * samples of all the chromosomes are created up front and stepped together by
+ * a {@link LockstepSimulator}. Each chromosome uses the same sample seeds as a
+ * {@link GenerationalTask} with the same seed, so the fitness is the same.
+ * Since the samples are simulated together, the time recorded in the
+ * {@link SampleTelemetry} of each sample is the time of the whole batch
+ * divided by the number of samples.
+ */
+public class BatchGenerationalTask extends JBotEvolverTask {
+	
+	private static final long serialVersionUID = 960686641512153791L;
+	
+	private int samples;
+	private Chromosome[] chromosomes;
+	private double[] fitness;
+	private long seed;
+	private boolean parallel;
+	private boolean recordTelemetry = false;
+	private SampleTelemetry[] telemetry;
+	
+	public BatchGenerationalTask(JBotEvolver jBotEvolver, int samples, Chromosome[] chromosomes, long seed, boolean parallel) {
+		super(jBotEvolver);
+		this.samples = samples;
+		this.chromosomes = chromosomes;
+		this.seed = seed;
+		this.parallel = parallel;
+		this.fitness = new double[chromosomes.length];
+	}
+	
+	/**
+	 * Records the {@link SampleTelemetry} of the samples of each chromosome in
+	 * the result.
+	 */
+	public void setRecordTelemetry(boolean recordTelemetry) {
+		this.recordTelemetry = recordTelemetry;
+	}
+	
+	@Override
+	public void run() {
+		
+		ArrayList<Simulator> simulators = new ArrayList<Simulator>();
+		EvaluationFunction[][] evals = new EvaluationFunction[chromosomes.length][samples];
+		long[][] seeds = new long[chromosomes.length][samples];
+		
+		for(int c = 0 ; c < chromosomes.length ; c++) {
+			
+			Random random = new Random(seed);
+			
+			for(int i = 0 ; i < samples ; i++) {
+				
+				jBotEvolver.getArguments().get("--environment").setArgument("fitnesssample", i);
+				
+				seeds[c][i] = random.nextLong();
+				Simulator simulator = jBotEvolver.createSimulator(seeds[c][i]);
+				
+				simulator.setFileProvider(getFileProvider());
+				
+				ArrayList<Robot> robots = jBotEvolver.createRobots(simulator, chromosomes[c]);
+				simulator.addRobots(robots);
+				
+				evals[c][i] = EvaluationFunction.getEvaluationFunction(jBotEvolver.getArguments().get("--evaluation"));
+				simulator.addCallback(evals[c][i]);
+				
+				simulators.add(simulator);
+			}
+		}
+		
+		long start = System.nanoTime();
+		new LockstepSimulator(simulators, parallel).simulate();
+		long wallTime = (System.nanoTime() - start) / simulators.size();
+		
+		for(int c = 0 ; c < chromosomes.length ; c++) {
+			for(int i = 0 ; i < samples ; i++)
+				fitness[c]+= evals[c][i].getFitness();
+		}
+		
+		if(recordTelemetry) {
+			telemetry = new SampleTelemetry[chromosomes.length];
+			for(int c = 0 ; c < chromosomes.length ; c++) {
+				telemetry[c] = new SampleTelemetry(SampleTelemetry.getLocalWorker(), samples);
+				for(int i = 0 ; i < samples ; i++)
+					telemetry[c].addSample(seeds[c][i], evals[c][i].getFitness(), wallTime,
+							simulators.get(c * samples + i).getTime().intValue());
+			}
+		}
+	}
+	
+	@Override
+	public Result getResult() {
+		int[] ids = new int[chromosomes.length];
+		double[] averages = new double[chromosomes.length];
+		
+		for(int c = 0 ; c < chromosomes.length ; c++) {
+			ids[c] = chromosomes[c].getID();
+			averages[c] = fitness[c]/samples;
+		}
+		BatchFitnessResult result = new BatchFitnessResult(getId(),ids,averages);
+		result.setTelemetry(telemetry);
+		return result;
+	}
+}
@@ -0,0 +1,132 @@
+package taskexecutor.tasks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.TreeMap;
+
+import comm.FileProvider;
+import evolutionaryrobotics.JBotEvolver;
+import evolutionaryrobotics.neuralnetworks.Chromosome;
+import evolutionaryrobotics.neuralnetworks.MultipleChromosome;
+import simulation.Simulator;
+import simulation.robot.Robot;
+import simulation.util.Arguments;
+
+/**
+ * Creates the simulators of the samples evaluated by the tasks of a thread.
+ * If the environment supports it and has reuse=1 (see
+ * {@link simulation.environment.Environment#isReusable()}), the simulator
+ * of the previous sample, with its environment and robots (sensors,
+ * actuators, controllers and networks), is reset and used again as long as
+ * the configuration is the same: only the seed, the environment arguments
+ * set for the sample and the weights of the controllers change. Otherwise a
+ * new simulator is created for each sample.
+ *
+ * tests.SimulatorReuseCheck compares the fitness obtained both ways, and
+ * should be run for a configuration before enabling reuse with sensors,
+ * actuators or controllers that were not checked before.
+ */
+public class EvaluationContext {
+
+	private static final ThreadLocal<EvaluationContext> CONTEXT = new ThreadLocal<EvaluationContext>();
+
+	private String configuration;
+	private Simulator simulator;
+
+	private EvaluationContext(String configuration) {
+		this.configuration = configuration;
+	}
+
+	/**
+	 * @return the context of the current thread for the configuration of the
+	 *         given JBotEvolver, which should be obtained before the
+	 *         arguments are changed for the first sample
+	 */
+	public static EvaluationContext get(JBotEvolver jBotEvolver) {
+		String configuration = getConfiguration(jBotEvolver.getArguments());
+		EvaluationContext context = CONTEXT.get();
+
+		if(context == null || !context.configuration.equals(configuration)) {
+			context = new EvaluationContext(configuration);
+			CONTEXT.set(context);
+		}
+		return context;
+	}
+
+	/**
+	 * Removes the context from the current thread, so that it can be given
+	 * to another thread with {@link #attach(EvaluationContext)}. This allows
+	 * executors that run each task in a new thread (such as a virtual
+	 * thread) to keep reusing the simulators.
+	 *
+	 * @return the context of the current thread, or null if it has none
+	 */
+	public static EvaluationContext detach() {
+		EvaluationContext context = CONTEXT.get();
+		CONTEXT.remove();
+		return context;
+	}
+
+	/**
+	 * Makes the given context, obtained with {@link #detach()} in another
+	 * thread, the context of the current thread. It must not be used by two
+	 * threads at the same time.
+	 */
+	public static void attach(EvaluationContext context) {
+		if(context == null)
+			CONTEXT.remove();
+		else
+			CONTEXT.set(context);
+	}
+
+	/**
+	 * @return a simulator for a sample with the given seed, with the robots
+	 *         added and set up with the chromosome, as created by
+	 *         {@link JBotEvolver#createSimulator(long)} and
+	 *         {@link JBotEvolver#createRobots(Simulator, Chromosome)}
+	 */
+	public Simulator createSimulator(JBotEvolver jBotEvolver, long seed, Chromosome chromosome, FileProvider fileProvider) {
+		if(simulator != null && simulator.isReusable() && !(chromosome instanceof MultipleChromosome)) {
+			copyArguments(jBotEvolver.getArguments().get("--environment"), simulator.getArguments().get("--environment"));
+			simulator.reset(seed);
+			simulator.setFileProvider(fileProvider);
+			jBotEvolver.setChromosome(simulator.getRobots(), chromosome);
+			return simulator;
+		}
+
+		Simulator simulator = jBotEvolver.createSimulator(seed);
+		simulator.setFileProvider(fileProvider);
+		ArrayList<Robot> robots = jBotEvolver.createRobots(simulator, chromosome);
+		simulator.addRobots(robots);
+
+		this.simulator = simulator.isReusable() ? simulator : null;
+		return simulator;
+	}
+
+	/**
+	 * The arguments set for the sample (such as fitnesssample) are copied to
+	 * the arguments of the reused environment.
+	 */
+	private static void copyArguments(Arguments from, Arguments to) {
+		if(from == to)
+			return;
+		for(int i = 0 ; i < from.getNumberOfArguments() ; i++)
+			to.setArgument(from.getArgumentAt(i), from.getValueAt(i));
+	}
+
+	/**
+	 * @return a text with all of the arguments, which is the same for the
+	 *         same configuration
+	 */
+	public static String getConfiguration(HashMap<String, Arguments> arguments) {
+		TreeMap<String, Arguments> sorted = new TreeMap<String, Arguments>(arguments);
+		StringBuilder builder = new StringBuilder();
+		for(String name : sorted.keySet()) {
+			builder.append(name);
+			builder.append(' ');
+			builder.append(sorted.get(name).getCompleteArgumentString());
+			builder.append('\n');
+		}
+		return builder.toString();
+	}
+}
@@ -1,58 +1,172 @@
 package taskexecutor.tasks;
 
-import java.util.ArrayList;
 import java.util.Random;
 
 import evolutionaryrobotics.JBotEvolver;
 import evolutionaryrobotics.evaluationfunctions.EvaluationFunction;
+import evolutionaryrobotics.evolution.util.SelectionThreshold;
 import evolutionaryrobotics.neuralnetworks.Chromosome;
 import result.Result;
 import simulation.Simulator;
-import simulation.robot.Robot;
+import simulation.Updatable;
+import taskexecutor.results.SampleTelemetry;
 import taskexecutor.results.SimpleFitnessResult;
 import tests.Cronometer;
 
 public class GenerationalTask extends JBotEvolverTask {
 	
 	private int samples;
+	private int firstSample = 0;
+	private int samplesPerChromosome;
 	private double fitness = 0;
 	private Chromosome chromosome;
+	private long seed;
 	private Random random;
+	private SelectionThreshold selectionThreshold;
+	private int abortedSamples = 0;
+	private long stepsSaved = 0;
+	private boolean recordTelemetry = false;
+	private SampleTelemetry telemetry;
 	
 	public GenerationalTask(JBotEvolver jBotEvolver, int samples, Chromosome chromosome, long seed) {
 		super(jBotEvolver);
 		this.samples = samples;
+		this.samplesPerChromosome = samples;
 		this.chromosome = chromosome;
+		this.seed = seed;
 		this.random = new Random(seed);
 	}
 	
+	public Chromosome getChromosome() {
+		return chromosome;
+	}
+	
+	public int getSamples() {
+		return samples;
+	}
+	
+	public long getSeed() {
+		return seed;
+	}
+	
+	/**
+	 * Simulates the samples from firstSample on instead of from 0, going back
+	 * to 0 after the last of the samplesPerChromosome values of fitnesssample.
+	 * Used to add samples to the ones of a genome evaluated before.
+	 */
+	public void setFirstSample(int firstSample, int samplesPerChromosome) {
+		this.firstSample = firstSample;
+		this.samplesPerChromosome = samplesPerChromosome;
+	}
+	
+	public int getFirstSample() {
+		return firstSample;
+	}
+	
+	public int getSamplesPerChromosome() {
+		return samplesPerChromosome;
+	}
+	
+	/**
+	 * Records the {@link SampleTelemetry} of the samples in the result.
+	 */
+	public void setRecordTelemetry(boolean recordTelemetry) {
+		this.recordTelemetry = recordTelemetry;
+	}
+	
+	public boolean isRecordTelemetry() {
+		return recordTelemetry;
+	}
+	
+	/**
+	 * Stops the evaluation as soon as the fitness of the chromosome cannot
+	 * reach the threshold, according to the upper bound given by the
+	 * evaluation function. The fitness of the result is then that bound.
+	 */
+	public void setSelectionThreshold(SelectionThreshold selectionThreshold) {
+		this.selectionThreshold = selectionThreshold;
+	}
+	
 	@Override
 	public void run() {
 		
+		EvaluationContext context = EvaluationContext.get(jBotEvolver);
+		if(recordTelemetry)
+			telemetry = new SampleTelemetry(SampleTelemetry.getLocalWorker(), samples);
+		
 		for(int i = 0 ; i < samples ; i++) {
 			
-			jBotEvolver.getArguments().get("--environment").setArgument("fitnesssample", i);
-			
-			Simulator simulator = jBotEvolver.createSimulator(random.nextLong());
-			
-			simulator.setFileProvider(getFileProvider());
+			jBotEvolver.getArguments().get("--environment").setArgument("fitnesssample", (firstSample + i) % samplesPerChromosome);
 			
-//			ArrayList<Robot> robots = jBotEvolver.createRobots(simulator);
-//			jBotEvolver.setChromosome(robots, chromosome);
-			ArrayList<Robot> robots = jBotEvolver.createRobots(simulator, chromosome);
-			simulator.addRobots(robots);
+			long start = System.nanoTime();
+			long simulatorSeed = random.nextLong();
+			Simulator simulator = context.createSimulator(jBotEvolver, simulatorSeed, chromosome, getFileProvider());
 			
 			EvaluationFunction eval = EvaluationFunction.getEvaluationFunction(jBotEvolver.getArguments().get("--evaluation"));
 			simulator.addCallback(eval);
 			
+			Racing racing = null;
+			
+			if(selectionThreshold != null) {
+				racing = new Racing(simulator, eval, samples - i - 1);
+				simulator.addCallback(racing);
+			}
+			
 			simulator.simulate();
 			
+			if(telemetry != null)
+				telemetry.addSample(simulatorSeed, eval.getFitness(), System.nanoTime() - start, simulator.getTime().intValue());
+			
+			if(racing != null && racing.stopped) {
+				if(telemetry != null)
+					telemetry.setAborted(true);
+				int steps = simulator.getEnvironment().getSteps();
+				abortedSamples = samples - i;
+				stepsSaved = (long)(steps - simulator.getTime()) + (long)(samples - i - 1) * steps;
+				fitness = racing.bound;
+				break;
+			}
+			
 			fitness+= eval.getFitness();
 		}
 	}
+	
 	@Override
 	public Result getResult() {
 		SimpleFitnessResult fr = new SimpleFitnessResult(getId(),chromosome.getID(),fitness/samples);
+		fr.setAbortedSamples(abortedSamples);
+		fr.setStepsSaved(stepsSaved);
+		fr.setTelemetry(telemetry);
 		return fr;
 	}
+	
+	/**
+	 * Stops the simulation when the fitness of the samples simulated, the
+	 * bound of the current one and the highest fitness of the samples left
+	 * cannot reach the selection threshold.
+	 */
+	private class Racing implements Updatable {
+		
+		private EvaluationFunction eval;
+		private double samplesLeftBound;
+		private boolean stopped = false;
+		//the upper bound of the sum of the samples when the simulation was stopped
+		private double bound;
+		
+		public Racing(Simulator simulator, EvaluationFunction eval, int samplesLeft) {
+			this.eval = eval;
+			//the simulation has not started, so it is the bound of a whole sample
+			this.samplesLeftBound = samplesLeft == 0 ? 0 : samplesLeft * eval.getFitnessUpperBound(simulator);
+		}
+		
+		@Override
+		public void update(Simulator simulator) {
+			double sum = fitness + eval.getFitnessUpperBound(simulator) + samplesLeftBound;
+			if(sum / samples < selectionThreshold.getThreshold()) {
+				bound = sum;
+				stopped = true;
+				simulator.stopSimulation();
+			}
+		}
+	}
 }
\ No newline at end of file
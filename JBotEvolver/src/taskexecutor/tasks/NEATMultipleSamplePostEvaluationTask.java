@@ -1,13 +1,10 @@
 package taskexecutor.tasks;
 
-import java.util.ArrayList;
-
 import evolutionaryrobotics.JBotEvolver;
 import evolutionaryrobotics.evaluationfunctions.EvaluationFunction;
 import evolutionaryrobotics.neuralnetworks.Chromosome;
 import result.Result;
 import simulation.Simulator;
-import simulation.robot.Robot;
 import taskexecutor.results.NEATPostEvaluationResult;
 
 public class NEATMultipleSamplePostEvaluationTask extends JBotEvolverTask {
@@ -35,17 +32,13 @@ public class NEATMultipleSamplePostEvaluationTask extends JBotEvolverTask {
 
 	@Override
 	public void run() {
+		EvaluationContext context = EvaluationContext.get(jBotEvolver);
 
 		for (int i = startSample; i < endSample; i++) {
 
 			jBotEvolver.getArguments().get("--environment").setArgument("fitnesssample", fitnesssample);
 
-			Simulator simulator = jBotEvolver.createSimulator(i);
-			simulator.setFileProvider(getFileProvider());
-			// ArrayList<Robot> robots = jBotEvolver.createRobots(simulator);
-			// jBotEvolver.setChromosome(robots, chromosome);
-			ArrayList<Robot> robots = jBotEvolver.createRobots(simulator, chromosome);
-			simulator.addRobots(robots);
+			Simulator simulator = context.createSimulator(jBotEvolver, i, chromosome, getFileProvider());
 			EvaluationFunction eval = jBotEvolver.getEvaluationFunction()[0];
 			simulator.addCallback(eval);
 			simulator.simulate();
@@ -1,13 +1,10 @@
 package taskexecutor.tasks;
 
-import java.util.ArrayList;
-
 import evolutionaryrobotics.JBotEvolver;
 import evolutionaryrobotics.evaluationfunctions.EvaluationFunction;
 import evolutionaryrobotics.neuralnetworks.Chromosome;
 import result.Result;
 import simulation.Simulator;
-import simulation.robot.Robot;
 import taskexecutor.results.NEATPostEvaluationResult;
 
 public class NEATSingleSamplePostEvaluationTask extends JBotEvolverTask {
@@ -32,14 +29,11 @@ public class NEATSingleSamplePostEvaluationTask extends JBotEvolverTask {
 	
 	@Override
 	public void run() {
+		EvaluationContext context = EvaluationContext.get(jBotEvolver);
+
 		jBotEvolver.getArguments().get("--environment").setArgument("fitnesssample", fitnesssample);
 		
-		Simulator simulator = jBotEvolver.createSimulator(sample);
-		simulator.setFileProvider(getFileProvider());
-//		ArrayList<Robot> robots = jBotEvolver.createRobots(simulator);
-//		jBotEvolver.setChromosome(robots, chromosome);
-		ArrayList<Robot> robots = jBotEvolver.createRobots(simulator, chromosome);
-		simulator.addRobots(robots);
+		Simulator simulator = context.createSimulator(jBotEvolver, sample, chromosome, getFileProvider());
 		EvaluationFunction eval = jBotEvolver.getEvaluationFunction()[0];
 		simulator.addCallback(eval);
 		simulator.simulate();
@@ -0,0 +1,259 @@
+package taskexecutor.workers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import evolutionaryrobotics.JBotEvolver;
+import evolutionaryrobotics.neuralnetworks.Chromosome;
+import result.Result;
+import simulation.util.Arguments;
+import taskexecutor.results.SampleTelemetry;
+import taskexecutor.results.SimpleFitnessResult;
+import taskexecutor.tasks.GenerationalTask;
+import tasks.Task;
+
+/**
+ * Runs the tasks of a {@link taskexecutor.WorkerTaskExecutor} in another
+ * process, on this machine or on another one. The worker connects to the
+ * executor and keeps the configurations it receives, so that a
+ * {@link GenerationalTask} only needs its chromosome and seed. The results are
+ * sent as soon as the tasks finish. Unless it was started with "once", the
+ * worker connects again when the connection is lost, so it can be used by
+ * several evolutions.
+ *
+ * Usage: Worker host port [threads] [once] (the default number of threads is
+ * the number of processors). The token of the executor is read from the
+ * {@link WorkerProtocol#TOKEN_VARIABLE} environment variable.
+ */
+public class Worker {
+
+	private static final long RETRY_INTERVAL = 5000;
+
+	private String host;
+	private int port;
+	private int threads;
+	private String token;
+
+	private DataOutputStream out;
+	//the arguments and random seed of each configuration id
+	private HashMap<Integer, Configuration> configurations = new HashMap<Integer, Configuration>();
+
+	public Worker(String host, int port, int threads, String token) {
+		this.host = host;
+		this.port = port;
+		this.threads = threads;
+		this.token = token;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if(args.length < 2) {
+			System.out.println("Usage: Worker host port [threads] [once]");
+			System.exit(1);
+		}
+
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		boolean once = args.length > 3 && args[3].equals("once");
+		String token = System.getenv(WorkerProtocol.TOKEN_VARIABLE);
+
+		if(token == null) {
+			System.out.println("The token of the executor must be in the "+WorkerProtocol.TOKEN_VARIABLE+" environment variable");
+			System.exit(1);
+		}
+
+		Worker worker = new Worker(args[0], Integer.parseInt(args[1]), threads, token);
+
+		while(true) {
+			try {
+				worker.work();
+			} catch(IOException e) {
+				if(!once)
+					System.out.println("Connection to "+args[0]+":"+args[1]+" lost: "+e.getMessage());
+			}
+			if(once)
+				break;
+			Thread.sleep(RETRY_INTERVAL);
+		}
+		System.exit(0);
+	}
+
+	/**
+	 * Connects to the executor and runs its tasks until the connection is
+	 * closed or lost.
+	 */
+	public void work() throws IOException {
+		Socket socket = new Socket(host, port);
+		//the same name identifies the worker in the telemetry of its results
+		String name = SampleTelemetry.getLocalWorker();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		Thread heartbeats = null;
+
+		try {
+			socket.setTcpNoDelay(true);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+			synchronized(out) {
+				out.writeByte(WorkerProtocol.HELLO);
+				out.writeInt(WorkerProtocol.VERSION);
+				out.writeUTF(token);
+				out.writeInt(threads);
+				out.writeUTF(name);
+				out.flush();
+			}
+
+			if(in.readByte() != WorkerProtocol.HELLO)
+				throw new IOException("Unexpected answer from the executor");
+
+			int heartbeatInterval = in.readInt();
+			socket.setSoTimeout(in.readInt());
+			heartbeats = startHeartbeats(heartbeatInterval);
+
+			while(true) {
+				byte type = in.readByte();
+				switch(type) {
+				case WorkerProtocol.CONFIGURATION:
+					int id = in.readInt();
+					@SuppressWarnings("unchecked")
+					HashMap<String, Arguments> arguments = (HashMap<String, Arguments>)WorkerProtocol.readObject(in);
+					configurations.put(id, new Configuration(arguments, in.readLong()));
+					break;
+				case WorkerProtocol.FORGET_CONFIGURATION:
+					configurations.remove(in.readInt());
+					break;
+				case WorkerProtocol.GENERATIONAL_TASK:
+					int taskId = in.readInt();
+					Configuration configuration = configurations.get(in.readInt());
+					int chromosomeId = in.readInt();
+					int samples = in.readInt();
+					int firstSample = in.readInt();
+					int samplesPerChromosome = in.readInt();
+					long seed = in.readLong();
+					boolean recordTelemetry = in.readBoolean();
+					double[] alleles = new double[in.readInt()];
+					for(int i = 0 ; i < alleles.length ; i++)
+						alleles[i] = in.readDouble();
+					GenerationalTask task = new GenerationalTask(configuration.createJBotEvolver(), samples,
+							new Chromosome(alleles, chromosomeId), seed);
+					task.setFirstSample(firstSample, samplesPerChromosome);
+					task.setRecordTelemetry(recordTelemetry);
+					executor.execute(new TaskRunner(taskId, task));
+					break;
+				case WorkerProtocol.TASK:
+					Task t = (Task)WorkerProtocol.readObject(in);
+					executor.execute(new TaskRunner(t.getId(), t));
+					break;
+				case WorkerProtocol.HEARTBEAT:
+					break;
+				default:
+					throw new IOException("Unknown message "+type);
+				}
+			}
+		} finally {
+			if(heartbeats != null)
+				heartbeats.interrupt();
+			executor.shutdownNow();
+			configurations.clear();
+			socket.close();
+		}
+	}
+
+	private Thread startHeartbeats(final int interval) {
+		final DataOutputStream out = this.out;
+		Thread t = new Thread("heartbeats") {
+			@Override
+			public void run() {
+				try {
+					while(true) {
+						Thread.sleep(interval);
+						synchronized(out) {
+							out.writeByte(WorkerProtocol.HEARTBEAT);
+							out.flush();
+						}
+					}
+				} catch(InterruptedException | IOException e) {
+					//the connection was closed
+				}
+			}
+		};
+		t.setDaemon(true);
+		t.start();
+		return t;
+	}
+
+	private void send(DataOutputStream out, int taskId, Result result) throws IOException {
+		synchronized(out) {
+			if(result.getClass() == SimpleFitnessResult.class) {
+				WorkerProtocol.writeFitnessResult(out, taskId, (SimpleFitnessResult)result);
+			} else {
+				out.writeByte(WorkerProtocol.RESULT);
+				WorkerProtocol.writeObject(out, result);
+			}
+			out.flush();
+		}
+	}
+
+	private class TaskRunner implements Runnable {
+
+		private int taskId;
+		private Task task;
+		private DataOutputStream out = Worker.this.out;
+
+		public TaskRunner(int taskId, Task task) {
+			this.taskId = taskId;
+			this.task = task;
+		}
+
+		@Override
+		public void run() {
+			Result result = null;
+			try {
+				task.run();
+				result = task.getResult();
+			} catch(Throwable t) {
+				result = new Result(taskId);
+				result.setException(t instanceof RuntimeException ? (RuntimeException)t : new RuntimeException(t));
+			} finally {
+				//the executor only gives this thread another task when it
+				//gets a result, so one is always sent
+				if(result == null) {
+					result = new Result(taskId);
+					result.setException(new RuntimeException("The task did not return a result"));
+				}
+				try {
+					send(out, taskId, result);
+				} catch(IOException e) {
+					//the connection was lost, the executor sends the task again
+					//to another worker
+				}
+			}
+		}
+	}
+
+	private static class Configuration {
+
+		private HashMap<String, Arguments> arguments;
+		private long randomSeed;
+
+		public Configuration(HashMap<String, Arguments> arguments, long randomSeed) {
+			this.arguments = arguments;
+			this.randomSeed = randomSeed;
+		}
+
+		/**
+		 * @return a new instance for a task, as the evolution creates them
+		 */
+		public JBotEvolver createJBotEvolver() {
+			HashMap<String, Arguments> copy = new HashMap<String, Arguments>();
+			for(String name : arguments.keySet())
+				copy.put(name, new Arguments(arguments.get(name)));
+			return new JBotEvolver(copy, randomSeed);
+		}
+	}
+}
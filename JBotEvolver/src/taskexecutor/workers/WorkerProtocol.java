@@ -0,0 +1,195 @@
+package taskexecutor.workers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import evolutionaryrobotics.neuralnetworks.Chromosome;
+import result.Result;
+import taskexecutor.results.SampleTelemetry;
+import taskexecutor.results.SimpleFitnessResult;
+import taskexecutor.tasks.GenerationalTask;
+
+/**
+ * The messages exchanged by the {@link taskexecutor.WorkerTaskExecutor} and
+ * its {@link Worker}s. Each message starts with its type:
+ * <ul>
+ * <li>HELLO: sent by the worker when it connects, with the version of the
+ * protocol, the token shared with the executor, the number of tasks it runs
+ * at the same time and its name. The executor closes the connection if the
+ * token is not its own, and otherwise answers with the interval of the
+ * heartbeats and the time after which a silent connection is considered lost,
+ * in milliseconds.</li>
+ * <li>CONFIGURATION: the arguments and random seed of the tasks, with an id,
+ * sent once before the first task that uses them.</li>
+ * <li>FORGET_CONFIGURATION: the id of a configuration that no task will use
+ * anymore.</li>
+ * <li>GENERATIONAL_TASK: a {@link GenerationalTask}, as the task id, the id of
+ * the configuration, the chromosome, the number of samples, the first sample
+ * and the number of samples per chromosome, the seed, and whether to record
+ * the telemetry of the samples.</li>
+ * <li>TASK: any other task, serialized.</li>
+ * <li>FITNESS_RESULT: a {@link SimpleFitnessResult}, with the
+ * {@link SampleTelemetry} of its samples if the task recorded them.</li>
+ * <li>RESULT: any other result, serialized. Only the result classes, and the
+ * exceptions they carry, are deserialized.</li>
+ * <li>HEARTBEAT: sent by both sides at regular intervals, so that a
+ * connection that stops working is noticed.</li>
+ * </ul>
+ */
+public class WorkerProtocol {
+
+	public static final int VERSION = 3;
+
+	//the environment variable where the workers find the token
+	public static final String TOKEN_VARIABLE = "JBOTEVOLVER_WORKER_TOKEN";
+
+	public static final byte HELLO = 1;
+	public static final byte CONFIGURATION = 2;
+	public static final byte GENERATIONAL_TASK = 3;
+	public static final byte TASK = 4;
+	public static final byte FITNESS_RESULT = 5;
+	public static final byte RESULT = 6;
+	public static final byte HEARTBEAT = 7;
+	public static final byte FORGET_CONFIGURATION = 8;
+
+	private static final int MAX_RESULT_DEPTH = 20;
+
+	private static final Class<?> EMPTY_LIST = Collections.emptyList().getClass();
+
+	/**
+	 * Accepts the results of the tasks and what they are made of: arrays of
+	 * primitives, the telemetry and the exception of a failed task, with its
+	 * stack trace.
+	 */
+	private static final ObjectInputFilter RESULT_FILTER = new ObjectInputFilter() {
+		@Override
+		public Status checkInput(FilterInfo info) {
+			if(info.depth() > MAX_RESULT_DEPTH)
+				return Status.REJECTED;
+
+			Class<?> c = info.serialClass();
+			if(c == null)
+				return Status.UNDECIDED;
+			while(c.isArray())
+				c = c.getComponentType();
+
+			if(c.isPrimitive() || c == String.class || Result.class.isAssignableFrom(c)
+					|| c == SampleTelemetry.class || Throwable.class.isAssignableFrom(c)
+					|| c == StackTraceElement.class || c == ArrayList.class || c == EMPTY_LIST)
+				return Status.ALLOWED;
+			return Status.REJECTED;
+		}
+	};
+
+	private WorkerProtocol() {}
+
+	/**
+	 * @return whether the task can be sent as a GENERATIONAL_TASK, without its
+	 *         arguments
+	 */
+	public static boolean isGenerationalTask(Object task) {
+		return task.getClass() == GenerationalTask.class;
+	}
+
+	public static void writeGenerationalTask(DataOutputStream out, GenerationalTask task, int configurationId) throws IOException {
+		Chromosome chromosome = task.getChromosome();
+		double[] alleles = chromosome.getAlleles();
+		out.writeByte(GENERATIONAL_TASK);
+		out.writeInt(task.getId());
+		out.writeInt(configurationId);
+		out.writeInt(chromosome.getID());
+		out.writeInt(task.getSamples());
+		out.writeInt(task.getFirstSample());
+		out.writeInt(task.getSamplesPerChromosome());
+		out.writeLong(task.getSeed());
+		out.writeBoolean(task.isRecordTelemetry());
+		out.writeInt(alleles.length);
+		for(double d : alleles)
+			out.writeDouble(d);
+	}
+
+	public static void writeFitnessResult(DataOutputStream out, int taskId, SimpleFitnessResult result) throws IOException {
+		out.writeByte(FITNESS_RESULT);
+		out.writeInt(taskId);
+		out.writeInt(result.getChromosomeId());
+		out.writeDouble(result.getFitness());
+		out.writeInt(result.getAbortedSamples());
+		out.writeLong(result.getStepsSaved());
+		
+		SampleTelemetry telemetry = result.getTelemetry();
+		out.writeBoolean(telemetry != null);
+		if(telemetry != null) {
+			out.writeUTF(telemetry.getWorker());
+			out.writeInt(telemetry.getNumberOfSamples());
+			for(int i = 0 ; i < telemetry.getNumberOfSamples() ; i++) {
+				out.writeLong(telemetry.getSeed(i));
+				out.writeDouble(telemetry.getFitness(i));
+				out.writeLong(telemetry.getWallTime(i));
+				out.writeInt(telemetry.getSteps(i));
+			}
+			out.writeBoolean(telemetry.isAborted());
+		}
+	}
+
+	/**
+	 * Reads a FITNESS_RESULT, after its type.
+	 */
+	public static SimpleFitnessResult readFitnessResult(DataInputStream in) throws IOException {
+		int taskId = in.readInt();
+		SimpleFitnessResult result = new SimpleFitnessResult(taskId, in.readInt(), in.readDouble());
+		result.setAbortedSamples(in.readInt());
+		result.setStepsSaved(in.readLong());
+		
+		if(in.readBoolean()) {
+			String worker = in.readUTF();
+			int samples = in.readInt();
+			SampleTelemetry telemetry = new SampleTelemetry(worker, samples);
+			for(int i = 0 ; i < samples ; i++)
+				telemetry.addSample(in.readLong(), in.readDouble(), in.readLong(), in.readInt());
+			telemetry.setAborted(in.readBoolean());
+			result.setTelemetry(telemetry);
+		}
+		return result;
+	}
+
+	public static void writeObject(DataOutputStream out, Object o) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(bytes);
+		oos.writeObject(o);
+		oos.close();
+		out.writeInt(bytes.size());
+		bytes.writeTo(out);
+	}
+
+	public static Object readObject(DataInputStream in) throws IOException {
+		return readObject(in, null);
+	}
+
+	/**
+	 * Reads a RESULT, after its type.
+	 */
+	public static Result readResult(DataInputStream in) throws IOException {
+		return (Result)readObject(in, RESULT_FILTER);
+	}
+
+	private static Object readObject(DataInputStream in, ObjectInputFilter filter) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		try {
+			ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+			if(filter != null)
+				ois.setObjectInputFilter(filter);
+			return ois.readObject();
+		} catch(ClassNotFoundException e) {
+			throw new IOException(e);
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import controllers.FixedLenghtGenomeEvolvableController;
+import simulation.Simulator;
+import simulation.robot.Robot;
+import evolutionaryrobotics.JBotEvolver;
+import evolutionaryrobotics.neuralnetworks.Chromosome;
+import evolutionaryrobotics.neuralnetworks.ForwardPass;
+import taskexecutor.results.BatchFitnessResult;
+import taskexecutor.results.SimpleFitnessResult;
+import taskexecutor.tasks.BatchGenerationalTask;
+import taskexecutor.tasks.GenerationalTask;
+
+/**
+ * Compares the time to evaluate a number of random chromosomes with a
+ * {@link GenerationalTask} per chromosome, as GenerationalEvolution does with
+ * batchsize=1, and with {@link BatchGenerationalTask}s of several
+ * chromosomes. In the batches, the simulators of all the samples are stepped
+ * in lockstep, and the forward passes of the networks of the samples of each
+ * chromosome are computed together (see
+ * {@link evolutionaryrobotics.neuralnetworks.CTRNNBatch}). The networks are
+ * only batched when {@link ForwardPass#isVectorized()} is false. All the tasks
+ * run one after the other in this thread, and the fitness of each chromosome
+ * must be exactly the same with all the batch sizes. The best time of a few
+ * rounds is reported.
+ *
+ * Usage: BatchTaskBenchmark [configuration file] (default
+ * conf_examples/go_to_nest.conf, run from the JBotEvolver folder)
+ *
+ * The program exits with status 1 if any fitness differs.
+ */
+public class BatchTaskBenchmark {
+
+	private static final int CHROMOSOMES = 48;
+	private static final int SAMPLES = 5;
+	private static final int[] BATCH_SIZES = {1, 4, 16, 48};
+	private static final int ROUNDS = 5;
+	private static final long SEED = 1;
+
+	public static void main(String[] args) throws Exception {
+		String file = args.length > 0 ? args[0] : "conf_examples/go_to_nest.conf";
+		JBotEvolver jBotEvolver = new JBotEvolver(new String[]{file});
+
+		Simulator simulator = jBotEvolver.createSimulator(0);
+		ArrayList<Robot> robots = jBotEvolver.createRobots(simulator);
+
+		Random random = new Random(1);
+		int genomeLength = ((FixedLenghtGenomeEvolvableController)robots.get(0).getController()).getGenomeLength();
+
+		Chromosome[] chromosomes = new Chromosome[CHROMOSOMES];
+		for(int c = 0 ; c < CHROMOSOMES ; c++) {
+			double[] alleles = new double[genomeLength];
+			for(int i = 0 ; i < alleles.length ; i++)
+				alleles[i] = random.nextGaussian() * 3;
+			chromosomes[c] = new Chromosome(alleles, c);
+		}
+
+		System.out.println("vectorized=" + ForwardPass.isVectorized() + " robots=" + robots.size() + " samples=" + SAMPLES);
+
+		double[] expected = null;
+		long time = Long.MAX_VALUE;
+		for(int round = 0 ; round < ROUNDS ; round++) {
+			long start = System.nanoTime();
+			expected = evaluate(jBotEvolver, chromosomes);
+			time = Math.min(time, System.nanoTime() - start);
+		}
+		System.out.printf("batchsize=1 (GenerationalTask): %.1fms/chromosome%n", time / 1e6 / CHROMOSOMES);
+
+		boolean same = true;
+
+		for(int batchSize : BATCH_SIZES) {
+			double[] fitness = null;
+			time = Long.MAX_VALUE;
+			for(int round = 0 ; round < ROUNDS ; round++) {
+				long start = System.nanoTime();
+				fitness = evaluate(jBotEvolver, chromosomes, batchSize);
+				time = Math.min(time, System.nanoTime() - start);
+			}
+			boolean batchSame = Arrays.equals(expected, fitness);
+			same &= batchSame;
+			System.out.printf("batchsize=%d (BatchGenerationalTask): %.1fms/chromosome, same fitness: %b%n", batchSize,
+					time / 1e6 / CHROMOSOMES, batchSame);
+		}
+
+		System.exit(same ? 0 : 1);
+	}
+
+	private static double[] evaluate(JBotEvolver jBotEvolver, Chromosome[] chromosomes) {
+		double[] fitness = new double[chromosomes.length];
+		for(int c = 0 ; c < chromosomes.length ; c++) {
+			GenerationalTask task = new GenerationalTask(new JBotEvolver(jBotEvolver.getArgumentsCopy(), jBotEvolver.getRandomSeed()),
+					SAMPLES, chromosomes[c], SEED);
+			task.run();
+			fitness[c] = ((SimpleFitnessResult)task.getResult()).getFitness();
+		}
+		return fitness;
+	}
+
+	private static double[] evaluate(JBotEvolver jBotEvolver, Chromosome[] chromosomes, int batchSize) {
+		double[] fitness = new double[chromosomes.length];
+		for(int start = 0 ; start < chromosomes.length ; start+= batchSize) {
+			Chromosome[] batch = Arrays.copyOfRange(chromosomes, start, Math.min(start + batchSize, chromosomes.length));
+			BatchGenerationalTask task = new BatchGenerationalTask(new JBotEvolver(jBotEvolver.getArgumentsCopy(),
+					jBotEvolver.getRandomSeed()), SAMPLES, batch, SEED, false);
+			task.run();
+			BatchFitnessResult result = (BatchFitnessResult)task.getResult();
+			for(int i = 0 ; i < result.getNumberOfChromosomes() ; i++)
+				fitness[result.getChromosomeId(i)] = result.getFitness(i);
+		}
+		return fitness;
+	}
+}
@@ -0,0 +1,125 @@
+package tests;
+
+import java.util.Arrays;
+
+import controllers.FixedLenghtGenomeEvolvableController;
+import evolutionaryrobotics.JBotEvolver;
+import evolutionaryrobotics.neuralnetworks.Chromosome;
+import evolutionaryrobotics.populations.CMAESPopulation;
+import evolutionaryrobotics.populations.MuLambdaPopulation;
+import evolutionaryrobotics.populations.Population;
+import simulation.Simulator;
+import simulation.robot.Robot;
+import simulation.util.Arguments;
+import taskexecutor.results.SimpleFitnessResult;
+import taskexecutor.tasks.GenerationalTask;
+
+/**
+ * Evolves the controllers of a configuration with a {@link MuLambdaPopulation}
+ * and with a {@link CMAESPopulation}, with the other arguments of the
+ * population of the configuration, and reports the number of evaluations
+ * each run took until the highest fitness of a generation reached the
+ * target. The evaluations are done one at a time in this thread.
+ *
+ * Usage: CMAESBenchmark [evaluations] [runs] [configuration file] [target]
+ * ... (default 3000 evaluations, 3 runs, conf_examples/go_to_nest.conf with
+ * 298 and conf_examples/forage.conf with 2, run from the JBotEvolver folder)
+ */
+public class CMAESBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int evaluations = args.length > 0 ? Integer.parseInt(args[0]) : 3000;
+		int runs = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		String[] setups = args.length > 3 ? Arrays.copyOfRange(args, 2, args.length)
+				: new String[]{"conf_examples/go_to_nest.conf", "298", "conf_examples/forage.conf", "2"};
+
+		for(int s = 0 ; s + 1 < setups.length ; s+= 2) {
+			String file = setups[s];
+			double target = Double.parseDouble(setups[s + 1]);
+
+			JBotEvolver jBotEvolver = new JBotEvolver(new String[]{file});
+			Simulator simulator = jBotEvolver.createSimulator(0);
+			Robot robot = jBotEvolver.createRobots(simulator).get(0);
+			int genomeLength = ((FixedLenghtGenomeEvolvableController)robot.getController()).getGenomeLength();
+
+			System.out.printf("%s: genome length %d, target %.1f, at most %d evaluations%n", file, genomeLength, target,
+					evaluations);
+
+			for(int algorithm = 0 ; algorithm < 2 ; algorithm++) {
+				int[] evaluationsToTarget = new int[runs];
+
+				for(int run = 0 ; run < runs ; run++) {
+					Arguments arguments = new Arguments(jBotEvolver.getArguments().get("--population")
+							.getCompleteArgumentString());
+					arguments.setArgument("genomelength", genomeLength);
+					Population population = algorithm == 0 ? new MuLambdaPopulation(arguments)
+							: new CMAESPopulation(arguments);
+					population.setGenerationRandomSeed(run + 1);
+
+					long time = System.nanoTime();
+					Run result = evolve(jBotEvolver, population, target, evaluations);
+					time = System.nanoTime() - time;
+
+					evaluationsToTarget[run] = result.evaluations;
+					System.out.printf("  %s run %d: %s evaluations, highest fitness %.2f, %.1fs%n",
+							population.getClass().getSimpleName(), run + 1, format(result.evaluations, evaluations),
+							result.highestFitness, time / 1e9);
+				}
+
+				int[] sorted = evaluationsToTarget.clone();
+				Arrays.sort(sorted);
+				int reached = 0;
+				for(int e : sorted) {
+					if(e <= evaluations)
+						reached++;
+				}
+				System.out.printf("  %s: target reached in %d/%d runs, median %s evaluations%n",
+						algorithm == 0 ? "MuLambdaPopulation" : "CMAESPopulation", reached, runs,
+						format(sorted[runs / 2], evaluations));
+			}
+		}
+		System.exit(0);
+	}
+
+	private static String format(int evaluations, int maxEvaluations) {
+		return evaluations > maxEvaluations ? ">" + maxEvaluations : "" + evaluations;
+	}
+
+	/**
+	 * Evolves the population until the highest fitness of a generation
+	 * reaches the target, or the maximum number of evaluations is done.
+	 */
+	private static Run evolve(JBotEvolver jBotEvolver, Population population, double target, int maxEvaluations) {
+		Run run = new Run();
+		population.createRandomPopulation();
+
+		while(true) {
+			Chromosome c;
+			while((c = population.getNextChromosomeToEvaluate()) != null) {
+				GenerationalTask task = new GenerationalTask(
+						new JBotEvolver(jBotEvolver.getArgumentsCopy(), jBotEvolver.getRandomSeed()),
+						population.getNumberOfSamplesPerChromosome(), c, population.getGenerationRandomSeed());
+				task.run();
+				population.setEvaluationResultForId(c.getID(), ((SimpleFitnessResult)task.getResult()).getFitness());
+				run.evaluations++;
+			}
+
+			run.highestFitness = Math.max(run.highestFitness, population.getHighestFitness());
+			if(population.getHighestFitness() >= target)
+				return run;
+			if(run.evaluations >= maxEvaluations) {
+				run.evaluations = maxEvaluations + 1;
+				return run;
+			}
+
+			population.createNextGeneration();
+		}
+	}
+
+	private static class Run {
+		//the evaluations until the target was reached, or more than the
+		//maximum if it was not
+		private int evaluations = 0;
+		private double highestFitness = Double.NEGATIVE_INFINITY;
+	}
+}
@@ -0,0 +1,172 @@
+package tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+
+import evolutionaryrobotics.evolution.neat.NEATSerializer;
+import evolutionaryrobotics.evolution.neat.core.NEATChromosome;
+import evolutionaryrobotics.evolution.neat.core.NEATFitnessFunction;
+import evolutionaryrobotics.evolution.neat.core.NEATGADescriptor;
+import evolutionaryrobotics.evolution.neat.core.NEATGenome;
+import evolutionaryrobotics.evolution.neat.core.NEATGeneticAlgorithm;
+import evolutionaryrobotics.evolution.neat.core.NEATLinkGene;
+import evolutionaryrobotics.evolution.neat.core.mutators.NEATMutator;
+import evolutionaryrobotics.evolution.neat.core.pselectors.TournamentSelector;
+import evolutionaryrobotics.evolution.neat.core.xover.NEATCrossover;
+import evolutionaryrobotics.evolution.neat.ga.core.Chromosome;
+import evolutionaryrobotics.evolution.neat.ga.core.Gene;
+
+/**
+ * Evolves a NEAT population with a fitness computed from the link weights,
+ * so that it has grown genomes, and compares the heap and the serialized size
+ * of its genes kept as packed genomes and as one object per gene, as the
+ * chromosomes used to keep them. It also checks that packing the gene objects
+ * again gives the same genomes.
+ *
+ * Usage: NEATGenomeBenchmark [population size] [generations] (default 1000
+ * and 30)
+ */
+public class NEATGenomeBenchmark {
+
+	private static final int COPIES = 20;
+
+	public static void main(String[] args) throws Exception {
+		int populationSize = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int generations = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+
+		NEATGeneticAlgorithm algorithm = new NEATGeneticAlgorithm(createDescriptor(populationSize));
+		algorithm.pluginFitnessFunction(new WeightsFitnessFunction());
+		algorithm.pluginCrossOver(new NEATCrossover());
+		algorithm.pluginMutator(new NEATMutator());
+		algorithm.pluginParentSelector(new TournamentSelector());
+		algorithm.setRandomSeed(1);
+		algorithm.createPopulation();
+
+		for(int g = 0 ; g < generations ; g++)
+			algorithm.runEpoch();
+
+		Chromosome[] chromosomes = algorithm.population().genoTypes();
+		NEATGenome[] genomes = new NEATGenome[chromosomes.length];
+		Gene[][] objects = new Gene[chromosomes.length][];
+		int genes = 0;
+		boolean same = true;
+
+		for(int i = 0 ; i < chromosomes.length ; i++) {
+			genomes[i] = ((NEATChromosome)chromosomes[i]).genome();
+			objects[i] = chromosomes[i].genes();
+			genes+= genomes[i].size();
+			NEATGenome packed = NEATGenome.fromGenes(objects[i]);
+			same&= Arrays.equals(describe(packed), describe(genomes[i]));
+		}
+		System.out.printf("%d chromosomes, %.1f genes per chromosome%n", chromosomes.length,
+				(double)genes / chromosomes.length);
+
+		long packedHeap = heap(true, genomes, objects);
+		long objectsHeap = heap(false, genomes, objects);
+		long packedBytes = serializedSize(genomes);
+		long objectsBytes = serializedSize(objects);
+
+		System.out.printf("heap per chromosome: packed %d bytes, objects %d bytes (%.1fx)%n", packedHeap,
+				objectsHeap, (double)objectsHeap / packedHeap);
+		System.out.printf("serialized per chromosome: packed %d bytes, objects %d bytes (%.1fx)%n",
+				packedBytes / chromosomes.length, objectsBytes / chromosomes.length, (double)objectsBytes / packedBytes);
+		System.out.println("same genomes: " + same);
+		System.exit(same ? 0 : 1);
+	}
+
+	/**
+	 * @return the heap used by one copy of the genes of a chromosome, measured
+	 * over many copies of the population
+	 */
+	private static long heap(boolean packed, NEATGenome[] genomes, Gene[][] objects) {
+		Object[][] copies = new Object[COPIES][];
+		long before = usedMemory();
+		for(int c = 0 ; c < COPIES ; c++) {
+			copies[c] = new Object[genomes.length];
+			for(int i = 0 ; i < genomes.length ; i++)
+				copies[c][i] = packed ? NEATGenome.fromGenes(objects[i]) : new NEATChromosome(genomes[i]).genes();
+		}
+		long after = usedMemory();
+		long perChromosome = (after - before) / ((long)COPIES * genomes.length);
+		if(copies[COPIES - 1][0] == null)
+			throw new IllegalStateException();
+		return perChromosome;
+	}
+
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for(int i = 0 ; i < 3 ; i++)
+			System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static long serializedSize(Object o) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(o);
+		out.close();
+		return bytes.size();
+	}
+
+	/**
+	 * @return the genes as written by NEATSerializer, followed by their
+	 * innovation numbers
+	 */
+	private static double[] describe(NEATGenome genome) {
+		double[] values = NEATSerializer.serialize(genome);
+		double[] all = Arrays.copyOf(values, values.length + genome.size());
+		for(int i = 0 ; i < genome.size() ; i++)
+			all[values.length + i] = genome.innovationNumber(i);
+		return all;
+	}
+
+	private static NEATGADescriptor createDescriptor(int populationSize) {
+		NEATGADescriptor descriptor = new NEATGADescriptor();
+		descriptor.setPopulationSize(populationSize);
+		descriptor.setInputNodes(8);
+		descriptor.setOutputNodes(2);
+		descriptor.setPXover(0.2);
+		descriptor.setPAddLink(0.1);
+		descriptor.setPAddNode(0.05);
+		descriptor.setPMutation(0.25);
+		descriptor.setPMutateBias(0.3);
+		descriptor.setExcessCoeff(1);
+		descriptor.setDisjointCoeff(1);
+		descriptor.setWeightCoeff(0.4);
+		descriptor.setThreshold(0.5);
+		descriptor.setCompatabilityChange(0.05);
+		descriptor.setMaxSpecieAge(15);
+		descriptor.setSpecieAgeThreshold(80);
+		descriptor.setSpecieYouthThreshold(10);
+		descriptor.setAgePenalty(0.7);
+		descriptor.setYouthBoost(1.2);
+		descriptor.setSpecieCount(30);
+		descriptor.setSurvivalThreshold(0.2);
+		descriptor.setEleEventTime(1000);
+		descriptor.setRecurrencyAllowed(true);
+		descriptor.setMaxPerturb(0.5);
+		descriptor.setMaxBiasPerturb(0.1);
+		descriptor.setCopyBest(true);
+		return descriptor;
+	}
+
+	private static class WeightsFitnessFunction extends NEATFitnessFunction {
+
+		private static final long serialVersionUID = 1L;
+
+		public WeightsFitnessFunction() {
+			super(null, null);
+		}
+
+		@Override
+		public double evaluate(Chromosome genoType) {
+			double fitness = 0;
+			for(Gene gene : genoType.genes()) {
+				if(gene instanceof NEATLinkGene)
+					fitness+= Math.sin(((NEATLinkGene)gene).getWeight() * ((NEATLinkGene)gene).getInnovationNumber());
+			}
+			return 100 + fitness;
+		}
+	}
+}
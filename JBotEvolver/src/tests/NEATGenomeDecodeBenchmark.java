@@ -0,0 +1,87 @@
+package tests;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Vector;
+
+import simulation.util.Arguments;
+import evolutionaryrobotics.evolution.neat.NEATNeuralNetwork;
+import evolutionaryrobotics.evolution.neat.NEATSerializer;
+import evolutionaryrobotics.evolution.neat.core.NEATNeuralNet;
+import evolutionaryrobotics.neuralnetworks.inputs.NNInput;
+import evolutionaryrobotics.neuralnetworks.outputs.NNOutput;
+
+/**
+ * Measures the time taken to set up the NEAT networks of the robots of one
+ * sample: the genome written as text and parsed back once per robot, as
+ * NEATNeuralNetwork.setWeights used to do, against the current setWeights.
+ * It also checks that decoding the genome directly gives the same network.
+ */
+public class NEATGenomeDecodeBenchmark {
+
+	private static final int ROBOTS = 10;
+	private static final int GENOMES = 200;
+	private static final int HIDDEN = 20;
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) {
+		Random random = new Random(1);
+		double[][] genomes = new double[GENOMES][];
+		for(int i = 0 ; i < GENOMES ; i++)
+			genomes[i] = parse(NEATNetProgramBenchmark.randomGenome(random, random.nextInt(HIDDEN + 1), 0.1));
+
+		boolean different = false;
+		for(double[] genome : genomes) {
+			double[] text = NEATSerializer.serialize(NEATSerializer.deserialize(toText(genome)));
+			double[] direct = NEATSerializer.serialize(NEATSerializer.deserialize(genome));
+			different|= !Arrays.equals(text, direct);
+		}
+		System.out.println("same networks: " + !different);
+
+		NEATNeuralNetwork[] networks = new NEATNeuralNetwork[ROBOTS];
+		for(int r = 0 ; r < ROBOTS ; r++)
+			networks[r] = new NEATNeuralNetwork(new Vector<NNInput>(), new Vector<NNOutput>(), new Arguments(""));
+
+		long text = 0, direct = 0;
+		for(int round = 0 ; round < ROUNDS ; round++) {
+			long time = System.nanoTime();
+			for(double[] genome : genomes) {
+				for(int r = 0 ; r < ROBOTS ; r++) {
+					NEATNeuralNet network = NEATSerializer.deserialize(toText(genome));
+					if(network.neurons().length == 0)
+						throw new IllegalStateException();
+				}
+			}
+			text = System.nanoTime() - time;
+
+			time = System.nanoTime();
+			for(double[] genome : genomes) {
+				for(int r = 0 ; r < ROBOTS ; r++)
+					networks[r].setWeights(genome);
+			}
+			direct = System.nanoTime() - time;
+		}
+
+		System.out.printf("%d robots per sample: text %.1fus/sample, setWeights %.1fus/sample%n", ROBOTS,
+				text / 1e3 / GENOMES, direct / 1e3 / GENOMES);
+
+		System.exit(different ? 1 : 0);
+	}
+
+	private static String toText(double[] genome) {
+		StringBuilder builder = new StringBuilder();
+		for(double d : genome) {
+			builder.append(d);
+			builder.append(',');
+		}
+		return builder.toString();
+	}
+
+	private static double[] parse(String genome) {
+		String[] split = genome.split(",");
+		double[] values = new double[split.length];
+		for(int i = 0 ; i < split.length ; i++)
+			values[i] = Double.parseDouble(split[i]);
+		return values;
+	}
+}
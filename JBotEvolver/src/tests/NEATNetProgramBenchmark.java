@@ -0,0 +1,125 @@
+package tests;
+
+import java.util.Random;
+
+import evolutionaryrobotics.evolution.neat.NEATNeuralNetwork;
+import evolutionaryrobotics.evolution.neat.core.NEATNetProgram;
+import evolutionaryrobotics.evolution.neat.core.NEATNeuralNet;
+import evolutionaryrobotics.evolution.neat.core.NEATNodeGene;
+import evolutionaryrobotics.evolution.neat.data.csv.CSVInput;
+
+/**
+ * Compares {@link NEATNetProgram} with the recursive
+ * {@link NEATNeuralNet#execute} on random networks with feed-forward,
+ * recurrent and self-recurrent links. Each network is run by both for a
+ * number of steps with the same random inputs and the outputs must be
+ * exactly the same. Networks that the recursion cannot evaluate (cycles of
+ * neurons at the same depth) are skipped. The time and the memory allocated
+ * per step by both are also reported.
+ *
+ * The program fails if any output differs, or if executing the program
+ * allocates memory.
+ */
+public class NEATNetProgramBenchmark {
+
+	private static final int NETWORKS = 2000;
+	private static final int STEPS = 100;
+	private static final int INPUTS = 12;
+	private static final int OUTPUTS = 4;
+	private static final int MAX_HIDDEN = 20;
+	private static final int TIMED_STEPS = 20000;
+
+	public static void main(String[] args) {
+		Random random = new Random(1);
+		int differences = 0, skipped = 0, compared = 0;
+
+		for(int n = 0 ; n < NETWORKS ; n++) {
+			String genome = randomGenome(random, random.nextInt(MAX_HIDDEN + 1), random.nextDouble() * 0.3);
+			NEATNeuralNet recursive = NEATNeuralNetwork.deserialize(genome);
+			NEATNetProgram program = NEATNetProgram.compile(NEATNeuralNetwork.deserialize(genome));
+
+			if(program == null) {
+				skipped++;
+				continue;
+			}
+
+			double[] inputs = new double[INPUTS];
+			double[] outputs = new double[program.getNumberOfOutputs()];
+
+			for(int step = 0 ; step < STEPS ; step++) {
+				for(int i = 0 ; i < INPUTS ; i++)
+					inputs[i] = random.nextDouble() * 2 - 1;
+
+				double[] expected = recursive.execute(new CSVInput(inputs.clone())).nextOutput().values();
+				program.execute(inputs, outputs);
+
+				for(int i = 0 ; i < outputs.length ; i++) {
+					if(expected[i] != outputs[i])
+						differences++;
+				}
+			}
+			compared++;
+		}
+
+		System.out.printf("networks=%d skipped=%d different outputs=%d%n", compared, skipped, differences);
+
+		String genome = randomGenome(random, MAX_HIDDEN, 0.1);
+		time("recursive", NEATNeuralNetwork.deserialize(genome), null);
+		time("program", null, NEATNetProgram.compile(NEATNeuralNetwork.deserialize(genome)));
+
+		if(differences > 0)
+			throw new IllegalStateException(differences + " outputs of the programs differ from the recursive evaluation");
+	}
+
+	private static void time(String name, NEATNeuralNet recursive, NEATNetProgram program) {
+		double[] inputs = new double[INPUTS];
+		double[] outputs = new double[OUTPUTS];
+		AllocationMeter meter = new AllocationMeter();
+
+		for(int round = 0 ; round < 2 ; round++) {
+			meter.start();
+			for(int step = 0 ; step < TIMED_STEPS ; step++) {
+				inputs[step % INPUTS] = (step % 7) / 7.0;
+				if(program != null)
+					program.execute(inputs, outputs);
+				else
+					recursive.execute(new CSVInput(inputs.clone()));
+			}
+			meter.stop();
+		}
+
+		System.out.printf("%s: %.1fns/step %dB/step%n", name, (double)meter.getTime() / TIMED_STEPS,
+				meter.getBytes() / TIMED_STEPS);
+		if(program != null)
+			AllocationMeter.checkNoAllocation("Executing the program", meter.getBytes());
+	}
+
+	/**
+	 * Inputs, outputs and hidden neurons linked at random, in the format of
+	 * {@link NEATNeuralNetwork#deserialize(String)}.
+	 */
+	static String randomGenome(Random random, int hidden, double linkProbability) {
+		StringBuilder builder = new StringBuilder();
+		int neurons = INPUTS + OUTPUTS + hidden;
+
+		for(int id = 1 ; id <= neurons ; id++) {
+			int type = id <= INPUTS ? NEATNodeGene.INPUT : id <= INPUTS + OUTPUTS ? NEATNodeGene.OUTPUT : NEATNodeGene.HIDDEN;
+			append(builder, NEATNeuralNetwork.NODE, id, 1 + random.nextDouble() * 3, type, random.nextGaussian());
+		}
+
+		for(int to = INPUTS + 1 ; to <= neurons ; to++) {
+			for(int from = 1 ; from <= neurons ; from++) {
+				if(random.nextDouble() < linkProbability)
+					append(builder, NEATNeuralNetwork.LINK, 1, from, to, random.nextGaussian() * 2);
+			}
+		}
+		return builder.toString();
+	}
+
+	private static void append(StringBuilder builder, double... values) {
+		for(double d : values) {
+			builder.append(d);
+			builder.append(',');
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package tests;
+
+import java.util.concurrent.ForkJoinPool;
+
+import evolutionaryrobotics.evolution.neat.core.NEATGADescriptor;
+import evolutionaryrobotics.evolution.neat.core.NEATFitnessFunction;
+import evolutionaryrobotics.evolution.neat.core.NEATGeneticAlgorithm;
+import evolutionaryrobotics.evolution.neat.core.NEATLinkGene;
+import evolutionaryrobotics.evolution.neat.core.NEATNodeGene;
+import evolutionaryrobotics.evolution.neat.core.mutators.NEATMutator;
+import evolutionaryrobotics.evolution.neat.core.pselectors.TournamentSelector;
+import evolutionaryrobotics.evolution.neat.core.xover.NEATCrossover;
+import evolutionaryrobotics.evolution.neat.ga.core.Chromosome;
+import evolutionaryrobotics.evolution.neat.ga.core.Gene;
+
+/**
+ * Evolves a NEAT population with a fitness computed from the link weights,
+ * twice with the species reproducing one after the other and twice with them
+ * reproducing on the common ForkJoinPool, from the same seed. It checks that
+ * the four runs create the same genomes and the same innovations.
+ *
+ * The parallel spawn is only used if the common pool has more than one
+ * thread (-Djava.util.concurrent.ForkJoinPool.common.parallelism).
+ *
+ * Usage: NEATSpawnBenchmark [population size] [generations] [seed] (default
+ * 1000, 30 and 1)
+ */
+public class NEATSpawnBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int populationSize = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int generations = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+
+		System.out.printf("%d chromosomes, %d generations, %d threads%n", populationSize, generations,
+				ForkJoinPool.getCommonPoolParallelism());
+
+		String expected = null;
+		boolean same = true;
+
+		for(int run = 0 ; run < 4 ; run++) {
+			boolean parallel = run >= 2;
+			NEATGeneticAlgorithm algorithm = new NEATGeneticAlgorithm(createDescriptor(populationSize, parallel));
+			algorithm.pluginFitnessFunction(new WeightsFitnessFunction());
+			algorithm.pluginCrossOver(new NEATCrossover());
+			algorithm.pluginMutator(new NEATMutator());
+			algorithm.pluginParentSelector(new TournamentSelector());
+			algorithm.setRandomSeed(seed);
+			algorithm.createPopulation();
+
+			long start = System.nanoTime();
+			for(int g = 0 ; g < generations ; g++)
+				algorithm.runEpoch();
+			long time = System.nanoTime() - start;
+
+			String genomes = describe(algorithm.population().genoTypes());
+			if(expected == null)
+				expected = genomes;
+			same&= expected.equals(genomes);
+
+			int genes = 0;
+			for(Chromosome c : algorithm.population().genoTypes())
+				genes+= c.size();
+
+			System.out.printf("%s: %.1f genes per chromosome, %.2fms per generation, %s%n",
+					parallel ? "parallel" : "sequential", (double)genes / populationSize, time / 1e6 / generations,
+					algorithm.innovationDatabase().getStatistics());
+		}
+
+		System.out.println("same genomes: " + same);
+		System.exit(same ? 0 : 1);
+	}
+
+	private static NEATGADescriptor createDescriptor(int populationSize, boolean parallel) {
+		NEATGADescriptor descriptor = new NEATGADescriptor();
+		descriptor.setPopulationSize(populationSize);
+		descriptor.setInputNodes(8);
+		descriptor.setOutputNodes(2);
+		descriptor.setPXover(0.2);
+		descriptor.setPAddLink(0.1);
+		descriptor.setPAddNode(0.05);
+		descriptor.setPMutation(0.25);
+		descriptor.setPMutateBias(0.3);
+		descriptor.setExcessCoeff(1);
+		descriptor.setDisjointCoeff(1);
+		descriptor.setWeightCoeff(0.4);
+		descriptor.setThreshold(0.5);
+		descriptor.setCompatabilityChange(0.05);
+		descriptor.setMaxSpecieAge(15);
+		descriptor.setSpecieAgeThreshold(80);
+		descriptor.setSpecieYouthThreshold(10);
+		descriptor.setAgePenalty(0.7);
+		descriptor.setYouthBoost(1.2);
+		descriptor.setSpecieCount(30);
+		descriptor.setSurvivalThreshold(0.2);
+		descriptor.setEleEventTime(1000);
+		descriptor.setRecurrencyAllowed(true);
+		descriptor.setMaxPerturb(0.5);
+		descriptor.setMaxBiasPerturb(0.1);
+		descriptor.setCopyBest(true);
+		descriptor.setParallelSpeciation(true);
+		descriptor.setParallelSpawn(parallel);
+		return descriptor;
+	}
+
+	private static String describe(Chromosome[] chromosomes) {
+		StringBuilder builder = new StringBuilder();
+		for(Chromosome c : chromosomes) {
+			for(Gene gene : c.genes()) {
+				if(gene instanceof NEATLinkGene) {
+					NEATLinkGene link = (NEATLinkGene)gene;
+					builder.append(link.getInnovationNumber()).append(':').append(link.getFromId()).append('>')
+							.append(link.getToId()).append(':').append(link.isEnabled()).append(':')
+							.append(link.getWeight());
+				} else if(gene instanceof NEATNodeGene) {
+					NEATNodeGene node = (NEATNodeGene)gene;
+					builder.append(node.geneAsString()).append(':').append(node.bias());
+				} else {
+					builder.append(gene.geneAsNumber());
+				}
+				builder.append(' ');
+			}
+			builder.append('\n');
+		}
+		return builder.toString();
+	}
+
+	private static class WeightsFitnessFunction extends NEATFitnessFunction {
+
+		private static final long serialVersionUID = 1L;
+
+		public WeightsFitnessFunction() {
+			super(null, null);
+		}
+
+		@Override
+		public double evaluate(Chromosome genoType) {
+			double fitness = 0;
+			for(Gene gene : genoType.genes()) {
+				if(gene instanceof NEATLinkGene)
+					fitness+= Math.sin(((NEATLinkGene)gene).getWeight() * ((NEATLinkGene)gene).getInnovationNumber());
+			}
+			return 100 + fitness;
+		}
+	}
+}
@@ -0,0 +1,257 @@
+package tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+import evolutionaryrobotics.evolution.neat.core.NEATChromosome;
+import evolutionaryrobotics.evolution.neat.core.NEATFitnessFunction;
+import evolutionaryrobotics.evolution.neat.core.NEATGADescriptor;
+import evolutionaryrobotics.evolution.neat.core.NEATGene;
+import evolutionaryrobotics.evolution.neat.core.NEATGeneticAlgorithm;
+import evolutionaryrobotics.evolution.neat.core.NEATLinkGene;
+import evolutionaryrobotics.evolution.neat.core.NEATSpecieManager;
+import evolutionaryrobotics.evolution.neat.core.mutators.NEATMutator;
+import evolutionaryrobotics.evolution.neat.core.pselectors.TournamentSelector;
+import evolutionaryrobotics.evolution.neat.core.xover.NEATCrossover;
+import evolutionaryrobotics.evolution.neat.ga.core.Chromosome;
+import evolutionaryrobotics.evolution.neat.ga.core.Gene;
+import evolutionaryrobotics.evolution.neat.ga.core.Specie;
+
+/**
+ * Evolves a NEAT population with a fitness computed from the link weights,
+ * so that it has grown genomes and many species, and then speciates copies of
+ * it one score at a time and with the scores computed on the common
+ * ForkJoinPool. It checks that the species are the same, and that the
+ * compatibility scores computed from the innovation numbers and weights of
+ * the chromosomes are the same as the ones computed from their genes, as
+ * NEATSpecieManager used to do.
+ *
+ * The parallel speciation is only used if the common pool has more than one
+ * thread (-Djava.util.concurrent.ForkJoinPool.common.parallelism).
+ *
+ * Usage: NEATSpeciationBenchmark [population size] [generations] (default
+ * 1000 and 30)
+ */
+public class NEATSpeciationBenchmark {
+
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) throws Exception {
+		int populationSize = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int generations = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+
+		NEATGeneticAlgorithm algorithm = new NEATGeneticAlgorithm(createDescriptor(populationSize));
+		algorithm.pluginFitnessFunction(new WeightsFitnessFunction());
+		algorithm.pluginCrossOver(new NEATCrossover());
+		algorithm.pluginMutator(new NEATMutator());
+		algorithm.pluginParentSelector(new TournamentSelector());
+		algorithm.createPopulation();
+
+		for(int g = 0 ; g < generations ; g++)
+			algorithm.runEpoch();
+
+		Chromosome[] chromosomes = algorithm.population().genoTypes();
+		for(Chromosome c : chromosomes)
+			c.updateFitness(algorithm.gaEvaluator().evaluate(c));
+
+		byte[] state = serialize(algorithm);
+
+		int genes = 0;
+		for(Chromosome c : chromosomes)
+			genes+= c.size();
+		System.out.printf("%d chromosomes, %.1f genes per chromosome, %d threads%n", chromosomes.length,
+				(double)genes / chromosomes.length, ForkJoinPool.getCommonPoolParallelism());
+
+		int[] expected = null;
+		boolean same = true;
+
+		for(int parallel = 0 ; parallel <= 1 ; parallel++) {
+			long time = 0;
+			int species = 0;
+			for(int round = 0 ; round < ROUNDS ; round++) {
+				NEATGeneticAlgorithm copy = (NEATGeneticAlgorithm)deserialize(state);
+				((NEATGADescriptor)copy.descriptor()).setParallelSpeciation(parallel == 1);
+				Chromosome[] population = copy.population().genoTypes();
+
+				long start = System.nanoTime();
+				copy.speciatePopulation(population);
+				time+= System.nanoTime() - start;
+
+				int[] specieIds = new int[population.length];
+				for(int i = 0 ; i < population.length ; i++)
+					specieIds[i] = ((NEATChromosome)population[i]).getSpecieId();
+
+				if(expected == null)
+					expected = specieIds;
+				same&= java.util.Arrays.equals(expected, specieIds);
+
+				species = 0;
+				for(Object specie : copy.getSpecies().specieList()) {
+					if(((Specie)specie).specieMembers().size() > 0)
+						species++;
+				}
+			}
+			System.out.printf("%s: %d species, %.2fms%n", parallel == 1 ? "parallel" : "sequential", species,
+					time / 1e6 / ROUNDS);
+		}
+
+		ArrayList<Chromosome> representatives = new ArrayList<Chromosome>();
+		for(Object specie : algorithm.getSpecies().specieList()) {
+			if(((Specie)specie).findBestMember() != null)
+				representatives.add(((Specie)specie).findBestMember());
+		}
+
+		boolean sameScores = true;
+		long genesTime = 0, arraysTime = 0;
+		for(int round = 0 ; round < ROUNDS ; round++) {
+			long start = System.nanoTime();
+			double genesTotal = 0;
+			for(Chromosome c : chromosomes) {
+				for(Chromosome r : representatives)
+					genesTotal+= geneScore(c, r, 1, 1, 0.4);
+			}
+			genesTime+= System.nanoTime() - start;
+
+			start = System.nanoTime();
+			double arraysTotal = 0;
+			for(Chromosome c : chromosomes) {
+				for(Chromosome r : representatives)
+					arraysTotal+= NEATSpecieManager.compatibilityScore(c, r, 1, 1, 0.4);
+			}
+			arraysTime+= System.nanoTime() - start;
+			sameScores&= genesTotal == arraysTotal;
+		}
+		System.out.printf("%d scores: genes %.2fms, arrays %.2fms%n", chromosomes.length * representatives.size(),
+				genesTime / 1e6 / ROUNDS, arraysTime / 1e6 / ROUNDS);
+
+		System.out.println("same species: " + same);
+		System.out.println("same scores: " + sameScores);
+		System.exit(same && sameScores ? 0 : 1);
+	}
+
+	private static NEATGADescriptor createDescriptor(int populationSize) {
+		NEATGADescriptor descriptor = new NEATGADescriptor();
+		descriptor.setPopulationSize(populationSize);
+		descriptor.setInputNodes(8);
+		descriptor.setOutputNodes(2);
+		descriptor.setPXover(0.2);
+		descriptor.setPAddLink(0.1);
+		descriptor.setPAddNode(0.05);
+		descriptor.setPMutation(0.25);
+		descriptor.setPMutateBias(0.3);
+		descriptor.setExcessCoeff(1);
+		descriptor.setDisjointCoeff(1);
+		descriptor.setWeightCoeff(0.4);
+		descriptor.setThreshold(0.5);
+		descriptor.setCompatabilityChange(0.05);
+		descriptor.setMaxSpecieAge(15);
+		descriptor.setSpecieAgeThreshold(80);
+		descriptor.setSpecieYouthThreshold(10);
+		descriptor.setAgePenalty(0.7);
+		descriptor.setYouthBoost(1.2);
+		descriptor.setSpecieCount(30);
+		descriptor.setSurvivalThreshold(0.2);
+		descriptor.setEleEventTime(1000);
+		descriptor.setRecurrencyAllowed(true);
+		descriptor.setMaxPerturb(0.5);
+		descriptor.setMaxBiasPerturb(0.1);
+		descriptor.setCopyBest(true);
+		descriptor.setParallelSpeciation(true);
+		return descriptor;
+	}
+
+	/**
+	 * The compatibility score computed from the genes.
+	 */
+	private static double geneScore(Chromosome specieApplicant, Chromosome specieRepresentative, double excessCoeff, double disjointCoeff, double weightCoeff) {
+		int disjoints = 0;
+		int excess = 0;
+		boolean genesToProcess = true;
+		int applicantIdx = 0;
+		boolean applicantIdxEnded = false;
+		int repIdx = 0;
+		boolean repIdxEnded = false;
+		double weightDiffTotal = 0;
+		Gene[] applicantGenes = specieApplicant.genes();
+		Gene[] repGenes = specieRepresentative.genes();
+		int N = Math.max(specieApplicant.size(), specieRepresentative.size());
+
+		while(genesToProcess) {
+			int applicantInnovation = ((NEATGene)applicantGenes[applicantIdx]).getInnovationNumber();
+			int repInnovation = ((NEATGene)repGenes[repIdx]).getInnovationNumber();
+			if(applicantInnovation == repInnovation) {
+				if(applicantGenes[applicantIdx] instanceof NEATLinkGene)
+					weightDiffTotal+= Math.abs(((NEATLinkGene)applicantGenes[applicantIdx]).getWeight() - ((NEATLinkGene)repGenes[repIdx]).getWeight());
+				applicantIdx++;
+				repIdx++;
+			} else if(applicantInnovation > repInnovation) {
+				if(repIdx < repGenes.length && !repIdxEnded) {
+					repIdx++;
+					disjoints++;
+				} else {
+					applicantIdx++;
+					excess++;
+				}
+			} else {
+				if(applicantIdx < applicantGenes.length && !applicantIdxEnded) {
+					applicantIdx++;
+					disjoints++;
+				} else {
+					repIdx++;
+					excess++;
+				}
+			}
+
+			if(applicantIdx == N || repIdx == N)
+				genesToProcess = false;
+
+			if(applicantIdx == applicantGenes.length) {
+				applicantIdx%= applicantGenes.length;
+				applicantIdxEnded = true;
+			} else if(repIdx == repGenes.length) {
+				repIdx%= repGenes.length;
+				repIdxEnded = true;
+			}
+		}
+		double avWeightDiff = N == disjoints + excess ? 0 : weightDiffTotal / (N - disjoints - excess);
+		return ((excessCoeff * excess) / N) + ((disjointCoeff * disjoints) / N) + weightCoeff * avWeightDiff;
+	}
+
+	private static byte[] serialize(Object o) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(o);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private static Object deserialize(byte[] bytes) throws Exception {
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+		Object o = in.readObject();
+		in.close();
+		return o;
+	}
+
+	private static class WeightsFitnessFunction extends NEATFitnessFunction {
+
+		private static final long serialVersionUID = 1L;
+
+		public WeightsFitnessFunction() {
+			super(null, null);
+		}
+
+		@Override
+		public double evaluate(Chromosome genoType) {
+			double fitness = 0;
+			for(Gene gene : genoType.genes()) {
+				if(gene instanceof NEATLinkGene)
+					fitness+= Math.sin(((NEATLinkGene)gene).getWeight() * ((NEATLinkGene)gene).getInnovationNumber());
+			}
+			return 100 + fitness;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package tests;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import evolutionaryrobotics.neuralnetworks.Chromosome;
+import evolutionaryrobotics.populations.MuLambdaPopulation;
+import evolutionaryrobotics.populations.Population;
+import evolutionaryrobotics.util.DiskStorage;
+import simulation.util.Arguments;
+
+/**
+ * Saves and loads a random {@link MuLambdaPopulation} as the previous
+ * versions did (serialized and compressed) and with {@link DiskStorage}. For
+ * DiskStorage it reports the time the evolution waits for savePopulation,
+ * the time until the files are written, and the time to load the population,
+ * and checks that the population loaded is the same.
+ *
+ * Usage: PopulationCheckpointBenchmark [size] [genome length] (default 1000
+ * and 1000, 10000 and 10000 need a heap of about 4GB)
+ */
+public class PopulationCheckpointBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int genomeLength = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+		MuLambdaPopulation population = new MuLambdaPopulation(new Arguments("size=" + size
+				+ ",genomelength=" + genomeLength));
+		population.setGenerationRandomSeed(1);
+		population.createRandomPopulation();
+		Chromosome c;
+		for(int i = 0 ; (c = population.getNextChromosomeToEvaluate()) != null ; i++)
+			population.setEvaluationResult(c, i * 0.5);
+
+		File folder = Files.createTempDirectory("checkpoint").toFile();
+
+		File previous = new File(folder, "previous");
+		long time = System.nanoTime();
+		ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(new FileOutputStream(previous)));
+		out.writeObject(population);
+		out.close();
+		long previousSave = System.nanoTime() - time;
+
+		time = System.nanoTime();
+		ObjectInputStream in = new ObjectInputStream(new GZIPInputStream(new FileInputStream(previous)));
+		in.readObject();
+		in.close();
+		long previousLoad = System.nanoTime() - time;
+
+		DiskStorage diskStorage = new DiskStorage(folder.getPath());
+		diskStorage.start();
+
+		time = System.nanoTime();
+		diskStorage.savePopulation(population);
+		long blocked = System.nanoTime() - time;
+		diskStorage.waitForFiles();
+		long written = System.nanoTime() - time;
+		diskStorage.close();
+
+		File saved = new File(folder, "populations/population0");
+
+		time = System.nanoTime();
+		Population loaded = Population.getPopulation(new Arguments("load=" + saved.getName() + ",parentfolder=" + folder.getPath()));
+		long load = System.nanoTime() - time;
+
+		boolean same = loaded.getClass() == population.getClass();
+		Chromosome[] expected = population.getChromosomes();
+		Chromosome[] chromosomes = loaded.getChromosomes();
+		same&= expected.length == chromosomes.length;
+		for(int i = 0 ; same && i < expected.length ; i++) {
+			same&= Arrays.equals(expected[i].getAlleles(), chromosomes[i].getAlleles())
+					&& expected[i].getFitness() == chromosomes[i].getFitness()
+					&& expected[i].getID() == chromosomes[i].getID();
+		}
+
+		System.out.printf("previous: save=%.1fms load=%.1fms size=%dKB%n", previousSave / 1e6, previousLoad / 1e6,
+				previous.length() / 1024);
+		System.out.printf("diskstorage: blocked=%.1fms written=%.1fms load=%.1fms size=%dKB%n", blocked / 1e6,
+				written / 1e6, load / 1e6, saved.length() / 1024);
+		System.out.println("same population: " + same);
+
+		for(File f : new File(folder, "populations").listFiles())
+			f.delete();
+		for(File f : new File(folder, "show_best").listFiles())
+			f.delete();
+		for(File f : folder.listFiles())
+			f.delete();
+		folder.delete();
+
+		System.exit(same ? 0 : 1);
+	}
+}
@@ -0,0 +1,58 @@
+package tests;
+
+import java.util.ArrayList;
+
+import controllers.Controller;
+import simulation.Simulator;
+import simulation.robot.Robot;
+import simulation.util.Arguments;
+import evolutionaryrobotics.JBotEvolver;
+
+/**
+ * Measures the time and the memory allocated by {@link Robot#getRobots},
+ * which builds the robots with their sensors and actuators through the
+ * factory, followed by the creation of the controller of each robot (and its
+ * neural network inputs and outputs). The time taken to load the
+ * configuration, which looks up the full names of the classes in the
+ * classpath, is reported first.
+ *
+ * Usage: RobotSetupBenchmark [configuration file] (default
+ * conf_examples/go_to_nest.conf, run from the JBotEvolver folder)
+ */
+public class RobotSetupBenchmark {
+
+	private static final int SAMPLES = 20000;
+
+	public static void main(String[] args) throws Exception {
+		String file = args.length > 0 ? args[0] : "conf_examples/go_to_nest.conf";
+
+		long time = System.nanoTime();
+		JBotEvolver jBotEvolver = new JBotEvolver(new String[]{file});
+		System.out.printf("configuration loaded in %.1fms%n", (System.nanoTime() - time) / 1e6);
+
+		Arguments robotArguments = jBotEvolver.getArguments().get("--robots");
+		Arguments controllerArguments = jBotEvolver.getArguments().get("--controllers");
+		Simulator simulator = jBotEvolver.createSimulator(1);
+
+		AllocationMeter meter = new AllocationMeter();
+		int robots = 0;
+
+		for(int round = 0 ; round < 6 ; round++) {
+			meter.start();
+			robots = 0;
+
+			for(int i = 0 ; i < SAMPLES ; i++) {
+				ArrayList<Robot> list = Robot.getRobots(simulator, robotArguments);
+				for(Robot r : list)
+					r.setController(Controller.getController(simulator, r, controllerArguments));
+				robots+= list.size();
+			}
+
+			meter.stop();
+
+			if(round > 2)
+				System.out.printf("robots and controllers: %.2fus/robot, %dB/robot%n", meter.getTime() / 1e3 / robots,
+						meter.getBytes() / robots);
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import controllers.FixedLenghtGenomeEvolvableController;
+import simulation.Simulator;
+import simulation.robot.Robot;
+import evolutionaryrobotics.JBotEvolver;
+import evolutionaryrobotics.neuralnetworks.Chromosome;
+import taskexecutor.results.SimpleFitnessResult;
+import taskexecutor.tasks.GenerationalTask;
+
+/**
+ * Checks that reusing the simulators between samples (reuse=1 in the
+ * environment, see {@link taskexecutor.tasks.EvaluationContext}) gives the
+ * same fitness as creating new ones. A number of random chromosomes are
+ * evaluated by {@link GenerationalTask}s, one after the other in the same
+ * thread, first with reuse=0 and then with reuse=1, and the fitness of each
+ * chromosome must be exactly the same. The time per task of both is also
+ * reported.
+ *
+ * Usage: SimulatorReuseCheck [configuration file] (default
+ * conf_examples/go_to_nest.conf, run from the JBotEvolver folder)
+ *
+ * The program exits with status 1 if any fitness differs, or if the
+ * simulators were not reused.
+ */
+public class SimulatorReuseCheck {
+
+	private static final int CHROMOSOMES = 50;
+	private static final int SAMPLES = 5;
+	private static final int ROUNDS = 3;
+
+	public static void main(String[] args) throws Exception {
+		String file = args.length > 0 ? args[0] : "conf_examples/go_to_nest.conf";
+
+		JBotEvolver fresh = new JBotEvolver(new String[]{file});
+		fresh.getArguments().get("--environment").setArgument("reuse", 0);
+		JBotEvolver reused = new JBotEvolver(new String[]{file});
+		reused.getArguments().get("--environment").setArgument("reuse", 1);
+
+		Simulator simulator = reused.createSimulator(0);
+		ArrayList<Robot> robots = reused.createRobots(simulator);
+		if(!simulator.isReusable()) {
+			System.out.println("The simulator cannot be reused with this configuration");
+			System.exit(1);
+		}
+
+		Random random = new Random(1);
+		int genomeLength = ((FixedLenghtGenomeEvolvableController)robots.get(0).getController()).getGenomeLength();
+
+		Chromosome[] chromosomes = new Chromosome[CHROMOSOMES];
+		for(int c = 0 ; c < CHROMOSOMES ; c++) {
+			double[] alleles = new double[genomeLength];
+			for(int i = 0 ; i < alleles.length ; i++)
+				alleles[i] = random.nextGaussian() * 3;
+			chromosomes[c] = new Chromosome(alleles, c);
+		}
+
+		double[] expected = null, actual = null;
+		long freshTime = 0, reusedTime = 0;
+
+		for(int round = 0 ; round < ROUNDS ; round++) {
+			long time = System.nanoTime();
+			expected = evaluate(fresh, chromosomes);
+			freshTime = System.nanoTime() - time;
+
+			time = System.nanoTime();
+			actual = evaluate(reused, chromosomes);
+			reusedTime = System.nanoTime() - time;
+		}
+
+		int differences = 0;
+		for(int c = 0 ; c < CHROMOSOMES ; c++) {
+			if(expected[c] != actual[c]) {
+				System.out.println("chromosome " + c + ": " + expected[c] + " != " + actual[c]);
+				differences++;
+			}
+		}
+
+		System.out.printf("different fitness=%d/%d new=%.1fus/task reused=%.1fus/task%n", differences, CHROMOSOMES,
+				freshTime / 1e3 / CHROMOSOMES, reusedTime / 1e3 / CHROMOSOMES);
+
+		System.exit(differences > 0 ? 1 : 0);
+	}
+
+	private static double[] evaluate(JBotEvolver jBotEvolver, Chromosome[] chromosomes) {
+		double[] fitness = new double[chromosomes.length];
+		for(int c = 0 ; c < chromosomes.length ; c++) {
+			GenerationalTask task = new GenerationalTask(new JBotEvolver(jBotEvolver.getArgumentsCopy(), jBotEvolver.getRandomSeed()),
+					SAMPLES, chromosomes[c], c);
+			task.run();
+			fitness[c] = ((SimpleFitnessResult)task.getResult()).getFitness();
+		}
+		return fitness;
+	}
+}
@@ -0,0 +1,105 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import controllers.FixedLenghtGenomeEvolvableController;
+import simulation.Simulator;
+import simulation.robot.Robot;
+import evolutionaryrobotics.JBotEvolver;
+import evolutionaryrobotics.neuralnetworks.Chromosome;
+import taskexecutor.results.SimpleFitnessResult;
+import taskexecutor.tasks.GenerationalTask;
+
+/**
+ * Compares the fitness obtained with the close/far object lists
+ * (spatialindex=0 in the environment) and with the uniform grid
+ * (spatialindex=1, see {@link simulation.physicalobjects.SpatialIndex}). A
+ * number of random chromosomes are evaluated by {@link GenerationalTask}s
+ * with the same seeds in both modes.
+ *
+ * Both modes find the same close objects, but the grid visits them in the
+ * order of {@link simulation.environment.Environment#getAllObjects()}, while
+ * the lists move objects to the end as they drift away and come back. The
+ * order changes the robot-robot collisions, that move the robots one pair at
+ * a time, and the rounding of the sensor readings that add up several
+ * objects. Once two runs differ, the evolved controllers amplify the
+ * difference, so the fitness of the same chromosome is in general not the
+ * same. The check reports how many chromosomes got exactly the same fitness,
+ * and the largest and the average difference. The average fitness of all the
+ * chromosomes should be close in both modes: a large difference means that
+ * the grid misses (or adds) close objects.
+ *
+ * Usage: SpatialIndexCheck [configuration file] [number of robots] (default
+ * conf_examples/forage.conf with 5 robots, run from the JBotEvolver folder)
+ *
+ * The program exits with status 1 if the average fitness of the two modes
+ * differs by more than {@value #TOLERANCE} of the average fitness with the
+ * lists.
+ */
+public class SpatialIndexCheck {
+
+	private static final int CHROMOSOMES = 50;
+	private static final int SAMPLES = 5;
+	private static final double TOLERANCE = 0.1;
+
+	public static void main(String[] args) throws Exception {
+		String file = args.length > 0 ? args[0] : "conf_examples/forage.conf";
+		int numberOfRobots = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		JBotEvolver lists = new JBotEvolver(new String[]{file});
+		lists.getArguments().get("--robots").setArgument("numberofrobots", numberOfRobots);
+		lists.getArguments().get("--environment").setArgument("spatialindex", 0);
+		JBotEvolver grid = new JBotEvolver(new String[]{file});
+		grid.getArguments().get("--robots").setArgument("numberofrobots", numberOfRobots);
+		grid.getArguments().get("--environment").setArgument("spatialindex", 1);
+
+		Simulator simulator = lists.createSimulator(0);
+		ArrayList<Robot> robots = lists.createRobots(simulator);
+
+		Random random = new Random(1);
+		int genomeLength = ((FixedLenghtGenomeEvolvableController)robots.get(0).getController()).getGenomeLength();
+
+		Chromosome[] chromosomes = new Chromosome[CHROMOSOMES];
+		for(int c = 0 ; c < CHROMOSOMES ; c++) {
+			double[] alleles = new double[genomeLength];
+			for(int i = 0 ; i < alleles.length ; i++)
+				alleles[i] = random.nextGaussian() * 3;
+			chromosomes[c] = new Chromosome(alleles, c);
+		}
+
+		double[] expected = evaluate(lists, chromosomes);
+		double[] actual = evaluate(grid, chromosomes);
+
+		int same = 0;
+		double expectedAverage = 0, actualAverage = 0;
+		double maxDifference = 0, averageDifference = 0;
+
+		for(int c = 0 ; c < CHROMOSOMES ; c++) {
+			if(expected[c] == actual[c])
+				same++;
+			double difference = Math.abs(expected[c] - actual[c]);
+			maxDifference = Math.max(maxDifference, difference);
+			averageDifference+= difference / CHROMOSOMES;
+			expectedAverage+= expected[c] / CHROMOSOMES;
+			actualAverage+= actual[c] / CHROMOSOMES;
+		}
+
+		System.out.printf("robots=%d same fitness=%d/%d max difference=%f average difference=%f%n", numberOfRobots,
+				same, CHROMOSOMES, maxDifference, averageDifference);
+		System.out.printf("average fitness spatialindex=0: %f spatialindex=1: %f%n", expectedAverage, actualAverage);
+
+		System.exit(Math.abs(expectedAverage - actualAverage) > TOLERANCE * Math.abs(expectedAverage) ? 1 : 0);
+	}
+
+	private static double[] evaluate(JBotEvolver jBotEvolver, Chromosome[] chromosomes) {
+		double[] fitness = new double[chromosomes.length];
+		for(int c = 0 ; c < chromosomes.length ; c++) {
+			GenerationalTask task = new GenerationalTask(new JBotEvolver(jBotEvolver.getArgumentsCopy(), jBotEvolver.getRandomSeed()),
+					SAMPLES, chromosomes[c], c);
+			task.run();
+			fitness[c] = ((SimpleFitnessResult)task.getResult()).getFitness();
+		}
+		return fitness;
+	}
+}
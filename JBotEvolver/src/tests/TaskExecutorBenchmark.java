@@ -0,0 +1,96 @@
+package tests;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import controllers.FixedLenghtGenomeEvolvableController;
+import evolutionaryrobotics.JBotEvolver;
+import evolutionaryrobotics.neuralnetworks.Chromosome;
+import result.Result;
+import simulation.Simulator;
+import simulation.robot.Robot;
+import simulation.util.Arguments;
+import taskexecutor.ParallelTaskExecutor;
+import taskexecutor.ResultCollector;
+import taskexecutor.TaskExecutor;
+import taskexecutor.results.SimpleFitnessResult;
+import taskexecutor.tasks.GenerationalTask;
+
+/**
+ * Runs a generation of {@link GenerationalTask}s in a
+ * {@link ParallelTaskExecutor} with platform threads and with virtual threads.
+ * One task in ten evaluates ten times more samples than the others, so the
+ * results arrive out of order. For each executor it reports the time of the
+ * generation and the times measured by the executor, and checks that the
+ * fitness given by the {@link ResultCollector} is the same.
+ *
+ * Usage: TaskExecutorBenchmark [configuration file] [threads] (default
+ * conf_examples/go_to_nest.conf and the number of processors, run from the
+ * JBotEvolver folder)
+ */
+public class TaskExecutorBenchmark {
+
+	private static final int TASKS = 200;
+	private static final int SAMPLES = 2;
+
+	public static void main(String[] args) throws Exception {
+		String file = args.length > 0 ? args[0] : "conf_examples/go_to_nest.conf";
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+		JBotEvolver jBotEvolver = new JBotEvolver(new String[]{file});
+
+		Simulator simulator = jBotEvolver.createSimulator(0);
+		Robot robot = jBotEvolver.createRobots(simulator).get(0);
+		int genomeLength = ((FixedLenghtGenomeEvolvableController)robot.getController()).getGenomeLength();
+
+		Random random = new Random(1);
+		Chromosome[] chromosomes = new Chromosome[TASKS];
+		for(int c = 0 ; c < TASKS ; c++) {
+			double[] alleles = new double[genomeLength];
+			for(int i = 0 ; i < alleles.length ; i++)
+				alleles[i] = random.nextGaussian() * 3;
+			chromosomes[c] = new Chromosome(alleles, c);
+		}
+
+		double[] expected = null;
+		boolean same = true;
+
+		for(int round = 0 ; round < 3 ; round++) {
+			for(int virtual = 0 ; virtual <= 1 ; virtual++) {
+				Arguments executorArguments = new Arguments("classname=taskexecutor.ParallelTaskExecutor,threads="
+						+ threads + ",virtualthreads=" + virtual);
+				TaskExecutor executor = TaskExecutor.getTaskExecutor(jBotEvolver, executorArguments);
+				ResultCollector results = new ResultCollector(executor);
+
+				long time = System.nanoTime();
+				for(int c = 0 ; c < TASKS ; c++) {
+					int samples = c % 10 == 0 ? SAMPLES * 10 : SAMPLES;
+					results.addTask(new GenerationalTask(new JBotEvolver(jBotEvolver.getArgumentsCopy(), jBotEvolver.getRandomSeed()),
+							samples, chromosomes[c], c));
+				}
+
+				while(results.getNumberOfPendingResults() > 0)
+					results.waitForResult();
+
+				double[] fitness = new double[TASKS];
+				int c = 0;
+				for(Result r : results.getResults())
+					fitness[c++] = ((SimpleFitnessResult)r).getFitness();
+
+				time = System.nanoTime() - time;
+				executor.stopTasks();
+
+				if(expected == null)
+					expected = fitness;
+				same&= Arrays.equals(expected, fitness);
+
+				if(round == 2)
+					System.out.printf("%s: generation=%.1fms %s%n", virtual == 1 ? "virtual threads" : "threads",
+							time / 1e6, executor.getStatistics());
+			}
+		}
+
+		System.out.println("same fitness: " + same);
+		System.exit(same ? 0 : 1);
+	}
+}
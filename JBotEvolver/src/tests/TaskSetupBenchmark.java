@@ -0,0 +1,67 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import controllers.FixedLenghtGenomeEvolvableController;
+import simulation.Simulator;
+import simulation.robot.Robot;
+import evolutionaryrobotics.JBotEvolver;
+import evolutionaryrobotics.evaluationfunctions.EvaluationFunction;
+import evolutionaryrobotics.neuralnetworks.Chromosome;
+
+/**
+ * Measures the time and the memory allocated to set up one evaluation task,
+ * as GenerationalTask does before simulating: copying the configuration for
+ * the task, then creating the simulator, the robots with their sensors,
+ * actuators and controllers, and the evaluation function for each sample.
+ *
+ * Usage: TaskSetupBenchmark [configuration file] (default
+ * conf_examples/go_to_nest.conf, run from the JBotEvolver folder)
+ */
+public class TaskSetupBenchmark {
+
+	private static final int TASKS = 2000;
+	private static final int SAMPLES = 5;
+
+	public static void main(String[] args) throws Exception {
+		String file = args.length > 0 ? args[0] : "conf_examples/go_to_nest.conf";
+		JBotEvolver jBotEvolver = new JBotEvolver(new String[]{file});
+
+		Random random = new Random(1);
+		int genomeLength = genomeLength(jBotEvolver);
+		double[] alleles = new double[genomeLength];
+		for(int i = 0 ; i < alleles.length ; i++)
+			alleles[i] = random.nextGaussian();
+		Chromosome chromosome = new Chromosome(alleles, 0);
+
+		AllocationMeter meter = new AllocationMeter();
+
+		for(int round = 0 ; round < 3 ; round++) {
+			meter.start();
+
+			for(int t = 0 ; t < TASKS ; t++) {
+				JBotEvolver task = new JBotEvolver(jBotEvolver.getArgumentsCopy(), jBotEvolver.getRandomSeed());
+				for(int i = 0 ; i < SAMPLES ; i++) {
+					task.getArguments().get("--environment").setArgument("fitnesssample", i);
+					Simulator simulator = task.createSimulator(random.nextLong());
+					ArrayList<Robot> robots = task.createRobots(simulator, chromosome);
+					simulator.addRobots(robots);
+					simulator.addCallback(EvaluationFunction.getEvaluationFunction(task.getArguments().get("--evaluation")));
+				}
+			}
+
+			meter.stop();
+
+			if(round > 0)
+				System.out.printf("setup: %.1fus/task, %.1fkB/task (%d samples per task)%n", meter.getTime() / 1e3 / TASKS,
+						meter.getBytes() / 1024.0 / TASKS, SAMPLES);
+		}
+	}
+
+	private static int genomeLength(JBotEvolver jBotEvolver) {
+		Simulator simulator = jBotEvolver.createSimulator(0);
+		ArrayList<Robot> robots = jBotEvolver.createRobots(simulator);
+		return ((FixedLenghtGenomeEvolvableController)robots.get(0).getController()).getGenomeLength();
+	}
+}
@@ -0,0 +1,80 @@
+package tests;
+
+import java.io.File;
+import java.util.Arrays;
+
+import evolutionaryrobotics.util.TelemetryLog;
+import evolutionaryrobotics.util.TelemetryReader;
+
+/**
+ * Summarizes a telemetry log written with telemetry=1: for each worker, the
+ * number of samples it simulated and the mean, standard deviation and maximum
+ * of their wall time and steps, and for each generation the highest fitness
+ * of the chromosomes evaluated. The time it takes to read the log is shown at
+ * the end.
+ *
+ * Usage: TelemetryReport [output folder or telemetry log]
+ */
+public class TelemetryReport {
+
+	public static void main(String[] args) throws Exception {
+		if(args.length < 1) {
+			System.out.println("Usage: TelemetryReport [output folder or telemetry log]");
+			System.exit(1);
+		}
+
+		File file = new File(args[0]);
+		if(file.isDirectory())
+			file = new File(file, TelemetryLog.FILENAME);
+
+		long time = System.nanoTime();
+		TelemetryReader reader = new TelemetryReader(file);
+		String[] names = reader.getWorkerNames();
+		int workers = names.length;
+
+		long[] samples = new long[workers];
+		double[] sum = new double[workers];
+		double[] sumSquares = new double[workers];
+		long[] max = new long[workers];
+		long[] steps = new long[workers];
+		long[] aborted = new long[workers];
+
+		for(long r = 0 ; r < reader.getNumberOfRecords() ; r++) {
+			int w = reader.getWorker(r);
+			if(w >= workers) {
+				workers = w + 1;
+				samples = Arrays.copyOf(samples, workers);
+				sum = Arrays.copyOf(sum, workers);
+				sumSquares = Arrays.copyOf(sumSquares, workers);
+				max = Arrays.copyOf(max, workers);
+				steps = Arrays.copyOf(steps, workers);
+				aborted = Arrays.copyOf(aborted, workers);
+			}
+			double ms = reader.getWallTime(r) / 1e6;
+			samples[w]++;
+			sum[w]+= ms;
+			sumSquares[w]+= ms * ms;
+			max[w] = Math.max(max[w], reader.getWallTime(r));
+			steps[w]+= reader.getSteps(r);
+			if(reader.isAborted(r))
+				aborted[w]++;
+		}
+
+		double[] highest = reader.getHighestFitnessPerGeneration();
+		time = System.nanoTime() - time;
+
+		System.out.println(reader.getNumberOfRecords()+" samples");
+		for(int w = 0 ; w < workers ; w++) {
+			if(samples[w] == 0)
+				continue;
+			double mean = sum[w] / samples[w];
+			double sd = Math.sqrt(Math.max(0, sumSquares[w] / samples[w] - mean * mean));
+			System.out.printf("%s: samples=%d aborted=%d time=%.2fms sd=%.2fms max=%.2fms steps=%.1f%n",
+					w < names.length ? names[w] : String.valueOf(w), samples[w], aborted[w], mean, sd, max[w] / 1e6,
+					(double)steps[w] / samples[w]);
+		}
+		for(int g = 0 ; g < highest.length ; g++)
+			System.out.println("generation "+g+": "+highest[g]);
+		System.out.printf("read in %.1fms%n", time / 1e6);
+	}
+}
@@ -0,0 +1,146 @@
+package tests;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import controllers.FixedLenghtGenomeEvolvableController;
+import evolutionaryrobotics.JBotEvolver;
+import evolutionaryrobotics.neuralnetworks.Chromosome;
+import result.Result;
+import simulation.Simulator;
+import simulation.robot.Robot;
+import simulation.util.Arguments;
+import taskexecutor.ResultCollector;
+import taskexecutor.TaskExecutor;
+import taskexecutor.WorkerTaskExecutor;
+import taskexecutor.results.BatchFitnessResult;
+import taskexecutor.results.SimpleFitnessResult;
+import taskexecutor.tasks.BatchGenerationalTask;
+import taskexecutor.tasks.GenerationalTask;
+import taskexecutor.workers.Worker;
+import taskexecutor.workers.WorkerProtocol;
+import tasks.Task;
+
+/**
+ * Starts two {@link Worker} processes on this machine for a
+ * {@link WorkerTaskExecutor}, and runs {@link GenerationalTask}s (sent as
+ * chromosomes) and {@link BatchGenerationalTask}s (sent serialized) in them.
+ * One of the workers is killed after the first results arrive, so its tasks
+ * have to be sent to the other one. It checks that the fitness is the same as
+ * when the tasks run in this process.
+ *
+ * Usage: WorkerTaskExecutorCheck [configuration file] (default
+ * conf_examples/go_to_nest.conf, run from the JBotEvolver folder)
+ */
+public class WorkerTaskExecutorCheck {
+
+	private static final int TASKS = 40;
+	private static final int BATCHES = 5;
+	private static final int SAMPLES = 2;
+	private static final String TOKEN = "check";
+
+	public static void main(String[] args) throws Exception {
+		String file = args.length > 0 ? args[0] : "conf_examples/go_to_nest.conf";
+
+		JBotEvolver jBotEvolver = new JBotEvolver(new String[]{file});
+
+		Simulator simulator = jBotEvolver.createSimulator(0);
+		Robot robot = jBotEvolver.createRobots(simulator).get(0);
+		int genomeLength = ((FixedLenghtGenomeEvolvableController)robot.getController()).getGenomeLength();
+
+		Random random = new Random(1);
+		Chromosome[] chromosomes = new Chromosome[TASKS + BATCHES * 2];
+		for(int c = 0 ; c < chromosomes.length ; c++) {
+			double[] alleles = new double[genomeLength];
+			for(int i = 0 ; i < alleles.length ; i++)
+				alleles[i] = random.nextGaussian() * 3;
+			chromosomes[c] = new Chromosome(alleles, c);
+		}
+
+		double[] expected = getFitness(runInThisProcess(createTasks(jBotEvolver, chromosomes)));
+
+		WorkerTaskExecutor executor = (WorkerTaskExecutor)TaskExecutor.getTaskExecutor(jBotEvolver,
+				new Arguments("classname=taskexecutor.WorkerTaskExecutor,localworkers=0,heartbeat=200,timeout=2000,token=" + TOKEN));
+
+		ArrayList<Process> workers = new ArrayList<Process>();
+		for(int i = 0 ; i < 2 ; i++)
+			workers.add(startWorker(executor.getPort()));
+
+		while(executor.getNumberOfWorkers() < workers.size())
+			Thread.sleep(100);
+
+		ResultCollector results = new ResultCollector(executor);
+
+		long time = System.nanoTime();
+		for(Task t : createTasks(jBotEvolver, chromosomes))
+			results.addTask(t);
+
+		int received = 0;
+		while(results.getNumberOfPendingResults() > 0) {
+			if(results.waitForResult() == null)
+				break;
+			if(++received == 2) {
+				workers.get(0).destroyForcibly();
+				System.out.println("worker killed");
+			}
+		}
+
+		double[] fitness = getFitness(results.getResults());
+		time = System.nanoTime() - time;
+
+		executor.stopTasks();
+		for(Process p : workers)
+			p.destroy();
+
+		boolean same = Arrays.equals(expected, fitness);
+		System.out.printf("workers: %.1fms %s%n", time / 1e6, executor.getStatistics());
+		System.out.println("same fitness: " + same);
+		System.exit(same ? 0 : 1);
+	}
+
+	private static ArrayList<Task> createTasks(JBotEvolver jBotEvolver, Chromosome[] chromosomes) {
+		ArrayList<Task> tasks = new ArrayList<Task>();
+		for(int c = 0 ; c < TASKS ; c++)
+			tasks.add(new GenerationalTask(new JBotEvolver(jBotEvolver.getArgumentsCopy(), jBotEvolver.getRandomSeed()),
+					SAMPLES, chromosomes[c], c));
+		for(int b = 0 ; b < BATCHES ; b++)
+			tasks.add(new BatchGenerationalTask(new JBotEvolver(jBotEvolver.getArgumentsCopy(), jBotEvolver.getRandomSeed()),
+					SAMPLES, new Chromosome[]{chromosomes[TASKS + b * 2], chromosomes[TASKS + b * 2 + 1]}, b, false));
+		return tasks;
+	}
+
+	private static ArrayList<Result> runInThisProcess(ArrayList<Task> tasks) {
+		ArrayList<Result> results = new ArrayList<Result>();
+		for(Task t : tasks) {
+			t.run();
+			results.add(t.getResult());
+		}
+		return results;
+	}
+
+	private static double[] getFitness(ArrayList<Result> results) {
+		double[] fitness = new double[TASKS + BATCHES * 2];
+		for(Result r : results) {
+			if(r instanceof SimpleFitnessResult) {
+				SimpleFitnessResult result = (SimpleFitnessResult)r;
+				fitness[result.getChromosomeId()] = result.getFitness();
+			} else {
+				BatchFitnessResult result = (BatchFitnessResult)r;
+				for(int i = 0 ; i < result.getNumberOfChromosomes() ; i++)
+					fitness[result.getChromosomeId(i)] = result.getFitness(i);
+			}
+		}
+		return fitness;
+	}
+
+	private static Process startWorker(int port) throws Exception {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+				Worker.class.getName(), "localhost", "" + port, "1", "once");
+		builder.environment().put(WorkerProtocol.TOKEN_VARIABLE, TOKEN);
+		builder.inheritIO();
+		return builder.start();
+	}
+}
@@ -71,4 +71,14 @@ public abstract class Controller extends SimulatorObject {
 	}
 	
 	public void controlStep(double time) {}
+
+	/**
+	 * Creates an empty batch that can step this controller together with
+	 * equivalent controllers of other simulators (see {@link ControllerBatch}).
+	 * 
+	 * @return the batch, or null if the controller can only be stepped on its own
+	 */
+	public ControllerBatch createBatch() {
+		return null;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+package controllers;
+
+/**
+ * Steps the controllers of several robots together, each robot in a different
+ * simulator, when the simulators are run in lockstep (see
+ * {@link simulation.LockstepSimulator}). The controllers are added before the
+ * simulation starts. In each step, the ones that must be stepped are marked
+ * with {@link #setActive(int)} and are then stepped by
+ * {@link #controlStep(double)}, with exactly the same result as calling
+ * {@link Controller#controlStep(double)} on each of them.
+ *
+ * Controllers that can be stepped in a batch create one with
+ * {@link Controller#createBatch()}.
+ */
+public abstract class ControllerBatch {
+
+	/**
+	 * @return whether the controller can be added to this batch
+	 */
+	public abstract boolean accepts(Controller controller);
+
+	/**
+	 * Adds a controller that the batch {@link #accepts(Controller)}.
+	 *
+	 * @return the slot of the controller, used by {@link #setActive(int)}
+	 */
+	public abstract int add(Controller controller);
+
+	/**
+	 * @return the number of controllers added to the batch
+	 */
+	public abstract int getSize();
+
+	/**
+	 * Marks the controller in the given slot to be stepped by the next call
+	 * to {@link #controlStep(double)}.
+	 */
+	public abstract void setActive(int slot);
+
+	/**
+	 * Steps the active controllers, in the order of their slots, and marks
+	 * them as inactive again.
+	 */
+	public abstract void controlStep(double time);
+}
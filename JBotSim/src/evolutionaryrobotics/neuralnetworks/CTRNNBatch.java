@@ -0,0 +1,284 @@
+package evolutionaryrobotics.neuralnetworks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import controllers.Controller;
+import controllers.ControllerBatch;
+
+/**
+ * Forward pass of several {@link CTRNNMultilayer} networks with the same
+ * weights at once, such as the networks of the same robot in the samples of a
+ * chromosome. The networks are stepped as a matrix product: the neurons of all
+ * the networks are kept as a structure of arrays, the value of neuron k of
+ * network s at [k * size + s], and each weight is loaded once for all of them.
+ * The sums of a few networks are kept in local variables, so that they are
+ * added independently of each other instead of each addition waiting for the
+ * previous one, as in a single network.
+ *
+ * Each network still adds its products in the same order as
+ * {@link ForwardPass#scalarDot(double, double[], int, double[], int)}, so the
+ * outputs are exactly the same as when the networks are stepped one by one.
+ * When {@link ForwardPass#isVectorized()}, the single networks round
+ * differently, so the networks are not batched.
+ *
+ * The states of the hidden and the output neurons are copied from the
+ * networks and back in every step. A network whose weights are replaced by
+ * different ones is stepped on its own.
+ */
+public class CTRNNBatch extends ControllerBatch {
+
+	private int numberOfInputs;
+	private int numberOfHidden;
+	private int numberOfOutputs;
+	private double timeStep;
+
+	private double[] weights;
+	private double[] inputToHiddenWeights;
+	private double[] hiddenToHiddenWeights;
+	private double[] hiddenBiases;
+	private double[] hiddenTaus;
+	private double[] hiddenToOutputWeights;
+	private double[] outputBiases;
+
+	private ArrayList<CTRNNMultilayer> networks = new ArrayList<CTRNNMultilayer>();
+	private boolean[] active = new boolean[0];
+	private int numberActive = 0;
+
+	//weights arrays of the networks when they were last found equal to the weights of the batch
+	private double[][] checkedWeights;
+	private int size = 0;
+
+	private double[] inputs;
+	private double[] hiddenStates;
+	private double[] hiddenDeltaStates;
+	private double[] hiddenActivations;
+	private double[] outputs;
+	private double[] sums;
+
+	public CTRNNBatch(CTRNNMultilayer network) {
+		numberOfInputs = network.getNumberOfInputNeurons();
+		numberOfHidden = network.getNumberOfHiddenNodes();
+		numberOfOutputs = network.getNumberOfOutputNeurons();
+		timeStep = network.timeStep;
+
+		weights = network.weights.clone();
+		inputToHiddenWeights = network.inputToHiddenWeights.clone();
+		hiddenToHiddenWeights = network.hiddenToHiddenWeights.clone();
+		hiddenBiases = network.hiddenBiases.clone();
+		hiddenTaus = network.hiddenTaus.clone();
+		hiddenToOutputWeights = network.hiddenToOutputWeights.clone();
+		outputBiases = network.outputBiases.clone();
+	}
+
+	/**
+	 * @return whether the network can be stepped by a batch
+	 */
+	public static boolean canStep(NeuralNetwork network) {
+		return network.getClass() == CTRNNMultilayer.class && network.weights != null && !network.printValues
+				&& !ForwardPass.isVectorized();
+	}
+
+	@Override
+	public boolean accepts(Controller controller) {
+		if(controller.getClass() != NeuralNetworkController.class)
+			return false;
+
+		NeuralNetwork network = ((NeuralNetworkController)controller).getNeuralNetwork();
+		return canStep(network) && accepts((CTRNNMultilayer)network);
+	}
+
+	/**
+	 * @return whether the network has the same number of neurons and the same
+	 *         weights as the networks of this batch
+	 */
+	public boolean accepts(CTRNNMultilayer network) {
+		return network.getNumberOfInputNeurons() == numberOfInputs && network.getNumberOfHiddenNodes() == numberOfHidden
+				&& network.getNumberOfOutputNeurons() == numberOfOutputs && network.timeStep == timeStep
+				&& Arrays.equals(network.weights, weights);
+	}
+
+	@Override
+	public int add(Controller controller) {
+		return add((CTRNNMultilayer)((NeuralNetworkController)controller).getNeuralNetwork());
+	}
+
+	/**
+	 * Adds a network that the batch {@link #accepts(CTRNNMultilayer)}.
+	 *
+	 * @return the slot of the network
+	 */
+	public int add(CTRNNMultilayer network) {
+		networks.add(network);
+		return networks.size() - 1;
+	}
+
+	@Override
+	public int getSize() {
+		return networks.size();
+	}
+
+	@Override
+	public void setActive(int slot) {
+		if(active.length != networks.size())
+			allocate();
+		if(!active[slot]) {
+			active[slot] = true;
+			numberActive++;
+		}
+	}
+
+	@Override
+	public void controlStep(double time) {
+		if(numberActive == 0)
+			return;
+
+		int n = size;
+
+		for(int s = 0 ; s < n ; s++) {
+			if(!active[s])
+				continue;
+
+			CTRNNMultilayer network = networks.get(s);
+			if(network.weights != checkedWeights[s]) {
+				if(!Arrays.equals(network.weights, weights)) {
+					active[s] = false;
+					network.controlStep(time);
+					continue;
+				}
+				checkedWeights[s] = network.weights;
+			}
+
+			network.readInputs();
+			copyIn(network.inputNeuronStates, inputs, numberOfInputs, s);
+			copyIn(network.hiddenStates, hiddenStates, numberOfHidden, s);
+			copyIn(network.outputNeuronStates, outputs, numberOfOutputs, s);
+		}
+
+		propagateInputs(n);
+
+		for(int s = 0 ; s < n ; s++) {
+			if(!active[s])
+				continue;
+
+			active[s] = false;
+			CTRNNMultilayer network = networks.get(s);
+			//the deltas and the activations are recomputed from the states before they are used
+			copyOut(hiddenStates, network.hiddenStates, numberOfHidden, s);
+			copyOut(outputs, network.outputNeuronStates, numberOfOutputs, s);
+			network.applyOutputs();
+		}
+		numberActive = 0;
+	}
+
+	/**
+	 * The same operations as {@link CTRNNMultilayer#propagateInputs(double[])},
+	 * for the first n networks. The networks that are not active are computed
+	 * too, with whatever values they had, and the results are ignored.
+	 */
+	private void propagateInputs(int n) {
+		int A = numberOfInputs;
+		int B = numberOfHidden;
+
+		sigmoid(n);
+
+		for(int i = 0 ; i < B ; i++) {
+			int row = i * n;
+			for(int s = 0 ; s < n ; s++)
+				sums[s] = -hiddenStates[row + s];
+
+			dot(sums, inputToHiddenWeights, i * A, inputs, A, n);
+			dot(sums, hiddenToHiddenWeights, i * B, hiddenActivations, B, n);
+
+			System.arraycopy(sums, 0, hiddenDeltaStates, row, n);
+		}
+
+		for(int i = 0 ; i < B ; i++) {
+			double tau = hiddenTaus[i];
+			for(int k = i * n ; k < (i + 1) * n ; k++)
+				hiddenStates[k] += hiddenDeltaStates[k] * timeStep / tau;
+		}
+
+		sigmoid(n);
+
+		for(int i = 0 ; i < numberOfOutputs ; i++) {
+			int row = i * n;
+			System.arraycopy(outputs, row, sums, 0, n);
+			dot(sums, hiddenToOutputWeights, i * B, hiddenActivations, B, n);
+
+			for(int s = 0 ; s < n ; s++)
+				outputs[row + s] = ForwardPass.sigmoid(sums[s] + outputBiases[i]);
+		}
+	}
+
+	/**
+	 * The same as {@link ForwardPass#sigmoid(double[], double[], double[], int)}
+	 * on the hidden neurons of the first n networks.
+	 */
+	private void sigmoid(int n) {
+		for(int i = 0 ; i < numberOfHidden ; i++) {
+			double bias = hiddenBiases[i];
+			for(int k = i * n ; k < (i + 1) * n ; k++)
+				hiddenActivations[k] = ForwardPass.sigmoid(hiddenStates[k] + bias);
+		}
+	}
+
+	/**
+	 * Adds weights[first + j] * values[j * n + s] to sums[s], for j from 0 to
+	 * count - 1 in this order, for each of the n networks s.
+	 */
+	private static void dot(double[] sums, double[] weights, int first, double[] values, int count, int n) {
+		int s = 0;
+
+		for(; s + 4 <= n ; s+= 4) {
+			double sum0 = sums[s], sum1 = sums[s + 1], sum2 = sums[s + 2], sum3 = sums[s + 3];
+			for(int j = 0 ; j < count ; j++) {
+				double w = weights[first + j];
+				int v = j * n + s;
+				sum0 += w * values[v];
+				sum1 += w * values[v + 1];
+				sum2 += w * values[v + 2];
+				sum3 += w * values[v + 3];
+			}
+			sums[s] = sum0;
+			sums[s + 1] = sum1;
+			sums[s + 2] = sum2;
+			sums[s + 3] = sum3;
+		}
+
+		for(; s < n ; s++) {
+			double sum = sums[s];
+			for(int j = 0 ; j < count ; j++)
+				sum += weights[first + j] * values[j * n + s];
+			sums[s] = sum;
+		}
+	}
+
+	private void allocate() {
+		int n = networks.size();
+
+		size = n;
+		active = new boolean[n];
+		numberActive = 0;
+		checkedWeights = new double[n][];
+		for(int s = 0 ; s < n ; s++)
+			checkedWeights[s] = networks.get(s).weights;
+
+		inputs = new double[numberOfInputs * n];
+		hiddenStates = new double[numberOfHidden * n];
+		hiddenDeltaStates = new double[numberOfHidden * n];
+		hiddenActivations = new double[numberOfHidden * n];
+		outputs = new double[numberOfOutputs * n];
+		sums = new double[n];
+	}
+
+	private void copyIn(double[] from, double[] to, int count, int s) {
+		for(int k = 0 ; k < count ; k++)
+			to[k * size + s] = from[k];
+	}
+
+	private void copyOut(double[] from, double[] to, int count, int s) {
+		for(int k = 0 ; k < count ; k++)
+			to[k] = from[k * size + s];
+	}
+}
@@ -4,6 +4,7 @@ import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.Arrays;
 import java.util.Vector;
 
 import evolutionaryrobotics.neuralnetworks.inputs.NNInput;
@@ -20,6 +21,8 @@ public class CTRNNMultilayer extends NeuralNetwork {
 	protected int numberOfHiddenNodes;
 	protected double[] hiddenDeltaStates;
 	protected double[] hiddenStates;
+	// sigmoid(hiddenStates + hiddenBiases), computed once per step
+	protected double[] hiddenActivations;
 	protected double[] inputToHiddenWeights;
 	protected double[] hiddenBiases;
 	protected double[] hiddenToHiddenWeights;
@@ -34,38 +37,31 @@ public class CTRNNMultilayer extends NeuralNetwork {
 
 	@Override
 	protected double[] propagateInputs(double[] inputValues) {
-		// Update delta state of hidden layer from inputs:
-		for (int i = 0; i < numberOfHiddenNodes; i++) {
-			hiddenDeltaStates[i] = -hiddenStates[i];
+		int A = numberOfInputNeurons;
+		int B = numberOfHiddenNodes;
 
-			for (int j = 0; j < numberOfInputNeurons; j++) {
-				// weight * sigmoid(state)
-				hiddenDeltaStates[i] += inputToHiddenWeights[i * numberOfInputNeurons + j] * inputValues[j];
-			}
-		}
+		ForwardPass.sigmoid(hiddenStates, hiddenBiases, hiddenActivations, B);
 
-		// Update delta state from hidden layer, self-recurrent connections:
-		for (int i = 0; i < numberOfHiddenNodes; i++) {
-			for (int j = 0; j < numberOfHiddenNodes; j++) {
-				double z = 1.0 / (FastMath.expQuick(-(hiddenStates[j] + hiddenBiases[j])) + 1.0);
-				hiddenDeltaStates[i] += hiddenToHiddenWeights[i * numberOfHiddenNodes + j] * z;
-			}
+		// Update delta state of hidden layer from inputs and from the hidden
+		// layer (self-recurrent connections):
+		for (int i = 0; i < B; i++) {
+			double delta = ForwardPass.dot(-hiddenStates[i], inputToHiddenWeights, i * A, inputValues, A);
+			hiddenDeltaStates[i] = ForwardPass.dot(delta, hiddenToHiddenWeights, i * B, hiddenActivations, B);
 		}
 
-		for (int i = 0; i < numberOfHiddenNodes; i++) {
+		for (int i = 0; i < B; i++) {
 			hiddenStates[i] += hiddenDeltaStates[i] * timeStep / hiddenTaus[i];
 		}
 
+		ForwardPass.sigmoid(hiddenStates, hiddenBiases, hiddenActivations, B);
+
 		// Update the outputs layer::
 		for (int i = 0; i < numberOfOutputNeurons; i++) {
-			for (int j = 0; j < numberOfHiddenNodes; j++) {
-				double z = ((1.0) / (FastMath.expQuick(-(hiddenStates[j] + hiddenBiases[j])) + 1.0));
-				outputNeuronStates[i] += hiddenToOutputWeights[i * numberOfHiddenNodes + j] * z;
-			}
+			outputNeuronStates[i] = ForwardPass.dot(outputNeuronStates[i], hiddenToOutputWeights, i * B, hiddenActivations, B);
 
 			// Compute the activation function immediately, since this is
 			// what we return and since the output layer is not recurrent:
-			outputNeuronStates[i] = ((1.0) / (FastMath.expQuick(-(outputNeuronStates[i] + outputBiases[i])) + 1.0));
+			outputNeuronStates[i] = ForwardPass.sigmoid(outputNeuronStates[i] + outputBiases[i]);
 		}
 
 		if (printValues) {
@@ -156,12 +152,16 @@ public class CTRNNMultilayer extends NeuralNetwork {
 
 			hiddenDeltaStates = new double[B];
 			hiddenStates = new double[B];
+			hiddenActivations = new double[B];
 
 			for (int i = 0; i < B; i++) {
 				hiddenStates[i] = 0;
 			}
 
 		}
+
+		// each output starts from its previous value (see propagateInputs)
+		Arrays.fill(outputNeuronStates, 0);
 	}
 
 	public double[] getHiddenStates() {
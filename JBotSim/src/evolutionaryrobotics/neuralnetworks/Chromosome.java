@@ -72,12 +72,12 @@ public class Chromosome implements Serializable, Cloneable {
 	}
 	
 	public String getAllelesString() {
-		String str = "";
+		StringBuilder str = new StringBuilder(alleles.length * 20);
 		
 		for(double d : alleles)
-			str+=d+",";
+			str.append(d).append(',');
 		
-		return str;
+		return str.toString();
 	}
 	
 	public void setupRobot(Robot r) {
@@ -0,0 +1,67 @@
+package evolutionaryrobotics.neuralnetworks;
+
+import net.jafama.FastMath;
+
+/**
+ * Loops shared by the forward passes of the fixed-topology networks. The
+ * weights of each neuron are stored contiguously, so each weighted sum is a
+ * single pass over a slice of the weight array.
+ *
+ * The sums are accumulated in the same order as the original nested loops,
+ * which keeps the outputs bit-for-bit identical: evolved controllers behave
+ * exactly as before, and results with a given seed can still be reproduced.
+ *
+ * When the JVM is started with --add-modules jdk.incubator.vector and the CPU
+ * has more than one lane for doubles, the weighted sums are computed with the
+ * Vector API instead (see {@link VectorForwardPass}). They are then only
+ * equal to the scalar sums up to rounding, so seeded runs are not reproduced
+ * exactly.
+ */
+public final class ForwardPass {
+
+	private static final boolean VECTORIZED = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+			&& VectorForwardPass.getLanes() > 1;
+
+	private ForwardPass() {
+	}
+
+	/**
+	 * @return whether the weighted sums use the Vector API
+	 */
+	public static boolean isVectorized() {
+		return VECTORIZED;
+	}
+
+	/**
+	 * @return sum + weights[offset]*values[0] + ... +
+	 *         weights[offset+n-1]*values[n-1], added from left to right
+	 */
+	public static double dot(double sum, double[] weights, int offset, double[] values, int n) {
+		if (VECTORIZED)
+			return VectorForwardPass.dot(sum, weights, offset, values, n);
+		return scalarDot(sum, weights, offset, values, n);
+	}
+
+	/**
+	 * {@link #dot(double, double[], int, double[], int)} without the Vector
+	 * API.
+	 */
+	public static double scalarDot(double sum, double[] weights, int offset, double[] values, int n) {
+		for (int j = 0; j < n; j++)
+			sum += weights[offset + j] * values[j];
+		return sum;
+	}
+
+	public static double sigmoid(double x) {
+		return 1.0 / (FastMath.expQuick(-x) + 1.0);
+	}
+
+	/**
+	 * Computes result[j] = sigmoid(states[j] + biases[j]) for the first n
+	 * neurons.
+	 */
+	public static void sigmoid(double[] states, double[] biases, double[] result, int n) {
+		for (int j = 0; j < n; j++)
+			result[j] = 1.0 / (FastMath.expQuick(-(states[j] + biases[j])) + 1.0);
+	}
+}
@@ -2,7 +2,6 @@ package evolutionaryrobotics.neuralnetworks;
 
 import java.util.Vector;
 
-import net.jafama.FastMath;
 import simulation.util.Arguments;
 import simulation.util.ArgumentsAnnotation;
 import evolutionaryrobotics.neuralnetworks.inputs.NNInput;
@@ -33,36 +32,23 @@ public class MulitlayerPerceptron extends NeuralNetwork {
 	@Override
 	protected double[] propagateInputs(double[] inputValues) {
 	    for(int i = 0; i < numberOfHiddenNodes; i++) {
-	        // Add the bias (weighted by the first weight to the i'th hidden node)
-	        hiddenNeuronStates[i] = weights[i * (numberOfInputNeurons + 1)];			    
-	        
-	        for(int j = 0; j < numberOfInputNeurons; j++) {
-	            // Compute the weight number
-	            int ji = i * (numberOfInputNeurons + 1) + (j + 1);
-	            // Add the weighted input
-	            hiddenNeuronStates[i] += weights[ji] * inputValues[j];			 
-	        }
+	        // The bias is the first weight to the i'th hidden node, followed by the weighted inputs
+	        int base = i * (numberOfInputNeurons + 1);
+	        double state = ForwardPass.dot(weights[base], weights, base + 1, inputValues, numberOfInputNeurons);
 	        
 	        // Apply the transfer function (sigmoid with output in [0,1])
-	        hiddenNeuronStates[i] = 1.0/( 1 + FastMath.expQuick(-hiddenNeuronStates[i]));	  
+	        hiddenNeuronStates[i] = ForwardPass.sigmoid(state);
 	    }
 
 	    // Offset for the weights to the output nodes
 	    int unBase = numberOfHiddenNodes * (numberOfInputNeurons + 1);
 
 	    for( int i = 0; i < numberOfOutputNeurons; i++ ) {
-	        // add the bias (wheigted by the first wheigt to the i^th output node
-	        outputNeuronStates[i] = weights[unBase + i * (numberOfHiddenNodes + 1)];		 
-	        
-	        for( int j = 0; j < numberOfHiddenNodes; j++) 
-	        {
-	            // compute the weight number
-	            int ji = unBase + i*(numberOfHiddenNodes+1) + (j + 1);
-	            // add the weighted input
-	            outputNeuronStates[i] += weights[ji] * hiddenNeuronStates[j];			
-	        }        
+	        // the bias is the first weight to the i^th output node
+	        int base = unBase + i * (numberOfHiddenNodes + 1);
+	        double state = ForwardPass.dot(weights[base], weights, base + 1, hiddenNeuronStates, numberOfHiddenNodes);
 
-	        outputNeuronStates[i] = 1.0/( 1 + FastMath.expQuick( - outputNeuronStates[i]) );	  
+	        outputNeuronStates[i] = ForwardPass.sigmoid(state);
 	    }
 		
 		return outputNeuronStates;
@@ -9,6 +9,7 @@ import simulation.robot.sensors.Sensor;
 import simulation.util.Arguments;
 import simulation.util.ArgumentsAnnotation;
 import controllers.Controller;
+import controllers.ControllerBatch;
 import controllers.FixedLenghtGenomeEvolvableController;
 
 public class NeuralNetworkController extends Controller implements FixedLenghtGenomeEvolvableController {
@@ -137,6 +138,13 @@ public class NeuralNetworkController extends Controller implements FixedLenghtGe
 		}
 	}
 	
+	@Override
+	public ControllerBatch createBatch() {
+		if(getClass() == NeuralNetworkController.class && CTRNNBatch.canStep(neuralNetwork))
+			return new CTRNNBatch((CTRNNMultilayer)neuralNetwork);
+		return null;
+	}
+	
 	@Override
 	public int getNumberOfInputs() {
 		return neuralNetwork.getNumberOfInputNeurons();
@@ -0,0 +1,47 @@
+package evolutionaryrobotics.neuralnetworks;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The weighted sums of {@link ForwardPass} with the Vector API, in as many
+ * lanes as the CPU has for doubles. Each lane accumulates every
+ * {@link #getLanes()}-th product and the lanes are added at the end, so the
+ * sums differ from the scalar ones by rounding.
+ *
+ * This class can only be loaded when the JVM was started with
+ * --add-modules jdk.incubator.vector; {@link ForwardPass} checks that first.
+ */
+final class VectorForwardPass {
+
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	private VectorForwardPass() {
+	}
+
+	static int getLanes() {
+		return SPECIES.length();
+	}
+
+	/**
+	 * @see ForwardPass#dot(double, double[], int, double[], int)
+	 */
+	static double dot(double sum, double[] weights, int offset, double[] values, int n) {
+		int j = 0;
+		int bound = SPECIES.loopBound(n);
+
+		if (bound > 0) {
+			DoubleVector products = DoubleVector.zero(SPECIES);
+			for (; j < bound; j += SPECIES.length()) {
+				DoubleVector w = DoubleVector.fromArray(SPECIES, weights, offset + j);
+				products = w.fma(DoubleVector.fromArray(SPECIES, values, j), products);
+			}
+			sum += products.reduceLanes(VectorOperators.ADD);
+		}
+
+		for (; j < n; j++)
+			sum += weights[offset + j] * values[j];
+		return sum;
+	}
+}
@@ -192,6 +192,28 @@ public class MathUtils implements Serializable {
 		return null;
 	}
 
+	/**
+	 * Same test as {@link #intersectLines(Vector2d, Vector2d, Vector2d, Vector2d)}
+	 * without allocating the intersection point.
+	 * 
+	 * @return the position of the intersection along (x1,y1)-(x2,y2), between 0
+	 *         and 1, or -1 if the segments do not intersect
+	 */
+	public static double intersectLines(double x1, double y1, double x2, double y2,
+			double x3, double y3, double x4, double y4) {
+		double d = (y4-y3)*(x2-x1)-(x4-x3)*(y2-y1);
+		
+		if(d==0)// lines are parallel
+			return -1;
+		
+		double ua = ((x4-x3)*(y1-y3)-(y4-y3)*(x1-x3)) / d;
+		double ub = ((x2-x1)*(y1-y3)-(y2-y1)*(x1-x3)) / d;
+		
+		if(ua >= 0 && ua <= 1 && ub >=0 && ub <=1)//point inside both lines
+			return ua;
+		return -1;
+	}
+
 	//calculates the intersection between segments (p1, p2) and (p3,p4);
 	public static Vector2d calculateIntersectionPoint(Vector2d p1,
 			Vector2d p2, Vector2d p3, Vector2d p4) {
@@ -151,7 +151,7 @@ public class JBotSim implements Serializable {
 		HashMap<String, Arguments> newArgs = new HashMap<String, Arguments>();
 
 		for (String s : arguments.keySet())
-			newArgs.put(s, new Arguments(arguments.get(s).getCompleteArgumentString(), false));
+			newArgs.put(s, new Arguments(arguments.get(s)));
 
 		return newArgs;
 	}
@@ -0,0 +1,257 @@
+package simulation;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+import simulation.robot.Robot;
+import controllers.Controller;
+import controllers.ControllerBatch;
+
+/**
+ * Runs several independent simulators in lockstep: every phase of a step
+ * (sensors, controllers, and the rest of the step) is performed for all the
+ * simulators before moving on to the next phase. Running the same code over
+ * all the worlds back to back keeps it hot.
+ *
+ * The controllers of the robots with the same index in different simulators
+ * are stepped together by a {@link ControllerBatch} when they support it
+ * (see {@link Controller#createBatch()}). In each simulator, the robots are
+ * still stepped one after the other in the order of their index.
+ *
+ * Each simulator still goes through exactly the same sequence of operations
+ * as with {@link Simulator#simulate()}, and simulators do not share any
+ * state, so the results are identical to simulating them one after the
+ * other. In parallel mode the simulators of each phase are divided between
+ * the threads of {@link ParallelStepExecutor#getSharedPool()}, and the
+ * controllers are not batched.
+ */
+public class LockstepSimulator implements Serializable {
+
+	private static final long serialVersionUID = 5273094167305829561L;
+
+	private static final int SENSORS = 0;
+	private static final int CONTROLLERS = 1;
+	private static final int FINISH = 2;
+
+	private ArrayList<Simulator> simulators;
+	private boolean parallel;
+
+	//batches of the controllers of the robots with each index, null if none
+	private transient ArrayList<ArrayList<ControllerBatch>> batches;
+	private transient IdentityHashMap<Simulator, BatchedRobots> batchedRobots;
+
+	public LockstepSimulator(ArrayList<Simulator> simulators, boolean parallel) {
+		this.simulators = simulators;
+		this.parallel = parallel;
+	}
+
+	public void simulate() {
+		ArrayList<Simulator> running = new ArrayList<Simulator>();
+
+		for (Simulator s : simulators) {
+			s.setup();
+			running.add(s);
+		}
+
+		if (!parallel)
+			createBatches();
+
+		for (double time = 0; !running.isEmpty(); time++) {
+
+			Iterator<Simulator> i = running.iterator();
+			while (i.hasNext()) {
+				Simulator s = i.next();
+				if (time >= s.getEnvironment().getSteps() || s.simulationFinished()) {
+					s.time = time;
+					s.terminate();
+					i.remove();
+				}
+			}
+
+			runPhase(running, SENSORS, time);
+			if (batches != null)
+				updateControllers(running, time);
+			else
+				runPhase(running, CONTROLLERS, time);
+			runPhase(running, FINISH, time);
+		}
+
+		batches = null;
+		batchedRobots = null;
+	}
+
+	/**
+	 * Puts the controller of each robot in a batch with the controllers of the
+	 * robots with the same index in the other simulators, when they support
+	 * it. Batches that end up with a single controller are dropped.
+	 */
+	private void createBatches() {
+		batches = new ArrayList<ArrayList<ControllerBatch>>();
+		batchedRobots = new IdentityHashMap<Simulator, BatchedRobots>();
+
+		for (Simulator s : simulators) {
+			ArrayList<Robot> robots = s.getEnvironment().getRobots();
+			BatchedRobots batched = new BatchedRobots(robots.size());
+			batchedRobots.put(s, batched);
+
+			for (int r = 0; r < robots.size(); r++) {
+				Controller controller = robots.get(r).getController();
+				if (controller == null)
+					continue;
+				if (batches.size() <= r)
+					batches.add(new ArrayList<ControllerBatch>());
+
+				ControllerBatch batch = null;
+				for (ControllerBatch b : batches.get(r)) {
+					if (b.accepts(controller)) {
+						batch = b;
+						break;
+					}
+				}
+				if (batch == null) {
+					batch = controller.createBatch();
+					if (batch == null)
+						continue;
+					batches.get(r).add(batch);
+				}
+
+				batched.controllers[r] = controller;
+				batched.batches[r] = batch;
+				batched.slots[r] = batch.add(controller);
+			}
+		}
+
+		for (BatchedRobots batched : batchedRobots.values()) {
+			for (int r = 0; r < batched.batches.length; r++) {
+				if (batched.batches[r] != null && batched.batches[r].getSize() < 2) {
+					batched.batches[r] = null;
+					batched.controllers[r] = null;
+				}
+			}
+		}
+
+		boolean empty = true;
+		for (ArrayList<ControllerBatch> robotBatches : batches) {
+			Iterator<ControllerBatch> i = robotBatches.iterator();
+			while (i.hasNext()) {
+				if (i.next().getSize() < 2)
+					i.remove();
+			}
+			empty &= robotBatches.isEmpty();
+		}
+
+		if (empty) {
+			batches = null;
+			batchedRobots = null;
+		}
+	}
+
+	/**
+	 * The controller phase with batches. The robots with each index are
+	 * stepped in all the simulators before moving on to the next index: the
+	 * controllers that are not in a batch right away, the others together at
+	 * the end. As in {@link Simulator#updateAllControllers(Double)}, only
+	 * enabled robots are stepped.
+	 */
+	private void updateControllers(List<Simulator> running, double time) {
+		for (int r = 0;; r++) {
+			boolean more = false;
+
+			for (Simulator s : running) {
+				ArrayList<Robot> robots = s.getEnvironment().getRobots();
+				if (r >= robots.size())
+					continue;
+				more = true;
+
+				Robot robot = robots.get(r);
+				Controller controller = robot.getController();
+				if (!robot.isEnabled() || controller == null)
+					continue;
+
+				BatchedRobots batched = batchedRobots.get(s);
+				//the robots may have changed since the batches were created
+				if (r < batched.batches.length && batched.batches[r] != null && batched.controllers[r] == controller)
+					batched.batches[r].setActive(batched.slots[r]);
+				else
+					controller.controlStep(time);
+			}
+
+			if (!more)
+				return;
+
+			if (r < batches.size()) {
+				for (ControllerBatch batch : batches.get(r))
+					batch.controlStep(time);
+			}
+		}
+	}
+
+	private void runPhase(List<Simulator> running, int phase, double time) {
+		if (parallel && running.size() > 1)
+			ParallelStepExecutor.getSharedPool().invoke(new PhaseTask(running, phase, time, 0, running.size()));
+		else
+			for (Simulator s : running)
+				runPhase(s, phase, time);
+	}
+
+	private static void runPhase(Simulator s, int phase, double time) {
+		switch (phase) {
+		case SENSORS:
+			s.startSimulationStep(time);
+			break;
+		case CONTROLLERS:
+			s.updateAllControllers(time);
+			break;
+		case FINISH:
+			s.finishSimulationStep(time);
+			break;
+		}
+	}
+
+	private static class BatchedRobots {
+
+		private Controller[] controllers;
+		private ControllerBatch[] batches;
+		private int[] slots;
+
+		public BatchedRobots(int numberOfRobots) {
+			controllers = new Controller[numberOfRobots];
+			batches = new ControllerBatch[numberOfRobots];
+			slots = new int[numberOfRobots];
+		}
+	}
+
+	//never serialized, it only runs in the pool
+	@SuppressWarnings("serial")
+	private static class PhaseTask extends RecursiveAction {
+
+		private static final long serialVersionUID = -2268316529437153204L;
+
+		private List<Simulator> simulators;
+		private int phase, start, end;
+		private double time;
+
+		public PhaseTask(List<Simulator> simulators, int phase, double time, int start, int end) {
+			this.simulators = simulators;
+			this.phase = phase;
+			this.time = time;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start == 1) {
+				runPhase(simulators.get(start), phase, time);
+			} else {
+				int middle = (start + end) >>> 1;
+				invokeAll(new PhaseTask(simulators, phase, time, start, middle),
+						new PhaseTask(simulators, phase, time, middle, end));
+			}
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package simulation;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import simulation.robot.Robot;
+
+/**
+ * Runs one phase of a simulation step (sensors, controllers...) over all the
+ * robots of an environment using a work-stealing pool. The pool is created
+ * once and shared by all the simulators of the JVM. Each call to
+ * {@link #forEach(List, RobotPhase)} only returns when the phase has been
+ * applied to every robot, so consecutive calls behave like barriers.
+ *
+ * The list of robots is read on every call, so robots added during the
+ * simulation are also updated.
+ */
+public class ParallelStepExecutor implements Serializable {
+
+	private static final long serialVersionUID = -6373062283208012761L;
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	private static ForkJoinPool sharedPool;
+
+	private int chunkSize;
+
+	/**
+	 * @param chunkSize minimum number of robots handled by a single task, or 0
+	 *                  to divide the robots evenly between the available threads
+	 */
+	public ParallelStepExecutor(int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	public static synchronized ForkJoinPool getSharedPool() {
+		if(sharedPool == null)
+			sharedPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		return sharedPool;
+	}
+
+	public void forEach(List<Robot> robots, RobotPhase phase) {
+		int size = robots.size();
+		if(size == 0)
+			return;
+
+		ForkJoinPool pool = getSharedPool();
+		int threshold = chunkSize > 0 ? chunkSize : Math.max(1, size / (pool.getParallelism() * CHUNKS_PER_THREAD));
+
+		if(size <= threshold) {
+			for(int i = 0 ; i < size ; i++)
+				phase.apply(robots.get(i));
+		} else {
+			pool.invoke(new PhaseTask(robots, phase, 0, size, threshold));
+		}
+	}
+
+	public interface RobotPhase {
+		public void apply(Robot robot);
+	}
+
+	//never serialized, it only runs in the pool
+	@SuppressWarnings("serial")
+	private static class PhaseTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 3914706419634432106L;
+
+		private List<Robot> robots;
+		private RobotPhase phase;
+		private int start, end, threshold;
+
+		public PhaseTask(List<Robot> robots, RobotPhase phase, int start, int end, int threshold) {
+			this.robots = robots;
+			this.phase = phase;
+			this.start = start;
+			this.end = end;
+			this.threshold = threshold;
+		}
+
+		@Override
+		protected void compute() {
+			if(end - start <= threshold) {
+				for(int i = start ; i < end ; i++)
+					phase.apply(robots.get(i));
+			} else {
+				int middle = (start + end) >>> 1;
+				invokeAll(new PhaseTask(robots, phase, start, middle, threshold),
+						new PhaseTask(robots, phase, middle, end, threshold));
+			}
+		}
+	}
+}
@@ -8,7 +8,6 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Random;
-import java.util.concurrent.Callable;
 
 import comm.FileProvider;
 import simulation.environment.Environment;
@@ -17,6 +16,7 @@ import simulation.physicalobjects.PhysicalObjectType;
 import simulation.robot.Robot;
 import simulation.util.Arguments;
 import simulation.util.Factory;
+import simulation.util.SimRandom;
 
 public class Simulator implements Serializable {
 
@@ -27,6 +27,8 @@ public class Simulator implements Serializable {
 	protected Environment environment;
 	protected Random random;
 	protected long randomSeed;
+	protected boolean splitRandom = false;
+	private long numberRandomStreams = 0;
 	protected FileProvider fileProvider = FileProvider.getDefaultFileProvider();
 	private int numberRobots = 0;
 	private int numberPhysicalObjects = 0;
@@ -34,9 +36,12 @@ public class Simulator implements Serializable {
 	private boolean stopSimulation = false;
 	private int[] robotIndexes;
 	private boolean setup = false;
+	//see reset(long)
+	private boolean reusable = true;
+	private int physicalObjectsBeforeSetup = -1;
 
 	private boolean parallel = false;
-	private ArrayList<StagedParallelRobotCallable> runnables;
+	private ParallelStepExecutor stepExecutor;
 
 	private Network network;
 
@@ -48,15 +53,21 @@ public class Simulator implements Serializable {
 		this.random = new Random(randomSeed);
 		this.randomSeed = randomSeed;
 		this.arguments = arguments;
-		this.environment = Environment.getEnvironment(this, arguments.get("--environment"));
 
 		Arguments args = arguments.get("--simulator");
 
+		// needed before the environment creates its collision manager
+		if (args != null)
+			splitRandom = args.getArgumentAsIntOrSetDefault("splitrandom", args.getArgumentAsIntOrSetDefault("parallel", 0)) == 1;
+
+		this.environment = Environment.getEnvironment(this, arguments.get("--environment"));
+
 		if (args != null) {
 			timeDelta = args.getArgumentAsDoubleOrSetDefault("timedelta", timeDelta);
 			parallel = args.getArgumentAsIntOrSetDefault("parallel", 0) == 1;
 
 			if (args.getArgumentIsDefined("fixedseed") && args.getArgumentAsDouble("fixedseed") != 0) {
+				reusable = false;
 				this.randomSeed = args.getArgumentAsInt("fixedseed");
 				this.random = new Random(args.getArgumentAsInt("fixedseed"));
 			}
@@ -66,6 +77,9 @@ public class Simulator implements Serializable {
 			}
 
 			parallel = args.getArgumentAsIntOrSetDefault("parallel", 0) == 1;
+			
+			if (parallel)
+				stepExecutor = new ParallelStepExecutor(args.getArgumentAsIntOrSetDefault("parallelchunksize", 0));
 		}
 
 		args = arguments.get("--updatables");
@@ -77,7 +91,48 @@ public class Simulator implements Serializable {
 						(Updatable) Factory.getInstance(updatableArgs.getArgumentAsString("classname"), updatableArgs));
 			}
 		}
-		
+
+		if (splitRandom || network != null || !callbacks.isEmpty())
+			reusable = false;
+	}
+
+	/**
+	 * @return true if the simulator can be reset with {@link #reset(long)}:
+	 *         the environment supports it (see
+	 *         {@link Environment#isReusable()}), and there is no network,
+	 *         updatables, fixed seed or split random streams, whose state
+	 *         is not reset
+	 */
+	public boolean isReusable() {
+		return reusable && environment.isReusable();
+	}
+
+	/**
+	 * Prepares the simulator to run another sample with the same robots, as
+	 * if it had just been created with the given seed and the robots had been
+	 * added. The random number generator is seeded again (the components keep
+	 * using the same instance), the environment and the robots are reset, and
+	 * the callbacks, such as evaluation functions, are removed.
+	 */
+	public void reset(long randomSeed) {
+		if (!isReusable())
+			throw new IllegalStateException("The simulator cannot be reset");
+
+		this.random.setSeed(randomSeed);
+		this.randomSeed = randomSeed;
+		time = Double.valueOf(0);
+		stopSimulation = false;
+		setup = false;
+		robotIndexes = null;
+		callbacks.clear();
+
+		// the objects created by the environment get the same ids again
+		if (physicalObjectsBeforeSetup >= 0)
+			numberPhysicalObjects = physicalObjectsBeforeSetup;
+
+		environment.reset();
+		for (Robot r : environment.getRobots())
+			r.reset();
 	}
 	
 	public void setSerializableObjects(HashMap<String, Serializable> serializableObjects) {
@@ -104,6 +159,19 @@ public class Simulator implements Serializable {
 		return random;
 	}
 
+	/**
+	 * Random number generator for a single component (sensor, actuator...)
+	 * that may run concurrently with others. If --simulator splitrandom=1
+	 * (the default in parallel mode), each call returns a new stream derived
+	 * from the random seed, in the order in which the components are created.
+	 * Otherwise, all the components share {@link #getRandom()}.
+	 */
+	public Random createRandom() {
+		if (!splitRandom)
+			return random;
+		return new SimRandom(SimRandom.getStreamSeed(randomSeed, numberRandomStreams++));
+	}
+
 	public FileProvider getFileProvider() {
 		return fileProvider;
 	}
@@ -121,51 +189,35 @@ public class Simulator implements Serializable {
 	}
 
 	public void performOneSimulationStep(Double time) {
+		startSimulationStep(time);
+		// Call the controllers:
+		updateAllControllers(time);
+		finishSimulationStep(time);
+	}
+
+	/**
+	 * First part of a simulation step, up to the sensor readings. A step can
+	 * also be performed as {@link #startSimulationStep(Double)},
+	 * {@link #updateAllControllers(Double)} and
+	 * {@link #finishSimulationStep(Double)}, which is how
+	 * {@link LockstepSimulator} interleaves the steps of several simulators.
+	 */
+	void startSimulationStep(Double time) {
 		this.time = time;
+		environment.updateSpatialIndex();
 
-		if (parallel) {
-			if (runnables == null) {
-				runnables = new ArrayList<StagedParallelRobotCallable>();
-				for (int i = 0; i < Runtime.getRuntime().availableProcessors(); i++)
-					runnables.add(new StagedParallelRobotCallable(i));
-			}
-			// for(int i = 0 ; i < 3 ; i++) {
-			// for(Callable<Object> c : runnables)
-			// ((StagedParallelRobotCallable)c).stage=i;
-			// try {
-			// pool.invokeAll(runnables);
-			// } catch (InterruptedException e) {
-			// e.printStackTrace();
-			// }
-			// }
-			// environment.clearTeleported();
+		// Update the readings for all the sensors:
+		// long d = System.currentTimeMillis();
+		updateAllRobotSensors(time);
+	}
 
-			try {
-				Thread[] t = new Thread[Runtime.getRuntime().availableProcessors()];
-				for (int i = 0; i < t.length; i++) {
-					t[i] = new Thread(runnables.get(i));
-					t[i].start();
-				}
-				for (int i = 0; i < t.length; i++) {
-					t[i].join();
-				}
-				environment.clearTeleported();
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
-		} else {
-			// Update the readings for all the sensors:
-			// long d = System.currentTimeMillis();
-			updateAllRobotSensors(time);
-			// Call the controllers:
-			updateAllControllers(time);
-			// Compute the actions of the robot's actuators on the environment
-			// and on itself
-			updateAllRobotActuators(time);
-			// d = System.currentTimeMillis()-d;
-			// d/=environment.getRobots().size();
-			// System.out.println(d);
-		}
+	void finishSimulationStep(Double time) {
+		// Compute the actions of the robot's actuators on the environment
+		// and on itself
+		updateAllRobotActuators(time);
+		// d = System.currentTimeMillis()-d;
+		// d/=environment.getRobots().size();
+		// System.out.println(d);
 		// Update non-robot objects in the environment
 		updateEnvironment(time);
 		// Update the positions of everything
@@ -178,7 +230,17 @@ public class Simulator implements Serializable {
 		}
 	}
 
-	protected void updateAllControllers(Double time) {
+	protected void updateAllControllers(final Double time) {
+		if (parallel) {
+			stepExecutor.forEach(environment.getRobots(), new ParallelStepExecutor.RobotPhase() {
+				@Override
+				public void apply(Robot r) {
+					if (r.isEnabled() && r.getController() != null)
+						r.getController().controlStep(time);
+				}
+			});
+			return;
+		}
 		for (Robot r : environment.getRobots()) {
 			if (r.isEnabled())
 				if (r.getController() != null)
@@ -187,14 +249,25 @@ public class Simulator implements Serializable {
 	}
 
 	protected void updateEnvironment(Double time) {
+		environment.updateSpatialIndex();
 		environment.update(time);
 	}
 
-	protected void updateAllRobotSensors(double time) {
-		ArrayList<PhysicalObject> teleported = environment.getTeleported();
-		for (Robot r : environment.getRobots()) {
-			if (r.isEnabled())
-				r.updateSensors(time, teleported);
+	protected void updateAllRobotSensors(final double time) {
+		final ArrayList<PhysicalObject> teleported = environment.getTeleported();
+		if (parallel) {
+			stepExecutor.forEach(environment.getRobots(), new ParallelStepExecutor.RobotPhase() {
+				@Override
+				public void apply(Robot r) {
+					if (r.isEnabled())
+						r.updateSensors(time, teleported);
+				}
+			});
+		} else {
+			for (Robot r : environment.getRobots()) {
+				if (r.isEnabled())
+					r.updateSensors(time, teleported);
+			}
 		}
 		environment.clearTeleported();
 	}
@@ -205,6 +278,8 @@ public class Simulator implements Serializable {
 		if (robotIndexes == null || robotIndexes.length != robots.size())
 			createRobotIndexes(robots.size());
 
+		// Actuators move the robots (and may pick up prey), so they always run
+		// sequentially, also in parallel mode
 		Collections.shuffle(Arrays.asList(robotIndexes), random);
 
 		for (int i = 0; i < robotIndexes.length; i++)
@@ -291,8 +366,10 @@ public class Simulator implements Serializable {
 		return environment.getRobots();
 	}
 
-	private void setup() {
+	void setup() {
 		if (!this.setup) {
+			if (physicalObjectsBeforeSetup < 0)
+				physicalObjectsBeforeSetup = numberPhysicalObjects;
 			if (!environment.isSetup()) {
 				setupEnvironment();
 				if (!environment.isSetup())
@@ -309,56 +386,4 @@ public class Simulator implements Serializable {
 	public ArrayList<Updatable> getCallbacks() {
 		return callbacks;
 	}
-
-	class ParallelRobotCallable implements Callable<Object> {
-
-		private Robot r;
-
-		public ParallelRobotCallable(Robot r) {
-			this.r = r;
-		}
-
-		@Override
-		public Object call() {
-			if (r.isEnabled()) {
-				// long d = System.currentTimeMillis();
-				r.updateSensors(time, environment.getTeleported());
-				r.getController().controlStep(time);
-				r.updateActuators(time, timeDelta);
-				// d=System.currentTimeMillis()-d;
-				// System.out.println(d);
-			}
-			return r;
-		}
-	}
-
-	class StagedParallelRobotCallable implements Runnable {
-
-		// private ArrayList<Robot> robots = new ArrayList<Robot>();
-		public int stage = 0;
-		public int start = 0;
-		public int end = 0;
-
-		public StagedParallelRobotCallable(int i) {
-			int total = environment.getRobots().size() / Runtime.getRuntime().availableProcessors();
-			start = total * i;
-			end = total * (i + 1);
-
-			if (i == Runtime.getRuntime().availableProcessors() - 1)
-				end = environment.getRobots().size();
-
-		}
-
-		@Override
-		public void run() {
-			for (int j = start; j < end; j++) {
-				Robot r = environment.getRobots().get(j);
-				if (r.isEnabled()) {
-					r.updateSensors(time, environment.getTeleported());
-					r.getController().controlStep(time);
-					r.updateActuators(time, timeDelta);
-				}
-			}
-		}
-	}
 }
\ No newline at end of file
@@ -30,6 +30,11 @@ public class EmptyEnvironment extends Environment {
 		
 	}
 	
+	@Override
+	protected boolean supportsReset() {
+		return true;
+	}
+
 	public double getForageRadius() {
 		return forageLimit;
 	}
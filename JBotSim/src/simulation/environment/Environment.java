@@ -14,9 +14,12 @@ import simulation.physicalobjects.GeometricInfo;
 import simulation.physicalobjects.MovableObject;
 import simulation.physicalobjects.PhysicalObject;
 import simulation.physicalobjects.Prey;
+import simulation.physicalobjects.SpatialIndex;
+import simulation.physicalobjects.WallIndex;
 import simulation.physicalobjects.collisionhandling.SimpleCollisionManager;
 import simulation.physicalobjects.collisionhandling.knotsandbolts.CollisionManager;
 import simulation.robot.Robot;
+import simulation.robot.RobotStates;
 import simulation.util.Arguments;
 import simulation.util.ArgumentsAnnotation;
 import simulation.util.Factory;
@@ -25,14 +28,16 @@ public abstract class Environment implements KeyListener, Serializable {
 
 	private static double MAX_APPROX_SPEED = 0.15;
 
-	protected final int MAXOBJECTS = 5000;
-	
-	protected ArrayList<Robot> robots = new ArrayList<Robot>(MAXOBJECTS);
-	protected ArrayList<Prey>  prey   = new ArrayList<Prey>(MAXOBJECTS);
-	protected ArrayList<PhysicalObject> allObjects = new ArrayList<PhysicalObject>(MAXOBJECTS);
-	protected ArrayList<PhysicalObject> staticObjects = new ArrayList<PhysicalObject>(MAXOBJECTS);
-	protected ArrayList<MovableObject> movableObjects = new ArrayList<MovableObject>(MAXOBJECTS);
-	protected ArrayList<PhysicalObject> teleported = new ArrayList<PhysicalObject>(MAXOBJECTS);
+	//the lists grow as objects are added: preallocating room for thousands of
+	//objects made each new environment (one per sample) cost ~120kB
+	protected ArrayList<Robot> robots = new ArrayList<Robot>();
+	protected ArrayList<Prey>  prey   = new ArrayList<Prey>();
+	protected ArrayList<PhysicalObject> allObjects = new ArrayList<PhysicalObject>();
+	protected ArrayList<PhysicalObject> staticObjects = new ArrayList<PhysicalObject>();
+	protected ArrayList<MovableObject> movableObjects = new ArrayList<MovableObject>();
+	protected ArrayList<PhysicalObject> teleported = new ArrayList<PhysicalObject>();
+	//the pose and wheel speeds of the robots, moved here as they are added
+	protected RobotStates robotStates = new RobotStates(16);
 	
 	protected CollisionManager collisionManager;
 	@ArgumentsAnnotation(name="width", defaultValue="4")
@@ -44,6 +49,15 @@ public abstract class Environment implements KeyListener, Serializable {
 	
 	protected boolean setup = false;
 
+	@ArgumentsAnnotation(name="spatialindex", help="Set to 1 to look for close objects in a uniform grid instead of keeping per-object lists of close objects. The close objects are visited in a different order, so the results are close to, but not exactly the same as, with 0.", values={"0","1"})
+	protected SpatialIndex spatialIndex;
+
+	@ArgumentsAnnotation(name="wallindex", help="Set to 1 to cast the rays of the wall sensors and check wall collisions against a grid of the walls' edges.", values={"0","1"})
+	protected WallIndex wallIndex;
+
+	@ArgumentsAnnotation(name="reuse", help="Set to 1 to reuse the simulator, the environment and the robots between evaluation samples, resetting them instead of creating new ones. Only used by environments that support it.", values={"0","1"})
+	protected boolean reuse;
+
 	private GeometricCalculator geometricCalculator;
 
 	public Environment(Simulator simulator, Arguments args) {
@@ -52,6 +66,14 @@ public abstract class Environment implements KeyListener, Serializable {
 		this.steps = args.getArgumentAsIntOrSetDefault("steps", 100);
 		collisionManager = new SimpleCollisionManager(simulator);
 		this.geometricCalculator = new GeometricCalculator();//simulator.getGeoCalculator();
+		
+		if(args.getArgumentAsIntOrSetDefault("spatialindex", 0) == 1)
+			spatialIndex = new SpatialIndex(args.getArgumentAsDoubleOrSetDefault("spatialindexcellsize", 1));
+		
+		if(args.getArgumentAsIntOrSetDefault("wallindex", 0) == 1)
+			wallIndex = new WallIndex(args.getArgumentAsDoubleOrSetDefault("wallindexcellsize", 0.5));
+
+		reuse = args.getArgumentAsIntOrSetDefault("reuse", 0) == 1;
 	}
 	
 	public void setup(Simulator simulator) {
@@ -71,6 +93,10 @@ public abstract class Environment implements KeyListener, Serializable {
 		return robots;
 	}
 
+	public RobotStates getRobotStates() {
+		return robotStates;
+	}
+
 	public ArrayList<MovableObject> getMovableObjects() {
 		return movableObjects;
 	}
@@ -114,6 +140,7 @@ public abstract class Environment implements KeyListener, Serializable {
 	}
 
 	public void addRobot(Robot r) {
+		r.setStates(robotStates);
 		robots.add(r);
 		addMovableObject(r);
 	}
@@ -161,8 +188,30 @@ public abstract class Environment implements KeyListener, Serializable {
 		teleported.remove(physicalObject);
 	}
 
+	public SpatialIndex getSpatialIndex() {
+		return spatialIndex;
+	}
+	
+	public WallIndex getWallIndex() {
+		return wallIndex;
+	}
+	
+	/**
+	 * Rebuilds the spatial index (if there is one) with the current position
+	 * of all the objects. Called by the simulator before each phase that
+	 * looks for close objects. The wall index is only rebuilt if the walls
+	 * changed.
+	 */
+	public void updateSpatialIndex() {
+		if(spatialIndex != null)
+			spatialIndex.rebuild(allObjects);
+		if(wallIndex != null)
+			wallIndex.update(allObjects);
+	}
+
 	public void updateCollisions(double time) {
 //		 updateRobotCloseObjects(time);
+		updateSpatialIndex();
 		collisionManager.handleCollisions(this, time);
 	}
 
@@ -180,7 +229,40 @@ public abstract class Environment implements KeyListener, Serializable {
 		return steps;
 	}
 
+	/**
+	 * Removes all the objects except the robots, leaving the environment as
+	 * it was after the robots were added, so that it can be set up again for
+	 * another sample. Subclasses that support being reset also clear their
+	 * own state, call super.reset(), and override {@link #supportsReset()}.
+	 */
 	public void reset() {
+		prey.clear();
+		staticObjects.clear();
+		allObjects.clear();
+		movableObjects.clear();
+		teleported.clear();
+
+		for(Robot r : robots) {
+			movableObjects.add(r);
+			addObject(r);
+		}
+
+		setup = false;
+	}
+
+	/**
+	 * @return true if {@link #reset()} followed by a new setup gives exactly
+	 *         the same simulation as a new environment
+	 */
+	protected boolean supportsReset() {
+		return false;
+	}
+
+	/**
+	 * @return true if the environment supports being reset and reuse=1
+	 */
+	public boolean isReusable() {
+		return reuse && supportsReset();
 	}
 
 	public void keyPressed(KeyEvent e) {
@@ -106,6 +106,19 @@ public class RoundForageEnvironment extends Environment {
 		}
 	}
 	
+	@Override
+	public void reset() {
+		super.reset();
+		nest = null;
+		random = null;
+		numberOfFoodSuccessfullyForaged = 0;
+	}
+
+	@Override
+	protected boolean supportsReset() {
+		return true;
+	}
+
 	public int getNumberOfFoodSuccessfullyForaged() {
 		return numberOfFoodSuccessfullyForaged;
 	}
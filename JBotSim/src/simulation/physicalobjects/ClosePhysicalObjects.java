@@ -9,13 +9,16 @@ import simulation.environment.Environment;
 import simulation.physicalobjects.checkers.AllowedObjectsChecker;
 
 public class ClosePhysicalObjects implements Serializable {
+	private static final long serialVersionUID = 4646538520319469902L;
 
 	private static final double EXTENDED_VISIBILITY = 1;
 
 	private LinkedList<PhysicalObjectDistance> closeObjects = new LinkedList<PhysicalObjectDistance>();
 	private LinkedList<PhysicalObjectDistance> farObjects   = new LinkedList<PhysicalObjectDistance>();
-	private Double time;
+	private double time;
 	private double farTime;
+	//To save some null checks... and a new instantiation every cycle
+	private PhysicalObjectDistance emptyObject = new PhysicalObjectDistance(null, 0.0);
 	private boolean notInitialized = true;
 
 	private double range;
@@ -24,6 +27,13 @@ public class ClosePhysicalObjects implements Serializable {
 
 	protected Environment env;
 
+	//used instead of the close/far lists when the environment has a SpatialIndex
+	private PhysicalObject owner;
+	private SpatialIndex index;
+	private SpatialIndex.Query query;
+	//iterator that was released and can be handed out again
+	private transient CloseObjectIterator freeIterator;
+
 	public ClosePhysicalObjects(Environment env, double range, AllowedObjectsChecker allowedObjectsChecker) {
 		this.env = env;
 		this.range = range*1.5;
@@ -33,7 +43,20 @@ public class ClosePhysicalObjects implements Serializable {
 		twiceSpeed = env.getMaxApproximationSpeed();
 	}
 
+	/**
+	 * The owner is the object around which the close objects are searched. It
+	 * is only needed when the environment keeps a {@link SpatialIndex}.
+	 */
+	public ClosePhysicalObjects(Environment env, double range, AllowedObjectsChecker allowedObjectsChecker, PhysicalObject owner) {
+		this(env, range, allowedObjectsChecker);
+		this.owner = owner;
+	}
+
 	public void update(double time, ArrayList<PhysicalObject> teleported){
+		if(owner != null && env.getSpatialIndex() != null) {
+			updateFromIndex(time);
+			return;
+		}
 		if(notInitialized){
 			teleported = env.getAllObjects();
 			notInitialized=false;
@@ -51,9 +74,29 @@ public class ClosePhysicalObjects implements Serializable {
 	}
 
 	public CloseObjectIterator iterator(){
+		if(index != null) {
+			if(freeIterator != null) {
+				CloseObjectIterator i = freeIterator;
+				freeIterator = null;
+				i.cursor = 0;
+				i.released = false;
+				return i;
+			}
+			return new CloseObjectIterator();
+		}
 		return new CloseObjectIterator(closeObjects.listIterator());
 	}
 
+	private void updateFromIndex(double time) {
+		this.time = time;
+		if(query == null)
+			query = new SpatialIndex.Query();
+		index = env.getSpatialIndex();
+		double radius = range + Math.max(0, SpatialIndex.getBoundingRadius(owner));
+		//the objects come in the order of the index, not of the close/far lists (see SpatialIndex)
+		index.query(owner.getPosition().getX(), owner.getPosition().getY(), radius, allowedObjectsChecker, query);
+	}
+
 	private void updateCloseObjects() {
 		if(farObjects.size() > 0){
 			Iterator<PhysicalObjectDistance> i = farObjects.iterator();
@@ -112,14 +155,26 @@ public class ClosePhysicalObjects implements Serializable {
 
 	}
 
+	/**
+	 * Forgets all the objects, as in a new instance. The objects are looked
+	 * up again from all the objects in the environment in the next update.
+	 */
+	public void clear() {
+		closeObjects.clear();
+		farObjects.clear();
+		time = 0.0;
+		farTime = 0;
+		notInitialized = true;
+	}
+
 	public void debugInfo(){
 		System.out.println(time + " CO " +closeObjects.size() + " FO: " + farObjects.size());
 	}
 	public class CloseObjectIterator{
 		private ListIterator<PhysicalObjectDistance> iterador;
+		private int cursor = 0;
+		private boolean released = false;
 
-		//To save some null checks... and a new instantiation every cycle
-		private PhysicalObjectDistance emptyObject				= new PhysicalObjectDistance(null, 0.0); 
 		private PhysicalObjectDistance currentObject 			= emptyObject;
 
 
@@ -128,7 +183,13 @@ public class ClosePhysicalObjects implements Serializable {
 			currentObject=emptyObject;
 		}
 
+		private CloseObjectIterator() {
+		}
+
 		public boolean hasNext(){
+			if (iterador == null) {
+				return !released && cursor < query.size();
+			}
 			if (iterador.hasNext())
 				return true;
 			updateCurrentElement();
@@ -136,6 +197,8 @@ public class ClosePhysicalObjects implements Serializable {
 		}
 
 		public PhysicalObjectDistance next(){
+			if (iterador == null)
+				return index.getEntry(query.get(cursor++));
 			updateCurrentElement();
 			currentObject  = iterador.next();
 			return currentObject;
@@ -148,7 +211,23 @@ public class ClosePhysicalObjects implements Serializable {
 			}
 		}
 
-		public void updateCurrentDistance(Double distanceBetween) {
+		/**
+		 * Lets the next call to {@link ClosePhysicalObjects#iterator()} hand out
+		 * this iterator again, so that going through the objects of a
+		 * {@link SpatialIndex} does not allocate. The iterator must not be used
+		 * after it is released; iterators that are never released are simply
+		 * not reused.
+		 */
+		public void release() {
+			if (iterador == null && !released) {
+				released = true;
+				freeIterator = this;
+			}
+		}
+
+		public void updateCurrentDistance(double distanceBetween) {
+			if (iterador == null)
+				return;
 			double d = range - distanceBetween;
 			if(d < 0) //far away
 				currentObject.setTime(time-(d/twiceSpeed));	
@@ -26,22 +26,42 @@ public class GeometricCalculator implements Serializable {
 
 	public GeometricInfo getGeometricInfoBetween(Vector2d fromPoint, double orientation,
 			PhysicalObject toObject, double time) {
+		return getGeometricInfoBetween(fromPoint, orientation, toObject, time, new GeometricInfo(0, 0));
+	}
+	
+	/**
+	 * Same as {@link #getGeometricInfoBetween(Vector2d, double, PhysicalObject, double)},
+	 * but writes the angle and the distance into the given object instead of
+	 * allocating a new one.
+	 * 
+	 * @return result
+	 */
+	public GeometricInfo getGeometricInfoBetween(Vector2d fromPoint, double orientation,
+			PhysicalObject toObject, double time, GeometricInfo result) {
 		Vector2d light = toObject.position;
-		lightDirection.set(light.getX()-fromPoint.getX(),light.getY()-fromPoint.getY());
-		double lightAngle=orientation-lightDirection.getAngle();
-
-		if(lightAngle>Math.PI){
-			lightAngle-=2*Math.PI;
-		} else if(lightAngle<-Math.PI){ 
-			lightAngle+=2*Math.PI;
-		}
-		return new GeometricInfo(lightAngle, lightDirection.length());
+		return getGeometricInfo(fromPoint, orientation, light.getX(), light.getY(), result);
 	}
 	
 	public GeometricInfo getGeometricInfoBetweenPoints(Vector2d fromPoint, double orientation,
 			Vector2d toPoint, double time){
-		Vector2d light = toPoint;
-		lightDirection.set(light.getX()-fromPoint.getX(),light.getY()-fromPoint.getY());
+		return getGeometricInfoBetweenPoints(fromPoint, orientation, toPoint, time, new GeometricInfo(0, 0));
+	}
+	
+	/**
+	 * Same as {@link #getGeometricInfoBetweenPoints(Vector2d, double, Vector2d, double)},
+	 * but writes the angle and the distance into the given object instead of
+	 * allocating a new one.
+	 * 
+	 * @return result
+	 */
+	public GeometricInfo getGeometricInfoBetweenPoints(Vector2d fromPoint, double orientation,
+			Vector2d toPoint, double time, GeometricInfo result){
+		return getGeometricInfo(fromPoint, orientation, toPoint.getX(), toPoint.getY(), result);
+	}
+	
+	private GeometricInfo getGeometricInfo(Vector2d fromPoint, double orientation, double x, double y,
+			GeometricInfo result) {
+		lightDirection.set(x-fromPoint.getX(),y-fromPoint.getY());
 		double lightAngle=orientation-lightDirection.getAngle();
 		
 		if(lightAngle>Math.PI){
@@ -50,7 +70,9 @@ public class GeometricCalculator implements Serializable {
 			lightAngle+=2*Math.PI;
 		}
 		
-		return new GeometricInfo(lightAngle, lightDirection.length());
+		result.setAngle(lightAngle);
+		result.setDistance(lightDirection.length());
+		return result;
 	}
 
 	public double getDistanceBetween(Vector2d fromPoint, PhysicalObject toObject, double time) {
@@ -12,6 +12,7 @@ public class MovableObject extends PhysicalObject {
 	public static final double  TWICEMAXIMUMSPEEDPERTIMESTEP = 2.0 * MAXIMUMSPEED / NUMBER_OF_CYCLES_PER_SECOND;
 	protected Environment env;
 	protected Vector2d previousPosition;
+	private Vector2d stepStartPosition = new Vector2d();
 	
 	public MovableObject(Simulator simulator, Arguments args) {
 		super(simulator, args);
@@ -35,15 +36,23 @@ public class MovableObject extends PhysicalObject {
 	}
 	
 	public void move(Vector2d relativePosition) {
-		position.x += relativePosition.x;
-		position.y += relativePosition.y;
+		setPosition(position.x + relativePosition.x, position.y + relativePosition.y);
 	}
 		
 	public void moveTo(Vector2d position) {
-		this.position.set(position);
+		setPosition(position);
 		this.previousPosition = position;
 	}
 	
+	/**
+	 * Stores the current position as the previous position, reusing the same
+	 * vector in every step.
+	 */
+	protected void savePreviousPosition() {
+		stepStartPosition.set(position);
+		previousPosition = stepStartPosition;
+	}
+	
 	public Vector2d getPreviousPosition() {
 		return previousPosition;
 	}
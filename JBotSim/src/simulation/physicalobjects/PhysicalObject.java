@@ -1,6 +1,7 @@
 package simulation.physicalobjects;
 
 import mathutils.Vector2d;
+import net.jafama.FastMath;
 import simulation.Simulator;
 import simulation.SimulatorObject;
 import simulation.physicalobjects.collisionhandling.knotsandbolts.Shape;
@@ -12,7 +13,8 @@ public class PhysicalObject extends SimulatorObject implements
 
 	protected Vector2d position = new Vector2d();
 	protected double mass;
-	protected double orientation;
+	//private, since a robot keeps its orientation in its RobotStates instead
+	private double orientation;
 	private int id;
 	private boolean involvedInCollison = false;
 	private boolean involvedInCollisonWall = false;
@@ -139,8 +141,9 @@ public class PhysicalObject extends SimulatorObject implements
 	}
 
 	public double getDistanceBetween(Vector2d fromPoint) {
-		lightDirection.set(position.getX()-fromPoint.getX(),position.getY()-fromPoint.getY());
-		return lightDirection.length();
+		//no temporary vector, since sensors of different threads may ask at the same time
+		double x = position.getX()-fromPoint.getX(), y = position.getY()-fromPoint.getY();
+		return FastMath.sqrtQuick(x*x + y*y);
 	}
 	
 	public void setInvisible(boolean invisible) {
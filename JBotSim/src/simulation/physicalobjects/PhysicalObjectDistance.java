@@ -5,20 +5,20 @@ import java.io.Serializable;
 public class PhysicalObjectDistance implements
 		Comparable<PhysicalObjectDistance>, Serializable {
 	private PhysicalObject object;
-	private Double time;
-	private Double lastDistance = 0.0;
+	private double time;
+	private double lastDistance = 0.0;
 
-	public PhysicalObjectDistance(PhysicalObject object, Double time) {
+	public PhysicalObjectDistance(PhysicalObject object, double time) {
 		super();
 		this.object = object;
 		this.time = time;
 	}
 
-	public Double getTime() {
+	public double getTime() {
 		return time;
 	}
 
-	public void setTime(Double time) {
+	public void setTime(double time) {
 		this.time = time;
 	}
 
@@ -26,11 +26,11 @@ public class PhysicalObjectDistance implements
 		return object;
 	}
 	
-	public Double getLastDistance() {
+	public double getLastDistance() {
 		return lastDistance;
 	}
 	
-	public void setLastDistance(Double lastDistance) {
+	public void setLastDistance(double lastDistance) {
 		this.lastDistance = lastDistance;
 	}
 
@@ -0,0 +1,274 @@
+package simulation.physicalobjects;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import simulation.physicalobjects.checkers.AllowedObjectsChecker;
+import simulation.physicalobjects.collisionhandling.knotsandbolts.CircularShape;
+
+/**
+ * Uniform grid over all the objects of an {@link simulation.environment.Environment}.
+ * The grid is rebuilt (counting sort, no allocation once warmed up) whenever the
+ * environment asks for it, which happens a few times per simulation step. Each
+ * object is inserted in all the cells overlapped by its bounding circle, and
+ * queries return the objects in the same order as they appear in
+ * {@link simulation.environment.Environment#getAllObjects()}, so that iterating
+ * over the results is deterministic.
+ *
+ * This is not the order of the close/far lists of {@link ClosePhysicalObjects},
+ * which move objects to the end as they drift away and come back. The
+ * collisions between robots and the sensors that add up several objects
+ * depend on that order, so a simulation with the grid is not exactly the same
+ * as without it (tests.SpatialIndexCheck in JBotEvolver compares the fitness
+ * of both).
+ *
+ * Objects without a known extent are kept in a separate list and are always
+ * returned as candidates.
+ */
+public class SpatialIndex implements Serializable {
+
+	private static final long serialVersionUID = 2925473026123394812L;
+
+	private double cellSize;
+	private double currentCellSize;
+	private double minX, minY;
+	private int cellsX, cellsY;
+
+	private int numberOfObjects = 0;
+	private PhysicalObjectDistance[] entries = new PhysicalObjectDistance[0];
+	private double[] objectX = new double[0];
+	private double[] objectY = new double[0];
+	private double[] objectBound = new double[0];
+
+	private int[] cellStart = new int[1];
+	private int[] cellItems = new int[0];
+	private int[] unbounded = new int[0];
+	private int numberOfUnbounded = 0;
+	private int[] fillCursor = new int[0];
+
+	public SpatialIndex(double cellSize) {
+		this.cellSize = cellSize;
+	}
+
+	public void rebuild(ArrayList<PhysicalObject> objects) {
+		numberOfObjects = objects.size();
+		ensureObjectCapacity(numberOfObjects);
+
+		double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+		minX = Double.MAX_VALUE;
+		minY = Double.MAX_VALUE;
+		numberOfUnbounded = 0;
+
+		for(int i = 0 ; i < numberOfObjects ; i++) {
+			PhysicalObject o = objects.get(i);
+
+			if(entries[i] == null || entries[i].getObject() != o)
+				entries[i] = new PhysicalObjectDistance(o, 0.0);
+
+			objectX[i] = o.getPosition().getX();
+			objectY[i] = o.getPosition().getY();
+			objectBound[i] = getBoundingRadius(o);
+
+			if(objectBound[i] < 0) {
+				unbounded[numberOfUnbounded++] = i;
+			} else {
+				minX = Math.min(minX, objectX[i] - objectBound[i]);
+				minY = Math.min(minY, objectY[i] - objectBound[i]);
+				maxX = Math.max(maxX, objectX[i] + objectBound[i]);
+				maxY = Math.max(maxY, objectY[i] + objectBound[i]);
+			}
+		}
+
+		if(numberOfUnbounded == numberOfObjects) {
+			cellsX = cellsY = 0;
+			cellStart[0] = 0;
+			return;
+		}
+
+		//big worlds with few objects would create too many empty cells
+		double size = cellSize;
+		long maxCells = 4L * numberOfObjects + 64;
+		while(((long)((maxX - minX) / size) + 1) * ((long)((maxY - minY) / size) + 1) > maxCells)
+			size*= 2;
+
+		cellsX = (int)((maxX - minX) / size) + 1;
+		cellsY = (int)((maxY - minY) / size) + 1;
+		int cells = cellsX * cellsY;
+
+		if(cellStart.length < cells + 1)
+			cellStart = new int[cells + 1];
+		else
+			Arrays.fill(cellStart, 0, cells + 1, 0);
+
+		//first pass counts the objects per cell, second pass places them
+		int total = 0;
+		for(int i = 0 ; i < numberOfObjects ; i++) {
+			if(objectBound[i] < 0)
+				continue;
+			int x0 = cellX(objectX[i] - objectBound[i], size), x1 = cellX(objectX[i] + objectBound[i], size);
+			int y0 = cellY(objectY[i] - objectBound[i], size), y1 = cellY(objectY[i] + objectBound[i], size);
+			for(int y = y0 ; y <= y1 ; y++) {
+				for(int x = x0 ; x <= x1 ; x++) {
+					cellStart[y * cellsX + x + 1]++;
+					total++;
+				}
+			}
+		}
+
+		for(int c = 0 ; c < cells ; c++)
+			cellStart[c + 1]+= cellStart[c];
+
+		if(cellItems.length < total)
+			cellItems = new int[Math.max(total, cellItems.length * 2)];
+
+		int[] fill = cursor(cells);
+		for(int i = 0 ; i < numberOfObjects ; i++) {
+			if(objectBound[i] < 0)
+				continue;
+			int x0 = cellX(objectX[i] - objectBound[i], size), x1 = cellX(objectX[i] + objectBound[i], size);
+			int y0 = cellY(objectY[i] - objectBound[i], size), y1 = cellY(objectY[i] + objectBound[i], size);
+			for(int y = y0 ; y <= y1 ; y++) {
+				for(int x = x0 ; x <= x1 ; x++) {
+					int c = y * cellsX + x;
+					cellItems[cellStart[c] + fill[c]++] = i;
+				}
+			}
+		}
+		currentCellSize = size;
+	}
+
+	private int[] cursor(int cells) {
+		if(fillCursor.length < cells)
+			fillCursor = new int[cells];
+		else
+			Arrays.fill(fillCursor, 0, cells, 0);
+		return fillCursor;
+	}
+
+	/**
+	 * Collects all the objects allowed by the checker whose bounding circle
+	 * intersects the circle centered in (x,y) with the given radius.
+	 *
+	 * The query only reads the index, so it can be used concurrently by
+	 * different threads as long as each one uses its own {@link Query}.
+	 */
+	public void query(double x, double y, double radius, AllowedObjectsChecker checker, Query result) {
+		result.count = 0;
+
+		if(cellsX > 0) {
+			double size = currentCellSize;
+			int x0 = Math.max(0, cellX(x - radius, size)), x1 = Math.min(cellsX - 1, cellX(x + radius, size));
+			int y0 = Math.max(0, cellY(y - radius, size)), y1 = Math.min(cellsY - 1, cellY(y + radius, size));
+
+			for(int cy = y0 ; cy <= y1 ; cy++) {
+				for(int cx = x0 ; cx <= x1 ; cx++) {
+					int c = cy * cellsX + cx;
+					for(int k = cellStart[c] ; k < cellStart[c + 1] ; k++) {
+						int i = cellItems[k];
+						double dx = objectX[i] - x, dy = objectY[i] - y, reach = radius + objectBound[i];
+						if(dx * dx + dy * dy <= reach * reach)
+							result.add(i);
+					}
+				}
+			}
+		}
+
+		for(int k = 0 ; k < numberOfUnbounded ; k++)
+			result.add(unbounded[k]);
+
+		//objects that span several cells show up more than once
+		Arrays.sort(result.slots, 0, result.count);
+		int unique = 0, previous = -1;
+		for(int k = 0 ; k < result.count ; k++) {
+			int i = result.slots[k];
+			if(i == previous)
+				continue;
+			previous = i;
+			if(checker == null || checker.isAllowed(entries[i].getObject()))
+				result.slots[unique++] = i;
+		}
+		result.count = unique;
+	}
+
+	public PhysicalObjectDistance getEntry(int slot) {
+		return entries[slot];
+	}
+
+	public int getNumberOfObjects() {
+		return numberOfObjects;
+	}
+
+	/**
+	 * @return the radius of a circle centered on the object's position that
+	 *         contains the whole object, or -1 if it is not known
+	 */
+	public static double getBoundingRadius(PhysicalObject o) {
+		if(o instanceof Wall) {
+			Wall w = (Wall)o;
+			//walls built from two points grow to one side of the segment
+			return Math.sqrt(w.getWidth() * w.getWidth() / 4 + w.getHeight() * w.getHeight());
+		}
+		if(o.shape instanceof CircularShape)
+			return ((CircularShape)o.shape).getRadius();
+		return -1;
+	}
+
+	private int cellX(double x, double size) {
+		return (int)((x - minX) / size);
+	}
+
+	private int cellY(double y, double size) {
+		return (int)((y - minY) / size);
+	}
+
+	private void ensureObjectCapacity(int n) {
+		if(entries.length < n) {
+			int capacity = Math.max(n, entries.length * 2);
+			entries = Arrays.copyOf(entries, capacity);
+			objectX = new double[capacity];
+			objectY = new double[capacity];
+			objectBound = new double[capacity];
+			unbounded = new int[capacity];
+		}
+	}
+
+	/**
+	 * Caller-owned result buffer, reused across queries.
+	 */
+	public static class Query implements Serializable {
+
+		private static final long serialVersionUID = -1834297152365239172L;
+
+		private int[] slots = new int[16];
+		private int count = 0;
+
+		void add(int slot) {
+			if(count == slots.length)
+				slots = Arrays.copyOf(slots, slots.length * 2);
+			slots[count++] = slot;
+		}
+
+		void clear() {
+			count = 0;
+		}
+
+		void sortUnique() {
+			Arrays.sort(slots, 0, count);
+			int unique = 0;
+			for(int k = 0 ; k < count ; k++) {
+				if(unique == 0 || slots[k] != slots[unique - 1])
+					slots[unique++] = slots[k];
+			}
+			count = unique;
+		}
+
+		public int size() {
+			return count;
+		}
+
+		public int get(int i) {
+			return slots[i];
+		}
+	}
+}
@@ -20,6 +20,7 @@ public class Wall extends PhysicalObject{
 
 	private Edge left, right, top, bottom;
 	private Edge[] edges;
+	private int edgesVersion = 0;
 	public Color color = Color.BLUE;
 	
 	public Wall(Simulator simulator, String name, double x, double y,
@@ -75,6 +76,15 @@ public class Wall extends PhysicalObject{
 	public void moveWall() {
 		initializeEdges();
 		edges = getEdges();
+		edgesVersion++;
+	}
+	
+	/**
+	 * @return a number that changes whenever the edges of the wall are
+	 *         recomputed, so that a {@link WallIndex} knows it must be rebuilt
+	 */
+	public int getEdgesVersion() {
+		return edgesVersion;
 	}
 
 	private void initializeEdges(Vector2d p1, Vector2d p2) {
@@ -223,16 +233,76 @@ public class Wall extends PhysicalObject{
 		return closestPoint;
 	}
 	
+	/**
+	 * Finds the intersection of the segment (p1,p2) with the edges of the wall
+	 * that is closest to p1, like {@link #intersectsWithLineSegment(Vector2d, Vector2d, double)},
+	 * but writes it into the given vector instead of allocating a new one.
+	 * 
+	 * @return true if the segment intersects the wall
+	 */
+	public boolean intersectsWithLineSegment(Vector2d p1, Vector2d p2, Vector2d intersection) {
+		boolean found = false;
+		double closestDistance = 0;
+		
+		for (Edge e : edges) {
+			Vector2d e1 = e.getP1();
+			Vector2d e2 = e.getP2();
+			double ua = MathUtils.intersectLines(p1.x, p1.y, p2.x, p2.y, e1.x, e1.y, e2.x, e2.y);
+			if(ua >= 0) {
+				double x = p1.x + ua*(p2.x - p1.x), y = p1.y + ua*(p2.y - p1.y);
+				double distance = FastMath.sqrtQuick((p1.x - x)*(p1.x - x) + (p1.y - y)*(p1.y - y));
+				if(!found || distance < closestDistance) {
+					intersection.set(x, y);
+					closestDistance = distance;
+					found = true;
+				}
+			}
+		}
+		return found;
+	}
+	
 	public double getMinDist(Vector2d pos) {
+		return getMinDist(pos.x, pos.y);
+	}
+	
+	public double getMinDist(double x, double y) {
 		double d = Double.MAX_VALUE;
 		
 		for (Edge e : edges) {
-			Vector2d e1 = new Vector2d(e.getP1());
-			Vector2d e2 = new Vector2d(e.getP2());
-			d = Math.min(d,distToSegment(new Vector2d(pos), e1, e2));
+			Vector2d e1 = e.getP1();
+			Vector2d e2 = e.getP2();
+			d = Math.min(d,distToSegment(x, y, e1.x, e1.y, e2.x, e2.y));
 		}
 		return d;
 	}
+	
+	/**
+	 * Distance between the point (px,py) and the segment (vx,vy)-(wx,wy), using
+	 * the same operations as {@link #distToSegment(Vector2d, Vector2d, Vector2d)}.
+	 */
+	public static double distToSegment(double px, double py, double vx, double vy, double wx, double wy) {
+		
+		double l2 = FastMath.pow2(vx - wx) + FastMath.pow2(vy - wy);
+		if (l2 == 0.0) {
+			return distance(px, py, vx, vy);
+		}
+		
+		double t = ((px - vx) * (wx - vx) + (py - vy) * (wy - vy)) / l2;
+		
+		if (t < 0.0) {
+			return distance(px, py, vx, vy);
+		} else if (t > 1.0) {
+			return distance(px, py, wx, wy);
+		}
+		
+		return distance(px, py, vx + (wx - vx) * t, vy + (wy - vy) * t);
+	}
+	
+	private static double distance(double px, double py, double x, double y) {
+		double dx = x - px, dy = y - py;
+		return FastMath.sqrtQuick(dx*dx + dy*dy);
+	}
+	
 	/**
 	 * "Shortest distance between a point and a line segment" by Grumdrig
 	 * http://stackoverflow.com/questions/849211/shortest-distance-between-a-point-and-a-line-segment
@@ -0,0 +1,315 @@
+package simulation.physicalobjects;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+import mathutils.MathUtils;
+import mathutils.Vector2d;
+import net.jafama.FastMath;
+import simulation.physicalobjects.Wall.Edge;
+import simulation.physicalobjects.checkers.AllowWallChecker;
+
+/**
+ * Uniform grid over the edges of the static walls of an
+ * {@link simulation.environment.Environment}. Walls rarely change, so the grid
+ * is only rebuilt when a wall is added, removed or moved with
+ * {@link Wall#moveWall()}. Each edge is inserted in all the cells overlapped
+ * by its bounding box.
+ *
+ * Rays are traversed cell by cell (DDA), and the traversal stops as soon as
+ * the closest intersection found so far lies within the cells already
+ * visited. The intersections are computed with the same operations as
+ * {@link Wall#intersectsWithLineSegment(Vector2d, Vector2d, Vector2d)}, so the
+ * distances are exactly the same.
+ *
+ * Queries only read the grid and can be used concurrently by different
+ * threads.
+ */
+public class WallIndex implements Serializable {
+
+	private static final long serialVersionUID = -4281765087239861543L;
+	//same walls as in the close objects of wall sensors and collisions
+	private static final AllowWallChecker WALL_CHECKER = new AllowWallChecker();
+
+	private double cellSize;
+	private double currentCellSize;
+	private double minX, minY, maxX, maxY;
+	private int cellsX, cellsY;
+
+	private Wall[] walls = new Wall[0];
+	private int[] wallVersions = new int[0];
+	private int numberOfWalls = 0;
+
+	private double[] edgeX1 = new double[0], edgeY1 = new double[0];
+	private double[] edgeX2 = new double[0], edgeY2 = new double[0];
+	private int[] edgeWall = new int[0];
+	private int numberOfEdges = 0;
+
+	private int[] cellStart = new int[1];
+	private int[] cellItems = new int[0];
+
+	public WallIndex(double cellSize) {
+		this.cellSize = cellSize;
+	}
+
+	/**
+	 * Rebuilds the grid if the walls among the given objects are not the same
+	 * as in the last call. The walls are numbered in the order they have in
+	 * the list, which should be {@link simulation.environment.Environment#getAllObjects()}:
+	 * the close walls of the robots and prey are taken from it in the same
+	 * order, and never reordered, since walls do not move away.
+	 */
+	public void update(ArrayList<PhysicalObject> objects) {
+		int count = 0;
+		boolean changed = false;
+
+		for(int i = 0 ; i < objects.size() ; i++) {
+			PhysicalObject o = objects.get(i);
+			if(isWall(o)) {
+				Wall w = (Wall)o;
+				if(count >= numberOfWalls || walls[count] != w || wallVersions[count] != w.getEdgesVersion())
+					changed = true;
+				count++;
+			}
+		}
+
+		if(changed || count != numberOfWalls)
+			rebuild(objects, count);
+	}
+
+	private void rebuild(ArrayList<PhysicalObject> objects, int count) {
+		walls = new Wall[count];
+		wallVersions = new int[count];
+		numberOfWalls = 0;
+
+		for(PhysicalObject o : objects) {
+			if(isWall(o)) {
+				wallVersions[numberOfWalls] = ((Wall)o).getEdgesVersion();
+				walls[numberOfWalls++] = (Wall)o;
+			}
+		}
+
+		numberOfEdges = 0;
+		for(Wall w : walls)
+			numberOfEdges+= w.getEdges().length;
+
+		edgeX1 = new double[numberOfEdges];
+		edgeY1 = new double[numberOfEdges];
+		edgeX2 = new double[numberOfEdges];
+		edgeY2 = new double[numberOfEdges];
+		edgeWall = new int[numberOfEdges];
+
+		minX = minY = Double.MAX_VALUE;
+		maxX = maxY = -Double.MAX_VALUE;
+
+		int e = 0;
+		for(int i = 0 ; i < numberOfWalls ; i++) {
+			for(Edge edge : walls[i].getEdges()) {
+				edgeX1[e] = edge.getP1().x;
+				edgeY1[e] = edge.getP1().y;
+				edgeX2[e] = edge.getP2().x;
+				edgeY2[e] = edge.getP2().y;
+				edgeWall[e] = i;
+				minX = Math.min(minX, Math.min(edgeX1[e], edgeX2[e]));
+				minY = Math.min(minY, Math.min(edgeY1[e], edgeY2[e]));
+				maxX = Math.max(maxX, Math.max(edgeX1[e], edgeX2[e]));
+				maxY = Math.max(maxY, Math.max(edgeY1[e], edgeY2[e]));
+				e++;
+			}
+		}
+
+		if(numberOfEdges == 0) {
+			cellsX = cellsY = 0;
+			return;
+		}
+
+		//same limit as in SpatialIndex: big worlds with few walls would create too many empty cells
+		double size = cellSize;
+		long maxCells = 4L * numberOfEdges + 64;
+		while(((long)((maxX - minX) / size) + 1) * ((long)((maxY - minY) / size) + 1) > maxCells)
+			size*= 2;
+
+		currentCellSize = size;
+		cellsX = (int)((maxX - minX) / size) + 1;
+		cellsY = (int)((maxY - minY) / size) + 1;
+		int cells = cellsX * cellsY;
+
+		cellStart = new int[cells + 1];
+		for(e = 0 ; e < numberOfEdges ; e++) {
+			for(int y = edgeCellY0(e) ; y <= edgeCellY1(e) ; y++)
+				for(int x = edgeCellX0(e) ; x <= edgeCellX1(e) ; x++)
+					cellStart[y * cellsX + x + 1]++;
+		}
+
+		for(int c = 0 ; c < cells ; c++)
+			cellStart[c + 1]+= cellStart[c];
+
+		cellItems = new int[cellStart[cells]];
+		int[] fill = new int[cells];
+		for(e = 0 ; e < numberOfEdges ; e++) {
+			for(int y = edgeCellY0(e) ; y <= edgeCellY1(e) ; y++) {
+				for(int x = edgeCellX0(e) ; x <= edgeCellX1(e) ; x++) {
+					int c = y * cellsX + x;
+					cellItems[cellStart[c] + fill[c]++] = e;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds the closest intersection between the segment (x1,y1)-(x2,y2) and
+	 * the edges of the enabled walls, up to the given distance from (x1,y1).
+	 *
+	 * @param intersection if not null, receives the intersection point
+	 * @return the distance to the intersection, or Double.MAX_VALUE if there
+	 *         is none closer than maxDistance
+	 */
+	public double castRay(double x1, double y1, double x2, double y2, double maxDistance, Vector2d intersection) {
+		double best = Double.MAX_VALUE;
+
+		if(cellsX == 0)
+			return best;
+
+		double dx = x2 - x1, dy = y2 - y1;
+		double length = Math.sqrt(dx * dx + dy * dy);
+		if(length == 0)
+			return best;
+
+		//distances are computed with FastMath.sqrtQuick, which can be off by up
+		//to 3.5%, so the ray is only cut short well beyond maxDistance
+		double tStart = 0, tEnd = Math.min(1, maxDistance / length * 1.1);
+
+		if(dx != 0) {
+			double ta = (minX - x1) / dx, tb = (maxX - x1) / dx;
+			tStart = Math.max(tStart, Math.min(ta, tb));
+			tEnd = Math.min(tEnd, Math.max(ta, tb));
+		} else if(x1 < minX || x1 > maxX) {
+			return best;
+		}
+		if(dy != 0) {
+			double ta = (minY - y1) / dy, tb = (maxY - y1) / dy;
+			tStart = Math.max(tStart, Math.min(ta, tb));
+			tEnd = Math.min(tEnd, Math.max(ta, tb));
+		} else if(y1 < minY || y1 > maxY) {
+			return best;
+		}
+		if(tStart > tEnd)
+			return best;
+
+		double size = currentCellSize;
+		int cx = clamp(cellX(x1 + tStart * dx), cellsX);
+		int cy = clamp(cellY(y1 + tStart * dy), cellsY);
+		int stepX = dx > 0 ? 1 : -1, stepY = dy > 0 ? 1 : -1;
+
+		double tMaxX = dx != 0 ? (minX + (cx + (dx > 0 ? 1 : 0)) * size - x1) / dx : Double.MAX_VALUE;
+		double tMaxY = dy != 0 ? (minY + (cy + (dy > 0 ? 1 : 0)) * size - y1) / dy : Double.MAX_VALUE;
+		double tDeltaX = dx != 0 ? size / Math.abs(dx) : Double.MAX_VALUE;
+		double tDeltaY = dy != 0 ? size / Math.abs(dy) : Double.MAX_VALUE;
+
+		double bestT = Double.MAX_VALUE;
+
+		while(true) {
+			int c = cy * cellsX + cx;
+			for(int k = cellStart[c] ; k < cellStart[c + 1] ; k++) {
+				int e = cellItems[k];
+				if(!walls[edgeWall[e]].isEnabled())
+					continue;
+				double ua = MathUtils.intersectLines(x1, y1, x2, y2, edgeX1[e], edgeY1[e], edgeX2[e], edgeY2[e]);
+				if(ua >= 0) {
+					double x = x1 + ua * (x2 - x1), y = y1 + ua * (y2 - y1);
+					double distance = FastMath.sqrtQuick((x1 - x) * (x1 - x) + (y1 - y) * (y1 - y));
+					if(distance < best) {
+						best = distance;
+						bestT = ua;
+						if(intersection != null)
+							intersection.set(x, y);
+					}
+				}
+			}
+
+			double exit = Math.min(tMaxX, tMaxY);
+			if(bestT <= exit || exit > tEnd)
+				break;
+
+			if(tMaxX < tMaxY) {
+				cx+= stepX;
+				tMaxX+= tDeltaX;
+				if(cx < 0 || cx >= cellsX)
+					break;
+			} else {
+				cy+= stepY;
+				tMaxY+= tDeltaY;
+				if(cy < 0 || cy >= cellsY)
+					break;
+			}
+		}
+
+		return best < maxDistance ? best : Double.MAX_VALUE;
+	}
+
+	/**
+	 * Collects the enabled walls with an edge in the cells overlapped by the
+	 * circle centered in (x,y), in the same order as they were added to the
+	 * environment. This is also the order of the close walls without the
+	 * index, so the walls a robot collides with are handled in the same order
+	 * and draw the same random numbers when the robots are dragged. The result
+	 * holds wall numbers, see {@link #getWall(int)}.
+	 */
+	public void queryWalls(double x, double y, double radius, SpatialIndex.Query result) {
+		result.clear();
+
+		if(cellsX > 0 && x + radius >= minX && x - radius <= maxX && y + radius >= minY && y - radius <= maxY) {
+			int x0 = clamp(cellX(x - radius), cellsX), x1 = clamp(cellX(x + radius), cellsX);
+			int y0 = clamp(cellY(y - radius), cellsY), y1 = clamp(cellY(y + radius), cellsY);
+
+			for(int cy = y0 ; cy <= y1 ; cy++)
+				for(int cx = x0 ; cx <= x1 ; cx++)
+					for(int k = cellStart[cy * cellsX + cx] ; k < cellStart[cy * cellsX + cx + 1] ; k++) {
+						int wall = edgeWall[cellItems[k]];
+						if(walls[wall].isEnabled())
+							result.add(wall);
+					}
+		}
+		result.sortUnique();
+	}
+
+	private static boolean isWall(PhysicalObject o) {
+		return o instanceof Wall && WALL_CHECKER.isAllowed(o);
+	}
+
+	public Wall getWall(int number) {
+		return walls[number];
+	}
+
+	public int getNumberOfWalls() {
+		return numberOfWalls;
+	}
+
+	private int edgeCellX0(int e) {
+		return clamp(cellX(Math.min(edgeX1[e], edgeX2[e])), cellsX);
+	}
+
+	private int edgeCellX1(int e) {
+		return clamp(cellX(Math.max(edgeX1[e], edgeX2[e])), cellsX);
+	}
+
+	private int edgeCellY0(int e) {
+		return clamp(cellY(Math.min(edgeY1[e], edgeY2[e])), cellsY);
+	}
+
+	private int edgeCellY1(int e) {
+		return clamp(cellY(Math.max(edgeY1[e], edgeY2[e])), cellsY);
+	}
+
+	private int cellX(double x) {
+		return (int)Math.floor((x - minX) / currentCellSize);
+	}
+
+	private int cellY(double y) {
+		return (int)Math.floor((y - minY) / currentCellSize);
+	}
+
+	private static int clamp(int cell, int cells) {
+		return cell < 0 ? 0 : cell >= cells ? cells - 1 : cell;
+	}
+}
@@ -2,6 +2,7 @@ package simulation.physicalobjects.collisionhandling;
 
 import java.awt.geom.Area;
 import java.awt.geom.Ellipse2D;
+import java.util.Random;
 
 import mathutils.Vector2d;
 import simulation.Simulator;
@@ -12,7 +13,9 @@ import simulation.physicalobjects.MovableObject;
 import simulation.physicalobjects.PhysicalObject;
 import simulation.physicalobjects.PhysicalObjectDistance;
 import simulation.physicalobjects.Prey;
+import simulation.physicalobjects.SpatialIndex;
 import simulation.physicalobjects.Wall;
+import simulation.physicalobjects.WallIndex;
 import simulation.physicalobjects.collisionhandling.knotsandbolts.CircularShape;
 import simulation.physicalobjects.collisionhandling.knotsandbolts.CollisionManager;
 import simulation.physicalobjects.collisionhandling.knotsandbolts.PolygonShape;
@@ -23,6 +26,9 @@ public class SimpleCollisionManager extends CollisionManager {
 	
 	public boolean drag = false;
 	public double dragValue = 0.5;
+	protected Random random;
+	private SpatialIndex.Query wallQuery = new SpatialIndex.Query();
+	private SpatialIndex.Query positionQuery = new SpatialIndex.Query();
 
 	public SimpleCollisionManager(Simulator simulator) {
 		super(simulator);
@@ -31,6 +37,16 @@ public class SimpleCollisionManager extends CollisionManager {
 		dragValue = args.getArgumentAsDoubleOrSetDefault("dragvalue", dragValue);
 	}
 
+	/**
+	 * The generator is created when it is first used, since the environment,
+	 * and so this manager, is created before the simulator reads fixedseed.
+	 */
+	private Random getRandom() {
+		if(random == null)
+			random = simulator.createRandom();
+		return random;
+	}
+
 	@Override
 	public void handleCollisions(Environment environment, double time) {
 		
@@ -78,13 +94,31 @@ public class SimpleCollisionManager extends CollisionManager {
 					iterator.updateCurrentDistance(length);
 				}
 			}
+			iterator.release();
 		}
 
+		WallIndex wallIndex = environment.getWallIndex();
+
 		//robot - wall
 		for (Robot robot : environment.getRobots()) {
 			if(robot.ignoreWallCollisions()){
 				continue;
 			}
+			
+			if(wallIndex != null) {
+				double reach = robot.getRadius();
+				//after being dragged, the robot is at most twice its last displacement away
+				if(drag)
+					reach+= 2*robot.getPreviousPosition().distanceTo(robot.getPosition());
+				wallIndex.queryWalls(robot.getPosition().x, robot.getPosition().y, reach, wallQuery);
+				
+				for(int i = 0 ; i < wallQuery.size() ; i++) {
+					if(handleWallCollision(robot, wallIndex.getWall(wallQuery.get(i)), null, wallIndex))
+						break;
+				}
+				continue;
+			}
+			
 			ClosePhysicalObjects closeWalls = robot.shape.getCloseWalls();
 			CloseObjectIterator iterator = closeWalls.iterator();
 			
@@ -93,55 +127,24 @@ public class SimpleCollisionManager extends CollisionManager {
 
 				Wall closeWall = (Wall) (iterator.next().getObject());
 				
-				if(closeWall.getMinDist(new Vector2d(robot.getPosition())) < robot.getRadius()) {
-					
-					PolygonShape ps = (PolygonShape) closeWall.shape;
-					ps.collision = true;
-
-					robot.setInvolvedInCollison(true);
-					robot.setInvolvedInCollisonWall(true);
-					robot.getCollidingObjects().add(closeWall);
-					
-					if(drag) {
-						
-						boolean leftFirst = simulator.getRandom().nextBoolean();
-						
-						double speed = robot.getPreviousPosition().distanceTo(robot.getPosition())*dragValue;
-						
-						double orientation = robot.getOrientation();
-						
-						Vector2d prev = robot.getPreviousPosition();
-						
-						Vector2d left = new Vector2d(robot.getPreviousPosition());
-						left.add(new Vector2d(speed*Math.cos(orientation-Math.PI/2), speed*Math.sin(orientation-Math.PI/2)));
-						
-						Vector2d right = new Vector2d(robot.getPreviousPosition());
-						right.add(new Vector2d(speed*Math.cos(orientation+Math.PI/2), speed*Math.sin(orientation+Math.PI/2)));
-						
-						Vector2d[] pos = new Vector2d[]{left,right};
-						
-						if(!leftFirst) {
-							pos[0] = right;
-							pos[1] = left;
-						}
-
-						if(validPosition(pos[0],robot.getRadius(),closeWalls))
-							robot.moveTo(pos[0]);
-						else if(validPosition(pos[1],robot.getRadius(),closeWalls))
-							robot.moveTo(pos[1]);
-						else
-							robot.moveTo(prev);
-						
-					} else {
-						robot.moveTo(robot.getPreviousPosition());
-						break;
-					}
-				} 
+				if(handleWallCollision(robot, closeWall, closeWalls, null))
+					break;
 			}
+			iterator.release();
 		}
 		
 		//prey - wall
 		for (Prey prey : environment.getPrey()) {
+			
+			if(wallIndex != null) {
+				wallIndex.queryWalls(prey.getPosition().x, prey.getPosition().y, prey.getRadius(), wallQuery);
+				
+				for(int i = 0 ; i < wallQuery.size() ; i++) {
+					if(handleWallCollision(prey, wallIndex.getWall(wallQuery.get(i))))
+						break;
+				}
+				continue;
+			}
 
 			ClosePhysicalObjects closeWalls = prey.shape.getCloseWalls();
 			CloseObjectIterator iterator = closeWalls.iterator();
@@ -149,18 +152,10 @@ public class SimpleCollisionManager extends CollisionManager {
 				
 				Wall closeWall = (Wall) (iterator.next().getObject());
 				
-				if(closeWall.getMinDist(new Vector2d(prey.getPosition())) < prey.getRadius()) {
-					
-					PolygonShape ps = (PolygonShape) closeWall.shape;
-					ps.collision = true;
-
-					prey.setInvolvedInCollison(true);
-					prey.setInvolvedInCollisonWall(true);
-					
-					prey.moveTo(prey.getPreviousPosition());
+				if(handleWallCollision(prey, closeWall))
 					break;
-				} 
 			}
+			iterator.release();
 		}
 		
 		// robot - prey collisions
@@ -190,6 +185,7 @@ public class SimpleCollisionManager extends CollisionManager {
 						heavy = true;
 					}
 				}
+				iterator.release();
 				
 				iterator = closeRobots.iterator();
 				while (iterator.hasNext()) {
@@ -214,6 +210,7 @@ public class SimpleCollisionManager extends CollisionManager {
 						iterator.updateCurrentDistance(length);
 					}
 				}
+				iterator.release();
 			}
 		}
 	/*
@@ -269,8 +266,7 @@ public class SimpleCollisionManager extends CollisionManager {
 								setLength(temp, length/2);
 							} else {
 								temp.set(0, length / 2);
-								temp.rotate(simulator.getRandom()
-										.nextGaussian() * Math.PI);
+								temp.rotate(getRandom().nextGaussian() * Math.PI);
 							}
 							prey.move(temp);
 							temp.negate();
@@ -282,25 +278,112 @@ public class SimpleCollisionManager extends CollisionManager {
 						}
 					}
 				}
+				iterator.release();
+			}
+		}
+	}
+	
+	/**
+	 * Checks the robot against one wall, looked up either in the robot's close
+	 * walls or in the wall index.
+	 * 
+	 * @return true if the robot was moved back and no other walls need to be
+	 *         checked
+	 */
+	private boolean handleWallCollision(Robot robot, Wall closeWall, ClosePhysicalObjects closeWalls, WallIndex wallIndex) {
+		
+		if(closeWall.getMinDist(robot.getPosition()) < robot.getRadius()) {
+			
+			PolygonShape ps = (PolygonShape) closeWall.shape;
+			ps.collision = true;
+
+			robot.setInvolvedInCollison(true);
+			robot.setInvolvedInCollisonWall(true);
+			robot.getCollidingObjects().add(closeWall);
+			
+			if(drag) {
+				
+				boolean leftFirst = getRandom().nextBoolean();
+				
+				double speed = robot.getPreviousPosition().distanceTo(robot.getPosition())*dragValue;
+				
+				double orientation = robot.getOrientation();
+				
+				Vector2d prev = robot.getPreviousPosition();
+				
+				Vector2d left = new Vector2d(robot.getPreviousPosition());
+				left.add(new Vector2d(speed*Math.cos(orientation-Math.PI/2), speed*Math.sin(orientation-Math.PI/2)));
+				
+				Vector2d right = new Vector2d(robot.getPreviousPosition());
+				right.add(new Vector2d(speed*Math.cos(orientation+Math.PI/2), speed*Math.sin(orientation+Math.PI/2)));
+				
+				Vector2d[] pos = new Vector2d[]{left,right};
+				
+				if(!leftFirst) {
+					pos[0] = right;
+					pos[1] = left;
+				}
+
+				if(validPosition(pos[0],robot.getRadius(),closeWalls,wallIndex))
+					robot.moveTo(pos[0]);
+				else if(validPosition(pos[1],robot.getRadius(),closeWalls,wallIndex))
+					robot.moveTo(pos[1]);
+				else
+					robot.moveTo(prev);
+				
+			} else {
+				robot.moveTo(robot.getPreviousPosition());
+				return true;
 			}
 		}
+		return false;
 	}
 	
-	private boolean validPosition(Vector2d pos, double radius, ClosePhysicalObjects closeWalls) {
+	private boolean handleWallCollision(Prey prey, Wall closeWall) {
+		
+		if(closeWall.getMinDist(prey.getPosition()) < prey.getRadius()) {
+			
+			PolygonShape ps = (PolygonShape) closeWall.shape;
+			ps.collision = true;
+
+			prey.setInvolvedInCollison(true);
+			prey.setInvolvedInCollisonWall(true);
+			
+			prey.moveTo(prey.getPreviousPosition());
+			return true;
+		}
+		return false;
+	}
+	
+	private boolean validPosition(Vector2d pos, double radius, ClosePhysicalObjects closeWalls, WallIndex wallIndex) {
+		
+		if(wallIndex != null) {
+			wallIndex.queryWalls(pos.x, pos.y, radius, positionQuery);
+			for(int i = 0 ; i < positionQuery.size() ; i++) {
+				if(wallIndex.getWall(positionQuery.get(i)).getMinDist(pos) < radius)
+					return false;
+			}
+			return true;
+		}
+		
 		CloseObjectIterator iterator = closeWalls.iterator();
 
-		while(iterator.hasNext()) {
-			Wall w = (Wall)iterator.next().getObject();
-			if(w.getMinDist(pos) < radius)
-				return false;
+		try {
+			while(iterator.hasNext()) {
+				Wall w = (Wall)iterator.next().getObject();
+				if(w.getMinDist(pos) < radius)
+					return false;
+			}
+			return true;
+		} finally {
+			iterator.release();
 		}
-		return true;
 	}
 	
 	protected void setLength(Vector2d vector, double length) {
 		if (vector.x == 0 && vector.y == 0) {
-			vector.x = simulator.getRandom().nextGaussian();
-			vector.y = simulator.getRandom().nextGaussian();
+			vector.x = getRandom().nextGaussian();
+			vector.y = getRandom().nextGaussian();
 		}
 		vector.setLength(length);
 	}
@@ -48,10 +48,10 @@ public abstract class Shape implements Serializable {
 		collidedWith 	 = new ArrayList<Shape>(10);
 		relativePosition = new Vector2d(relativePosX, relativePosY);
 		
-		closeRobots 	 = new ClosePhysicalObjects(simulator.getEnvironment(), range,new AllowAllRobotsChecker(parent.getId()));
-		closePrey   	 = new ClosePhysicalObjects(simulator.getEnvironment(), range,new AllowOrderedPreyChecker(parent.getId()));
-		closeLightPoles  = new ClosePhysicalObjects(simulator.getEnvironment(), range,new AllowOrderedLightChecker(parent.getId()));
-		closeWalls = new ClosePhysicalObjects(simulator.getEnvironment(), range, new AllowWallChecker());
+		closeRobots 	 = new ClosePhysicalObjects(simulator.getEnvironment(), range,new AllowAllRobotsChecker(parent.getId()), parent);
+		closePrey   	 = new ClosePhysicalObjects(simulator.getEnvironment(), range,new AllowOrderedPreyChecker(parent.getId()), parent);
+		closeLightPoles  = new ClosePhysicalObjects(simulator.getEnvironment(), range,new AllowOrderedLightChecker(parent.getId()), parent);
+		closeWalls = new ClosePhysicalObjects(simulator.getEnvironment(), range, new AllowWallChecker(), parent);
 		//closeHoles = new ClosePhysicalObjects(simulator, range, new AllowHoleChecker());
 		
 		if (parent != null) {
@@ -170,4 +170,21 @@ public abstract class Shape implements Serializable {
 		return this.closeHoles;
 	}*/
 
+	/**
+	 * Clears the collisions and the close objects, and moves the shape back to
+	 * its parent, as when the shape was created.
+	 */
+	public void reset() {
+		collidedWith.clear();
+		closeRobots.clear();
+		closePrey.clear();
+		closeLightPoles.clear();
+		closeWalls.clear();
+
+		if (parent != null) {
+			setPosition(relativePosition.getX() + parent.getPosition().getX(), 
+					relativePosition.getY() + parent.getPosition().getY());
+			setOrientation(parent.getOrientation());
+		}
+	}
 }
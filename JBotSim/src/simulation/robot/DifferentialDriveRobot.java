@@ -1,8 +1,5 @@
 package simulation.robot;
 
-import net.jafama.FastMath;
-import mathutils.MathUtils;
-import mathutils.Vector2d;
 import simulation.Simulator;
 import simulation.physicalobjects.collisionhandling.knotsandbolts.CircularShape;
 import simulation.robot.actuators.Actuator;
@@ -16,16 +13,8 @@ public class DifferentialDriveRobot extends Robot {
 	protected double     wheelDiameter      = 0.05;
 
 	/**
-	 * Current speed of the left wheel.
-	 */	
-	protected double     leftWheelSpeed     = 0;
-	/**
-	 * Current speed of the right wheel.
-	 */	
-	protected double     rightWheelSpeed    = 0;
-	
-	/**
-	 * Distance between the wheels of the robot.
+	 * Distance between the wheels of the robot. The current speeds of the
+	 * wheels are kept in the store of the robot's state.
 	 */
 	@ArgumentsAnnotation(name="distancewheels", defaultValue = "0.05")
 	protected double distanceBetweenWheels = 0.05;
@@ -37,19 +26,18 @@ public class DifferentialDriveRobot extends Robot {
 		this.distanceBetweenWheels = args.getArgumentAsDoubleOrSetDefault("distancewheels", ((CircularShape)shape).getDiameter());
 	}
 	
+	@Override
+	public void reset() {
+		super.reset();
+		setWheelSpeed(0, 0);
+		stopTimestep = 0;
+	}
+
 	public void updateActuators(Double time, double timeDelta) {	
-		this.previousPosition = new Vector2d(position);
+		savePreviousPosition();
 		
-		if(stopTimestep <= 0) {
-			
-			position.set(
-					position.getX() + timeDelta * (leftWheelSpeed + rightWheelSpeed) / 2.0 * FastMath.cosQuick(orientation),
-					position.getY() + timeDelta * (leftWheelSpeed + rightWheelSpeed) / 2.0 * FastMath.sinQuick(orientation));
-			
-			orientation += timeDelta * 0.5/(distanceBetweenWheels/2.0) * (rightWheelSpeed - leftWheelSpeed); 
-	
-			orientation = MathUtils.modPI2(orientation);
-		}
+		if(stopTimestep <= 0)
+			states.move(stateIndex, timeDelta, distanceBetweenWheels);
 		
 		stopTimestep--;
 		
@@ -65,8 +53,7 @@ public class DifferentialDriveRobot extends Robot {
 	 * @param right the rotational speed of the right wheel (in radians)
 	 */	
 	public void setRotationalWheelSpeed(double left, double right) {
-		leftWheelSpeed  = left * wheelDiameter * Math.PI;
-		rightWheelSpeed = right * wheelDiameter * Math.PI;	
+		states.setWheelSpeed(stateIndex, left * wheelDiameter * Math.PI, right * wheelDiameter * Math.PI);
 	}
 
 	
@@ -77,8 +64,7 @@ public class DifferentialDriveRobot extends Robot {
 	 * @param right the speed of the right wheel (in meters/second)
 	 */
 	public void setWheelSpeed(double left, double right) {
-		leftWheelSpeed  = left;
-		rightWheelSpeed = right;	
+		states.setWheelSpeed(stateIndex, left, right);
 	}
 
 	public double getDistanceBetweenWheels() {
@@ -86,11 +72,11 @@ public class DifferentialDriveRobot extends Robot {
 	}
 	
 	public double getRightWheelSpeed() {
-		return stopTimestep > 0 ? 0 : rightWheelSpeed;
+		return stopTimestep > 0 ? 0 : states.getRightWheelSpeed(stateIndex);
 	}
 	
 	public double getLeftWheelSpeed() {
-		return stopTimestep > 0 ? 0 : leftWheelSpeed;
+		return stopTimestep > 0 ? 0 : states.getLeftWheelSpeed(stateIndex);
 	}
 	
 	public double getWheelDiameter(){
@@ -105,10 +91,8 @@ public class DifferentialDriveRobot extends Robot {
 	
 	public void stopTimestep(int time) {
 		this.stopTimestep = time;
-		if(time > 0) {
-			leftWheelSpeed = 0;
-			rightWheelSpeed = 0;
-		}
+		if(time > 0)
+			setWheelSpeed(0, 0);
 	}
 	
 	public int getStopTimestep() {
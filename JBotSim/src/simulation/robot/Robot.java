@@ -78,6 +78,7 @@ public class Robot extends MovableObject {
 	@ArgumentsAnnotation(name = "numberofrobots", defaultValue = "1")
 	private Color ledColor;
 	private LedState ledState;
+	private double startOrientation;
 
 	public static final int REDINDEX = 0;
 	public static final int GREENINDEX = 1;
@@ -93,6 +94,13 @@ public class Robot extends MovableObject {
 
 	protected LinkedList<PhysicalObject> collidingObjects = new LinkedList<PhysicalObject>();
 
+	/**
+	 * The store of the pose and wheel speeds of the robot, and its index there.
+	 * A new robot has a store of its own until it is added to an environment.
+	 */
+	protected RobotStates states;
+	protected int stateIndex;
+
 	/**
 	 * Initialize a new robot.
 	 * 
@@ -120,6 +128,8 @@ public class Robot extends MovableObject {
 		ignoreRobotToRobotCollisions = args.getArgumentAsIntOrSetDefault("ignorerobottorobotcollisions", 0) == 1;
 		if (diameter != radius * 2)
 			radius = diameter / 2;
+		states = new RobotStates(1);
+		stateIndex = states.add(position, super.getOrientation());
 		this.shape = new CircularShape(simulator, name + "CollisionObject", this, relativeX, relativeY, diameter,
 				diameter / 2);
 
@@ -144,6 +154,46 @@ public class Robot extends MovableObject {
 			setBodyColor(color);
 
 		specialWallCollisions = args.getArgumentAsIntOrSetDefault("specialwallcollisions", 0) == 1;
+		startOrientation = states.getOrientation(stateIndex);
+	}
+
+	@Override
+	public double getOrientation() {
+		return states.getOrientation(stateIndex);
+	}
+
+	@Override
+	public void setOrientation(double orientation) {
+		states.setOrientation(stateIndex, orientation);
+	}
+
+	@Override
+	public void setPosition(double x, double y) {
+		states.setPosition(stateIndex, x, y);
+	}
+
+	@Override
+	public void setPosition(Vector2d vNewPos) {
+		states.setPosition(stateIndex, vNewPos.x, vNewPos.y);
+	}
+
+	/**
+	 * Moves the state of the robot to another store, such as the one of the
+	 * environment it is added to.
+	 */
+	public void setStates(RobotStates states) {
+		if (states != this.states) {
+			stateIndex = states.add(this.states, stateIndex);
+			this.states = states;
+		}
+	}
+
+	public RobotStates getStates() {
+		return states;
+	}
+
+	public int getStateIndex() {
+		return stateIndex;
 	}
 
 	/**
@@ -299,7 +349,7 @@ public class Robot extends MovableObject {
 	 *            the time (in virtual seconds) between calls to this method.
 	 */
 	public void updateActuators(Double time, double timeDelta) {
-		this.previousPosition = new Vector2d(position);
+		savePreviousPosition();
 		for (Actuator actuator : actuators) {
 			actuator.apply(this, timeDelta);
 		}
@@ -316,6 +366,37 @@ public class Robot extends MovableObject {
 		shape.getCloseRobot().update(simulationStep, teleported);
 	}
 
+	/**
+	 * Puts the robot back in the state it had when it was created: start
+	 * position and orientation, colors, no collisions or close objects, and
+	 * sensors, actuators and controller reset. Used when the same robots are
+	 * simulated again (see {@link Simulator#reset(long)}).
+	 */
+	public void reset() {
+		setPosition(x, y);
+		setOrientation(startOrientation);
+		previousPosition = position;
+		setInvolvedInCollison(false);
+		setInvolvedInCollisonWall(false);
+		setEnabled(true);
+
+		bodyColor = new double[3];
+		if (color != null)
+			setBodyColor(color);
+		ledColor = color;
+		ledState = LedState.OFF;
+
+		collidingObjects.clear();
+		shape.reset();
+
+		for (Sensor sensor : sensors)
+			sensor.reset();
+		for (Actuator actuator : actuators)
+			actuator.reset();
+		if (controller != null)
+			controller.reset();
+	}
+
 	/**
 	 * Stops the robot in case it is moving
 	 */
@@ -0,0 +1,142 @@
+package simulation.robot;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import mathutils.MathUtils;
+import mathutils.Vector2d;
+import net.jafama.FastMath;
+
+/**
+ * Keeps the pose and the wheel speeds of the robots, which change with every
+ * step, in one array per variable, indexed by the robot, instead of in the
+ * fields of each robot. The
+ * environment owns the store of its robots (see
+ * {@link simulation.environment.Environment#getRobotStates()}), and each
+ * {@link Robot} reads and writes its state through its index, so the
+ * kinematics of a step go through contiguous arrays.
+ * <p>
+ * The position of each robot is also kept in the {@link Vector2d} returned by
+ * {@link Robot#getPosition()}, which is updated whenever the position in the
+ * store changes, since the sensors and the collision handling work with
+ * vectors. Code outside the store must not change that vector directly.
+ */
+public class RobotStates implements Serializable {
+	private static final long serialVersionUID = -140236013825522961L;
+
+	private int size = 0;
+	private double[] x;
+	private double[] y;
+	private double[] orientation;
+	private double[] leftWheelSpeed;
+	private double[] rightWheelSpeed;
+	private Vector2d[] positions;
+
+	public RobotStates(int capacity) {
+		x = new double[capacity];
+		y = new double[capacity];
+		orientation = new double[capacity];
+		leftWheelSpeed = new double[capacity];
+		rightWheelSpeed = new double[capacity];
+		positions = new Vector2d[capacity];
+	}
+
+	/**
+	 * Adds the state of a robot at rest, with its position kept also in the
+	 * given vector, and returns its index.
+	 */
+	public int add(Vector2d position, double orientation) {
+		int index = grow();
+		this.positions[index] = position;
+		setPosition(index, position.x, position.y);
+		setOrientation(index, orientation);
+		return index;
+	}
+
+	/**
+	 * Copies the state of a robot from another store and returns its index in
+	 * this one.
+	 */
+	public int add(RobotStates states, int index) {
+		int i = grow();
+		x[i] = states.x[index];
+		y[i] = states.y[index];
+		orientation[i] = states.orientation[index];
+		leftWheelSpeed[i] = states.leftWheelSpeed[index];
+		rightWheelSpeed[i] = states.rightWheelSpeed[index];
+		positions[i] = states.positions[index];
+		return i;
+	}
+
+	private int grow() {
+		if(size == x.length) {
+			int capacity = Math.max(1, size * 2);
+			x = Arrays.copyOf(x, capacity);
+			y = Arrays.copyOf(y, capacity);
+			orientation = Arrays.copyOf(orientation, capacity);
+			leftWheelSpeed = Arrays.copyOf(leftWheelSpeed, capacity);
+			rightWheelSpeed = Arrays.copyOf(rightWheelSpeed, capacity);
+			positions = Arrays.copyOf(positions, capacity);
+		}
+		return size++;
+	}
+
+	/**
+	 * Moves a robot with differential drive kinematics, according to the
+	 * speeds of its wheels.
+	 */
+	public void move(int index, double timeDelta, double distanceBetweenWheels) {
+		double o = orientation[index];
+		double left = leftWheelSpeed[index], right = rightWheelSpeed[index];
+
+		setPosition(index,
+				x[index] + timeDelta * (left + right) / 2.0 * FastMath.cosQuick(o),
+				y[index] + timeDelta * (left + right) / 2.0 * FastMath.sinQuick(o));
+
+		o += timeDelta * 0.5/(distanceBetweenWheels/2.0) * (right - left);
+		orientation[index] = MathUtils.modPI2(o);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public double getX(int index) {
+		return x[index];
+	}
+
+	public double getY(int index) {
+		return y[index];
+	}
+
+	public void setPosition(int index, double x, double y) {
+		this.x[index] = x;
+		this.y[index] = y;
+		positions[index].set(x, y);
+	}
+
+	public Vector2d getPosition(int index) {
+		return positions[index];
+	}
+
+	public double getOrientation(int index) {
+		return orientation[index];
+	}
+
+	public void setOrientation(int index, double orientation) {
+		this.orientation[index] = orientation;
+	}
+
+	public double getLeftWheelSpeed(int index) {
+		return leftWheelSpeed[index];
+	}
+
+	public double getRightWheelSpeed(int index) {
+		return rightWheelSpeed[index];
+	}
+
+	public void setWheelSpeed(int index, double left, double right) {
+		leftWheelSpeed[index] = left;
+		rightWheelSpeed[index] = right;
+	}
+}
@@ -19,6 +19,12 @@ public abstract class Actuator extends SimulatorObject {
 	}
 	
 	public abstract void apply(Robot robot, double timeDelta);
+
+	/**
+	 * Clears the state kept between steps, as in a newly created actuator.
+	 * Called when the robot is reset (see {@link Robot#reset()}).
+	 */
+	public void reset() {}
 	
 	public static Actuator getActuator(Simulator simulator, String name, Arguments arguments) {
 		return (Actuator)Factory.getInstance(name, simulator,arguments.getArgumentAsIntOrSetDefault("id",0),arguments);
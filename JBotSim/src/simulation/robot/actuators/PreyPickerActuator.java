@@ -33,7 +33,7 @@ public class PreyPickerActuator extends Actuator {
 
 	public PreyPickerActuator(Simulator simulator, int id, Arguments arguments) {
 		super(simulator, id, arguments);
-		this.setRandom(simulator.getRandom());
+		this.setRandom(simulator.createRandom());
 		this.maxPickDistance = arguments.getArgumentAsDoubleOrSetDefault("maxpickdistance", 0.1);
 
 		this.setStopRobot(!arguments.getFlagIsFalse("stoprobot"));
@@ -51,8 +51,11 @@ public class PreyPickerActuator extends Actuator {
 		setStatus(PickerStatus.DROP);
 	}
 
+	@Override
 	public void reset() {
 		setStatus(PickerStatus.OFF);
+		preyCarried = null;
+		numDrops = 0;
 	}
 
 	@Override
@@ -76,6 +79,7 @@ public class PreyPickerActuator extends Actuator {
 							}
 						}
 					}
+					iterator.release();
 					if (bestPrey != null) {
 						pickUpPrey(robot, bestPrey);
 					} else {
@@ -20,10 +20,16 @@ public class TwoWheelActuator extends Actuator {
 	
 	public TwoWheelActuator(Simulator simulator, int id, Arguments arguments) {
 		super(simulator, id, arguments);
-		this.random = simulator.getRandom();
+		this.random = simulator.createRandom();
 		this.maxSpeed = arguments.getArgumentAsDoubleOrSetDefault("maxspeed", 0.1);
 	}
 
+	@Override
+	public void reset() {
+		leftSpeed = 0;
+		rightSpeed = 0;
+	}
+
 	public void setLeftWheelSpeed(double value) {
 		leftSpeed = (value - 0.5) * maxSpeed * 2.0;
 	}
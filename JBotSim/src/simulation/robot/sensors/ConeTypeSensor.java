@@ -1,6 +1,7 @@
 	package simulation.robot.sensors;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Random;
 
 import mathutils.Vector2d;
@@ -42,6 +43,8 @@ public abstract class ConeTypeSensor extends Sensor {
 	protected Environment env;
 	protected Double time;
 	protected GeometricCalculator geoCalc;
+	//reused by getSensorGeometricInfo, so that reading the sensors does not allocate
+	protected GeometricInfo sensorInfo = new GeometricInfo(0, 0);
 	protected Random random;
 	
 	protected ClosePhysicalObjects closeObstacles;
@@ -73,7 +76,7 @@ public abstract class ConeTypeSensor extends Sensor {
 		this.geoCalc = new GeometricCalculator();//simulator.getGeoCalculator();
 		this.env = simulator.getEnvironment();
 		this.time = simulator.getTime();
-		this.random = simulator.getRandom();
+		this.random = simulator.createRandom();
 		numberOfSensors = (args.getArgumentIsDefined("numbersensors")) ? args.getArgumentAsInt("numbersensors") : 1;
 		range = (args.getArgumentIsDefined("range")) ? args.getArgumentAsDouble("range") : 1;
 		openingAngle = Math.toRadians((args.getArgumentIsDefined("angle")) ? args.getArgumentAsDouble("angle") : 90);
@@ -128,12 +131,12 @@ public abstract class ConeTypeSensor extends Sensor {
 	
 	public void setAllowedObstaclesChecker(AllowedObjectsChecker aoc) {
 		if(aoc != null)
-			this.closeObstacles = new ClosePhysicalObjects(env,range,aoc);
+			this.closeObstacles = new ClosePhysicalObjects(env,range,aoc,robot);
 	}
 	
 	public void setAllowedObjectsChecker(AllowedObjectsChecker aoc) {
 		if(aoc != null)
-			this.closeObjects 	= new ClosePhysicalObjects(env,range,aoc);
+			this.closeObjects 	= new ClosePhysicalObjects(env,range,aoc,robot);
 	}
 	
 	public void setupPositions(Vector2d[] positions) {
@@ -194,6 +197,17 @@ public abstract class ConeTypeSensor extends Sensor {
 		this.cutOff = cutOff;
 	}
 
+	@Override
+	public void reset() {
+		if(closeObjects != null)
+			closeObjects.clear();
+		if(closeObstacles != null)
+			closeObstacles.clear();
+		Arrays.fill(readings, 0);
+		if(obstacleReadings != null)
+			Arrays.fill(obstacleReadings, 0);
+	}
+
 	public void update(double time, ArrayList<PhysicalObject> teleported) {
 		
 		if(closeObjects != null)
@@ -214,6 +228,7 @@ public abstract class ConeTypeSensor extends Sensor {
 					iterator.updateCurrentDistance(this.geoCalc.getDistanceBetween(sensorPosition, source.getObject(), time));
 				}
 			}
+			iterator.release();
 			
 			if(checkObstacles)
 				checkObstacles(time, teleported);
@@ -244,6 +259,7 @@ public abstract class ConeTypeSensor extends Sensor {
 				iterator.updateCurrentDistance(this.geoCalc.getDistanceBetween(sensorPosition, source.getObject(), time));
 			}
 		}
+		iterator.release();
 	}
 
 	public double getSensorReading(int sensorNumber){
@@ -265,23 +281,26 @@ public abstract class ConeTypeSensor extends Sensor {
 		}
 	}
 
+	/**
+	 * @return the angle and distance between the sensor and the source. The
+	 *         same object is returned on every call, so it is only valid until
+	 *         the next call.
+	 */
 	protected GeometricInfo getSensorGeometricInfo(int sensorNumber,
 			PhysicalObjectDistance source) {
 		double orientation=angles[sensorNumber]+robot.getOrientation();
 //		sensorPosition.set(Math.cos(orientation)*robot.getRadius()+robot.getPosition().getX(),
 //				Math.sin(orientation)*robot.getRadius()+robot.getPosition().getY());
 		sensorPosition.set(robot.getPosition().getX(), robot.getPosition().getY());
-		GeometricInfo sensorInfo = geoCalc.getGeometricInfoBetween(sensorPosition, 
-				orientation, source.getObject(), time);
-		return sensorInfo;
+		return geoCalc.getGeometricInfoBetween(sensorPosition, 
+				orientation, source.getObject(), time, sensorInfo);
 	}
 
 	protected GeometricInfo getSensorGeometricInfo(int sensorNumber, Vector2d toPoint){
 		double orientation=angles[sensorNumber]+robot.getOrientation();
 		sensorPosition.set(robot.getPosition().getX(), robot.getPosition().getY());
-		GeometricInfo sensorInfo = geoCalc.getGeometricInfoBetweenPoints(
-				sensorPosition, orientation, toPoint, time);
-		return sensorInfo;
+		return geoCalc.getGeometricInfoBetweenPoints(
+				sensorPosition, orientation, toPoint, time, sensorInfo);
 	}
 	
 	protected abstract double calculateContributionToSensor(int i, PhysicalObjectDistance source);
@@ -47,6 +47,11 @@ public class InNestSensor extends Sensor {
 		return false;
 	}
 	
+	@Override
+	public void reset() {
+		closeObjects = null;
+	}
+
 	@Override
 	public void update(double time, ArrayList<PhysicalObject> teleported) {
 		if(closeObjects != null)
@@ -1,7 +1,6 @@
 package simulation.robot.sensors;
 
 import java.util.ArrayList;
-import java.util.Random;
 
 import simulation.Simulator;
 import simulation.physicalobjects.GeometricInfo;
@@ -26,11 +25,8 @@ public class RobotRGBColorSensor extends ConeTypeSensor {
 
 	public int slices;
 	
-	protected Random random;
-
 	public RobotRGBColorSensor(Simulator simulator, int id, Robot robot, Arguments args) {
 		super(simulator, id, robot, args);
-		this.random = simulator.getRandom();
 		String modeStr = (args.getArgumentIsDefined("mode")) ? args.getArgumentAsString("mode") : "r";
 		
 		this.slices = numberOfSensors;
@@ -64,7 +60,9 @@ public class RobotRGBColorSensor extends ConeTypeSensor {
 	@Override
 	public void update(double time, ArrayList<PhysicalObject> teleported) {
 		
-		readings = new double[slices];
+		for (int j = 0; j < slices; j++) {
+			readings[j] = 0.0;
+		}
 		
 		if (detectRed) {
 			for (int j = 0; j < slices; j++) {
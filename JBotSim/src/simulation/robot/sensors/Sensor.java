@@ -25,6 +25,12 @@ public abstract class Sensor extends SimulatorObject {
 
 	public void update(double time, ArrayList<PhysicalObject> teleported) {}
 
+	/**
+	 * Clears the state kept between updates, as in a newly created sensor.
+	 * Called when the robot is reset (see {@link Robot#reset()}).
+	 */
+	public void reset() {}
+
 	public int getId() {
 		return id;
 	}
@@ -2,7 +2,6 @@ package simulation.robot.sensors;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Random;
 
 import mathutils.Vector2d;
 import net.jafama.FastMath;
@@ -13,6 +12,7 @@ import simulation.physicalobjects.PhysicalObject;
 import simulation.physicalobjects.PhysicalObjectDistance;
 import simulation.physicalobjects.PhysicalObjectType;
 import simulation.physicalobjects.Wall;
+import simulation.physicalobjects.WallIndex;
 import simulation.physicalobjects.checkers.AllowWallChecker;
 import simulation.robot.Robot;
 import simulation.util.Arguments;
@@ -23,12 +23,12 @@ public class WallRaySensor extends ConeTypeSensor {
 	protected int numberOfRays = 7;
 	protected double[][] rayReadings;
 	
-	protected Random random;
 	protected Vector2d[][] cones;
 	protected Vector2d[] sensorPositions;
 	protected double cutoffAngle = 90;
 	
 	protected double closestDistance;
+	protected Vector2d intersection = new Vector2d();
 	
 	public Vector2d[][][] rayPositions;
 	
@@ -36,7 +36,6 @@ public class WallRaySensor extends ConeTypeSensor {
 	
 	public WallRaySensor(Simulator simulator, int id, Robot robot, Arguments args) {
 		super(simulator,id,robot,args);
-		this.random = simulator.getRandom();
 		
 		numberOfRays = args.getArgumentAsIntOrSetDefault("numberofrays", numberOfRays);
 		cutoffAngle = args.getArgumentAsDoubleOrSetDefault("cutoffangle", cutoffAngle);
@@ -123,21 +122,17 @@ public class WallRaySensor extends ConeTypeSensor {
 						rayPositions[sensorNumber][i][1] = cone;
 				}
 				
-				Vector2d intersection = null;
-				intersection = w.intersectsWithLineSegment(sensorPositions[sensorNumber], cone, FastMath.toRadians(cutoffAngle));
-				
-				if(intersection != null) {
+				if(w.intersectsWithLineSegment(sensorPositions[sensorNumber], cone, intersection)) {
 					
 					double distance = intersection.distanceTo(sensorPositions[sensorNumber]);
 					closestDistance = distance < closestDistance ? distance : closestDistance;
-					cone.angle(intersection);
 					
 					if(distance < range) {
 						inputValue = (range-distance)/range;
 						
 						if(inputValue > rayReadings[sensorNumber][i]) {
 							if(seeRays)
-								rayPositions[sensorNumber][i][1] = intersection;
+								rayPositions[sensorNumber][i][1] = new Vector2d(intersection);
 							
 							rayReadings[sensorNumber][i] = Math.max(inputValue, rayReadings[sensorNumber][i]);
 						}
@@ -153,7 +148,9 @@ public class WallRaySensor extends ConeTypeSensor {
 		
 		updateCones();
 		
-		if(closeObjects != null) {
+		WallIndex wallIndex = env.getWallIndex();
+		
+		if(closeObjects != null && wallIndex == null) {
 			closeObjects.update(time, teleported);
 		}
 	
@@ -164,14 +161,19 @@ public class WallRaySensor extends ConeTypeSensor {
 				}
 				readings[i] = 0.0;
 			}
-			CloseObjectIterator iterator = getCloseObjects().iterator();
-			while(iterator.hasNext()){
-				PhysicalObjectDistance source=iterator.next();
-				if (source.getObject().isEnabled()){
-					closestDistance = range*5;
-					calculateSourceContributions(source);
-					iterator.updateCurrentDistance(closestDistance);
+			if(wallIndex != null) {
+				castRays(wallIndex);
+			} else {
+				CloseObjectIterator iterator = getCloseObjects().iterator();
+				while(iterator.hasNext()){
+					PhysicalObjectDistance source=iterator.next();
+					if (source.getObject().isEnabled()){
+						closestDistance = range*5;
+						calculateSourceContributions(source);
+						iterator.updateCurrentDistance(closestDistance);
+					}
 				}
+				iterator.release();
 			}
 			
 			for(int i = 0; i < numberOfSensors; i++){
@@ -186,6 +188,38 @@ public class WallRaySensor extends ConeTypeSensor {
 		}
 	}
 	
+	/**
+	 * Gives the same readings as going through all the close walls, but each
+	 * ray only looks at the walls' edges in the cells it crosses.
+	 */
+	protected void castRays(WallIndex wallIndex) {
+		
+		if(openingAngle <= 0.018) //1degree
+			return;
+		
+		for(int sensorNumber = 0 ; sensorNumber < numberOfSensors ; sensorNumber++) {
+			Vector2d from = sensorPositions[sensorNumber];
+			
+			for(int i = 0 ; i < numberOfRays ; i++) {
+				Vector2d cone = cones[sensorNumber][i];
+				
+				if(seeRays){
+					rayPositions[sensorNumber][i][0] = from;
+					if(rayPositions[sensorNumber][i][1] == null)
+						rayPositions[sensorNumber][i][1] = cone;
+				}
+				
+				double distance = wallIndex.castRay(from.x, from.y, cone.x, cone.y, range, intersection);
+				
+				if(distance < range) {
+					rayReadings[sensorNumber][i] = (range-distance)/range;
+					if(seeRays)
+						rayPositions[sensorNumber][i][1] = new Vector2d(intersection);
+				}
+			}
+		}
+	}
+	
 	@Override
 	protected void calculateSourceContributions(PhysicalObjectDistance source) {
 		
@@ -205,10 +239,8 @@ public class WallRaySensor extends ConeTypeSensor {
 				FastMath.sinQuick(orientation) * robot.getRadius()
 						+ robot.getPosition().getY());
 
-		GeometricInfo sensorInfo = geoCalc.getGeometricInfoBetweenPoints(sensorPosition, 
-				orientation,source, time);
-
-		return sensorInfo;
+		return geoCalc.getGeometricInfoBetweenPoints(sensorPosition, 
+				orientation,source, time, sensorInfo);
 	}
 
 	@Override
@@ -6,13 +6,17 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -60,7 +64,21 @@ public class Arguments implements Serializable {
 	 */
 	protected Vector<String> values = new Vector<String>();
 	
+	/**
+	 * Position of the first argument with each (lower case) name, so that
+	 * arguments are not looked up by going through all of them.
+	 */
+	protected transient HashMap<String, Integer> index;
+	
 	protected String loadedFile = "";
+	
+	/**
+	 * The same argument strings are parsed over and over again, for every
+	 * robot, sensor and actuator of every sample, so the result of parsing
+	 * each string is kept and copied into the new instances.
+	 */
+	private static final int MAX_PARSED_STRINGS = 4096;
+	private static final ConcurrentHashMap<String, ParsedString> PARSED_STRINGS = new ConcurrentHashMap<String, ParsedString>();
 
 	/**
 	 * Initializes a new arguments instance and sets all arguments to
@@ -72,16 +90,78 @@ public class Arguments implements Serializable {
 	 * @throws ClassNotFoundException
 	 */
 	public Arguments(String unparsedArgumentString) {
-		parseString(unparsedArgumentString);
-		removeRepeated();
+		this(unparsedArgumentString, false);
 	}
 	public Arguments(String unparsedArgumentString, boolean translateClasses) {
 		if(translateClasses) {
 			unparsedArgumentString = translateClasses(unparsedArgumentString);
 //			System.out.println(unparsedArgumentString);
 		}
-		parseString(unparsedArgumentString);
-		removeRepeated();
+		load(unparsedArgumentString);
+	}
+	
+	/**
+	 * Creates a copy of the given arguments, which can then be changed
+	 * independently. This is the same as parsing
+	 * other.getCompleteArgumentString(), without going through the string. All
+	 * the arguments of the copy are non-queried.
+	 */
+	public Arguments(Arguments other) {
+		arguments = new Vector<String>(other.arguments);
+		values = new Vector<String>(other.values);
+		for(int i = 0 ; i < arguments.size() ; i++)
+			argumentQueried.add(Boolean.FALSE);
+		buildIndex();
+	}
+	
+	private void load(String unparsedArgumentString) {
+		if(unparsedArgumentString != null) {
+			ParsedString parsed = PARSED_STRINGS.get(unparsedArgumentString);
+			
+			if(parsed == null) {
+				parseString(unparsedArgumentString);
+				removeRepeated();
+				
+				if(PARSED_STRINGS.size() >= MAX_PARSED_STRINGS)
+					PARSED_STRINGS.clear();
+				PARSED_STRINGS.put(unparsedArgumentString, new ParsedString(this));
+			} else {
+				this.unparsedArgumentString = unparsedArgumentString;
+				parsed.copyTo(this);
+			}
+		}
+		buildIndex();
+	}
+	
+	private void buildIndex() {
+		HashMap<String, Integer> newIndex = new HashMap<String, Integer>(arguments.size() * 2);
+		//the first argument with a given name is the one that is used
+		for(int i = arguments.size() - 1 ; i >= 0 ; i--)
+			newIndex.put(getKey(arguments.get(i)), i);
+		index = newIndex;
+	}
+	
+	private static String getKey(String argument) {
+		return argument.toLowerCase(Locale.ENGLISH);
+	}
+	
+	private int indexOf(String argument) {
+		if(index != null) {
+			Integer i = index.get(getKey(argument));
+			return i == null ? -1 : i;
+		}
+		
+		//while parsing
+		for(int i = 0 ; i < arguments.size() ; i++) {
+			if (arguments.elementAt(i).equalsIgnoreCase(argument))
+				return i;
+		}
+		return -1;
+	}
+	
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		buildIndex();
 	}
 	
 	private void removeRepeated() {
@@ -194,7 +274,7 @@ public class Arguments implements Serializable {
 	 * @param unparsedArgumentString
 	 *            the raw, unparsed argument string.
 	 */
-	protected void parseString(String unparsedArgumentString) {
+	private void parseString(String unparsedArgumentString) {
 		
 		if(unparsedArgumentString==null)
 			return;
@@ -244,10 +324,14 @@ public class Arguments implements Serializable {
 		}
 
 		if (currentArgument.length() > 0) {
-			if (!getArgumentIsDefined(currentArgument.toString())) {
+			//getArgumentIsDefined, without calling an overridable method while constructing
+			int index = indexOf(currentArgument.toString());
+			if (index < 0) {
 				argumentQueried.add(new Boolean(false));
 				arguments.add(currentArgument.toString());
 				values.add(currentValue.toString());
+			} else {
+				argumentQueried.setElementAt(Boolean.TRUE, index);
 			}
 		}
 	}
@@ -260,17 +344,9 @@ public class Arguments implements Serializable {
 	 * @return the value of the argument or null if the argument does not exist
 	 */
 	public String getArgumentValue(String argument) {
-		int index = 0;
-		boolean found = false;
+		int index = indexOf(argument);
 
-		while (index < arguments.size() && !found) {
-			if (arguments.elementAt(index).equalsIgnoreCase(argument))
-				found = true;
-			else
-				index++;
-		}
-
-		if (!found)
+		if (index < 0)
 			return null;
 		else {
 			argumentQueried.setElementAt(Boolean.TRUE, index);
@@ -346,21 +422,15 @@ public class Arguments implements Serializable {
 	 */
 	public void setArgument(String argument, String value) {
 		if (getArgumentIsDefined(argument)) {
-			int index = 0;
-			boolean found = false;
-
-			while (index < arguments.size() && !found) {
-				if (arguments.elementAt(index).equalsIgnoreCase(argument))
-					found = true;
-				else
-					index++;
-			}
+			int index = indexOf(argument);
 			arguments.set(index, argument);
 			values.set(index, value);
 		} else {
 			arguments.add(argument);
 			values.add(value);
 			argumentQueried.add(Boolean.FALSE);
+			if (index != null)
+				index.put(getKey(argument), arguments.size() - 1);
 		}
 	}
 
@@ -897,6 +967,28 @@ public class Arguments implements Serializable {
 		if(index >= 0) {
 			arguments.remove(index);
 			values.remove(index);
+			buildIndex();
+		}
+	}
+	
+	/**
+	 * The result of parsing one argument string.
+	 */
+	private static class ParsedString {
+		private String[] arguments;
+		private String[] values;
+		private Boolean[] argumentQueried;
+		
+		public ParsedString(Arguments parsed) {
+			arguments = parsed.arguments.toArray(new String[0]);
+			values = parsed.values.toArray(new String[0]);
+			argumentQueried = parsed.argumentQueried.toArray(new Boolean[0]);
+		}
+		
+		public void copyTo(Arguments args) {
+			args.arguments.addAll(Arrays.asList(arguments));
+			args.values.addAll(Arrays.asList(values));
+			args.argumentQueried.addAll(Arrays.asList(argumentQueried));
 		}
 	}
 	
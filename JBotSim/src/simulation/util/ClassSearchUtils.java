@@ -2,9 +2,9 @@ package simulation.util;
 
 import java.io.File;
 import java.io.IOException;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
 import java.util.StringTokenizer;
 import java.util.concurrent.ConcurrentHashMap;
@@ -12,9 +12,14 @@ import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
 public class ClassSearchUtils {
-    
+
         static private ConcurrentHashMap<String, List<String>> lookupMap = new ConcurrentHashMap<>();
 
+	//the classes in the classpath by simple name, in the order in which the
+	//classpath is searched. It is built once, the first time a class is
+	//searched, instead of walking the classpath again for every class name
+	static private volatile HashMap<String, List<ClassEntry>> index;
+
 	public static String getClassFullName(String className){
 		List<String> names = ClassSearchUtils.searchFullNameInPath(className);
 		if (names.size() == 0) {
@@ -26,17 +31,15 @@ public class ClassSearchUtils {
 		}
 		return names.get(0);
 	}
-	
-	
+
+
 	public static List<String> searchFullNameInPath(String className) {
             List<String> get = lookupMap.get(className);
             if(get != null) {
                 return get;
-            } else {		
+            } else {
 		ArrayList<String> classNames = new ArrayList<String>();
-		ClassLoader classloader = className.getClass().getClassLoader();
-		String classpath = System.getProperty("java.class.path");
-		
+
 		try {
 			Class c = Class.forName(className);
 			//found it! no exception thrown
@@ -44,19 +47,48 @@ public class ClassSearchUtils {
 		} catch(Exception e) {
 			//ignore
 		}
-		
-		try {
-			Method method = classloader.getClass().getMethod("getClassPath",
-					(Class<?>) null);
-			if (method != null) {
-				classpath = (String) method.invoke(classloader, (Object) null);
+
+		String simpleName = className.substring(className.lastIndexOf('.') + 1);
+		List<ClassEntry> entries = getIndex().get(simpleName);
+
+		if (entries != null) {
+			for (ClassEntry entry : entries) {
+				if (entry.inArchive) {
+					if (entry.name.endsWith("." + className)
+							&& !entry.name.equals(className)) {
+						classNames.add(entry.name);
+					}
+				} else if (simpleName.equals(className)) {
+					//classes in directories are matched by file name
+					try {
+						Class.forName(entry.name);
+						classNames.add(entry.name);
+					} catch (ClassNotFoundException e) {
+
+					}
+				}
 			}
-		} catch (Exception e) {
-			// ignore
 		}
-		if (classpath == null) {
-			classpath = System.getProperty("java.class.path");
+                lookupMap.put(className, classNames);
+		return classNames;
+	}
+        }
+
+	private static HashMap<String, List<ClassEntry>> getIndex() {
+		HashMap<String, List<ClassEntry>> result = index;
+		if (result == null) {
+			synchronized (ClassSearchUtils.class) {
+				result = index;
+				if (result == null)
+					index = result = scanClasspath();
+			}
 		}
+		return result;
+	}
+
+	private static HashMap<String, List<ClassEntry>> scanClasspath() {
+		HashMap<String, List<ClassEntry>> classes = new HashMap<String, List<ClassEntry>>();
+		String classpath = System.getProperty("java.class.path");
 
 		StringTokenizer tokenizer = new StringTokenizer(classpath,
 				File.pathSeparator);
@@ -67,19 +99,26 @@ public class ClassSearchUtils {
 			token = tokenizer.nextToken();
 			dir = new File(token);
 			if (dir.isDirectory()) {
-				lookForNamesInDirectory(className, "", dir, classNames);
+				lookForNamesInDirectory("", dir, classes);
 			}
 			else if (dir.isFile()) {
 				name = dir.getName().toLowerCase();
 				if (name.endsWith(".zip") || name.endsWith(".jar")) {
-					lookForNamesInArchive(className, dir, classNames);
+					lookForNamesInArchive(dir, classes);
 				}
 			}
 		}
-                lookupMap.put(className, classNames);
-		return classNames;
+		return classes;
+	}
+
+	private static void add(HashMap<String, List<ClassEntry>> classes, String simpleName, String name, boolean inArchive) {
+		List<ClassEntry> entries = classes.get(simpleName);
+		if (entries == null) {
+			entries = new ArrayList<ClassEntry>(1);
+			classes.put(simpleName, entries);
+		}
+		entries.add(new ClassEntry(name, inArchive));
 	}
-        }
 
 	/**
 	 * @param name
@@ -88,40 +127,37 @@ public class ClassSearchUtils {
 	 * @param dir
 	 *            Directory to be searched for classes.
 	 */
-	private static void lookForNamesInDirectory(String className, String name,
-			File dir, ArrayList<String> classNames) {
+	private static void lookForNamesInDirectory(String name,
+			File dir, HashMap<String, List<ClassEntry>> classes) {
 		File[] files = dir.listFiles();
 
+		if (files == null)
+			return;
+
 		String fileName;
 		final int size = files.length;
 		for (int i = 0; i < size; i++) {
 			File file = files[i];
 			fileName = file.getName();
-			
-			if (file.isDirectory()) {
-				lookForNamesInDirectory(className, name + fileName + ".", file,
-						classNames);
-			}else{
-				try {
-					if(fileName.equals(className+".class")) {
-						Class.forName(name + className);
-						classNames.add(name + className);
-					}
-				} catch (ClassNotFoundException e) {
 
-				}
+			if (file.isDirectory()) {
+				lookForNamesInDirectory(name + fileName + ".", file,
+						classes);
+			}else if(fileName.endsWith(".class")) {
+				String className = fileName.substring(0, fileName.length() - 6);
+				add(classes, className, name + className, false);
 			}
 		}
 	}
 
 	/**
 	 * Search archive files for required resource.
-	 * 
+	 *
 	 * @param archive
 	 *            Jar or zip to be searched for classes or other resources.
 	 */
-	private static void lookForNamesInArchive(String className, File archive,
-			ArrayList<String> classNames) {
+	private static void lookForNamesInArchive(File archive,
+			HashMap<String, List<ClassEntry>> classes) {
 		JarFile jarFile = null;
 		try {
 			jarFile = new JarFile(archive);
@@ -140,13 +176,24 @@ public class ClassSearchUtils {
 					entryName = entryName.substring(0, entryName.length() - 6);
 					entryName = entryName.replace('/', '.');
 
-					if (entryName.endsWith("." + className)
-							&& !entryName.equals(className)) {
-						classNames.add(entryName);
-					}
+					add(classes, entryName.substring(entryName.lastIndexOf('.') + 1), entryName, true);
 
 				} catch (Throwable e) {}
 			}
 		}
+		try {
+			jarFile.close();
+		} catch (IOException e) {}
+	}
+
+	private static class ClassEntry {
+
+		private final String name;
+		private final boolean inArchive;
+
+		public ClassEntry(String name, boolean inArchive) {
+			this.name = name;
+			this.inArchive = inArchive;
+		}
 	}
-}
\ No newline at end of file
+}
@@ -1,14 +1,23 @@
 package simulation.util;
 
 import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Factory implements Serializable{
 	private static final long serialVersionUID = -5792645805164851756L;
 	public final static Map<Class<?>, Class<?>> map = initializeMap();
 
+	//the constructor chosen for each class name and types of the arguments,
+	//taking an Object[] with the arguments and returning the new instance
+	private static final ConcurrentHashMap<Signature, MethodHandle> constructors = new ConcurrentHashMap<Signature, MethodHandle>();
+
 	private static Map<Class<?>, Class<?>> initializeMap() {
 		Map<Class<?>, Class<?>> map = new HashMap<Class<?>, Class<?>>();
 		map.put(Boolean.class, boolean.class);
@@ -24,43 +33,84 @@ public class Factory implements Serializable{
 	}
 
 	public static Object getInstance(String className, Object... objects) {
-//		System.out.println("Build by reflection class "+ className); 
-//		String s = "";
+		MethodHandle constructor = null;
 		try {
-			Constructor<?>[] constructors = Class.forName(className).getDeclaredConstructors();
-			for (Constructor<?> constructor : constructors) {
-				boolean found = true;
-				Class<?>[] params = constructor.getParameterTypes();
-				if(params.length == objects.length) {
-					found = true;
-					for(int i = 0 ; i < objects.length; i++) {
-						@SuppressWarnings("rawtypes")
-						Class c = objects[i].getClass();
-						if(params[i].isPrimitive())
-							c = map.get(objects[i].getClass());
-						
-//						s+=params[i].getName()+"=="+c.getName()+"\n";
-						
-						if(!params[i].isAssignableFrom(c)) {
-							found = false;
-							System.out.println(className +" not assignable with "+params[i].getCanonicalName());
-							break;
-						}
-					}
-//					s+="\n_____\n";
-					if(found) {
-//						System.out.println("found: "+s);
-						return constructor.newInstance(objects);
-					}
-				}
+			Signature signature = new Signature(className, objects);
+			constructor = constructors.get(signature);
+
+			if(constructor == null) {
+				constructor = findConstructor(className, signature.types);
+				if(constructor != null)
+					constructors.put(signature, constructor);
 			}
-//			System.out.println(s);
-			
-//			System.out.println(className+" ## "+Class.forName(className).getName());
-		} catch (Exception e) {
+
+			if(constructor != null)
+				return (Object)constructor.invokeExact(objects);
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable e) {
 			System.out.println("Problem with class "+className);
 			e.printStackTrace();
 		}
 		throw new RuntimeException("Unknown classname: " + className);
 	}
-}
\ No newline at end of file
+
+	/**
+	 * @return the first declared constructor of the class whose parameters
+	 *         accept arguments of the given types, or null if there is none
+	 */
+	private static MethodHandle findConstructor(String className, Class<?>[] types) throws Exception {
+		Constructor<?>[] constructors = Class.forName(className).getDeclaredConstructors();
+		for (Constructor<?> constructor : constructors) {
+			boolean found = true;
+			Class<?>[] params = constructor.getParameterTypes();
+			if(params.length == types.length) {
+				for(int i = 0 ; i < types.length; i++) {
+					Class<?> c = types[i];
+					if(params[i].isPrimitive())
+						c = map.get(types[i]);
+
+					if(c == null || !params[i].isAssignableFrom(c)) {
+						found = false;
+						System.out.println(className +" not assignable with "+params[i].getCanonicalName());
+						break;
+					}
+				}
+				if(found) {
+					return MethodHandles.lookup().unreflectConstructor(constructor)
+							.asSpreader(Object[].class, params.length)
+							.asType(MethodType.methodType(Object.class, Object[].class));
+				}
+			}
+		}
+		return null;
+	}
+
+	private static class Signature {
+
+		private final String className;
+		private final Class<?>[] types;
+		private final int hash;
+
+		public Signature(String className, Object[] objects) {
+			this.className = className;
+			this.types = new Class<?>[objects.length];
+			for(int i = 0 ; i < objects.length ; i++)
+				types[i] = objects[i].getClass();
+			this.hash = 31 * className.hashCode() + Arrays.hashCode(types);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof Signature))
+				return false;
+			Signature other = (Signature)obj;
+			return className.equals(other.className) && Arrays.equals(types, other.types);
+		}
+	}
+}
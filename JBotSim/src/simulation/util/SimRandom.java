@@ -3,16 +3,62 @@ package simulation.util;
 import java.io.Serializable;
 import java.util.Random;
 
+/**
+ * SplitMix64 generator with the {@link Random} interface. Unlike
+ * {@link Random}, the state is not updated atomically, so each instance must
+ * only be used by one thread at a time.
+ *
+ * {@link #getStreamSeed(long, long)} derives the seeds of independent streams
+ * from a single simulation seed, which gives every robot, sensor and actuator
+ * its own generator. The results then no longer depend on the order in which
+ * the different components draw their random numbers.
+ */
 public class SimRandom extends Random implements Serializable {
 
-//	public SimRandom(long seed) {
-//		super(seed);
-//		if (instance != null) {
-//			instance.setSeed(seed);
-//		}
-//	}
-
-//	public static Random getInstance() {
-//		return instance;
-//	}
-}
\ No newline at end of file
+	private static final long serialVersionUID = 4873203592740373627L;
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private long state;
+
+	public SimRandom(long seed) {
+		super(seed);
+	}
+
+	@Override
+	public synchronized void setSeed(long seed) {
+		super.setSeed(seed);
+		state = seed;
+	}
+
+	@Override
+	protected int next(int bits) {
+		state += GOLDEN_GAMMA;
+		return (int)(mix64(state) >>> (64 - bits));
+	}
+
+	@Override
+	public long nextLong() {
+		state += GOLDEN_GAMMA;
+		return mix64(state);
+	}
+
+	@Override
+	public double nextDouble() {
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+
+	/**
+	 * @return the seed of the stream with the given number. Different streams
+	 *         of the same seed, and the same stream of different seeds, are
+	 *         statistically independent.
+	 */
+	public static long getStreamSeed(long seed, long stream) {
+		return mix64(mix64(seed) + (stream + 1) * GOLDEN_GAMMA);
+	}
+
+	private static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,48 @@
+package tests;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the time and the memory allocated by the thread that created it,
+ * between calls to {@link #start()} and {@link #stop()}, for the benchmarks.
+ */
+public class AllocationMeter {
+
+	private final com.sun.management.ThreadMXBean bean =
+			(com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+	private final long thread = Thread.currentThread().threadId();
+	private long bytes;
+	private long time;
+
+	public void start() {
+		bytes = bean.getThreadAllocatedBytes(thread);
+		time = System.nanoTime();
+	}
+
+	public void stop() {
+		time = System.nanoTime() - time;
+		bytes = bean.getThreadAllocatedBytes(thread) - bytes;
+	}
+
+	/**
+	 * The bytes allocated by the last measurement.
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * The nanoseconds taken by the last measurement.
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * Fails, saying what allocated and how much, if the bytes are not zero.
+	 */
+	public static void checkNoAllocation(String what, long bytes) {
+		if(bytes != 0)
+			throw new IllegalStateException(what + " allocated " + bytes + " bytes, but it must not allocate once warmed up");
+	}
+}
@@ -0,0 +1,297 @@
+package tests;
+
+import java.util.Random;
+import java.util.Vector;
+
+import net.jafama.FastMath;
+import simulation.util.Arguments;
+import evolutionaryrobotics.neuralnetworks.CTRNNMultilayer;
+import evolutionaryrobotics.neuralnetworks.ForwardPass;
+import evolutionaryrobotics.neuralnetworks.MulitlayerPerceptron;
+import evolutionaryrobotics.neuralnetworks.NeuralNetwork;
+import evolutionaryrobotics.neuralnetworks.inputs.NNInput;
+import evolutionaryrobotics.neuralnetworks.outputs.NNOutput;
+
+/**
+ * Compares the forward pass of {@link CTRNNMultilayer} and
+ * {@link MulitlayerPerceptron} with the original implementations (kept here
+ * as subclasses), for networks with 20 inputs, 4 outputs and 10 to 50 hidden
+ * neurons. Both versions are fed the same random inputs for many steps, the
+ * largest difference between their outputs is reported, and then the time
+ * per step of each is measured.
+ *
+ * The program fails if any output differs by more than {@link #MAX_ERROR}.
+ * When the weighted sums use the Vector API (the JVM was started with
+ * --add-modules jdk.incubator.vector), they are first checked against the
+ * scalar sums, within the rounding error bound of a sum of n products, and
+ * the outputs of the networks are allowed to differ by
+ * {@link #MAX_VECTOR_ERROR}.
+ */
+public class NeuralNetworkBenchmark {
+
+	private static final int INPUTS = 20;
+	private static final int OUTPUTS = 4;
+	private static final int[] HIDDEN = {10, 25, 50};
+	private static final int CHECK_STEPS = 10000;
+	private static final int STEPS = 200000;
+	private static final double MAX_ERROR = 1e-12;
+	private static final double MAX_VECTOR_ERROR = 1e-9;
+	private static final int DOT_CHECKS = 100000;
+
+	public static void main(String[] args) {
+		System.out.println("vectorized=" + ForwardPass.isVectorized());
+		if(ForwardPass.isVectorized())
+			checkDot(new Random(1));
+
+		for(int hidden : HIDDEN) {
+			run("CTRNNMultilayer", new ReferenceCTRNN(hidden), new CTRNNMultilayer(createInputs(), createOutputs(), getArguments(hidden)));
+			run("MulitlayerPerceptron", new ReferencePerceptron(hidden), new MulitlayerPerceptron(createInputs(), createOutputs(), getArguments(hidden)));
+		}
+	}
+
+	/**
+	 * Checks the weighted sums against the scalar ones, for random weights
+	 * and values and up to 64 products. Each product and addition rounds by
+	 * at most half an ulp, so a sum of n products is off by less than
+	 * (n+1)*ulp(1) times the sum of the absolute values of its terms.
+	 */
+	private static void checkDot(Random random) {
+		double[] weights = new double[128];
+		double[] values = new double[64];
+		double largest = 0;
+
+		for(int check = 0 ; check < DOT_CHECKS ; check++) {
+			int n = 1 + random.nextInt(values.length);
+			int offset = random.nextInt(weights.length - n);
+			double sum = random.nextDouble() * 20 - 10;
+			double magnitude = Math.abs(sum);
+
+			for(int i = 0 ; i < weights.length ; i++)
+				weights[i] = random.nextDouble() * 20 - 10;
+			for(int i = 0 ; i < n ; i++) {
+				values[i] = random.nextDouble() * 2 - 1;
+				magnitude+= Math.abs(weights[offset + i] * values[i]);
+			}
+
+			double error = Math.abs(ForwardPass.dot(sum, weights, offset, values, n) - ForwardPass.scalarDot(sum, weights, offset, values, n));
+			double bound = (n + 1) * Math.ulp(1.0) * magnitude;
+			if(error > bound)
+				throw new IllegalStateException("The vectorized sum of " + n + " products is off by " + error
+						+ ", more than the bound of " + bound);
+			largest = Math.max(largest, error / bound);
+		}
+
+		System.out.printf("vectorized sums: largest error %.3f of the bound%n", largest);
+	}
+
+	private static void run(String name, NeuralNetwork reference, NeuralNetwork network) {
+		Random random = new Random(1);
+		double[] weights = new double[network.getGenomeLength()];
+		for(int i = 0 ; i < weights.length ; i++)
+			weights[i] = random.nextDouble() * 20 - 10;
+
+		reference.setWeights(weights);
+		network.setWeights(weights);
+
+		double error = 0;
+		for(int step = 0 ; step < CHECK_STEPS ; step++) {
+			setInputs(reference, random);
+			setInputs(network, ((RandomInput)reference.getInputs().get(0)).values);
+			reference.controlStep(step);
+			network.controlStep(step);
+
+			double[] a = reference.getOutputNeuronStates();
+			double[] b = network.getOutputNeuronStates();
+			for(int i = 0 ; i < a.length ; i++)
+				error = Math.max(error, Math.abs(a[i] - b[i]));
+		}
+
+		long referenceTime = time(reference, random);
+		long networkTime = time(network, random);
+
+		System.out.printf("%s hidden=%d max error=%g original=%.1fns/step new=%.1fns/step%n", name,
+				((HiddenNodes)reference).getHiddenNodes(), error, (double)referenceTime / STEPS, (double)networkTime / STEPS);
+
+		double maxError = ForwardPass.isVectorized() ? MAX_VECTOR_ERROR : MAX_ERROR;
+		if(error > maxError)
+			throw new IllegalStateException(name + " with " + ((HiddenNodes)reference).getHiddenNodes()
+					+ " hidden neurons differs from the original by " + error + ", more than " + maxError);
+	}
+
+	private static long time(NeuralNetwork network, Random random) {
+		setInputs(network, random);
+		for(int step = 0 ; step < STEPS ; step++)
+			network.controlStep(step);
+
+		long time = System.nanoTime();
+		for(int step = 0 ; step < STEPS ; step++)
+			network.controlStep(step);
+		return System.nanoTime() - time;
+	}
+
+	private static void setInputs(NeuralNetwork network, Random random) {
+		double[] values = ((RandomInput)network.getInputs().get(0)).values;
+		for(int i = 0 ; i < values.length ; i++)
+			values[i] = random.nextDouble();
+	}
+
+	private static void setInputs(NeuralNetwork network, double[] values) {
+		System.arraycopy(values, 0, ((RandomInput)network.getInputs().get(0)).values, 0, values.length);
+	}
+
+	private static Vector<NNInput> createInputs() {
+		Vector<NNInput> inputs = new Vector<NNInput>();
+		inputs.add(new RandomInput());
+		return inputs;
+	}
+
+	private static Vector<NNOutput> createOutputs() {
+		Vector<NNOutput> outputs = new Vector<NNOutput>();
+		outputs.add(new IgnoredOutput());
+		return outputs;
+	}
+
+	private static Arguments getArguments(int hidden) {
+		return new Arguments("hiddennodes=" + hidden);
+	}
+
+	private static class RandomInput extends NNInput {
+
+		private static final long serialVersionUID = 2624018410948224926L;
+
+		private double[] values = new double[INPUTS];
+
+		public RandomInput() {
+			super(null);
+		}
+
+		@Override
+		public int getNumberOfInputValues() {
+			return values.length;
+		}
+
+		@Override
+		public double getValue(int index) {
+			return values[index];
+		}
+	}
+
+	private static class IgnoredOutput extends NNOutput {
+		private static final long serialVersionUID = -1462765272899165890L;
+
+		public IgnoredOutput() {
+			super(null, null);
+		}
+
+		@Override
+		public int getNumberOfOutputValues() {
+			return OUTPUTS;
+		}
+
+		@Override
+		public void setValue(int index, double value) {
+		}
+
+		@Override
+		public void apply() {
+		}
+	}
+
+	private interface HiddenNodes {
+		int getHiddenNodes();
+	}
+
+	/**
+	 * The original forward pass of {@link CTRNNMultilayer}.
+	 */
+	private static class ReferenceCTRNN extends CTRNNMultilayer implements HiddenNodes {
+		private static final long serialVersionUID = 2359908457688617423L;
+
+		public ReferenceCTRNN(int hidden) {
+			super(createInputs(), createOutputs(), getArguments(hidden));
+		}
+
+		@Override
+		protected double[] propagateInputs(double[] inputValues) {
+			for (int i = 0; i < numberOfHiddenNodes; i++) {
+				hiddenDeltaStates[i] = -hiddenStates[i];
+
+				for (int j = 0; j < numberOfInputNeurons; j++)
+					hiddenDeltaStates[i] += inputToHiddenWeights[i * numberOfInputNeurons + j] * inputValues[j];
+			}
+
+			for (int i = 0; i < numberOfHiddenNodes; i++) {
+				for (int j = 0; j < numberOfHiddenNodes; j++) {
+					double z = 1.0 / (FastMath.expQuick(-(hiddenStates[j] + hiddenBiases[j])) + 1.0);
+					hiddenDeltaStates[i] += hiddenToHiddenWeights[i * numberOfHiddenNodes + j] * z;
+				}
+			}
+
+			for (int i = 0; i < numberOfHiddenNodes; i++)
+				hiddenStates[i] += hiddenDeltaStates[i] * timeStep / hiddenTaus[i];
+
+			for (int i = 0; i < numberOfOutputNeurons; i++) {
+				for (int j = 0; j < numberOfHiddenNodes; j++) {
+					double z = ((1.0) / (FastMath.expQuick(-(hiddenStates[j] + hiddenBiases[j])) + 1.0));
+					outputNeuronStates[i] += hiddenToOutputWeights[i * numberOfHiddenNodes + j] * z;
+				}
+				outputNeuronStates[i] = ((1.0) / (FastMath.expQuick(-(outputNeuronStates[i] + outputBiases[i])) + 1.0));
+			}
+
+			return outputNeuronStates;
+		}
+
+		@Override
+		public int getHiddenNodes() {
+			return numberOfHiddenNodes;
+		}
+	}
+
+	/**
+	 * The original forward pass of {@link MulitlayerPerceptron}.
+	 */
+	private static class ReferencePerceptron extends MulitlayerPerceptron implements HiddenNodes {
+		private static final long serialVersionUID = -1472741338073317354L;
+
+		private int hidden;
+		private double[] hiddenStates;
+
+		public ReferencePerceptron(int hidden) {
+			super(createInputs(), createOutputs(), getArguments(hidden));
+			this.hidden = hidden;
+			this.hiddenStates = new double[hidden];
+		}
+
+		@Override
+		protected double[] propagateInputs(double[] inputValues) {
+			for(int i = 0; i < hidden; i++) {
+				hiddenStates[i] = weights[i * (numberOfInputNeurons + 1)];
+
+				for(int j = 0; j < numberOfInputNeurons; j++) {
+					int ji = i * (numberOfInputNeurons + 1) + (j + 1);
+					hiddenStates[i] += weights[ji] * inputValues[j];
+				}
+				hiddenStates[i] = 1.0/( 1 + FastMath.expQuick(-hiddenStates[i]));
+			}
+
+			int unBase = hidden * (numberOfInputNeurons + 1);
+
+			for( int i = 0; i < numberOfOutputNeurons; i++ ) {
+				outputNeuronStates[i] = weights[unBase + i * (hidden + 1)];
+
+				for( int j = 0; j < hidden; j++) {
+					int ji = unBase + i*(hidden+1) + (j + 1);
+					outputNeuronStates[i] += weights[ji] * hiddenStates[j];
+				}
+				outputNeuronStates[i] = 1.0/( 1 + FastMath.expQuick( - outputNeuronStates[i]) );
+			}
+
+			return outputNeuronStates;
+		}
+
+		@Override
+		public int getHiddenNodes() {
+			return hidden;
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package tests;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import mathutils.MathUtils;
+import mathutils.Vector2d;
+import net.jafama.FastMath;
+import simulation.Simulator;
+import simulation.environment.Environment;
+import simulation.physicalobjects.Wall;
+import simulation.robot.Robot;
+import simulation.robot.RobotStates;
+import simulation.util.Arguments;
+
+/**
+ * Measures the time and the memory allocated per simulation step by the
+ * robots' kinematics and the collision handling, for increasingly large
+ * swarms inside a closed arena with pillars. The density of robots is kept
+ * constant and the spatial index is used, so that the cost is dominated by
+ * the robots themselves rather than by the close object lists.
+ *
+ * The differential drive kinematics of the {@link RobotStates} store is also
+ * compared with the same kinematics over one object per robot, as the robots
+ * kept their pose before the store. Both must end in the same poses, and the
+ * store must not allocate.
+ */
+public class RobotStepBenchmark {
+
+	private static final int[] ROBOTS = {100, 1000, 10000};
+	private static final int WARMUP_STEPS = 50;
+	private static final int STEPS = 100;
+	private static final double WALL_SIZE = 0.1;
+	private static final int KINEMATICS_STEPS = 1000;
+	private static final double TIME_DELTA = 0.1;
+	private static final double DISTANCE_BETWEEN_WHEELS = 0.1;
+
+	public static void main(String[] args) {
+		for(int robots : ROBOTS)
+			run(robots);
+		for(int robots : ROBOTS)
+			compareKinematics(robots);
+	}
+
+	private static void run(int numberOfRobots) {
+		double distance = Math.sqrt(numberOfRobots) * 0.3;
+		Simulator simulator = new Simulator(1, getArguments(numberOfRobots, distance));
+		simulator.addRobots(Robot.getRobots(simulator, simulator.getArguments().get("--robots")));
+		addWalls(simulator, distance);
+		simulator.setupEnvironment();
+
+		for(int i = 0 ; i < WARMUP_STEPS ; i++)
+			simulator.performOneSimulationStep((double)i);
+
+		AllocationMeter meter = new AllocationMeter();
+		meter.start();
+		for(int i = WARMUP_STEPS ; i < WARMUP_STEPS + STEPS ; i++)
+			simulator.performOneSimulationStep((double)i);
+		meter.stop();
+
+		System.out.printf("robots=%d step=%.3fms allocated=%dB/step (%.1fB/robot)%n", numberOfRobots,
+				meter.getTime() / 1e6 / STEPS, meter.getBytes() / STEPS, (double)meter.getBytes() / STEPS / numberOfRobots);
+	}
+
+	private static void compareKinematics(int numberOfRobots) {
+		Random random = new Random(numberOfRobots);
+		Pose[] poses = new Pose[numberOfRobots];
+		RobotStates states = new RobotStates(numberOfRobots);
+
+		for(int i = 0 ; i < numberOfRobots ; i++) {
+			Pose pose = new Pose();
+			pose.position.set(random.nextDouble() * 10, random.nextDouble() * 10);
+			pose.orientation = random.nextDouble() * Math.PI * 2;
+			pose.leftWheelSpeed = random.nextDouble() * 0.2 - 0.1;
+			pose.rightWheelSpeed = random.nextDouble() * 0.2 - 0.1;
+			poses[i] = pose;
+
+			int index = states.add(new Vector2d(pose.position), pose.orientation);
+			states.setWheelSpeed(index, pose.leftWheelSpeed, pose.rightWheelSpeed);
+		}
+
+		AllocationMeter meter = new AllocationMeter();
+		long objectTime = 0, storeTime = 0, storeBytes = 0;
+
+		for(int round = 0 ; round < 2 ; round++) {
+			meter.start();
+			for(int step = 0 ; step < KINEMATICS_STEPS ; step++) {
+				for(int i = 0 ; i < poses.length ; i++)
+					poses[i].move(TIME_DELTA);
+			}
+			meter.stop();
+			objectTime = meter.getTime();
+
+			meter.start();
+			for(int step = 0 ; step < KINEMATICS_STEPS ; step++) {
+				for(int i = 0 ; i < states.size() ; i++)
+					states.move(i, TIME_DELTA, DISTANCE_BETWEEN_WHEELS);
+			}
+			meter.stop();
+			storeTime = meter.getTime();
+			storeBytes = meter.getBytes();
+		}
+
+		for(int i = 0 ; i < numberOfRobots ; i++) {
+			if(poses[i].position.x != states.getX(i) || poses[i].position.y != states.getY(i)
+					|| poses[i].orientation != states.getOrientation(i))
+				throw new IllegalStateException("The store moved robot " + i + " of " + numberOfRobots
+						+ " to a different pose than the objects");
+		}
+
+		int moves = KINEMATICS_STEPS * numberOfRobots;
+		System.out.printf("kinematics robots=%d objects=%.2fns/robot store=%.2fns/robot allocated=%dB%n",
+				numberOfRobots, (double)objectTime / moves, (double)storeTime / moves, storeBytes);
+		AllocationMeter.checkNoAllocation("The kinematics of the store", storeBytes);
+	}
+
+	private static void addWalls(Simulator simulator, double distance) {
+		Environment environment = simulator.getEnvironment();
+		double size = distance * 2 + WALL_SIZE;
+
+		environment.addStaticObject(new Wall(simulator, 0, distance + WALL_SIZE, size, WALL_SIZE));
+		environment.addStaticObject(new Wall(simulator, 0, -distance, size, WALL_SIZE));
+		environment.addStaticObject(new Wall(simulator, distance + WALL_SIZE, 0, WALL_SIZE, size));
+		environment.addStaticObject(new Wall(simulator, -distance, 0, WALL_SIZE, size));
+
+		//one pillar every 2x2 meters
+		for(double x = -distance + 1 ; x < distance ; x+= 2) {
+			for(double y = -distance + 1 ; y < distance ; y+= 2)
+				environment.addStaticObject(new Wall(simulator, x, y, WALL_SIZE, WALL_SIZE));
+		}
+	}
+
+	private static HashMap<String, Arguments> getArguments(int numberOfRobots, double distance) {
+		HashMap<String, Arguments> arguments = new HashMap<String, Arguments>();
+
+		arguments.put("--environment", new Arguments("classname=simulation.environment.EmptyEnvironment,"
+				+ "distance=" + distance + ",spatialindex=1"));
+		arguments.put("--robots", new Arguments("classname=simulation.robot.DifferentialDriveRobot,"
+				+ "numberofrobots=" + numberOfRobots + ",sensors=(RobotSensor_1=(classname=simulation.robot.sensors.RobotSensor,"
+				+ "range=0.5,numbersensors=4,id=1)),actuators=(TwoWheelActuator_1=(classname=simulation.robot.actuators.TwoWheelActuator,id=1))"));
+		return arguments;
+	}
+
+	/**
+	 * The pose and wheel speeds of a robot in its own object, moved as
+	 * DifferentialDriveRobot did before the store.
+	 */
+	private static class Pose {
+		private Vector2d position = new Vector2d();
+		private double orientation;
+		private double leftWheelSpeed;
+		private double rightWheelSpeed;
+		private double distanceBetweenWheels = DISTANCE_BETWEEN_WHEELS;
+
+		private void move(double timeDelta) {
+			position.set(
+					position.getX() + timeDelta * (leftWheelSpeed + rightWheelSpeed) / 2.0 * FastMath.cosQuick(orientation),
+					position.getY() + timeDelta * (leftWheelSpeed + rightWheelSpeed) / 2.0 * FastMath.sinQuick(orientation));
+
+			orientation += timeDelta * 0.5/(distanceBetweenWheels/2.0) * (rightWheelSpeed - leftWheelSpeed);
+
+			orientation = MathUtils.modPI2(orientation);
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import simulation.Simulator;
+import simulation.environment.Environment;
+import simulation.physicalobjects.PhysicalObject;
+import simulation.physicalobjects.Wall;
+import simulation.robot.Robot;
+import simulation.robot.sensors.Sensor;
+import simulation.util.Arguments;
+
+/**
+ * Checks that updating the built-in cone and ray sensors does not allocate
+ * memory once the simulation is warmed up. The robots are spread over a walled
+ * arena with prey and a nest, and the bytes allocated by the updates of each
+ * type of sensor are measured with the thread allocation counter.
+ *
+ * With the spatial index (--environment spatialindex=1) the updates must not
+ * allocate at all, and the program fails naming the sensor if any does. The
+ * close/far object lists are backed by linked lists, which allocate nodes
+ * and iterators, so their numbers are only reported.
+ */
+public class SensorAllocationBenchmark {
+
+	private static final int ROBOTS = 20;
+	private static final int WARMUP_STEPS = 2000;
+	private static final int STEPS = 200;
+
+	private static final String[] SENSORS = {
+		"simulation.robot.sensors.LightTypeSensor",
+		"simulation.robot.sensors.PreySensor",
+		"simulation.robot.sensors.RobotSensor",
+		"simulation.robot.sensors.RobotRGBColorSensor",
+		"simulation.robot.sensors.WallRaySensor",
+		"simulation.robot.sensors.NestSensor"
+	};
+
+	public static void main(String[] args) {
+		AllocationMeter meter = new AllocationMeter();
+
+		for(int index = 0 ; index <= 1 ; index++) {
+			Simulator simulator = new Simulator(1, getArguments(index == 1));
+			simulator.addRobots(Robot.getRobots(simulator, simulator.getArguments().get("--robots")));
+			addWalls(simulator);
+			simulator.setupEnvironment();
+
+			double time = 0;
+			for(int i = 0 ; i < WARMUP_STEPS ; i++) {
+				simulator.performOneSimulationStep(time++);
+				//also warm up the measuring loop
+				measure(simulator, SENSORS[i % SENSORS.length], time, meter);
+			}
+
+			for(String sensor : SENSORS) {
+				long bytes = 0;
+				for(int i = 0 ; i < STEPS ; i++) {
+					simulator.performOneSimulationStep(time++);
+					bytes+= measure(simulator, sensor, time, meter);
+				}
+				System.out.printf("spatialindex=%d %s: %dB/step%n", index, sensor, bytes / STEPS);
+				if(index == 1)
+					AllocationMeter.checkNoAllocation("Updating " + sensor + " with the spatial index", bytes);
+			}
+		}
+	}
+
+	private static long measure(Simulator simulator, String sensorClass, double time, AllocationMeter meter) {
+		ArrayList<PhysicalObject> teleported = simulator.getEnvironment().getTeleported();
+		ArrayList<Robot> robots = simulator.getRobots();
+
+		meter.start();
+		for(int r = 0 ; r < robots.size() ; r++) {
+			ArrayList<Sensor> sensors = robots.get(r).getSensors();
+			for(int s = 0 ; s < sensors.size() ; s++) {
+				Sensor sensor = sensors.get(s);
+				if(sensor.getClass().getName().equals(sensorClass))
+					sensor.update(time, teleported);
+			}
+		}
+		meter.stop();
+		return meter.getBytes();
+	}
+
+	private static void addWalls(Simulator simulator) {
+		Environment environment = simulator.getEnvironment();
+		environment.addStaticObject(new Wall(simulator, 0, 2, 4, 0.1));
+		environment.addStaticObject(new Wall(simulator, 0, -2, 4, 0.1));
+		environment.addStaticObject(new Wall(simulator, 2, 0, 0.1, 4));
+		environment.addStaticObject(new Wall(simulator, -2, 0, 0.1, 4));
+	}
+
+	private static HashMap<String, Arguments> getArguments(boolean spatialIndex) {
+		HashMap<String, Arguments> arguments = new HashMap<String, Arguments>();
+
+		String sensors = "";
+		for(int i = 0 ; i < SENSORS.length ; i++) {
+			if(i > 0)
+				sensors+= ",";
+			sensors+= "Sensor_" + (i + 1) + "=(classname=" + SENSORS[i] + ",range=1,numbersensors=4,id=" + (i + 1) + ")";
+		}
+
+		arguments.put("--environment", new Arguments("classname=simulation.environment.RoundForageEnvironment,"
+				+ "numberofpreys=20,forageradius=1.5,spatialindex=" + (spatialIndex ? 1 : 0)));
+		arguments.put("--robots", new Arguments("classname=simulation.robot.DifferentialDriveRobot,"
+				+ "numberofrobots=" + ROBOTS + ",sensors=(" + sensors + "),"
+				+ "actuators=(TwoWheelActuator_1=(classname=simulation.robot.actuators.TwoWheelActuator,id=1))"));
+		return arguments;
+	}
+}
@@ -0,0 +1,59 @@
+package tests;
+
+import java.util.HashMap;
+
+import simulation.Simulator;
+import simulation.util.Arguments;
+
+/**
+ * Compares the simulation step time of the close/far object lists with the
+ * uniform grid (--environment spatialindex=1) for increasingly large swarms.
+ * The density of robots is kept constant. The lists keep one entry per pair
+ * of objects, so they are only measured up to 2000 robots.
+ */
+public class SpatialIndexBenchmark {
+
+	private static final int[] ROBOTS = {100, 1000, 2000, 10000};
+	private static final int MAX_ROBOTS_WITHOUT_INDEX = 2000;
+	private static final int WARMUP_STEPS = 20;
+	private static final int STEPS = 50;
+
+	public static void main(String[] args) {
+		for(int robots : ROBOTS) {
+			if(robots <= MAX_ROBOTS_WITHOUT_INDEX)
+				run(robots, false);
+			run(robots, true);
+		}
+	}
+
+	private static void run(int numberOfRobots, boolean spatialIndex) {
+		Simulator simulator = new Simulator(1, getArguments(numberOfRobots, spatialIndex));
+		simulator.addRobots(simulation.robot.Robot.getRobots(simulator, simulator.getArguments().get("--robots")));
+		simulator.setupEnvironment();
+
+		long setup = System.currentTimeMillis();
+		for(int i = 0 ; i < WARMUP_STEPS ; i++)
+			simulator.performOneSimulationStep((double)i);
+		setup = System.currentTimeMillis() - setup;
+
+		long time = System.nanoTime();
+		for(int i = WARMUP_STEPS ; i < WARMUP_STEPS + STEPS ; i++)
+			simulator.performOneSimulationStep((double)i);
+		time = System.nanoTime() - time;
+
+		System.out.printf("robots=%d index=%b warmup=%dms step=%.3fms%n", numberOfRobots, spatialIndex, setup,
+				time / 1e6 / STEPS);
+	}
+
+	private static HashMap<String, Arguments> getArguments(int numberOfRobots, boolean spatialIndex) {
+		HashMap<String, Arguments> arguments = new HashMap<String, Arguments>();
+		double distance = Math.sqrt(numberOfRobots) * 0.3;
+
+		arguments.put("--environment", new Arguments("classname=simulation.environment.EmptyEnvironment,"
+				+ "distance=" + distance + ",spatialindex=" + (spatialIndex ? 1 : 0)));
+		arguments.put("--robots", new Arguments("classname=simulation.robot.DifferentialDriveRobot,"
+				+ "numberofrobots=" + numberOfRobots + ",sensors=(RobotSensor_1=(classname=simulation.robot.sensors.RobotSensor,"
+				+ "range=0.5,numbersensors=4,id=1)),actuators=(TwoWheelActuator_1=(classname=simulation.robot.actuators.TwoWheelActuator,id=1))"));
+		return arguments;
+	}
+}
@@ -0,0 +1,127 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import controllers.Controller;
+import mathutils.Vector2d;
+import simulation.Simulator;
+import simulation.environment.Environment;
+import simulation.physicalobjects.Wall;
+import simulation.robot.Robot;
+import simulation.robot.sensors.Sensor;
+import simulation.util.Arguments;
+
+/**
+ * Compares the wall ray sensors and the wall collisions with and without the
+ * wall index (--environment wallindex=1) in a maze-like arena, a grid of
+ * corridors with a short wall segment between every pair of crossings. The
+ * robots are driven by their ray sensors, so they keep hitting walls, and are
+ * dragged along them (drag=1), which draws random numbers for every wall hit.
+ *
+ * Both simulators are stepped side by side with the same seed and the
+ * readings of every ray sensor and the positions of the robots are compared
+ * after each step. The program exits with status 1 if anything differs.
+ */
+public class WallIndexBenchmark {
+
+	private static final int ROBOTS = 100;
+	private static final int CELLS = 20;
+	private static final double CELL_SIZE = 0.5;
+	private static final double WALL_SIZE = 0.05;
+	private static final int WARMUP_STEPS = 200;
+	private static final int STEPS = 500;
+
+	public static void main(String[] args) {
+		Simulator legacy = createSimulator(false);
+		Simulator indexed = createSimulator(true);
+
+		long legacyTime = 0, indexedTime = 0;
+		int differences = 0;
+
+		for(int i = 0 ; i < WARMUP_STEPS + STEPS ; i++) {
+			long time = System.nanoTime();
+			legacy.performOneSimulationStep((double)i);
+			long middle = System.nanoTime();
+			indexed.performOneSimulationStep((double)i);
+			long end = System.nanoTime();
+
+			if(i >= WARMUP_STEPS) {
+				legacyTime+= middle - time;
+				indexedTime+= end - middle;
+			}
+			differences+= compare(legacy.getRobots(), indexed.getRobots());
+		}
+
+		System.out.printf("walls=%d robots=%d wallindex=0 step=%.3fms wallindex=1 step=%.3fms%n",
+				indexed.getEnvironment().getWallIndex().getNumberOfWalls(), ROBOTS,
+				legacyTime / 1e6 / STEPS, indexedTime / 1e6 / STEPS);
+		System.out.println("different readings and positions: " + differences);
+
+		System.exit(differences > 0 ? 1 : 0);
+	}
+
+	private static int compare(ArrayList<Robot> a, ArrayList<Robot> b) {
+		int differences = 0;
+		for(int r = 0 ; r < a.size() ; r++) {
+			Vector2d pa = a.get(r).getPosition();
+			Vector2d pb = b.get(r).getPosition();
+			if(pa.x != pb.x || pa.y != pb.y)
+				differences++;
+
+			Sensor sa = a.get(r).getSensorWithId(1);
+			Sensor sb = b.get(r).getSensorWithId(1);
+			for(int s = 0 ; s < 4 ; s++) {
+				if(sa.getSensorReading(s) != sb.getSensorReading(s))
+					differences++;
+			}
+		}
+		return differences;
+	}
+
+	private static Simulator createSimulator(boolean wallIndex) {
+		HashMap<String, Arguments> arguments = getArguments(wallIndex);
+		Simulator simulator = new Simulator(1, arguments);
+		ArrayList<Robot> robots = Robot.getRobots(simulator, arguments.get("--robots"));
+		for(Robot r : robots)
+			r.setController(Controller.getController(simulator, r, arguments.get("--controllers")));
+		simulator.addRobots(robots);
+		addWalls(simulator);
+		simulator.setupEnvironment();
+		return simulator;
+	}
+
+	private static void addWalls(Simulator simulator) {
+		Environment environment = simulator.getEnvironment();
+		double half = CELLS * CELL_SIZE / 2;
+		double segment = CELL_SIZE / 2;
+
+		environment.addStaticObject(new Wall(simulator, 0, half, half * 2, WALL_SIZE));
+		environment.addStaticObject(new Wall(simulator, 0, -half, half * 2, WALL_SIZE));
+		environment.addStaticObject(new Wall(simulator, half, 0, WALL_SIZE, half * 2));
+		environment.addStaticObject(new Wall(simulator, -half, 0, WALL_SIZE, half * 2));
+
+		for(int x = 1 ; x < CELLS ; x++) {
+			for(int y = 1 ; y < CELLS ; y++) {
+				double px = -half + x * CELL_SIZE, py = -half + y * CELL_SIZE;
+				if((x + y) % 2 == 0)
+					environment.addStaticObject(new Wall(simulator, px, py, segment, WALL_SIZE));
+				else
+					environment.addStaticObject(new Wall(simulator, px, py, WALL_SIZE, segment));
+			}
+		}
+	}
+
+	private static HashMap<String, Arguments> getArguments(boolean wallIndex) {
+		HashMap<String, Arguments> arguments = new HashMap<String, Arguments>();
+
+		arguments.put("--environment", new Arguments("classname=simulation.environment.EmptyEnvironment,"
+				+ "distance=" + (CELLS * CELL_SIZE / 2 - 0.2) + ",spatialindex=1,wallindex=" + (wallIndex ? 1 : 0)));
+		arguments.put("--robots", new Arguments("classname=simulation.robot.DifferentialDriveRobot,drag=1,"
+				+ "numberofrobots=" + ROBOTS + ",sensors=(WallRaySensor_1=(classname=simulation.robot.sensors.WallRaySensor,"
+				+ "range=1,numbersensors=4,numberofrays=7,id=1)),"
+				+ "actuators=(TwoWheelActuator_1=(classname=simulation.robot.actuators.TwoWheelActuator,id=1))"));
+		arguments.put("--controllers", new Arguments("classname=controllers.RandomRobotController"));
+		return arguments;
+	}
+}